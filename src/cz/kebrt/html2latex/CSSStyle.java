@@ -3,13 +3,17 @@
  */
 package cz.kebrt.html2latex;
 
+import java.text.MessageFormat;
 import java.text.NumberFormat;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
+import java.util.ResourceBundle;
 import java.util.logging.Logger;
 
+import de.zbit.util.ResourceManager;
+
 /**
  *  Class representing CSS style definition in program configuration.
  *  @version $Rev$
@@ -21,6 +25,11 @@ class CSSStyle {
    * A {@link Logger} for this class.
    */
   private static final Logger logger = Logger.getLogger(CSSStyle.class.getName());
+
+  /**
+   * Localization support.
+   */
+  private static final ResourceBundle bundle = ResourceManager.getBundle("cz.kebrt.html2latex.messages");
   
   /** Style name. */
   private String _name;
@@ -69,12 +78,12 @@ class CSSStyle {
       if (property.equals("font-family")) {
         continue;
       }
-      try {
-        CSSPropertyConfigItem item = conf.getPropertyConf(property + "-" + value);
+      CSSPropertyConfigItem item = conf.getPropertyConf(property + "-" + value);
+      if (item != null) {
         _start += item.getStart();
         _end = item.getEnd() + _end;
-      } catch (NoItemException e) {
-        logger.fine(e.getMessage());
+      } else {
+        logger.fine(MessageFormat.format(bundle.getString("NO_SUCH_CONFIG_ITEM"), property + "-" + value));
       }
     }
   }
@@ -175,15 +184,14 @@ class CSSStyle {
     // find first generic family (ie. monospace) used in the definition
     String[] fonts = family.split(",");
     for (int i = 0; i < fonts.length; ++i) {
-      try {
-        CSSPropertyConfigItem item = conf.getPropertyConf(
-          "font-family" + "-" + fonts[i].trim());
+      String property = "font-family" + "-" + fonts[i].trim();
+      CSSPropertyConfigItem item = conf.getPropertyConf(property);
+      if (item != null) {
         _start += item.getStart();
         _end = item.getEnd() + _end;
         break;
-      } catch (NoItemException e) {
-        logger.fine(e.getMessage());
       }
+      logger.fine(MessageFormat.format(bundle.getString("NO_SUCH_CONFIG_ITEM"), property));
     }
   }
   
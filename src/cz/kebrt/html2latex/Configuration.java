@@ -25,6 +25,10 @@ import de.zbit.util.ResourceManager;
  *  Program configuration.
  *  All of the configuration from the XML configuration file
  *  is stored in this class.
+ *  The configuration is loaded only once and shared by all conversions
+ *  (see {@link #getInstance()}). It is not modified after loading, hence it
+ *  can be used by several threads at the same time. All lookups return
+ *  {@code null} for unknown items.
  *  @version $Rev$
  *  @since 0.9.3
  */
@@ -40,32 +44,70 @@ class Configuration {
    */
   private static final ResourceBundle bundle = ResourceManager.getBundle("cz.kebrt.html2latex.messages");
 
+  /** The shared configuration, which is loaded on first use. */
+  private static volatile Configuration _instance;
+
+  /**
+   * Returns the shared configuration, which is loaded when this method is
+   * called for the first time.
+   * @return the configuration
+   * @throws FatalErrorException when error during processing configuration occurs
+   */
+  static Configuration getInstance() throws FatalErrorException {
+    Configuration config = _instance;
+    if (config == null) {
+      synchronized (Configuration.class) {
+        config = _instance;
+        if (config == null) {
+          _instance = config = new Configuration();
+        }
+      }
+    }
+    return config;
+  }
+
   /** Mapping between HTML elements and LaTeX commands.<br/>
    * key : &lt;elementName&gt;
    */
-  private HashMap<String, ElementConfigItem> _elements;
+  private final HashMap<String, ElementConfigItem> _elements;
 
   /** Mapping between HTML named entities (i.e., &amp;lt;) and LaTeX commands.<br/>
    * key : &lt;entityName&gt;<br/>
    * value : LaTeX command
    */
-  private HashMap<String, String> _chars;
+  private final HashMap<String, String> _chars;
 
-  /** Mapping between HTML decimal decimal entities and LaTeX commands.<br/>
-   * key : &lt;entityDecimalNum&gt;<br/>
-   * value : LaTeX command
+  /** Mapping between HTML decimal entities and LaTeX commands.<br/>
+   * index : &lt;entityDecimalNum&gt;<br/>
+   * value : LaTeX command or {@code null}
    */
-  private HashMap<Integer, String> _charsNum;
+  private String[] _charsNum;
+
+  /** Names of the HTML named entities in an open addressing hash table,
+   *  which allows to look up entities within a string without creating
+   *  a new string (see {@link #getChar(String, int, int)}).
+   */
+  private String[] _charNames;
+  /** LaTeX commands of the entities in {@link #_charNames}. */
+  private String[] _charValues;
 
   /** CSS styles used with converted file.<br/>
    * key : &lt;styleName&gt;
    */
-  private HashMap<String, CSSStyle> _styles;
+  private final HashMap<String, CSSStyle> _styles;
+
+  /** Names of the LaTeX commands made from the CSS styles.<br/>
+   * key : &lt;styleName&gt;
+   */
+  private final HashMap<String, String> _cmdStyleNames;
 
   /** Mappings between CSS properties and LaTeX commands.<br />
    *  key : &lt;propertyName&gt;-&lt;propertyValue&gt;
    */
-  private HashMap<String, CSSPropertyConfigItem> _stylesConf;
+  private final HashMap<String, CSSPropertyConfigItem> _stylesConf;
+
+  /** Definitions of the LaTeX commands made from the CSS styles. */
+  private String _cmdsFromCSS;
 
   /** The way of converting hyperlinks. */
   private LinksConversion _linksConversion;
@@ -79,12 +121,13 @@ class Configuration {
    *  Loads all the configuration.
    * @throws FatalErrorException when error during processing configuration occurs
    */
-  public Configuration() throws FatalErrorException {
-    _elements = new HashMap<String, ElementConfigItem>(100);
-    _chars = new HashMap<String, String>(250);
-    _charsNum = new HashMap<Integer, String>(250);
+  private Configuration() throws FatalErrorException {
+    _elements = new HashMap<String, ElementConfigItem>(200);
+    _chars = new HashMap<String, String>(500);
+    _charsNum = new String[256];
     _styles = new HashMap<String, CSSStyle>(20);
-    _stylesConf = new HashMap<String, CSSPropertyConfigItem>(50);
+    _cmdStyleNames = new HashMap<String, String>(20);
+    _stylesConf = new HashMap<String, CSSPropertyConfigItem>(100);
 
     try {
       DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
@@ -94,10 +137,21 @@ class Configuration {
       loadElementsConfiguration(root);
       loadLinksConfiguration(root);
       loadCharsConfiguration(root);
+      makeCharTable();
       loadStylesConfiguration(root);
       if (HTML2LaTeX.isSetCSSFile()) {
         loadStyleSheet(HTML2LaTeX.getCSSFile());
       }
+      StringBuilder cmds = new StringBuilder("\n% commands generated by html2latex");
+      for (Map.Entry<String, CSSStyle> entry : _styles.entrySet()) {
+        String cmdName = "\\" + _commandsPrefix + entry.getKey().replaceAll("\\W", "")
+            .replaceAll("\\d", "").replace("_", "");
+        _cmdStyleNames.put(entry.getKey(), cmdName);
+        CSSStyle style = entry.getValue();
+        cmds.append("\n\\newcommand{").append(cmdName).append("}[1]{ ");
+        cmds.append(style.getStart()).append("#1").append(style.getEnd()).append(" }");
+      }
+      _cmdsFromCSS = cmds.append('\n').toString();
     } catch (Exception e) {
       e.printStackTrace();
       throw new FatalErrorException(MessageFormat.format(bundle.getString("CANNOT_LOAD_CONFIGURATION"), e.getLocalizedMessage()));
@@ -150,8 +204,7 @@ class Configuration {
       String charNum = e.getAttribute("num");
       try {
         if (!charNum.equals("")) {
-          Integer charNumInt = Integer.valueOf(charNum);
-          _charsNum.put(charNumInt, replaceSpecialStrings(convertTo));
+          putChar(Integer.parseInt(charNum), replaceSpecialStrings(convertTo));
         }
       } catch (NumberFormatException ex) {
         logger.warning("Error in configuration.\n" + ex.toString());
@@ -168,8 +221,7 @@ class Configuration {
       String charNum = e.getAttribute("num");
       try {
         if (!charNum.equals("")) {
-          Integer charNumInt = Integer.valueOf(charNum);
-          _charsNum.put(charNumInt, replaceSpecialStrings(convertTo));
+          putChar(Integer.parseInt(charNum), replaceSpecialStrings(convertTo));
         }
       } catch (NumberFormatException ex) {
         logger.warning("Error in configuration.\n" + ex.toString());
@@ -178,6 +230,56 @@ class Configuration {
   }
 
 
+  /**
+   *  Stores the named entities in the hash table used by
+   *  {@link #getChar(String, int, int)}. The table is at most half full.
+   */
+  private void makeCharTable() {
+    int capacity = 16;
+    while (capacity < 2 * _chars.size()) {
+      capacity <<= 1;
+    }
+    _charNames = new String[capacity];
+    _charValues = new String[capacity];
+    for (Map.Entry<String, String> entry : _chars.entrySet()) {
+      int i = spread(entry.getKey().hashCode()) & (capacity - 1);
+      while (_charNames[i] != null) {
+        i = (i + 1) & (capacity - 1);
+      }
+      _charNames[i] = entry.getKey();
+      _charValues[i] = entry.getValue();
+    }
+  }
+
+
+  /**
+   *  Spreads the higher bits of a hash code to the lower ones.
+   *  @param hash hash code
+   *  @return index into the hash table before masking
+   */
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+
+  /**
+   *  Stores the LaTeX command for a decimal entity.
+   *  @param charNum entity number
+   *  @param convertTo LaTeX command
+   */
+  private void putChar(int charNum, String convertTo) {
+    if (charNum < 0) {
+      throw new NumberFormatException(Integer.toString(charNum));
+    }
+    if (charNum >= _charsNum.length) {
+      String[] chars = new String[Math.max(charNum + 1, 2 * _charsNum.length)];
+      System.arraycopy(_charsNum, 0, chars, 0, _charsNum.length);
+      _charsNum = chars;
+    }
+    _charsNum[charNum] = convertTo;
+  }
+
+
   /**
    *  Loads {@link LinksConversion options} for converting hyperlinks.
    *  @param root root element of the XML configuration file
@@ -268,15 +370,11 @@ class Configuration {
   /**
    * Returns element's configuration.
    * @param name element's name
-   * @return element's configuration
-   * @throws NoItemException when element isn't found in the configuration
+   * @return element's configuration or {@code null} when element isn't found
+   *      in the configuration
    */
-  public ElementConfigItem getElement(String name) throws NoItemException {
-    ElementConfigItem item;
-    if ((item = _elements.get(name)) != null) {
-      return item;
-    }
-    throw new NoItemException(name);
+  public ElementConfigItem getElement(String name) {
+    return _elements.get(name);
   }
 
 
@@ -292,32 +390,49 @@ class Configuration {
   /**
    * Returns LaTeX command for the specified entity.
    * @param charName entity name
-   * @return LaTeX command for the specified entity
-   * @throws NoItemException when entity isn't found in the configuration
+   * @return LaTeX command for the specified entity or {@code null} when
+   *      entity isn't found in the configuration
    */
-  public String getChar(String charName) throws NoItemException {
-    String convertTo;
-    if ((convertTo = _chars.get(charName)) != null) {
-      return convertTo;
-    }
+  public String getChar(String charName) {
+    return _chars.get(charName);
+  }
+
 
-    throw new NoItemException(charName);
+  /**
+   * Returns LaTeX command for the entity whose name is the specified part
+   * of the string.
+   * @param str string containing the entity name
+   * @param start start of the entity name
+   * @param end end of the entity name (exclusive)
+   * @return LaTeX command for the specified entity or {@code null} when
+   *      entity isn't found in the configuration
+   */
+  public String getChar(String str, int start, int end) {
+    // same as String.hashCode() of the entity name
+    int hash = 0;
+    for (int i = start; i < end; ++i) {
+      hash = 31 * hash + str.charAt(i);
+    }
+    int mask = _charNames.length - 1;
+    int length = end - start;
+    for (int i = spread(hash) & mask; _charNames[i] != null; i = (i + 1) & mask) {
+      String name = _charNames[i];
+      if ((name.length() == length) && str.regionMatches(start, name, 0, length)) {
+        return _charValues[i];
+      }
+    }
+    return null;
   }
 
 
   /**
    * Returns LaTeX command for the specified entity.
    * @param charNum entity number
-   * @return LaTeX command for the specified entity
-   * @throws NoItemException when entity isn't found in the configuration
+   * @return LaTeX command for the specified entity or {@code null} when
+   *      entity isn't found in the configuration
    */
-  public String getChar(Integer charNum) throws NoItemException {
-    String convertTo;
-    if ((convertTo = _charsNum.get(charNum)) != null) {
-      return convertTo;
-    }
-
-    throw new NoItemException(charNum.toString());
+  public String getChar(int charNum) {
+    return (charNum >= 0) && (charNum < _charsNum.length) ? _charsNum[charNum] : null;
   }
 
 
@@ -385,25 +500,21 @@ class Configuration {
   /**
    * Returns CSS property configuration.
    * @param property property and value name (&lt;propertyName&gt;-&lt;valueName&gt;)
-   * @return CSS property configuration
-   * @throws NoItemException when property isn't found in the configuration
+   * @return CSS property configuration or {@code null} when property isn't
+   *      found in the configuration
    */
-  public CSSPropertyConfigItem getPropertyConf(String property) throws NoItemException {
-    CSSPropertyConfigItem ret;
-    if ((ret = _stylesConf.get(property)) != null) {
-      return ret;
-    }
-
-    throw new NoItemException(property);
+  public CSSPropertyConfigItem getPropertyConf(String property) {
+    return _stylesConf.get(property);
   }
 
 
   /**
-   *  Adds user style to the configuration.
+   *  Adds user style to the configuration. Only used while the user style
+   *  sheet is loaded.
    *  @param name style name
    *  @param style CSS style
    */
-  public void addStyle(String name, CSSStyle style) {
+  void addStyle(String name, CSSStyle style) {
     _styles.put(name, style);
   }
 
@@ -413,15 +524,7 @@ class Configuration {
    *  @return string containing new commands definitions
    */
   public String makeCmdsFromCSS() {
-    String ret = "\n% commands generated by html2latex";
-    for (Iterator<Map.Entry<String, CSSStyle>> iterator = _styles.entrySet().iterator(); iterator.hasNext();) {
-      Map.Entry<String, CSSStyle> entry = iterator.next();
-      String styleName = entry.getKey();
-      CSSStyle style = entry.getValue();
-      ret += "\n\\newcommand{" + getCmdStyleName(styleName)
-          + "}[1]{ " + style.getStart() + "#1" + style.getEnd()  + " }";
-    }
-    return ret + "\n";
+    return _cmdsFromCSS;
   }
 
 
@@ -432,9 +535,13 @@ class Configuration {
    *      creating new LaTeX command
    */
   public String getCmdStyleName(String styleName) {
-    // TODO: lepsi
-    return "\\" + _commandsPrefix +
-        styleName.replaceAll("\\W", "").replaceAll("\\d", "").replace("_", "");
+    String cmdName = _cmdStyleNames.get(styleName);
+    if (cmdName == null) {
+      // TODO: lepsi
+      cmdName = "\\" + _commandsPrefix +
+          styleName.replaceAll("\\W", "").replaceAll("\\d", "").replace("_", "");
+    }
+    return cmdName;
   }
 
 
@@ -7,6 +7,7 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.text.MessageFormat;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -39,14 +40,28 @@ class Convertor {
    */
   private static final ResourceBundle bundle = ResourceManager.getBundle("cz.kebrt.html2latex.messages");
 
-  /** Program configuration. */
-  private Configuration _config;
+  /** LaTeX commands that replace special characters, indexed by character. */
+  private static final String[] SPECIAL_CHARS = new String[128];
+  static {
+    SPECIAL_CHARS['\\'] = "$\\backslash$";
+    SPECIAL_CHARS['$'] = "\\$";
+    SPECIAL_CHARS['#'] = "\\#";
+    SPECIAL_CHARS['%'] = "\\%";
+    SPECIAL_CHARS['~'] = "\\textasciitilde";
+    SPECIAL_CHARS['_'] = "\\_";
+    SPECIAL_CHARS['^'] = "\\textasciicircum";
+    SPECIAL_CHARS['{'] = "\\{";
+    SPECIAL_CHARS['}'] = "\\}";
+  }
+
+  /** Program configuration, which is shared by all conversions. */
+  private final Configuration _config;
   /** Output file. */
   private File _outputFile;
   /** Output file. */
   private FileWriter _fw;
   /** Output file. */
-  private BufferedWriter _writer;
+  private Writer _writer;
 
   /** Counter telling in how many elements with
    *  &quot;leaveText&quot; attribute the parser is.
@@ -72,6 +87,9 @@ class Convertor {
    */
   private HashMap<String, String> _biblio = new HashMap<String, String>(10);
 
+  /** Reused by {@link #convertCharEntitites(String)}. */
+  private final StringBuilder _entityBuffer = new StringBuilder();
+
 
   /**
    *  Opens the output file.
@@ -80,7 +98,7 @@ class Convertor {
    */
   Convertor(File outputFile) throws FatalErrorException {
 
-    _config = new Configuration();
+    _config = Configuration.getInstance();
 
     try {
       _outputFile = outputFile;
@@ -96,8 +114,8 @@ class Convertor {
    * @param bw
    * @throws FatalErrorException
    */
-  Convertor(BufferedWriter bw) throws FatalErrorException {
-    _config = new Configuration();
+  Convertor(Writer bw) throws FatalErrorException {
+    _config = Configuration.getInstance();
     _writer = bw;
   }
 
@@ -114,6 +132,21 @@ class Convertor {
   }
 
 
+  /**
+   * Returns element's configuration.
+   * @param name element's name
+   * @return element's configuration
+   * @throws NoItemException when element isn't found in the configuration
+   */
+  private ElementConfigItem getElement(String name) throws NoItemException {
+    ElementConfigItem item = _config.getElement(name);
+    if (item == null) {
+      throw new NoItemException(name);
+    }
+    return item;
+  }
+
+
   /**
    *  Called when HTML start element is reached and special method for
    *  the element doesn't exist.
@@ -124,7 +157,7 @@ class Convertor {
   public void commonElementStart(ElementStart element)
       throws IOException, NoItemException {
 
-    ElementConfigItem item = _config.getElement(element.getElementName());
+    ElementConfigItem item = getElement(element.getElementName());
 
     if (item.leaveText()) {
       ++_countLeaveTextElements;
@@ -153,7 +186,7 @@ class Convertor {
   public void commonElementEnd(ElementEnd element, ElementStart es)
       throws IOException, NoItemException {
 
-    ElementConfigItem item = _config.getElement(element.getElementName());
+    ElementConfigItem item = getElement(element.getElementName());
 
     if (item.leaveText()) {
       --_countLeaveTextElements;
@@ -222,88 +255,142 @@ class Convertor {
 
   /**
    *  Converts LaTeX special characters (ie. '{') to LaTeX commands.
+   *  The string is scanned only once. The number sign of a numeric
+   *  character entity (ie. &quot;&amp;#946;&quot;) is kept.
    *  @param str input string
-   *  @return converted string
+   *  @return converted string, which is the input string itself if it
+   *  does not contain any special character
    */
-  private String convertLaTeXSpecialChars(String str) {
-    str = str.replace("\\", "@-DOLLAR-\\backslash@-DOLLAR-").
-        replace("&#", "&@-HASH-").
-        replace("$", "\\$").replace("#", "\\#").
-        replace("%", "\\%").replace("~", "\\textasciitilde").
-        replace("_", "\\_").replace("^", "\\textasciicircum").
-        replace("{", "\\{").replace("}", "\\}").
-        replace("@-DOLLAR-", "$").
-        replace("@-HASH-", "#");
-
-    return str;
+  static String convertLaTeXSpecialChars(String str) {
+    StringBuilder sb = null;
+    int copied = 0;
+    int len = str.length();
+    for (int i = 0; i < len; ++i) {
+      char c = str.charAt(i);
+      String replacement = (c < SPECIAL_CHARS.length) ? SPECIAL_CHARS[c] : null;
+      if ((replacement == null)
+          || ((c == '#') && (i > 0) && (str.charAt(i - 1) == '&'))) {
+        continue;
+      }
+      if (sb == null) {
+        sb = new StringBuilder(len + 16);
+      }
+      sb.append(str, copied, i).append(replacement);
+      copied = i + 1;
+    }
+    if (sb == null) {
+      return str;
+    }
+    return sb.append(str, copied, len).toString();
   }
 
 
   /**
    *  Converts HTML character entities to LaTeX commands.
+   *  The string is scanned only once; unknown entities are left unchanged.
    *  @param str input string
    *  @return converted string
    */
   private String convertCharEntitites(String str) {
-    StringBuffer entity = new StringBuffer("");
-    //String entityStr = "";
-
     int len = str.length();
-    boolean addToBuffer = false;
-    for (int i = 0; i < len; ++i) {
+    int i = str.indexOf('&');
+    if (i < 0) {
+      return str;
+    }
+
+    StringBuilder sb = _entityBuffer;
+    sb.setLength(0);
+    // str is copied into sb up to this index
+    int copied = 0;
+    // start of the current entity name (after '&'), -1 if not in an entity
+    int entity = -1;
+    for (; i < len; ++i) {
+      char ch = str.charAt(i);
       // new entity started
-      if (str.charAt(i) == '&') {
-        addToBuffer = true;
-        entity.delete(0, entity.length());
-        continue;
-      }
-
-      if (addToBuffer && (str.charAt(i) == ';') ) {
+      if (ch == '&') {
+        entity = i + 1;
+      } else if ((ch == ';') && (entity >= 0)) {
         // find symbol
-        try {
-          String repl = "";
-          boolean ok = true;
-
-          if (entity.charAt(0) == '#') {
-            try {
-              Integer entityNum;
-              if ((entity.charAt(1) == 'x') || entity.charAt(1) == 'X')  {
-                entityNum = Integer.valueOf(
-                  entity.substring(2, entity.length()), 16);
-              } else {
-                entityNum = Integer.valueOf(
-                  entity.substring(1, entity.length()));
-              }
-              repl = _config.getChar(entityNum);
-            } catch (NumberFormatException ex) {
-              logger.warning("Not a number in entity.");
-              ok = false;
-            }
-          } else {
-            repl = _config.getChar(entity.toString());
-          }
-          if (ok) {
-            str = str.replace("&" + entity.toString() + ";", repl);
-            len = str.length();
-            i += repl.length() - (entity.length() + 2);
-          }
-
-        } catch (NoItemException e) {
-          logger.warning(e.toString());
+        String repl = resolveEntity(str, entity, i);
+        if (repl != null) {
+          sb.append(str, copied, entity - 1).append(repl);
+          copied = i + 1;
         }
-
-        addToBuffer = false;
-        entity.delete(0, entity.length());
-        continue;
+        entity = -1;
       }
+    }
+    if (copied == 0) {
+      return str;
+    }
+    sb.append(str, copied, len);
+
+    return sb.toString();
+  }
+
 
-      if (addToBuffer) {
-        //char c = str.charAt(i);
-        entity.append(str.charAt(i));
+  /**
+   *  Returns the LaTeX command for the entity whose name is the specified
+   *  part of the string and logs a warning if the entity is unknown.
+   *  @param str string containing the entity
+   *  @param start start of the entity name (after &quot;&amp;&quot;)
+   *  @param end end of the entity name (at &quot;;&quot;)
+   *  @return LaTeX command or {@code null} if the entity is unknown
+   */
+  private String resolveEntity(String str, int start, int end) {
+    String repl;
+    if ((start < end) && (str.charAt(start) == '#')) {
+      long entityNum;
+      if ((start + 1 < end) && ((str.charAt(start + 1) == 'x') || (str.charAt(start + 1) == 'X'))) {
+        entityNum = parseInt(str, start + 2, end, 16);
+      } else {
+        entityNum = parseInt(str, start + 1, end, 10);
       }
+      if (entityNum == Long.MIN_VALUE) {
+        logger.warning("Not a number in entity.");
+        return null;
+      }
+      repl = _config.getChar((int) entityNum);
+    } else {
+      repl = _config.getChar(str, start, end);
     }
+    if (repl == null) {
+      logger.warning(MessageFormat.format(bundle.getString("NO_SUCH_CONFIG_ITEM"), str.substring(start, end)));
+    }
+    return repl;
+  }
+
 
-    return str;
+  /**
+   *  Parses the specified part of the string as a signed integer in the same
+   *  way as {@link Integer#parseInt(String, int)}.
+   *  @param str string
+   *  @param start start of the number
+   *  @param end end of the number (exclusive)
+   *  @param radix radix
+   *  @return the number or {@link Long#MIN_VALUE} if it isn't a valid integer
+   */
+  private static long parseInt(String str, int start, int end, int radix) {
+    boolean negative = false;
+    if ((start < end) && ((str.charAt(start) == '-') || (str.charAt(start) == '+'))) {
+      negative = str.charAt(start) == '-';
+      ++start;
+    }
+    if (start == end) {
+      return Long.MIN_VALUE;
+    }
+    long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+    long value = 0;
+    for (int i = start; i < end; ++i) {
+      int digit = Character.digit(str.charAt(i), radix);
+      if (digit < 0) {
+        return Long.MIN_VALUE;
+      }
+      value = value * radix + digit;
+      if (value > limit) {
+        return Long.MIN_VALUE;
+      }
+    }
+    return negative ? -value : value;
   }
 
 
@@ -378,11 +465,10 @@ class Convertor {
    *      'id' style (if style not found null is stored in the array)
    */
   private CSSStyle[] findStyles(ElementStart e) {
-    try {
-      if (_config.getElement(e.getElementName()).ignoreStyles()) {
-        return null;
-      }
-    } catch (NoItemException ex) {}
+    ElementConfigItem item = _config.getElement(e.getElementName());
+    if ((item != null) && item.ignoreStyles()) {
+      return null;
+    }
 
     String[] styleNames = { e.getElementName(), "", "" };
     CSSStyle[] styles = { null, null, null};
@@ -584,7 +670,7 @@ class Convertor {
       _firstCell = false;
     }
 
-    _writer.write(_config.getElement(e.getElementName()).getStart());
+    _writer.write(getElement(e.getElementName()).getStart());
   }
 
 
@@ -598,7 +684,7 @@ class Convertor {
   public void tableCellEnd(ElementEnd element, ElementStart e)
       throws IOException, NoItemException {
 
-    _writer.write(_config.getElement(e.getElementName()).getEnd());
+    _writer.write(getElement(e.getElementName()).getEnd());
   }
 
 
@@ -611,7 +697,7 @@ class Convertor {
   public void tableStart(ElementStart e)
       throws IOException, NoItemException {
 
-    _writer.write(_config.getElement(e.getElementName()).getStart());
+    _writer.write(getElement(e.getElementName()).getStart());
     String str;
 
     if ( (str = e.getAttributes().get("latexcols")) != null) {
@@ -640,7 +726,7 @@ class Convertor {
   public void tableEnd(ElementEnd e, ElementStart es)
       throws IOException, NoItemException {
 
-    _writer.write(_config.getElement(e.getElementName()).getEnd());
+    _writer.write(getElement(e.getElementName()).getEnd());
     _firstRow = true;
     _printBorder = false;
   }
@@ -663,7 +749,7 @@ class Convertor {
       _writer.write(_config.makeCmdsFromCSS());
     }
 
-    _writer.write(_config.getElement(es.getElementName()).getStart());
+    _writer.write(getElement(es.getElementName()).getStart());
   }
 
 
@@ -29,9 +29,18 @@ public class Parser {
   /** Stack containing all opened and still non-closed elements. */
   private Stack<ElementStart> _openElements = new Stack<ElementStart>();
 
+  /** Block of the input which is currently scanned. */
+  private char[] _buffer = new char[8192];
+  /** Position of the next char in the buffer. */
+  private int _pos;
+  /** Number of valid chars in the buffer. */
+  private int _limit;
+  /** Collects the current element or text content. */
+  private StringBuilder _token = new StringBuilder(256);
+
   /**
    * Parses the HTML file and converts it using the particular handler.
-   * The file is processed char by char and a couple of events are
+   * The file is scanned block by block and a couple of events are
    * sent to the handler. The whole process is very similar
    * to the SAX model used with XML. The list of possible events which
    * are sent to the handler follows.
@@ -123,22 +132,49 @@ public class Parser {
   }
 
   /**
-   * Reads the input file char by char.
+   * Returns the next char of the input.
+   * @return the next char or -1 at the end of the input
+   * @throws IOException when input error occurs
+   */
+  private int read() throws IOException {
+    if ((_pos == _limit) && !fill()) {
+      return -1;
+    }
+    return _buffer[_pos++];
+  }
+
+
+  /**
+   * Reads the next block of the input into the buffer.
+   * @return {@code false} at the end of the input
+   * @throws IOException when input error occurs
+   */
+  private boolean fill() throws IOException {
+    int n;
+    do {
+      n = _reader.read(_buffer, 0, _buffer.length);
+    } while (n == 0);
+    _pos = 0;
+    _limit = Math.max(n, 0);
+    return n > 0;
+  }
+
+
+  /**
+   * Reads the input file.
    *  When the {@code &quot;&lt;&quot;} char is reached {@link Parser#readElement()
    *  readElement()} is called otherwise {@link Parser#readContent(char)
    *  readContent()} is called.
    * @throws IOException when input error occurs
    */
   private void doParsing() throws IOException {
+    _pos = _limit = 0;
     int c;
-    char ch;
-    while ((c = _reader.read()) != -1) {
-      ch = (char) c;
-
-      if (ch == '<') {
+    while ((c = read()) != -1) {
+      if (c == '<') {
         readElement();
       } else {
-        readContent(ch);
+        readContent((char) c);
       }
     }
   }
@@ -148,123 +184,245 @@ public class Parser {
    * Reads elements (tags).
    * Sends {@code comment}, {@code startElement} and
    * {@code endElement} events to the handler.
+   * Unterminated elements at the end of the input are ignored.
    * @throws IOException when input error occurs
    */
   private void readElement() throws IOException {
-    int c;
-    char ch;
-    String str = "";
+    StringBuilder str = _token;
+    str.setLength(0);
+
+    while ((_pos < _limit) || fill()) {
+      int i = _pos;
+      while ((i < _limit) && (_buffer[i] != '>')) {
+        ++i;
+      }
+      str.append(_buffer, _pos, i - _pos);
+      if (i == _limit) {
+        _pos = i;
+        continue;
+      }
+      _pos = i + 1;
 
-    while ((c = _reader.read()) != -1) {
-      ch = (char) c;
       // i'm at the end of the element
-      if (ch == '>') {
-        // is it a comment
-        if (str.startsWith("!--")) {
-          if (str.endsWith("--")) {
-            // trim the comment's start and end tags
-            str = str.substring(4, str.length());
-            str = str.substring(0, str.length() - 2);
-            _handler.comment(str);
-            return;
-          }
-          str += ch;
-          continue;
+      // is it a comment
+      if (startsWith(str, "!--")) {
+        if (endsWith(str, "--")) {
+          // trim the comment's start and end tags
+          String comment = str.toString();
+          comment = comment.substring(4, comment.length());
+          comment = comment.substring(0, comment.length() - 2);
+          _handler.comment(comment);
+          return;
         }
+        str.append('>');
+        continue;
+      }
 
-        // parse the element (get the attributes)
-        MyElement element = parseElement(str);
-        if (element instanceof ElementStart) {
-          // non-empty element
-          if (!str.endsWith("/")) {
-            _openElements.push((ElementStart) element);
-          }
-          _handler.startElement((ElementStart) element);
-          // empty element (ie. "br") -> send also endElement event
-          if (str.endsWith("/")) {
-            _handler.endElement(new ElementEnd(element.getElementName()),
-              (ElementStart) element);
-          }
+      // parse the element (get the attributes)
+      boolean empty = endsWith(str, "/");
+      MyElement element = parseElement(str);
+      if (element instanceof ElementStart) {
+        // non-empty element
+        if (!empty) {
+          _openElements.push((ElementStart) element);
         }
-        else if (element instanceof ElementEnd) {
-          // check validity of the document
-          checkValidity((ElementEnd) element);
+        _handler.startElement((ElementStart) element);
+        // empty element (ie. "br") -> send also endElement event
+        if (empty) {
+          _handler.endElement(new ElementEnd(element.getElementName()),
+            (ElementStart) element);
         }
-        return;
       }
-
-      str += ch;
+      else if (element instanceof ElementEnd) {
+        // check validity of the document
+        checkValidity((ElementEnd) element);
+      }
+      return;
     }
   }
 
   /** Parses element.
    *  Stores element attributes in {@link ElementStart ElementStart} object
-   *  if it's a start element.
+   *  if it's a start element. The element's name is separated from the
+   *  attributes by the first whitespace; attributes are separated by
+   *  a quote followed by whitespace.
    *  @param elementString string containing the element with its
    *      attributes (but without leading &quot;&lt;&quot; and ending
    *      &quot;&gt;&quot;)
    *  @return {@link ElementStart ElementStart} or {@link ElementEnd
    *      ElementEnd} object.
    */
-  private MyElement parseElement(String elementString) {
-    String elementName = "";
-    HashMap<String, String> attributes = new HashMap<String, String>(3);
-
-    // remove ending "/" from empty element
-    if (elementString.endsWith("/")) {
-      elementString = elementString.substring(0, elementString.length()-1);
+  private MyElement parseElement(StringBuilder elementString) {
+    // ignore ending "/" of empty element
+    int end = elementString.length();
+    if (endsWith(elementString, "/")) {
+      --end;
     }
 
-    String[] aux = elementString.split("\\s+", 2);
+    int i = 0;
+    while ((i < end) && !isSpace(elementString.charAt(i))) {
+      ++i;
+    }
+    String elementName = elementString.substring(0, i);
 
-    if (aux.length != 0) {
-      elementName = aux[0];
+    // it's the end element (starts with "/")
+    if ((elementName.length() > 1) && (elementName.charAt(0) == '/')) {
+      String name = elementName.substring(1, elementName.length()).toLowerCase();
+      return new ElementEnd(name);
+    }
 
-      // it's the end element (starts with "/")
-      if ((elementName.length() > 1) && (elementName.charAt(0) == '/')) {
-        String name = elementName.substring(1, elementName.length()).toLowerCase();
-        return new ElementEnd(name);
+    // get all attributes
+    HashMap<String, String> attributes = new HashMap<String, String>(3);
+    if (i < end) {
+      while ((i < end) && isSpace(elementString.charAt(i))) {
+        ++i;
       }
-
-      // get all attributes
-      if (aux.length == 2) {
-        String[] attr = aux[1].split("('\\s+)|(\"\\s+)");
-        for (int i = 0; i < attr.length; ++i) {
-          attr[i] = attr[i].trim().replace("\"", "").replace("'", "");
-          String[] attrInstance = attr[i].split("=", 2);
-          if (attrInstance.length == 2) {
-            attributes.put(attrInstance[0].toLowerCase(), attrInstance[1]);
+      int attrStart = i;
+      for (; i < end; ++i) {
+        char ch = elementString.charAt(i);
+        if (((ch == '\'') || (ch == '"')) && (i + 1 < end)
+            && isSpace(elementString.charAt(i + 1))) {
+          parseAttribute(elementString, attrStart, i, attributes);
+          i += 2;
+          while ((i < end) && isSpace(elementString.charAt(i))) {
+            ++i;
           }
+          attrStart = i--;
         }
       }
+      parseAttribute(elementString, attrStart, end, attributes);
     }
 
     // it's the start element
     return new ElementStart(elementName.toLowerCase(), attributes);
   }
 
+  /**
+   * Parses one attribute of an element. Quotes are removed from the name
+   * and the value, which are separated by the first &quot;=&quot;.
+   * @param str string containing the element
+   * @param start start of the attribute within the string
+   * @param end end of the attribute within the string (exclusive)
+   * @param attributes receives the attribute
+   */
+  private void parseAttribute(StringBuilder str, int start, int end,
+    HashMap<String, String> attributes) {
+    while ((start < end) && (str.charAt(start) <= ' ')) {
+      ++start;
+    }
+    while ((end > start) && (str.charAt(end - 1) <= ' ')) {
+      --end;
+    }
+    int eq = start;
+    while ((eq < end) && (str.charAt(eq) != '=')) {
+      ++eq;
+    }
+    if (eq < end) {
+      attributes.put(removeQuotes(str, start, eq).toLowerCase(),
+        removeQuotes(str, eq + 1, end));
+    }
+  }
+
+  /**
+   * Returns the given part of the string without any quotes.
+   * @param str string containing the element
+   * @param start start of the part
+   * @param end end of the part (exclusive)
+   * @return the part without quotes
+   */
+  private String removeQuotes(StringBuilder str, int start, int end) {
+    int i = start;
+    while ((i < end) && (str.charAt(i) != '"') && (str.charAt(i) != '\'')) {
+      ++i;
+    }
+    if (i == end) {
+      return str.substring(start, end);
+    }
+    StringBuilder sb = new StringBuilder(end - start);
+    sb.append(str, start, i);
+    for (; i < end; ++i) {
+      char ch = str.charAt(i);
+      if ((ch != '"') && (ch != '\'')) {
+        sb.append(ch);
+      }
+    }
+    return sb.toString();
+  }
+
   /**
    * Reads text content of an element.
    * Sends {@code character} event to the handler.
+   * Text at the end of the input is ignored.
    * @param firstChar first char read in {@link Parser#doParsing doParsing()}
    * method
    * @throws IOException when input error occurs
    */
   private void readContent(char firstChar) throws IOException {
-    int c;
-    char ch;
-    String str = ""; str += firstChar;
-
-    while ((c = _reader.read()) != -1) {
-      ch = (char) c;
-      if (ch == '<') {
-        _handler.characters(str);
+    StringBuilder str = _token;
+    str.setLength(0);
+    str.append(firstChar);
+
+    while ((_pos < _limit) || fill()) {
+      int i = _pos;
+      while ((i < _limit) && (_buffer[i] != '<')) {
+        ++i;
+      }
+      str.append(_buffer, _pos, i - _pos);
+      if (i < _limit) {
+        _pos = i + 1;
+        _handler.characters(str.toString());
         readElement();
         return;
       }
+      _pos = i;
+    }
+  }
 
-      str += ch;
+  /**
+   * Whitespace as defined by the regular expression {@code \s}.
+   * @param ch char
+   * @return {@code true} for whitespace
+   */
+  private static boolean isSpace(char ch) {
+    return (ch == ' ') || (ch == '\t') || (ch == '\n') || (ch == '\u000B')
+        || (ch == '\f') || (ch == '\r');
+  }
+
+  /**
+   * Tests if the string starts with the given prefix.
+   * @param str string
+   * @param prefix prefix
+   * @return {@code true} if the string starts with the prefix
+   */
+  private static boolean startsWith(StringBuilder str, String prefix) {
+    if (str.length() < prefix.length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); ++i) {
+      if (str.charAt(i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Tests if the string ends with the given suffix.
+   * @param str string
+   * @param suffix suffix
+   * @return {@code true} if the string ends with the suffix
+   */
+  private static boolean endsWith(StringBuilder str, String suffix) {
+    int offset = str.length() - suffix.length();
+    if (offset < 0) {
+      return false;
+    }
+    for (int i = 0; i < suffix.length(); ++i) {
+      if (str.charAt(offset + i) != suffix.charAt(i)) {
+        return false;
+      }
     }
+    return true;
   }
 
 
@@ -3,9 +3,9 @@
  */
 package cz.kebrt.html2latex;
 
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.logging.Logger;
 
 /**
@@ -38,7 +38,7 @@ class ParserHandler implements IParserHandler {
    * @param bw
    * @throws FatalErrorException
    */
-  ParserHandler(BufferedWriter bw) throws FatalErrorException {
+  ParserHandler(Writer bw) throws FatalErrorException {
     _conv = new Convertor(bw);
   }
 
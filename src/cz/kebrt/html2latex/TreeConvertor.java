@@ -0,0 +1,152 @@
+/*
+ * TreeConvertor.java
+ */
+package cz.kebrt.html2latex;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Stack;
+
+/**
+ * Converts an HTML document which has already been parsed into a tree
+ * (ie. XHTML notes of an SBML file) into LaTeX.
+ * The caller walks the tree in document order and reports each element
+ * and text node. Elements are converted by the same {@link ParserHandler}
+ * as the elements read by the {@link Parser}, hence the mapping from the
+ * configuration file applies in the same way. Text content is passed
+ * with all entities already resolved.
+ * The output isn't closed by this class.
+ * @version $Rev$
+ * @since 1.0
+ */
+public class TreeConvertor {
+
+  /** Handler which converts the elements. */
+  private final ParserHandler _handler;
+  /** Stack containing all opened and still non-closed elements. */
+  private final Stack<ElementStart> _openElements = new Stack<ElementStart>();
+  /** Text content which hasn't been converted yet. */
+  private final StringBuilder _text = new StringBuilder();
+
+  /**
+   * Cstr.
+   * @param writer receives the LaTeX code
+   * @throws IOException when the configuration can't be loaded
+   */
+  public TreeConvertor(Writer writer) throws IOException {
+    try {
+      _handler = new ParserHandler(writer);
+    } catch (FatalErrorException exc) {
+      throw new IOException(exc);
+    }
+  }
+
+
+  /**
+   * Called when an element is reached.
+   * @param name element's name (without prefix)
+   * @param attributes element's attributes, may be {@code null}
+   */
+  public void startElement(String name, Map<String, String> attributes) {
+    flushText();
+    HashMap<String, String> map = new HashMap<String, String>(3);
+    if (attributes != null) {
+      for (Map.Entry<String, String> entry : attributes.entrySet()) {
+        map.put(entry.getKey().toLowerCase(), escape(entry.getValue(), true));
+      }
+    }
+    ElementStart element = new ElementStart(name.toLowerCase(), map);
+    _openElements.push(element);
+    _handler.startElement(element);
+  }
+
+
+  /**
+   * Called when the end of the latest opened element is reached.
+   */
+  public void endElement() {
+    flushText();
+    ElementStart element = _openElements.pop();
+    _handler.endElement(new ElementEnd(element.getElementName()), element);
+  }
+
+
+  /**
+   * Called when a text node is reached. Adjacent text nodes are converted
+   * together.
+   * @param text text content with resolved entities
+   */
+  public void characters(String text) {
+    _text.append(text);
+  }
+
+
+  /**
+   * Converts pending text content and closes all open elements.
+   */
+  public void finish() {
+    flushText();
+    while (!_openElements.empty()) {
+      endElement();
+    }
+  }
+
+
+  /**
+   * Converts pending text content.
+   */
+  private void flushText() {
+    if (_text.length() > 0) {
+      _handler.characters(escape(_text, false));
+      _text.setLength(0);
+    }
+  }
+
+
+  /**
+   * Replaces the chars which are written as entities in HTML
+   * (&amp;, &lt;, &gt; and in attributes also &quot;) by their entities.
+   * @param str input string
+   * @param attribute whether the string is an attribute value
+   * @return string in which these chars are replaced
+   */
+  private static String escape(CharSequence str, boolean attribute) {
+    StringBuilder sb = null;
+    for (int i = 0; i < str.length(); ++i) {
+      char ch = str.charAt(i);
+      String entity;
+      switch (ch) {
+      case '&':
+        entity = "&amp;";
+        break;
+      case '<':
+        entity = "&lt;";
+        break;
+      case '>':
+        entity = "&gt;";
+        break;
+      case '"':
+        entity = attribute ? "&quot;" : null;
+        break;
+      default:
+        entity = null;
+        break;
+      }
+      if (entity == null) {
+        if (sb != null) {
+          sb.append(ch);
+        }
+        continue;
+      }
+      if (sb == null) {
+        sb = new StringBuilder(str.length() + 16);
+        sb.append(str, 0, i);
+      }
+      sb.append(entity);
+    }
+    return (sb != null) ? sb.toString() : str.toString();
+  }
+
+}
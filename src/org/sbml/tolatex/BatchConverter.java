@@ -0,0 +1,424 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex;
+
+import static de.zbit.util.Utils.getMessage;
+import static java.text.MessageFormat.format;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import de.zbit.util.ResourceManager;
+
+/**
+ * Converts all SBML files within a directory (including its sub-directories)
+ * whose names match a set of glob patterns. The conversion of each file is
+ * done by
+ * {@link SBML2LaTeX#convert(File, File, SBML2LaTeXView, ReportConfiguration)}
+ * on a fixed pool of worker threads. A failure in one file does not affect
+ * any other file. After all files have been processed, a tab-separated summary with the
+ * wall time required for each model is written to the output directory.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class BatchConverter {
+
+  /**
+   * The outcome of the conversion of a single file.
+   *
+   * @author agent
+   * @since 1.0
+   * @version $Rev$
+   */
+  public static class Result {
+
+    /**
+     * The cause of the failure, {@code null} if the conversion was successful.
+     */
+    private Throwable error;
+    /**
+     * The SBML file.
+     */
+    private File input;
+    /**
+     * The report file that has been created or should have been created.
+     */
+    private File output;
+    /**
+     * Wall time in milliseconds.
+     */
+    private long time;
+
+    /**
+     *
+     * @param input
+     * @param output
+     */
+    private Result(File input, File output) {
+      this.input = input;
+      this.output = output;
+    }
+
+    /**
+     * @return the error
+     */
+    public Throwable getError() {
+      return error;
+    }
+
+    /**
+     * @return the input
+     */
+    public File getInput() {
+      return input;
+    }
+
+    /**
+     * @return the output
+     */
+    public File getOutput() {
+      return output;
+    }
+
+    /**
+     * @return the wall time in milliseconds
+     */
+    public long getTime() {
+      return time;
+    }
+
+    /**
+     * @return
+     */
+    public boolean isSuccessful() {
+      return error == null;
+    }
+
+  }
+
+  /**
+   * Localization support.
+   */
+  private static final transient ResourceBundle bundle = ResourceManager.getBundle("org.sbml.tolatex.locales.UI");
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(BatchConverter.class.getName());
+
+  /**
+   * Name of the file to which the summary is written.
+   */
+  public static final String SUMMARY_FILE = "summary.txt";
+
+  /**
+   * Translates a glob pattern, such as {@code *.xml} or {@code BIOMD?.sbml},
+   * into a regular expression.
+   *
+   * @param glob
+   * @return
+   */
+  static Pattern globToPattern(String glob) {
+    StringBuilder regex = new StringBuilder();
+    for (char c : glob.trim().toCharArray()) {
+      switch (c) {
+        case '*':
+          regex.append(".*");
+          break;
+        case '?':
+          regex.append('.');
+          break;
+        default:
+          if (Character.isLetterOrDigit(c)) {
+            regex.append(c);
+          } else {
+            regex.append('\\').append(c);
+          }
+          break;
+      }
+    }
+    return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+  }
+
+  /**
+   * The file name extension of the reports, either {@code tex} or {@code pdf}.
+   */
+  private String extension;
+  /**
+   * The root of the input files.
+   */
+  private File inputDir;
+  /**
+   * The root of the created reports.
+   */
+  private File outputDir;
+  /**
+   * The glob patterns as given by the user.
+   */
+  private List<String> globs;
+  /**
+   * The compiled file name patterns.
+   */
+  private List<Pattern> patterns;
+  /**
+   * The number of worker threads.
+   */
+  private int threads;
+
+  /**
+   *
+   * @param inputDir
+   *        the directory to be recursively searched for SBML files.
+   * @param outputDir
+   *        the directory where to save all reports.
+   * @param filePattern
+   *        one or multiple glob patterns, separated by commas or semicolons.
+   * @param extension
+   *        {@code tex} or {@code pdf}.
+   * @param threads
+   *        the maximal number of files to be converted in parallel; values
+   *        smaller than one select the number of available processors.
+   * @throws IOException
+   *         if the input directory does not exist or if the output directory
+   *         cannot be created.
+   */
+  public BatchConverter(File inputDir, File outputDir, String filePattern,
+    String extension, int threads) throws IOException {
+    if (!inputDir.isDirectory()) {
+      throw new IOException(format(bundle.getString("INVALID_DIRECTORY"), inputDir.getAbsolutePath()));
+    }
+    if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+      throw new IOException(format(bundle.getString("INVALID_DIRECTORY"), outputDir.getAbsolutePath()));
+    }
+    this.inputDir = inputDir;
+    this.outputDir = outputDir;
+    this.extension = extension;
+    this.threads = threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+    globs = new ArrayList<String>();
+    patterns = new ArrayList<Pattern>();
+    for (String glob : filePattern.split("[,;]")) {
+      if (glob.trim().length() > 0) {
+        globs.add(glob.trim());
+        patterns.add(globToPattern(glob));
+      }
+    }
+  }
+
+  /**
+   * Recursively collects all files below the given directory that match at
+   * least one of the patterns. Each directory is visited only once, even if
+   * symbolic links form a cycle.
+   *
+   * @param dir
+   * @param files
+   * @param visited
+   *        the canonical paths of all directories visited so far.
+   * @throws IOException
+   */
+  private void collect(File dir, List<File> files, Set<File> visited) throws IOException {
+    if (!visited.add(dir.getCanonicalFile())) {
+      return;
+    }
+    File children[] = dir.listFiles();
+    if (children == null) {
+      return;
+    }
+    Arrays.sort(children);
+    for (File child : children) {
+      if (child.isDirectory()) {
+        collect(child, files, visited);
+      } else if (matches(child.getName())) {
+        files.add(child);
+      }
+    }
+  }
+
+  /**
+   * Converts all matching files and writes the summary.
+   *
+   * @return the results in the order of the input files.
+   * @throws IOException
+   *         if the summary cannot be written.
+   * @throws InterruptedException
+   */
+  public List<Result> convert() throws IOException, InterruptedException {
+    List<File> files = new ArrayList<File>();
+    collect(inputDir, files, new HashSet<File>());
+    if (files.isEmpty()) {
+      logger.warning(format(bundle.getString("BATCH_NO_FILES_FOUND"), inputDir.getAbsolutePath(), globs));
+    }
+    int poolSize = Math.max(1, Math.min(threads, files.size()));
+    logger.info(format(bundle.getString("BATCH_STARTING"), files.size(), poolSize));
+
+    long time = System.currentTimeMillis();
+    ReportConfiguration configuration = ReportConfiguration.fromPreferences();
+    ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+    List<Future<Result>> futures = new ArrayList<Future<Result>>(files.size());
+    try {
+      for (File file : files) {
+        futures.add(executor.submit(createJob(file, configuration)));
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    List<Result> results = new ArrayList<Result>(files.size());
+    int successful = 0;
+    for (Future<Result> future : futures) {
+      try {
+        Result result = future.get();
+        if (result.isSuccessful()) {
+          successful++;
+        }
+        results.add(result);
+      } catch (ExecutionException exc) {
+        // Cannot happen because every job catches its own errors.
+        logger.log(Level.WARNING, getMessage(exc), exc);
+      }
+    }
+    time = System.currentTimeMillis() - time;
+
+    File summary = new File(outputDir, SUMMARY_FILE);
+    writeSummary(summary, results, time);
+    logger.info(format(bundle.getString("BATCH_SUMMARY"), successful,
+      files.size(), time / 1000d, summary.getAbsolutePath()));
+    return results;
+  }
+
+  /**
+   *
+   * @param input
+   * @param configuration
+   * @return a job that converts the given file and never throws an exception.
+   */
+  private Callable<Result> createJob(final File input, final ReportConfiguration configuration) {
+    final Result result = new Result(input, getOutputFile(input));
+    return new Callable<Result>() {
+      /* (non-Javadoc)
+       * @see java.util.concurrent.Callable#call()
+       */
+      @Override
+      public Result call() {
+        long start = System.currentTimeMillis();
+        try {
+          File parent = result.output.getParentFile();
+          if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException(format(bundle.getString("CANNOT_WRITE_TO_FILE"), result.output.getAbsolutePath()));
+          }
+          result.output = SBML2LaTeX.convert(input, result.output, new SilentView(), configuration);
+        } catch (Throwable exc) {
+          result.error = exc;
+          logger.warning(format(bundle.getString("BATCH_CONVERSION_FAILED"), input.getAbsolutePath(), getMessage(exc)));
+        }
+        result.time = System.currentTimeMillis() - start;
+        return result;
+      }
+    };
+  }
+
+  /**
+   * Maps the given input file to a report file at the same relative location
+   * within the output directory.
+   *
+   * @param input
+   * @return
+   */
+  private File getOutputFile(File input) {
+    String relative = input.getAbsolutePath().substring(inputDir.getAbsolutePath().length());
+    int dot = relative.lastIndexOf('.');
+    if (dot > relative.lastIndexOf(File.separatorChar)) {
+      relative = relative.substring(0, dot);
+    }
+    return new File(outputDir, relative + '.' + extension);
+  }
+
+  /**
+   *
+   * @param name
+   * @return
+   */
+  private boolean matches(String name) {
+    for (Pattern pattern : patterns) {
+      if (pattern.matcher(name).matches()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Writes one tab-separated line per model: status, wall time in
+   * milliseconds, input file, and either the report file or the error message.
+   *
+   * @param summary
+   * @param results
+   * @param totalTime
+   * @throws IOException
+   */
+  private void writeSummary(File summary, List<Result> results, long totalTime) throws IOException {
+    BufferedWriter bw = new BufferedWriter(new FileWriter(summary));
+    try {
+      bw.append("#status\ttime [ms]\tinput\toutput");
+      bw.newLine();
+      for (Result result : results) {
+        bw.append(result.isSuccessful() ? "OK" : "FAILED");
+        bw.append('\t');
+        bw.append(Long.toString(result.time));
+        bw.append('\t');
+        bw.append(result.input.getAbsolutePath());
+        bw.append('\t');
+        if (result.isSuccessful()) {
+          bw.append(result.output.getAbsolutePath());
+        } else {
+          bw.append(String.valueOf(getMessage(result.error)).replaceAll("\\s+", " "));
+        }
+        bw.newLine();
+      }
+      bw.append("#total\t");
+      bw.append(Long.toString(totalTime));
+      bw.newLine();
+    } finally {
+      bw.close();
+    }
+  }
+
+}
@@ -0,0 +1,761 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex;
+
+import static java.text.MessageFormat.format;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
+
+import de.zbit.util.ResourceManager;
+
+/**
+ * Compiles one large LaTeX report as several chunks in parallel and merges the
+ * resulting PDF files with the {@link PDFMerger}. The report is split at the
+ * lines {@value CompileService#CHUNK_BREAK}, which the report generator writes
+ * between sections, reactions, and species. Each chunk is a complete document
+ * with the original preamble, so that a precompiled format applies to all of
+ * them.
+ * <p>
+ * The chunks are compiled in rounds, each of which runs LaTeX once on every
+ * chunk at the same time:
+ * <ol>
+ * <li>In the first round, the counters of all chunks but the first one start
+ * at a large offset. Counters that are still above this offset at the end of
+ * a chunk have not been reset within the chunk, hence their increments can be
+ * added up, whereas all other counters already have their final values. This
+ * gives the start values of the pages, sections, equations, tables, and
+ * hyperlink anchors of each chunk after one round.</li>
+ * <li>Each further round reads the labels of all other chunks from a shared
+ * label map, the first chunk additionally reads the table of contents and the
+ * bookmarks of all chunks. The rounds are repeated in draft mode until the
+ * counters and labels do not change anymore, followed by a final round that
+ * creates the PDF files.</li>
+ * </ol>
+ * Each run of LaTeX needs a permit of the {@link CompileService}, so that the
+ * number of processes stays bounded. Links between chunks refer to named
+ * destinations and work in the merged file. If a chunk refers to a destination
+ * of another chunk, pdfTeX creates a placeholder for it, which is ignored when
+ * merging because the owner of each destination is known from the auxiliary
+ * files.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+class ChunkedCompilation {
+
+  /**
+   * The state of one chunk.
+   *
+   * @author agent
+   * @since 1.0
+   * @version $Rev$
+   */
+  private static class Chunk {
+
+    /**
+     * The body of the chunk, i.e., the part of the document between the
+     * preamble and the end of the document.
+     */
+    private final String body;
+    /**
+     * The values of the counters at the end of the last run.
+     */
+    private Map<String, Integer> end;
+    /**
+     * The entries of the table of contents and other lists (e.g.,
+     * {@code lof}), which the last run has written to the auxiliary file.
+     */
+    private final Map<String, StringBuilder> entries;
+    /**
+     * The {@code \newlabel} lines of the last run.
+     */
+    private final StringBuilder labels;
+    /**
+     * Memory limits of TeX, which are raised if necessary.
+     */
+    private final Map<String, String> limits;
+    /**
+     * The bookmarks of the last run.
+     */
+    private String outline;
+    /**
+     * The names of all hyperlink targets that are defined in this chunk.
+     */
+    private final List<String> targets;
+    /**
+     * The values of the counters at the beginning, empty for the first chunk.
+     */
+    private Map<String, Integer> start;
+    /**
+     * The LaTeX file of this chunk.
+     */
+    private final File texFile;
+
+    /**
+     *
+     * @param texFile
+     * @param body
+     */
+    public Chunk(File texFile, String body) {
+      this.texFile = texFile;
+      this.body = body;
+      start = new HashMap<String, Integer>();
+      end = new HashMap<String, Integer>();
+      entries = new LinkedHashMap<String, StringBuilder>();
+      labels = new StringBuilder();
+      limits = new HashMap<String, String>();
+      outline = "";
+      targets = new ArrayList<String>();
+    }
+
+    /**
+     * @param extension
+     * @return the file with the same name as the LaTeX file of this chunk and
+     *         the given extension.
+     */
+    public File getFile(String extension) {
+      String name = texFile.getName();
+      return new File(texFile.getParentFile(), name.substring(0, name.lastIndexOf('.') + 1) + extension);
+    }
+
+    /**
+     * @return everything that the other chunks read from this chunk, which
+     *         must not change anymore before the final round.
+     */
+    public String getState() {
+      return labels.toString() + entries.toString() + outline + end.toString();
+    }
+
+  }
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(ChunkedCompilation.class.getName());
+
+  /**
+   * Localization support.
+   */
+  private static final transient ResourceBundle bundle = ResourceManager.getBundle("org.sbml.tolatex.locales.UI");
+
+  /**
+   * The counters that are carried over from one chunk to the next, in the
+   * order in which they are set. All of them are printed with arabic numbers
+   * (or not at all), so that they can start at {@link #OFFSET}.
+   */
+  private static final String COUNTERS[] = {"page", "section", "subsection",
+      "subsubsection", "paragraph", "equation", "table", "figure", "footnote",
+      "LT@tables", "Item", "Hfootnote", "Hy@linkcounter", "AMS"};
+
+  /**
+   * Extension of the file, into which each chunk writes the values of its
+   * counters at the end.
+   */
+  private static final String COUNTER_EXTENSION = "cnt";
+
+  /**
+   * Extension of the file with the labels of all other chunks.
+   */
+  private static final String LABEL_EXTENSION = "labels";
+
+  /**
+   * The maximal number of rounds after the first one.
+   */
+  public static final int MAX_ROUNDS = 6;
+
+  /**
+   * The start value of all counters in the first round, which is larger than
+   * any value in a report.
+   */
+  private static final int OFFSET = 1000000;
+
+  /**
+   * Extension of the bookmark file of hyperref.
+   */
+  private static final String OUTLINE_EXTENSION = "out";
+
+  /**
+   *
+   * @param text
+   * @param from
+   *        the position at which the search begins.
+   * @return the contents of all groups in curly braces on the top level of
+   *         the given text, starting at the given position.
+   */
+  private static List<String> groups(String text, int from) {
+    List<String> groups = new ArrayList<String>();
+    int depth = 0, begin = -1;
+    for (int i = from; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '\\') {
+        // Skip escaped braces.
+        i++;
+      } else if (c == '{') {
+        if (depth++ == 0) {
+          begin = i + 1;
+        }
+      } else if ((c == '}') && (depth > 0) && (--depth == 0)) {
+        groups.add(text.substring(begin, i));
+      }
+    }
+    return groups;
+  }
+
+  /**
+   *
+   * @param file
+   * @return the content of the given file or {@code null} if it does not
+   *         exist.
+   * @throws IOException
+   */
+  private static String read(File file) throws IOException {
+    if (!file.isFile()) {
+      return null;
+    }
+    StringBuilder content = new StringBuilder((int) file.length());
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "ISO-8859-1"));
+    try {
+      char buffer[] = new char[8192];
+      int n;
+      while ((n = reader.read(buffer)) >= 0) {
+        content.append(buffer, 0, n);
+      }
+    } finally {
+      reader.close();
+    }
+    return content.toString();
+  }
+
+  /**
+   * Writes the given text byte by byte, as TeX reads and writes its files.
+   *
+   * @param file
+   * @param content
+   * @throws IOException
+   */
+  private static void write(File file, CharSequence content) throws IOException {
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1");
+    try {
+      writer.append(content);
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * The LaTeX compiler.
+   */
+  private final String command;
+
+  /**
+   * Provides the precompiled preamble, may be {@code null}.
+   */
+  private final FormatCache formatCache;
+
+  /**
+   * Limits the number of concurrent processes.
+   */
+  private final Semaphore permits;
+
+  /**
+   * The maximal time in milliseconds for the whole compilation.
+   */
+  private final long timeout;
+
+  /**
+   *
+   * @param command
+   *        the name or path of the LaTeX compiler.
+   * @param formatCache
+   *        provides the precompiled preamble, {@code null} to load all
+   *        packages in each run.
+   * @param permits
+   *        must be acquired for each run of LaTeX.
+   * @param timeout
+   *        the maximal time in milliseconds for compiling all chunks, zero for
+   *        no limit.
+   */
+  public ChunkedCompilation(String command, FormatCache formatCache, Semaphore permits, long timeout) {
+    this.command = command;
+    this.formatCache = formatCache;
+    this.permits = permits;
+    this.timeout = timeout;
+  }
+
+  /**
+   * Compiles the given file in chunks. All files are created in subdirectories
+   * of the directory of the given file.
+   *
+   * @param texFile
+   * @param chunks
+   *        the desired number of chunks.
+   * @param view
+   *        displays the output of the compiler.
+   * @return the merged PDF file next to the given file or {@code null} if the
+   *         given file cannot be split into at least two chunks.
+   * @throws IOException
+   *         if LaTeX fails, exceeds the timeout, or if the results cannot be
+   *         merged.
+   * @throws InterruptedException
+   */
+  public File compile(File texFile, int chunks, SBML2LaTeXView view) throws IOException, InterruptedException {
+    texFile = texFile.getAbsoluteFile();
+    long deadline = (timeout > 0) ? System.currentTimeMillis() + timeout : 0;
+    String content = read(texFile);
+    int begin = content.indexOf("\\begin{document}");
+    int end = content.lastIndexOf("\\end{document}");
+    if ((begin < 0) || (end < begin)) {
+      return null;
+    }
+    begin = content.indexOf('\n', begin) + 1;
+    String preamble = content.substring(0, begin);
+    List<String> bodies = split(content.substring(begin, end), chunks);
+    if (bodies.size() < 2) {
+      return null;
+    }
+
+    List<Chunk> list = createChunks(texFile, bodies);
+    String formatName = null;
+    if (formatCache != null) {
+      writeChunk(list.get(0), preamble);
+      formatName = formatCache.getFormat(command, list.get(0).texFile);
+    }
+    if (formatName != null) {
+      try {
+        return compile(texFile, preamble, list, formatName, view, deadline);
+      } catch (IOException exc) {
+        if ((deadline > 0) && (System.currentTimeMillis() >= deadline)) {
+          throw exc;
+        }
+        logger.warning(format(bundle.getString("LATEX_FORMAT_FAILED"), formatName, texFile.getName()));
+        formatCache.discard(formatName);
+        list = createChunks(texFile, bodies);
+      }
+    }
+    return compile(texFile, preamble, list, null, view, deadline);
+  }
+
+  /**
+   *
+   * @param texFile
+   * @param preamble
+   * @param list
+   * @param formatName
+   * @param view
+   * @param deadline
+   * @return the merged PDF file.
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  private File compile(File texFile, String preamble, List<Chunk> list, String formatName,
+    SBML2LaTeXView view, long deadline) throws IOException, InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(list.size(), new ThreadFactory() {
+      /* (non-Javadoc)
+       * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+       */
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "pdflatex-chunk");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    // Without draft mode, each round creates the PDF files anyway.
+    boolean draft = new PDFLaTeXCompiler(command).isDraftModeSupported();
+    try {
+      // First round: find out how far each chunk advances the counters.
+      for (int i = 1; i < list.size(); i++) {
+        for (String counter : COUNTERS) {
+          list.get(i).start.put(counter, Integer.valueOf(OFFSET));
+        }
+      }
+      runAll(executor, preamble, list, draft, formatName, view, true, deadline);
+      for (int i = 1; i < list.size(); i++) {
+        Map<String, Integer> previousStart = list.get(i - 1).start;
+        Map<String, Integer> start = new TreeMap<String, Integer>();
+        for (Map.Entry<String, Integer> entry : list.get(i - 1).end.entrySet()) {
+          int value = entry.getValue().intValue();
+          Integer offset = previousStart.get(entry.getKey());
+          if ((offset != null) && (value >= OFFSET)) {
+            value = offset.intValue() + value - OFFSET;
+          }
+          start.put(entry.getKey(), Integer.valueOf(value));
+        }
+        list.get(i).start = start;
+      }
+
+      // Further rounds until counters and labels are stable.
+      int rounds = 1;
+      while (true) {
+        List<String> before = new ArrayList<String>(list.size());
+        for (Chunk chunk : list) {
+          before.add(chunk.getState());
+        }
+        runAll(executor, preamble, list, draft, formatName, view, false, deadline);
+        rounds++;
+        boolean stable = true;
+        for (int i = 0; i < list.size(); i++) {
+          stable &= before.get(i).equals(list.get(i).getState());
+          if (i > 0) {
+            stable &= list.get(i).start.equals(list.get(i - 1).end);
+            list.get(i).start = new TreeMap<String, Integer>(list.get(i - 1).end);
+          }
+        }
+        if (!draft && (stable || (rounds > MAX_ROUNDS))) {
+          break;
+        }
+        if (stable || (rounds >= MAX_ROUNDS)) {
+          draft = false;
+        }
+      }
+      logger.fine(format(bundle.getString("CHUNKED_COMPILATION"), texFile.getName(), list.size(), rounds));
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // Merge the results.
+    Map<String, Integer> owners = new HashMap<String, Integer>();
+    List<File> parts = new ArrayList<File>(list.size());
+    for (int i = 0; i < list.size(); i++) {
+      for (String target : list.get(i).targets) {
+        owners.put(target, Integer.valueOf(i));
+      }
+      File pdfFile = list.get(i).getFile("pdf");
+      if (!pdfFile.isFile()) {
+        throw new IOException(format(bundle.getString("COULD_NOT_COMPILE_FILE"), list.get(i).texFile));
+      }
+      parts.add(pdfFile);
+    }
+    String path = texFile.getAbsolutePath();
+    File pdfFile = new File(path.substring(0, path.lastIndexOf('.')) + ".pdf");
+    new PDFMerger(parts, owners).merge(pdfFile);
+    return pdfFile;
+  }
+
+  /**
+   *
+   * @param texFile
+   * @param bodies
+   * @return one chunk for each body, each in its own subdirectory of the
+   *         directory of the given file.
+   * @throws IOException
+   */
+  private List<Chunk> createChunks(File texFile, List<String> bodies) throws IOException {
+    List<Chunk> list = new ArrayList<Chunk>(bodies.size());
+    for (int i = 0; i < bodies.size(); i++) {
+      File directory = new File(texFile.getParentFile(), "chunk" + i);
+      if (!directory.isDirectory() && !directory.mkdir()) {
+        throw new IOException(format(bundle.getString("INVALID_DIRECTORY"), directory.getAbsolutePath()));
+      }
+      for (File file : directory.listFiles()) {
+        file.delete();
+      }
+      // Keep the name of the file, so that the job name does not change.
+      list.add(new Chunk(new File(directory, texFile.getName()), bodies.get(i)));
+    }
+    return list;
+  }
+
+  /**
+   * Writes the auxiliary files that the given chunk reads from the other
+   * chunks.
+   *
+   * @param list
+   * @param index
+   * @throws IOException
+   */
+  private void prepare(List<Chunk> list, int index) throws IOException {
+    Chunk chunk = list.get(index);
+    StringBuilder labels = new StringBuilder();
+    for (int i = 0; i < list.size(); i++) {
+      if (i != index) {
+        labels.append(list.get(i).labels);
+      }
+    }
+    write(chunk.getFile(LABEL_EXTENSION), labels);
+    File outline = chunk.getFile(OUTLINE_EXTENSION);
+    if (index > 0) {
+      // Only the first chunk creates bookmarks for the whole document.
+      outline.delete();
+      return;
+    }
+    StringBuilder outlines = new StringBuilder();
+    Map<String, StringBuilder> entries = new LinkedHashMap<String, StringBuilder>();
+    for (Chunk c : list) {
+      outlines.append(c.outline);
+      for (Map.Entry<String, StringBuilder> entry : c.entries.entrySet()) {
+        StringBuilder sb = entries.get(entry.getKey());
+        if (sb == null) {
+          sb = new StringBuilder();
+          entries.put(entry.getKey(), sb);
+        }
+        sb.append(entry.getValue());
+      }
+    }
+    if (outlines.length() > 0) {
+      write(outline, outlines);
+    }
+    for (Map.Entry<String, StringBuilder> entry : entries.entrySet()) {
+      write(chunk.getFile(entry.getKey()), entry.getValue());
+    }
+  }
+
+  /**
+   * Reads the counters, labels, list entries, and bookmarks of the last run of
+   * the given chunk.
+   *
+   * @param chunk
+   * @throws IOException
+   */
+  private void readResults(Chunk chunk) throws IOException {
+    chunk.end = new TreeMap<String, Integer>();
+    String counters = read(chunk.getFile(COUNTER_EXTENSION));
+    if (counters != null) {
+      for (String line : counters.split("\r?\n")) {
+        int equals = line.lastIndexOf('=');
+        if (equals > 0) {
+          try {
+            chunk.end.put(line.substring(0, equals), Integer.valueOf(line.substring(equals + 1).trim()));
+          } catch (NumberFormatException exc) {
+            logger.fine(line);
+          }
+        }
+      }
+    }
+
+    chunk.labels.setLength(0);
+    chunk.entries.clear();
+    chunk.targets.clear();
+    String aux = read(chunk.getFile("aux"));
+    if (aux != null) {
+      for (String line : aux.split("\r?\n")) {
+        if (line.startsWith("\\newlabel{")) {
+          chunk.labels.append(line).append('\n');
+          List<String> groups = groups(line, 0);
+          if (groups.size() > 1) {
+            List<String> values = groups(groups.get(1), 0);
+            if (values.size() > 3) {
+              // The fourth value of hyperref is the name of the anchor.
+              chunk.targets.add(values.get(3));
+            }
+          }
+        } else if (line.startsWith("\\@writefile{")) {
+          List<String> groups = groups(line, 0);
+          if (groups.size() > 1) {
+            StringBuilder sb = chunk.entries.get(groups.get(0));
+            if (sb == null) {
+              sb = new StringBuilder();
+              chunk.entries.put(groups.get(0), sb);
+            }
+            sb.append(groups.get(1)).append('\n');
+            List<String> arguments = groups(groups.get(1), 0);
+            if ((arguments.size() > 3) && groups.get(1).startsWith("\\contentsline")) {
+              chunk.targets.add(arguments.get(3));
+            }
+          }
+        }
+      }
+    }
+
+    String outline = read(chunk.getFile(OUTLINE_EXTENSION));
+    chunk.outline = (outline == null) ? "" : outline;
+    for (String line : chunk.outline.split("\r?\n")) {
+      List<String> groups = groups(line, 0);
+      if (line.startsWith("\\BOOKMARK") && !groups.isEmpty()) {
+        chunk.targets.add(groups.get(0));
+      }
+    }
+  }
+
+  /**
+   * Runs LaTeX once on each chunk in parallel and collects the results.
+   *
+   * @param executor
+   * @param preamble
+   * @param list
+   * @param draft
+   * @param formatName
+   * @param view
+   * @param first
+   *        whether this is the first round.
+   * @param deadline
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  private void runAll(ExecutorService executor, final String preamble, final List<Chunk> list,
+    final boolean draft, final String formatName, final SBML2LaTeXView view, final boolean first,
+    final long deadline) throws IOException, InterruptedException {
+    final PDFLaTeXCompiler compiler = new PDFLaTeXCompiler(command);
+    compiler.setFormatCache(formatCache);
+    compiler.setTimeout(timeout);
+    for (int i = 0; i < list.size(); i++) {
+      writeChunk(list.get(i), preamble);
+      if (!first) {
+        prepare(list, i);
+      }
+    }
+    List<Future<Void>> futures = new ArrayList<Future<Void>>(list.size());
+    for (int i = 0; i < list.size(); i++) {
+      final Chunk chunk = list.get(i);
+      final boolean firstRun = first && (i == 0);
+      futures.add(executor.submit(new Callable<Void>() {
+        /* (non-Javadoc)
+         * @see java.util.concurrent.Callable#call()
+         */
+        @Override
+        public Void call() throws Exception {
+          permits.acquire();
+          try {
+            compiler.pass(chunk.texFile, draft, formatName, chunk.limits, view, firstRun, deadline);
+          } finally {
+            permits.release();
+          }
+          return null;
+        }
+      }));
+    }
+    try {
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (ExecutionException exc) {
+      for (Future<Void> future : futures) {
+        future.cancel(true);
+      }
+      Throwable cause = exc.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof InterruptedException) {
+        throw (InterruptedException) cause;
+      }
+      throw new IOException(cause);
+    } catch (InterruptedException exc) {
+      for (Future<Void> future : futures) {
+        future.cancel(true);
+      }
+      throw exc;
+    }
+    for (Chunk chunk : list) {
+      readResults(chunk);
+    }
+  }
+
+  /**
+   * Splits the given body of a document at the chunk breaks into at most the
+   * given number of parts of similar size.
+   *
+   * @param body
+   * @param chunks
+   * @return
+   */
+  private List<String> split(String body, int chunks) {
+    List<String> segments = new ArrayList<String>();
+    int from = 0, index;
+    while ((index = body.indexOf(CompileService.CHUNK_BREAK, from)) >= 0) {
+      segments.add(body.substring(from, index));
+      from = index + CompileService.CHUNK_BREAK.length();
+    }
+    segments.add(body.substring(from));
+
+    List<String> bodies = new ArrayList<String>(chunks);
+    int target = body.length() / chunks;
+    StringBuilder current = new StringBuilder();
+    for (String segment : segments) {
+      if ((current.length() > 0) && (current.length() + segment.length() / 2 > target)
+          && (bodies.size() < chunks - 1)) {
+        bodies.add(current.toString());
+        current.setLength(0);
+      }
+      current.append(segment);
+    }
+    bodies.add(current.toString());
+    return bodies;
+  }
+
+  /**
+   * Writes the LaTeX file of the given chunk with the current start values of
+   * its counters.
+   *
+   * @param chunk
+   * @param preamble
+   *        everything up to and including the line that begins the document.
+   * @throws IOException
+   */
+  private void writeChunk(Chunk chunk, String preamble) throws IOException {
+    StringBuilder sb = new StringBuilder(preamble.length() + chunk.body.length() + 2048);
+    int begin = preamble.lastIndexOf("\\begin{document}");
+    int lineStart = preamble.lastIndexOf('\n', begin) + 1;
+    sb.append(preamble, 0, lineStart);
+    sb.append("\\makeatletter\\InputIfFileExists{\\jobname.");
+    sb.append(LABEL_EXTENSION);
+    sb.append("}{}{}\\makeatother\n");
+    sb.append(preamble, lineStart, preamble.length());
+    if (!chunk.start.isEmpty()) {
+      sb.append("\\makeatletter\n");
+      for (String counter : COUNTERS) {
+        Integer value = chunk.start.get(counter);
+        if (value != null) {
+          sb.append("\\@ifundefined{c@").append(counter).append("}{}{\\setcounter{");
+          sb.append(counter).append("}{").append(value).append("}}\n");
+        }
+      }
+      sb.append("\\makeatother\n");
+    }
+    sb.append(chunk.body);
+    sb.append("\n\\clearpage\n\\makeatletter\n\\newwrite\\SBMLLaTeX@counters\n");
+    sb.append("\\immediate\\openout\\SBMLLaTeX@counters=\\jobname.");
+    sb.append(COUNTER_EXTENSION);
+    sb.append('\n');
+    for (String counter : COUNTERS) {
+      sb.append("\\@ifundefined{c@").append(counter).append("}{}{\\immediate\\write\\SBMLLaTeX@counters{");
+      sb.append(counter).append("=\\expandafter\\the\\csname c@").append(counter).append("\\endcsname}}\n");
+    }
+    sb.append("\\immediate\\closeout\\SBMLLaTeX@counters\n\\makeatother\n\\end{document}\n");
+    write(chunk.texFile, sb);
+  }
+
+}
@@ -0,0 +1,287 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex;
+
+import static java.text.MessageFormat.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ResourceBundle;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+
+import de.zbit.io.FileTools;
+import de.zbit.util.ResourceManager;
+
+/**
+ * Compiles LaTeX reports to PDF with a bounded number of LaTeX processes. Each
+ * job gets its own temporary workspace, into which only the TeX file is
+ * copied. The compiler writes all its auxiliary files there, and only the
+ * final PDF file is copied to its destination before the workspace is
+ * deleted. Hence, jobs in the same directory cannot interfere and no
+ * auxiliary files remain next to the reports.
+ * <p>
+ * Threads that exceed the number of concurrent processes wait until a
+ * process becomes available, so that many reports can be rendered in
+ * parallel while only as many compilers run as configured. The workspaces
+ * can be placed on a memory file system such as {@code /dev/shm}.
+ * <p>
+ * Very large reports can be split into several chunks, which are compiled in
+ * parallel and merged into one PDF file afterwards (see
+ * {@link #setChunks(int)}).
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class CompileService {
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(CompileService.class.getName());
+
+  /**
+   * Localization support.
+   */
+  private static final transient ResourceBundle bundle = ResourceManager.getBundle("org.sbml.tolatex.locales.UI");
+
+  /**
+   * A line in a LaTeX report between two parts that can be compiled
+   * separately.
+   */
+  public static final String CHUNK_BREAK = "% SBML2LaTeX chunk break";
+
+  /**
+   * Prefix of the names of all workspaces.
+   */
+  public static final String WORKSPACE_PREFIX = "SBML2LaTeX-";
+
+  /**
+   * Recursively deletes the given file or directory.
+   *
+   * @param file
+   */
+  private static void delete(File file) {
+    File children[] = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    if (file.exists() && !file.delete()) {
+      logger.fine(format(bundle.getString("CANNOT_DELETE_FILE"), file.getAbsolutePath()));
+    }
+  }
+
+  /**
+   * The number of chunks into which each report is split.
+   */
+  private volatile int chunks = 1;
+
+  /**
+   * Limits the number of concurrent processes.
+   */
+  private final Semaphore permits;
+
+  /**
+   * The maximal number of concurrent processes.
+   */
+  private final int processes;
+
+  /**
+   * The maximal time in milliseconds for compiling one file.
+   */
+  private final long timeout;
+
+  /**
+   * The directory in which the workspaces are created.
+   */
+  private final File workspaceRoot;
+
+  /**
+   *
+   * @param processes
+   *        the maximal number of LaTeX processes at the same time; values
+   *        smaller than one select the number of available processors.
+   * @param workspaceRoot
+   *        the directory in which the temporary workspaces are created,
+   *        {@code null} for the default temporary directory.
+   * @param timeout
+   *        the maximal time in milliseconds for compiling one file, zero or
+   *        less for no limit.
+   * @throws IOException
+   *         if the directory of the workspaces cannot be created.
+   */
+  public CompileService(int processes, File workspaceRoot, long timeout) throws IOException {
+    if (workspaceRoot == null) {
+      workspaceRoot = new File(System.getProperty("java.io.tmpdir"));
+    }
+    if (!workspaceRoot.isDirectory() && !workspaceRoot.mkdirs()) {
+      throw new IOException(format(bundle.getString("INVALID_DIRECTORY"), workspaceRoot.getAbsolutePath()));
+    }
+    this.processes = processes < 1 ? Runtime.getRuntime().availableProcessors() : processes;
+    this.workspaceRoot = workspaceRoot;
+    this.timeout = Math.max(0, timeout);
+    permits = new Semaphore(this.processes, true);
+  }
+
+  /**
+   * Compiles the given TeX file in a new workspace and copies the result to
+   * the given PDF file. This method blocks until a LaTeX process is available.
+   * If the report is compiled in chunks, each chunk waits for a process of
+   * its own. If this fails for another reason than the timeout, the report is
+   * compiled as a whole.
+   *
+   * @param command
+   *        the name or path of the LaTeX compiler.
+   * @param formatCache
+   *        provides the precompiled preamble, {@code null} to load all
+   *        packages in each run.
+   * @param texFile
+   * @param pdfFile
+   *        the destination of the result, which is replaced if it exists.
+   * @param view
+   *        displays the output of the compiler.
+   * @return the PDF file.
+   * @throws IOException
+   *         if LaTeX fails or exceeds the timeout, or if the result cannot be
+   *         copied.
+   * @throws InterruptedException
+   */
+  public File compile(String command, FormatCache formatCache, File texFile, File pdfFile, SBML2LaTeXView view) throws IOException, InterruptedException {
+    pdfFile = pdfFile.getAbsoluteFile();
+    File workspace = createWorkspace();
+    try {
+      File source = new File(workspace, texFile.getName());
+      copy(texFile, source);
+      long begin = System.currentTimeMillis();
+      File result = null;
+      if (chunks > 1) {
+        try {
+          result = new ChunkedCompilation(command, formatCache, permits, timeout).compile(source, chunks, view);
+        } catch (IOException exc) {
+          if ((timeout > 0) && (System.currentTimeMillis() - begin >= timeout)) {
+            throw exc;
+          }
+          logger.warning(format(bundle.getString("CHUNKED_COMPILATION_FAILED"), texFile.getName(), exc.getLocalizedMessage()));
+        }
+      }
+      if (result == null) {
+        permits.acquire();
+        try {
+          PDFLaTeXCompiler compiler = new PDFLaTeXCompiler(command);
+          compiler.setFormatCache(formatCache);
+          compiler.setTimeout(timeout);
+          result = compiler.compile(source, view);
+        } finally {
+          permits.release();
+        }
+      }
+
+      // Replace the destination only by a complete file.
+      File part = new File(pdfFile.getParentFile(), pdfFile.getName() + ".part");
+      copy(result, part);
+      if ((pdfFile.exists() && !pdfFile.delete()) || !part.renameTo(pdfFile)) {
+        delete(part);
+        throw new IOException(format(bundle.getString("CANNOT_WRITE_TO_FILE"), pdfFile.getAbsolutePath()));
+      }
+      return pdfFile;
+    } finally {
+      delete(workspace);
+    }
+  }
+
+  /**
+   *
+   * @param source
+   * @param target
+   * @throws IOException
+   */
+  private void copy(File source, File target) throws IOException {
+    if (!FileTools.copyFile(source, target)) {
+      throw new IOException(format(bundle.getString("CANNOT_WRITE_TO_FILE"), target.getAbsolutePath()));
+    }
+  }
+
+  /**
+   *
+   * @return a new empty directory that belongs to one job only.
+   * @throws IOException
+   */
+  private File createWorkspace() throws IOException {
+    File workspace = File.createTempFile(WORKSPACE_PREFIX, "", workspaceRoot);
+    // Reuse the unique name of the file for the directory.
+    if (!workspace.delete() || !workspace.mkdir()) {
+      throw new IOException(format(bundle.getString("INVALID_DIRECTORY"), workspace.getAbsolutePath()));
+    }
+    return workspace;
+  }
+
+  /**
+   * @return the number of chunks into which each report is split.
+   */
+  public int getChunks() {
+    return chunks;
+  }
+
+  /**
+   * @return the maximal number of concurrent LaTeX processes.
+   */
+  public int getProcesses() {
+    return processes;
+  }
+
+  /**
+   * @return the maximal time in milliseconds for compiling one file, zero if
+   *         there is no limit.
+   */
+  public long getTimeout() {
+    return timeout;
+  }
+
+  /**
+   * @return the directory in which the temporary workspaces are created.
+   */
+  public File getWorkspaceRoot() {
+    return workspaceRoot;
+  }
+
+  /**
+   * Splits each report into the given number of chunks, which are compiled
+   * in parallel and merged afterwards. This reduces the time for very large
+   * reports, such as those of genome-scale models, if enough processes are
+   * available. The report is only split at the positions marked by
+   * {@link #CHUNK_BREAK}; reports without such marks are compiled as a
+   * whole.
+   *
+   * @param chunks
+   *        the desired number of chunks, one or less to compile each report
+   *        as a whole.
+   */
+  public void setChunks(int chunks) {
+    this.chunks = Math.max(1, chunks);
+  }
+
+}
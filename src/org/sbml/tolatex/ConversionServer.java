@@ -0,0 +1,572 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex;
+
+import static de.zbit.util.Utils.getMessage;
+import static java.text.MessageFormat.format;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.xml.stax.SBMLReader;
+import org.sbml.tolatex.io.ReportResources;
+import org.sbml.tolatex.io.SBOIndex;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import de.zbit.util.ResourceManager;
+import de.zbit.util.prefs.KeyProvider;
+import de.zbit.util.prefs.Option;
+import de.zbit.util.prefs.SBProperties;
+
+/**
+ * A local HTTP server that keeps one JVM with all libraries, resource bundles
+ * and the SBO index loaded and converts SBML documents on request. This
+ * avoids the startup costs of a new process per document.
+ * <p>
+ * Clients send the SBML document as body of a {@code POST} request to
+ * {@code /convert}. The query string may select the report format by
+ * {@code format=tex} (default) or {@code format=pdf} and may contain any
+ * {@link LaTeXOptions} by their name, e.g.,
+ * {@code /convert?format=pdf&LANDSCAPE=true&FONT_SIZE=12}. All other options
+ * are taken from the user's preferences at the time the server was started.
+ * The response contains the report. A {@code GET} request to {@code /status}
+ * returns some statistics. Documents larger than a given size are answered
+ * with status 413.
+ * <p>
+ * At most a given number of reports is created at the same time. A limited
+ * number of further requests waits for a free thread, all others are
+ * immediately answered with status 503. Requests that take longer than the
+ * timeout are answered with status 504, but their conversion still occupies
+ * a thread and counts towards the limit until it ends.
+ * <p>
+ * The server deletes all files of a request after answering it. A TeX report
+ * hence refers to the logo of SBML2LaTeX in a shared directory below the
+ * temporary directory of the server, see
+ * {@link ReportResources#getSharedFile(String)}. Clients that compile the
+ * report on another machine need to provide the logo themselves.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class ConversionServer {
+
+  /**
+   * Localization support.
+   */
+  private static final transient ResourceBundle bundle = ResourceManager.getBundle("org.sbml.tolatex.locales.UI");
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(ConversionServer.class.getName());
+
+  /**
+   * The path of the conversion service.
+   */
+  public static final String CONTEXT_CONVERT = "/convert";
+
+  /**
+   * The path of the status service.
+   */
+  public static final String CONTEXT_STATUS = "/status";
+
+  /**
+   * Name of the query parameter that selects the report format.
+   */
+  public static final String PARAM_FORMAT = "format";
+
+  /**
+   *
+   * @param query
+   * @return
+   * @throws UnsupportedEncodingException
+   */
+  static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+    Map<String, String> params = new HashMap<String, String>();
+    if ((query == null) || (query.length() == 0)) {
+      return params;
+    }
+    for (String pair : query.split("&")) {
+      int eq = pair.indexOf('=');
+      if (eq < 0) {
+        params.put(URLDecoder.decode(pair, "UTF-8"), "");
+      } else {
+        params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+          URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+      }
+    }
+    return params;
+  }
+
+  /**
+   *
+   * @param in
+   * @return
+   * @throws IOException
+   */
+  private static byte[] readFully(InputStream in) throws IOException {
+    return readFully(in, Long.MAX_VALUE);
+  }
+
+  /**
+   *
+   * @param in
+   * @param limit
+   *        the maximal number of bytes to be read.
+   * @return the content of the given stream or {@code null} if it is longer
+   *         than the given limit.
+   * @throws IOException
+   */
+  private static byte[] readFully(InputStream in, long limit) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte buffer[] = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) > 0) {
+      if (out.size() + (long) read > limit) {
+        return null;
+      }
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   *
+   * @param dir
+   */
+  private static void delete(File dir) {
+    File children[] = dir.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    if (!dir.delete()) {
+      logger.fine(format(bundle.getString("CANNOT_DELETE_FILE"), dir.getAbsolutePath()));
+    }
+  }
+
+  /**
+   *
+   * @param exchange
+   * @param status
+   * @param message
+   * @throws IOException
+   */
+  private static void sendText(HttpExchange exchange, int status, String message) throws IOException {
+    byte body[] = message.getBytes("UTF-8");
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+    exchange.sendResponseHeaders(status, body.length);
+    OutputStream out = exchange.getResponseBody();
+    try {
+      out.write(body);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * The option values that are used if a request does not specify them.
+   */
+  private final SBProperties defaults;
+  /**
+   * Executes the HTTP exchanges.
+   */
+  private final ExecutorService dispatcher;
+  /**
+   * Number of failed conversions.
+   */
+  private final AtomicLong failed;
+  /**
+   * The maximal size of a request body in bytes.
+   */
+  private final long maxRequestSize;
+  /**
+   * Limits the number of requests that are processed or waiting.
+   */
+  private final Semaphore permits;
+  /**
+   * Number of rejected requests.
+   */
+  private final AtomicLong rejected;
+  /**
+   *
+   */
+  private final HttpServer server;
+  /**
+   * Number of successful conversions.
+   */
+  private final AtomicLong served;
+  /**
+   * Released when the server stops.
+   */
+  private final CountDownLatch stopped;
+  /**
+   * The maximal duration of a single request in seconds.
+   */
+  private final int timeout;
+  /**
+   * Creates the reports.
+   */
+  private final ExecutorService workers;
+
+  /**
+   * Creates a server that listens on the loopback interface only.
+   *
+   * @param port
+   * @param threads
+   *        the maximal number of reports created at the same time.
+   * @param queueSize
+   *        the maximal number of requests waiting for a free thread.
+   * @param timeout
+   *        the maximal duration of a single request in seconds.
+   * @param maxRequestSize
+   *        the maximal size of an SBML document in kilobytes.
+   * @param defaults
+   *        the values of all {@link LaTeXOptions} that are not given in a
+   *        request.
+   * @throws IOException
+   *         if the port cannot be bound.
+   */
+  public ConversionServer(int port, int threads, int queueSize, int timeout,
+    int maxRequestSize, SBProperties defaults) throws IOException {
+    this.defaults = defaults;
+    this.timeout = timeout;
+    this.maxRequestSize = 1024L * Math.max(1, maxRequestSize);
+    threads = Math.max(1, threads);
+    permits = new Semaphore(threads + Math.max(0, queueSize));
+    workers = Executors.newFixedThreadPool(threads);
+    dispatcher = Executors.newCachedThreadPool();
+    served = new AtomicLong();
+    failed = new AtomicLong();
+    rejected = new AtomicLong();
+    stopped = new CountDownLatch(1);
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port), 0);
+    server.setExecutor(dispatcher);
+    server.createContext(CONTEXT_CONVERT, new HttpHandler() {
+      /* (non-Javadoc)
+       * @see com.sun.net.httpserver.HttpHandler#handle(com.sun.net.httpserver.HttpExchange)
+       */
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          handleConversion(exchange);
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+    server.createContext(CONTEXT_STATUS, new HttpHandler() {
+      /* (non-Javadoc)
+       * @see com.sun.net.httpserver.HttpHandler#handle(com.sun.net.httpserver.HttpExchange)
+       */
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          sendText(exchange, 200, format(bundle.getString("SERVER_STATUS"),
+            served.get(), failed.get(), rejected.get(), permits.availablePermits()));
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+  }
+
+  /**
+   * Blocks until {@link #stop()} has been called.
+   *
+   * @throws InterruptedException
+   */
+  public void awaitTermination() throws InterruptedException {
+    stopped.await();
+  }
+
+  /**
+   * Merges the defaults with the {@link LaTeXOptions} given in the request.
+   *
+   * @param params
+   * @return
+   * @throws IllegalArgumentException
+   *         if a parameter is no valid option or its value is out of range.
+   */
+  private ReportConfiguration createConfiguration(Map<String, String> params) {
+    SBProperties options = new SBProperties();
+    options.putAll(defaults);
+    for (Map.Entry<String, String> entry : params.entrySet()) {
+      String key = entry.getKey();
+      if (key.equals(PARAM_FORMAT)) {
+        continue;
+      }
+      // Clients must not choose a program to be executed on this machine.
+      if (!KeyProvider.Tools.providesOption(LaTeXOptions.class, key)
+          || key.equals(LaTeXOptions.LOAD_LATEX_COMPILER.getOptionName())) {
+        throw new IllegalArgumentException(format(bundle.getString("SERVER_INVALID_OPTION"), key, entry.getValue()));
+      }
+      Option<?> option = KeyProvider.Tools.getOption(LaTeXOptions.class, key);
+      if (!option.castAndCheckIsInRange(entry.getValue(), options)) {
+        throw new IllegalArgumentException(format(bundle.getString("SERVER_INVALID_OPTION"), key, entry.getValue()));
+      }
+      options.put(option, entry.getValue());
+    }
+    return new ReportConfiguration.Builder(options).build();
+  }
+
+  /**
+   * Writes the report to a private temporary directory and returns its
+   * content. The job holds the permit of its request until it ends, even if
+   * the request has been answered before because of the timeout, because the
+   * conversion cannot be interrupted. If the job never starts, the permit is
+   * released by {@link #abandon()}.
+   *
+   * @author agent
+   * @since 1.0
+   * @version $Rev$
+   */
+  private class Job implements Callable<byte[]> {
+
+    /**
+     * Set when the job either starts or is abandoned, whichever happens first.
+     */
+    private final AtomicBoolean claimed;
+    /**
+     *
+     */
+    private final ReportConfiguration configuration;
+    /**
+     *
+     */
+    private final String extension;
+    /**
+     *
+     */
+    private final byte sbml[];
+
+    /**
+     *
+     * @param sbml
+     * @param extension
+     * @param configuration
+     */
+    public Job(byte sbml[], String extension, ReportConfiguration configuration) {
+      this.sbml = sbml;
+      this.extension = extension;
+      this.configuration = configuration;
+      claimed = new AtomicBoolean(false);
+    }
+
+    /**
+     * Releases the permit of the request unless the job has already started.
+     * A job that starts afterwards does nothing.
+     */
+    public void abandon() {
+      if (claimed.compareAndSet(false, true)) {
+        permits.release();
+      }
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.concurrent.Callable#call()
+     */
+    @Override
+    public byte[] call() throws Exception {
+      if (!claimed.compareAndSet(false, true)) {
+        return null;
+      }
+      try {
+        return convert();
+      } finally {
+        permits.release();
+      }
+    }
+
+    /**
+     *
+     * @return the content of the report.
+     * @throws Exception
+     */
+    private byte[] convert() throws Exception {
+      File workspace = File.createTempFile("sbml2latex", "");
+      if (!workspace.delete() || !workspace.mkdir()) {
+        throw new IOException(format(bundle.getString("CANNOT_WRITE_TO_FILE"), workspace.getAbsolutePath()));
+      }
+      try {
+        SBMLDocument doc = new SBMLReader().readSBMLFromStream(new ByteArrayInputStream(sbml));
+        File report;
+        if (extension.equals("tex")) {
+          // The workspace is deleted below, the report must not refer to it.
+          report = SBML2LaTeX.toLaTeXreport(doc, new File(workspace, "report.tex"),
+            configuration, ReportResources.getSharedFile(ReportResources.LOGO), false);
+        } else {
+          report = SBML2LaTeX.convert(doc, new File(workspace, "report.pdf"), new SilentView(), configuration);
+        }
+        InputStream in = new FileInputStream(report);
+        try {
+          return readFully(in);
+        } finally {
+          in.close();
+        }
+      } finally {
+        delete(workspace);
+      }
+    }
+
+  }
+
+  /**
+   *
+   * @param exchange
+   * @throws IOException
+   */
+  private void handleConversion(HttpExchange exchange) throws IOException {
+    if (!exchange.getRequestMethod().equalsIgnoreCase("POST")) {
+      sendText(exchange, 405, format(bundle.getString("SERVER_METHOD_NOT_ALLOWED"), exchange.getRequestMethod()));
+      return;
+    }
+    ReportConfiguration configuration;
+    String extension;
+    try {
+      Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+      extension = params.containsKey(PARAM_FORMAT) ? params.get(PARAM_FORMAT).toLowerCase() : "tex";
+      if (!extension.equals("tex") && !extension.equals("pdf")) {
+        throw new IllegalArgumentException(format(bundle.getString("SERVER_INVALID_OPTION"), PARAM_FORMAT, extension));
+      }
+      configuration = createConfiguration(params);
+    } catch (IllegalArgumentException exc) {
+      sendText(exchange, 400, exc.getMessage());
+      return;
+    }
+    String length = exchange.getRequestHeaders().getFirst("Content-Length");
+    if ((length != null) && length.matches("\\d+") && (Long.parseLong(length) > maxRequestSize)) {
+      sendText(exchange, 413, format(bundle.getString("SERVER_REQUEST_TOO_LARGE"), maxRequestSize / 1024));
+      return;
+    }
+    if (!permits.tryAcquire()) {
+      rejected.incrementAndGet();
+      sendText(exchange, 503, bundle.getString("SERVER_BUSY"));
+      return;
+    }
+    // Once submitted, the job releases the permit.
+    boolean submitted = false;
+    try {
+      byte sbml[] = readFully(exchange.getRequestBody(), maxRequestSize);
+      if (sbml == null) {
+        sendText(exchange, 413, format(bundle.getString("SERVER_REQUEST_TOO_LARGE"), maxRequestSize / 1024));
+        return;
+      }
+      Job job = new Job(sbml, extension, configuration);
+      Future<byte[]> future = workers.submit(job);
+      submitted = true;
+      byte report[];
+      try {
+        report = future.get(timeout, TimeUnit.SECONDS);
+      } catch (TimeoutException exc) {
+        job.abandon();
+        future.cancel(true);
+        failed.incrementAndGet();
+        sendText(exchange, 504, format(bundle.getString("SERVER_TIMEOUT_EXCEEDED"), timeout));
+        return;
+      } catch (InterruptedException exc) {
+        job.abandon();
+        future.cancel(true);
+        Thread.currentThread().interrupt();
+        failed.incrementAndGet();
+        sendText(exchange, 503, bundle.getString("SERVER_BUSY"));
+        return;
+      } catch (ExecutionException exc) {
+        Throwable cause = exc.getCause() != null ? exc.getCause() : exc;
+        logger.log(Level.FINE, getMessage(cause), cause);
+        failed.incrementAndGet();
+        sendText(exchange, cause instanceof XMLStreamException ? 400 : 500, String.valueOf(getMessage(cause)));
+        return;
+      }
+      exchange.getResponseHeaders().set("Content-Type", extension.equals("pdf") ? "application/pdf" : "application/x-tex");
+      exchange.sendResponseHeaders(200, report.length);
+      OutputStream out = exchange.getResponseBody();
+      try {
+        out.write(report);
+      } finally {
+        out.close();
+      }
+      served.incrementAndGet();
+    } finally {
+      if (!submitted) {
+        permits.release();
+      }
+    }
+  }
+
+  /**
+   * Loads the SBO index and starts listening for requests.
+   */
+  public void start() {
+    // Do not let the first client wait for the index.
+    SBOIndex.getInstance();
+    server.start();
+    logger.info(format(bundle.getString("SERVER_STARTED"), server.getAddress().toString() + CONTEXT_CONVERT));
+  }
+
+  /**
+   * Stops accepting requests, waits up to one second for running exchanges
+   * and shuts down all threads.
+   */
+  public void stop() {
+    server.stop(1);
+    workers.shutdownNow();
+    dispatcher.shutdownNow();
+    stopped.countDown();
+  }
+
+}
@@ -0,0 +1,319 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex;
+
+import static java.text.MessageFormat.format;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+import de.zbit.util.ResourceManager;
+
+/**
+ * Stores precompiled LaTeX formats of the preambles of reports. The first
+ * part of the preamble of each report only depends on the layout options,
+ * such as paper size and fonts, and loads most of the packages. This part
+ * ends with the line {@value #END_OF_DUMP}. It is dumped into a format file
+ * with the package {@code mylatexformat} once per combination of options and
+ * compiler, and all later reports with the same preamble are compiled with
+ * this format, which skips loading the packages again.
+ * <p>
+ * If a format cannot be created, e.g., because {@code mylatexformat} is not
+ * installed, this is remembered and the reports are compiled as usual. The
+ * TeX files remain complete documents, which can also be compiled without any
+ * format.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class FormatCache {
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(FormatCache.class.getName());
+
+  /**
+   * Localization support.
+   */
+  private static final transient ResourceBundle bundle = ResourceManager.getBundle("org.sbml.tolatex.locales.UI");
+
+  /**
+   * Marks the end of the part of a preamble that is stored in the format.
+   * When the format is not used, the command is undefined and {@code \csname}
+   * turns it into {@code \relax}.
+   */
+  public static final String END_OF_DUMP = "\\csname endofdump\\endcsname";
+
+  /**
+   * Extension of format files.
+   */
+  private static final String EXTENSION = ".fmt";
+
+  /**
+   *
+   * @param texFile
+   * @return the preamble of the given file up to the line
+   *         {@value #END_OF_DUMP} or {@code null} if the file does not contain
+   *         this line before the document begins.
+   * @throws IOException
+   */
+  public static String preamble(File texFile) throws IOException {
+    StringBuilder preamble = new StringBuilder();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(texFile), "ISO-8859-1"));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.trim().equals(END_OF_DUMP)) {
+          return preamble.toString();
+        }
+        if (line.contains("\\begin{document}")) {
+          break;
+        }
+        preamble.append(line).append('\n');
+      }
+    } finally {
+      reader.close();
+    }
+    return null;
+  }
+
+  /**
+   * Where the formats are stored.
+   */
+  private final File directory;
+
+  /**
+   * The names of formats that could not be created.
+   */
+  private final Set<String> failed;
+
+  /**
+   * One lock per format, so that every format is created only once even if
+   * several reports are compiled at the same time.
+   */
+  private final ConcurrentMap<String, Object> locks;
+
+  /**
+   *
+   * @param directory
+   *        where the formats are stored, created if necessary.
+   * @throws IOException
+   *         if the directory cannot be created.
+   */
+  public FormatCache(File directory) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException(format(bundle.getString("INVALID_DIRECTORY"), directory.getAbsolutePath()));
+    }
+    this.directory = directory;
+    failed = Collections.synchronizedSet(new HashSet<String>());
+    locks = new ConcurrentHashMap<String, Object>();
+  }
+
+  /**
+   * Deletes all formats and forgets which formats could not be created.
+   */
+  public void clear() {
+    File files[] = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.isFile() && !file.delete()) {
+          logger.warning(format(bundle.getString("CANNOT_DELETE_FILE"), file.getAbsolutePath()));
+        }
+      }
+    }
+    failed.clear();
+  }
+
+  /**
+   * Creates the given format.
+   *
+   * @param command
+   * @param name
+   * @param preamble
+   * @return {@code true} if the format has been created.
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  private boolean create(String command, String name, String preamble) throws IOException, InterruptedException {
+    String part = name + "-" + Thread.currentThread().getId();
+    File source = new File(directory, part + ".tex");
+    Writer writer = new OutputStreamWriter(new FileOutputStream(source), "ISO-8859-1");
+    try {
+      writer.write(preamble);
+      writer.write(END_OF_DUMP);
+      writer.write("\n\\begin{document}\n\\end{document}\n");
+    } finally {
+      writer.close();
+    }
+    ProcessBuilder builder = new ProcessBuilder(command, "-ini",
+      "-interaction=nonstopmode", "-jobname=" + part, '&' + baseFormat(command),
+      "mylatexformat.ltx", source.getName());
+    builder.redirectErrorStream(true);
+    builder.directory(directory);
+    Process p = builder.start();
+    BufferedReader output = new BufferedReader(new InputStreamReader(p.getInputStream()));
+    try {
+      String line;
+      while ((line = output.readLine()) != null) {
+        logger.finest(line);
+      }
+    } finally {
+      output.close();
+    }
+    int exitValue = p.waitFor();
+
+    File dump = new File(directory, part + EXTENSION);
+    boolean success = (exitValue == 0) && dump.isFile() && dump.renameTo(new File(directory, name + EXTENSION));
+    for (String extension : new String[] {".tex", ".log", EXTENSION}) {
+      File file = new File(directory, part + extension);
+      // Keep the log of a failed attempt.
+      if ((success || !extension.equals(".log")) && file.exists() && !file.delete()) {
+        logger.fine(format(bundle.getString("CANNOT_DELETE_FILE"), file.getAbsolutePath()));
+      }
+    }
+    return success;
+  }
+
+  /**
+   * Removes the given format, e.g., because compiling with it failed, and
+   * does not create it again.
+   *
+   * @param name
+   */
+  public void discard(String name) {
+    failed.add(name);
+    File file = new File(directory, name + EXTENSION);
+    if (file.exists() && !file.delete()) {
+      logger.warning(format(bundle.getString("CANNOT_DELETE_FILE"), file.getAbsolutePath()));
+    }
+  }
+
+  /**
+   * @return the directory of this cache.
+   */
+  public File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Looks up the format for the preamble of the given file and creates it if
+   * necessary.
+   *
+   * @param command
+   *        the LaTeX compiler.
+   * @param texFile
+   * @return the name of the format, which is found in {@link #getDirectory()},
+   *         or {@code null} if the file cannot be compiled with a format.
+   * @throws InterruptedException
+   */
+  public String getFormat(String command, File texFile) throws InterruptedException {
+    try {
+      String preamble = preamble(texFile);
+      if (preamble == null) {
+        return null;
+      }
+      String name = name(command, preamble);
+      if (failed.contains(name)) {
+        return null;
+      }
+      Object lock = new Object(), previous = locks.putIfAbsent(name, lock);
+      synchronized (previous == null ? lock : previous) {
+        File fmt = new File(directory, name + EXTENSION);
+        if (fmt.isFile()) {
+          return name;
+        }
+        if (failed.contains(name)) {
+          return null;
+        }
+        logger.info(format(bundle.getString("CREATING_LATEX_FORMAT"), fmt.getAbsolutePath()));
+        if (create(command, name, preamble)) {
+          return name;
+        }
+      }
+      logger.warning(format(bundle.getString("CANNOT_CREATE_LATEX_FORMAT"), directory.getAbsolutePath()));
+      failed.add(name);
+    } catch (IOException exc) {
+      logger.warning(exc.getLocalizedMessage());
+    }
+    return null;
+  }
+
+  /**
+   *
+   * @param command
+   * @return the name of the LaTeX format of the given compiler, i.e., the name
+   *         of the executable without extension.
+   */
+  private static String baseFormat(String command) {
+    String name = new File(command).getName();
+    int dot = name.lastIndexOf('.');
+    return dot > 0 ? name.substring(0, dot) : name;
+  }
+
+  /**
+   *
+   * @param command
+   * @param preamble
+   * @return the name of the format of the given preamble and compiler, which
+   *         changes if the compiler is updated.
+   * @throws IOException
+   */
+  private static String name(String command, String preamble) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException exc) {
+      // SHA-256 is supported by every JVM.
+      throw new IllegalStateException(exc);
+    }
+    File executable = new File(command);
+    digest.update((command + '\n' + executable.lastModified() + '\n').getBytes("UTF-8"));
+    digest.update(preamble.getBytes("UTF-8"));
+    byte hash[] = digest.digest();
+    StringBuilder name = new StringBuilder(2 * hash.length);
+    for (byte b : hash) {
+      name.append(Character.forDigit((b >> 4) & 0xf, 16));
+      name.append(Character.forDigit(b & 0xf, 16));
+    }
+    return name.toString();
+  }
+
+}
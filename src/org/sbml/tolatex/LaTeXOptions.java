@@ -71,6 +71,23 @@ public interface LaTeXOptions extends KeyProvider {
     letter, legal, executive, a0, a1, a2, a3, a4, a5, a6, a7, a8, a9, b0, b1, b2, b3, b4, b5, b6, b7, b8, b9, c0, c1, c2, c3, c4, c5, c6, c7, c8, c9, d0, d1, d2, d3, d4, d5, d6, d7, d8, d9;
   }
   
+  /**
+   * The available implementations of the consistency check.
+   * 
+   * @author agent
+   * @since 1.0
+   */
+  public static enum Validator {
+    /**
+     * Local checks that do not require network access.
+     */
+    offline,
+    /**
+     * The online validator at sbml.org.
+     */
+    online;
+  }
+  
   /**
    * Helper constant.
    */
@@ -89,6 +106,15 @@ public interface LaTeXOptions extends KeyProvider {
   public static final Option<Boolean> CHECK_CONSISTENCY = new Option<Boolean>(
       "CHECK_CONSISTENCY", Boolean.class, resources, Boolean.FALSE);
   
+  /**
+   * Selects how the consistency check is performed if
+   * {@link #CHECK_CONSISTENCY} is {@code true}. The offline validator only
+   * performs a subset of the checks of the online validator, but works without
+   * network access. Default: {@link Validator#online}
+   */
+  public static final Option<Validator> VALIDATOR = new Option<Validator>(
+      "VALIDATOR", Validator.class, resources, Validator.online);
+  
   /**
    * If this option is set to {@code true}, all temporary files will be deleted after
    * running SBML2LaTeX. In case of PDF creation, for instance, this will cause
@@ -353,9 +379,9 @@ public interface LaTeXOptions extends KeyProvider {
    * Configure the layout of the LaTeX reports, what to be included, and if to
    * remove temporary files afterwards.
    */
-  @SuppressWarnings("unchecked")
-  public static final OptionGroup<Boolean> REPORT_OPTIONS = new OptionGroup<Boolean>(
-      "REPORT_OPTIONS", resources, CHECK_CONSISTENCY, MIRIAM_ANNOTATION,
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public static final OptionGroup<?> REPORT_OPTIONS = new OptionGroup(
+      "REPORT_OPTIONS", resources, CHECK_CONSISTENCY, VALIDATOR, MIRIAM_ANNOTATION,
       SHOW_PREDEFINED_UNITS, PRINT_FULL_ODE_SYSTEM, CLEAN_WORKSPACE);
   
   /**
@@ -0,0 +1,575 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex;
+
+import static java.text.MessageFormat.format;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import de.zbit.util.ResourceManager;
+
+/**
+ * Compiles a LaTeX file to PDF with as few runs of pdflatex as possible.
+ * <p>
+ * If there are no auxiliary files of an earlier compilation, the first run
+ * is done in draft mode, which only writes the auxiliary files, because the
+ * table of contents, references and table widths of the first run are wrong
+ * anyway. After each further run, the compiler is only started again if one
+ * of the auxiliary files (see {@link #AUXILIARY_EXTENSIONS}) has changed or
+ * if the log file asks to rerun LaTeX, at most {@link #MAX_PASSES} times in
+ * total. Hence, a document whose auxiliary files are up to date is compiled
+ * in one run.
+ * <p>
+ * If TeX runs out of memory, the respective limit is doubled and the run is
+ * repeated. The limits are passed in environment variables, which TeX
+ * distributions based on kpathsea (TeX Live, MiKTeX) read before their
+ * configuration files.
+ * <p>
+ * If a {@link FormatCache} is set, the file is compiled with the precompiled
+ * format of its preamble. Should this fail, the file is compiled again
+ * without the format.
+ * <p>
+ * The output of each run is passed to the {@link SBML2LaTeXView} in a
+ * separate thread, so that a view that stops reading cannot block the
+ * compiler. If a timeout is set, the running process is killed as soon as the
+ * compilation of a file takes longer.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class PDFLaTeXCompiler {
+
+  /**
+   * Kills a process that exceeds its time limit.
+   *
+   * @author agent
+   * @since 1.0
+   * @version $Rev$
+   */
+  private static class Watchdog implements Runnable {
+
+    /**
+     * Whether the process has been killed.
+     */
+    private volatile boolean fired = false;
+    /**
+     *
+     */
+    private final Process process;
+
+    /**
+     *
+     * @param process
+     */
+    public Watchdog(Process process) {
+      this.process = process;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run() {
+      fired = true;
+      process.destroy();
+    }
+
+  }
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(PDFLaTeXCompiler.class.getName());
+
+  /**
+   * Localization support.
+   */
+  private static final transient ResourceBundle bundle = ResourceManager.getBundle("org.sbml.tolatex.locales.UI");
+
+  /**
+   * The extensions of all files whose content is read by the next run of
+   * LaTeX.
+   */
+  public static final String AUXILIARY_EXTENSIONS[] = {"aux", "toc", "out", "lof", "lot"};
+
+  /**
+   * Matches the error message of TeX if one of its memory limits is exceeded,
+   * e.g., {@code ! TeX capacity exceeded, sorry [main memory size=5000000].}
+   */
+  private static final Pattern CAPACITY_EXCEEDED = Pattern.compile("TeX capacity exceeded, sorry \\[([^=\\]]+)=(\\d+)\\]");
+
+  /**
+   * Matches the warnings of LaTeX and of packages that ask for another run,
+   * e.g., {@code LaTeX Warning: Label(s) may have changed.}, the warning of
+   * longtable about changed table widths, or a line of a package warning such
+   * as {@code (rerunfilecheck)  Rerun to get outlines right}. Other lines
+   * that contain these words, e.g., echoed input, do not match.
+   */
+  private static final Pattern RERUN = Pattern.compile("^(?:LaTeX Warning: |Package \\S+ Warning: |\\(\\S+\\)\\s+)"
+      + ".*(?:Rerun to get|Label\\(s\\) may have changed|Table widths have changed)");
+
+  /**
+   * The environment variables that raise the capacities named in the error
+   * messages of TeX. The main memory cannot be changed without creating a new
+   * format, but can be extended at both ends.
+   */
+  private static final Map<String, String[]> LIMITS = new HashMap<String, String[]>();
+
+  static {
+    LIMITS.put("main memory size", new String[] {"extra_mem_top", "extra_mem_bot"});
+    LIMITS.put("pool size", new String[] {"pool_size"});
+    LIMITS.put("number of strings", new String[] {"max_strings"});
+    LIMITS.put("hash size", new String[] {"hash_extra"});
+    LIMITS.put("buffer size", new String[] {"buf_size"});
+    LIMITS.put("input stack size", new String[] {"stack_size"});
+    LIMITS.put("semantic nest size", new String[] {"nest_size"});
+    LIMITS.put("parameter stack size", new String[] {"param_size"});
+    LIMITS.put("save size", new String[] {"save_size"});
+    LIMITS.put("text input levels", new String[] {"max_in_open"});
+    LIMITS.put("font memory", new String[] {"font_mem_size"});
+    LIMITS.put("expansion depth", new String[] {"expand_depth"});
+  }
+
+  /**
+   * The maximal number of runs of LaTeX, including the run in draft mode.
+   */
+  public static final int MAX_PASSES = 3;
+
+  /**
+   * How often a run is repeated with larger memory limits.
+   */
+  public static final int MAX_CAPACITY_RETRIES = 3;
+
+  /**
+   * Schedules the {@link Watchdog}s of all compilers.
+   */
+  private static final ScheduledExecutorService watchdogs = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+    /* (non-Javadoc)
+     * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+     */
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "pdflatex-watchdog");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  /**
+   * The LaTeX compiler.
+   */
+  private final String command;
+
+  /**
+   * Provides precompiled preambles, {@code null} if not used.
+   */
+  private FormatCache formatCache;
+
+  /**
+   * The maximal time in milliseconds for compiling one file, zero for no
+   * limit.
+   */
+  private long timeout = 0;
+
+  /**
+   *
+   * @param command
+   *        the name or path of the pdflatex executable.
+   */
+  public PDFLaTeXCompiler(String command) {
+    this.command = command;
+  }
+
+  /**
+   * Compiles the given file in its directory.
+   *
+   * @param texFile
+   * @param view
+   *        displays the output of each run.
+   * @return the PDF file.
+   * @throws IOException
+   *         if LaTeX fails, exceeds the timeout or does not create a PDF file.
+   * @throws InterruptedException
+   */
+  public File compile(File texFile, SBML2LaTeXView view) throws IOException, InterruptedException {
+    texFile = texFile.getAbsoluteFile();
+    long deadline = (timeout > 0) ? System.currentTimeMillis() + timeout : 0;
+    FormatCache cache = formatCache;
+    String formatName = (cache == null) ? null : cache.getFormat(command, texFile);
+    if (formatName != null) {
+      try {
+        return compile(texFile, view, formatName, deadline);
+      } catch (IOException exc) {
+        if ((deadline > 0) && (System.currentTimeMillis() >= deadline)) {
+          throw exc;
+        }
+        logger.warning(format(bundle.getString("LATEX_FORMAT_FAILED"), formatName, texFile.getName()));
+        cache.discard(formatName);
+      }
+    }
+    return compile(texFile, view, null, deadline);
+  }
+
+  /**
+   *
+   * @param texFile
+   * @param view
+   * @param formatName
+   *        the name of a format in the {@link FormatCache} or {@code null}.
+   * @param deadline
+   *        the time in milliseconds when all runs must be finished, zero for
+   *        no limit.
+   * @return the PDF file.
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  private File compile(File texFile, SBML2LaTeXView view, String formatName, long deadline) throws IOException, InterruptedException {
+    String path = texFile.getAbsolutePath();
+    String base = path.substring(0, path.lastIndexOf('.'));
+    Map<String, String> limits = new HashMap<String, String>();
+
+    byte auxiliary[][] = readAuxiliaryFiles(base);
+    boolean draft = isDraftModeSupported() && (auxiliary[0] == null);
+    int passes = 0;
+    while (true) {
+      boolean rerun = pass(texFile, draft, formatName, limits, view, passes == 0, deadline);
+      passes++;
+      byte current[][] = readAuxiliaryFiles(base);
+      boolean changed = !Arrays.deepEquals(auxiliary, current);
+      auxiliary = current;
+      if (!draft && ((!changed && !rerun) || (passes >= MAX_PASSES))) {
+        break;
+      }
+      draft = false;
+    }
+    logger.fine(format(bundle.getString("LATEX_PASSES"), texFile.getName(), passes));
+
+    File pdfFile = new File(base + ".pdf");
+    if (!pdfFile.exists() || (pdfFile.length() < 1)) {
+      throw new IOException(bundle.getString("COULD_NOT_COMPILE_LATEX_FILE"));
+    }
+    return pdfFile;
+  }
+
+  /**
+   * Runs LaTeX once on the given file. If TeX runs out of memory, the run is
+   * repeated with a larger limit.
+   *
+   * @param texFile
+   * @param draft
+   *        whether to run in draft mode, which is ignored if not supported.
+   * @param formatName
+   *        the name of a format in the {@link FormatCache} or {@code null}.
+   * @param limits
+   *        environment variables that raise the memory limits of TeX, which
+   *        are updated if a limit is exceeded.
+   * @param view
+   * @param first
+   *        whether this is the first run for the file.
+   * @param deadline
+   *        the time in milliseconds when the process is killed, zero for no
+   *        limit.
+   * @return {@code true} if the log file asks for another run.
+   * @throws IOException
+   *         if LaTeX fails.
+   * @throws InterruptedException
+   */
+  boolean pass(File texFile, boolean draft, String formatName, Map<String, String> limits,
+    SBML2LaTeXView view, boolean first, long deadline) throws IOException, InterruptedException {
+    String path = texFile.getAbsolutePath();
+    File logFile = new File(path.substring(0, path.lastIndexOf('.')) + ".log");
+    draft &= isDraftModeSupported();
+    int retries = 0;
+    while (true) {
+      int exitValue = run(texFile, draft, formatName, limits, view, first && (retries == 0), deadline);
+      String capacity[] = new String[2];
+      boolean rerun = scanLog(logFile, capacity);
+      if (capacity[0] != null) {
+        if ((retries++ >= MAX_CAPACITY_RETRIES) || !raiseLimit(capacity[0], capacity[1], limits)) {
+          throw new IOException(format(bundle.getString("COULD_NOT_COMPILE_FILE"), texFile));
+        }
+        continue;
+      }
+      if (exitValue != 0) {
+        throw new IOException(format(bundle.getString("COULD_NOT_COMPILE_FILE"), texFile));
+      }
+      return rerun;
+    }
+  }
+
+  /**
+   * @return the name or path of the pdflatex executable.
+   */
+  public String getCommand() {
+    return command;
+  }
+
+  /**
+   * @return the cache of precompiled preambles or {@code null}.
+   */
+  public FormatCache getFormatCache() {
+    return formatCache;
+  }
+
+  /**
+   * @return the maximal time in milliseconds for compiling one file, zero if
+   *         there is no limit.
+   */
+  public long getTimeout() {
+    return timeout;
+  }
+
+  /**
+   * @return {@code true} if the compiler is pdfTeX or LuaTeX, which can
+   *         suppress the output of the PDF file.
+   */
+  public boolean isDraftModeSupported() {
+    String name = new File(command).getName().toLowerCase();
+    return name.startsWith("pdf") || name.startsWith("lua");
+  }
+
+  /**
+   * Compiles all files with the precompiled formats of their preambles.
+   *
+   * @param formatCache
+   *        {@code null} to load all packages in each run (default).
+   */
+  public void setFormatCache(FormatCache formatCache) {
+    this.formatCache = formatCache;
+  }
+
+  /**
+   * Limits the time for compiling one file, including all runs of LaTeX.
+   *
+   * @param timeout
+   *        in milliseconds, zero or less for no limit (default).
+   */
+  public void setTimeout(long timeout) {
+    this.timeout = Math.max(0, timeout);
+  }
+
+  /**
+   * Doubles the given capacity of TeX for the next run.
+   *
+   * @param name
+   *        the name of the capacity in the error message.
+   * @param value
+   *        the current value of the capacity.
+   * @param limits
+   *        the environment variables of the next run.
+   * @return {@code false} if the capacity cannot be changed.
+   */
+  private boolean raiseLimit(String name, String value, Map<String, String> limits) {
+    String variables[] = LIMITS.get(name.trim());
+    if (variables == null) {
+      return false;
+    }
+    long size = Long.parseLong(value);
+    // Extending the main memory by half of its size at both ends doubles it.
+    String newValue = Long.toString(variables.length > 1 ? size / 2 : 2 * size);
+    StringBuilder settings = new StringBuilder();
+    for (String variable : variables) {
+      limits.put(variable, newValue);
+      if (settings.length() > 0) {
+        settings.append(", ");
+      }
+      settings.append(variable).append('=').append(newValue);
+    }
+    logger.info(format(bundle.getString("TEX_CAPACITY_EXCEEDED"), name.trim(), value, settings));
+    return true;
+  }
+
+  /**
+   *
+   * @param base
+   *        the path of the LaTeX file without extension.
+   * @return the content of all auxiliary files, {@code null} for files that
+   *         do not exist.
+   * @throws IOException
+   */
+  private byte[][] readAuxiliaryFiles(String base) throws IOException {
+    byte content[][] = new byte[AUXILIARY_EXTENSIONS.length][];
+    for (int i = 0; i < AUXILIARY_EXTENSIONS.length; i++) {
+      File file = new File(base + '.' + AUXILIARY_EXTENSIONS[i]);
+      if (file.isFile()) {
+        InputStream in = new FileInputStream(file);
+        try {
+          ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+          byte buffer[] = new byte[8192];
+          int n;
+          while ((n = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, n);
+          }
+          content[i] = out.toByteArray();
+        } finally {
+          in.close();
+        }
+      }
+    }
+    return content;
+  }
+
+  /**
+   * Runs LaTeX once.
+   *
+   * @param texFile
+   * @param draft
+   *        whether to run in draft mode.
+   * @param formatName
+   *        the name of a format in the {@link FormatCache} or {@code null}.
+   * @param limits
+   *        environment variables that raise the memory limits of TeX.
+   * @param view
+   * @param first
+   *        whether this is the first run for the file.
+   * @param deadline
+   *        the time in milliseconds when the process is killed, zero for no
+   *        limit.
+   * @return the exit value of the compiler.
+   * @throws IOException
+   *         if the process cannot be started or has been killed.
+   * @throws InterruptedException
+   */
+  private int run(File texFile, boolean draft, String formatName, Map<String, String> limits,
+    final SBML2LaTeXView view, final boolean first, long deadline) throws IOException, InterruptedException {
+    List<String> arguments = new ArrayList<String>();
+    arguments.add(command);
+    if (draft) {
+      arguments.add("-draftmode");
+    }
+    if (formatName != null) {
+      arguments.add("-fmt=" + formatName);
+    }
+    arguments.add("-interaction");
+    arguments.add("nonstopmode");
+    arguments.add(texFile.getAbsolutePath());
+    ProcessBuilder builder = new ProcessBuilder(arguments);
+    builder.redirectErrorStream(true);
+    builder.directory(texFile.getParentFile());
+    builder.environment().putAll(limits);
+    if (formatName != null) {
+      // The empty entry at the end stands for the default search path.
+      builder.environment().put("TEXFORMATS",
+        formatCache.getDirectory().getAbsolutePath() + File.pathSeparatorChar);
+    }
+    final Process p = builder.start();
+
+    // Show the process output in the view while waiting for the process.
+    Thread output = new Thread(new Runnable() {
+      /* (non-Javadoc)
+       * @see java.lang.Runnable#run()
+       */
+      @Override
+      public void run() {
+        view.displayLaTeXOutput(p, first);
+      }
+    }, "pdflatex-output");
+    output.setDaemon(true);
+    output.start();
+
+    Watchdog watchdog = new Watchdog(p);
+    ScheduledFuture<?> kill = null;
+    if (deadline > 0) {
+      kill = watchdogs.schedule(watchdog, Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+    int exitValue;
+    try {
+      exitValue = p.waitFor();
+    } catch (InterruptedException exc) {
+      p.destroy();
+      throw exc;
+    } finally {
+      if (kill != null) {
+        kill.cancel(false);
+      }
+    }
+    if (!watchdog.fired) {
+      output.join();
+    } else {
+      // Child processes of a killed compiler may still hold the output open.
+      output.join(1000);
+      throw new IOException(format(bundle.getString("LATEX_TIMEOUT_EXCEEDED"), texFile.getName(), timeout / 1000d));
+    }
+    return exitValue;
+  }
+
+  /**
+   * Searches the log file of the last run for requests to rerun LaTeX and for
+   * exceeded capacities.
+   *
+   * @param logFile
+   * @param capacity
+   *        receives the name and the value of the first exceeded capacity, if
+   *        any.
+   * @return {@code true} if a package or LaTeX itself asks for another run.
+   * @throws IOException
+   */
+  private boolean scanLog(File logFile, String capacity[]) throws IOException {
+    if (!logFile.isFile()) {
+      return false;
+    }
+    boolean rerun = false;
+    // The log file contains the bytes of the input, which may have any encoding.
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(logFile), "ISO-8859-1"));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (RERUN.matcher(line).find()) {
+          rerun = true;
+        } else if ((capacity[0] == null) && line.contains("TeX capacity exceeded")) {
+          Matcher matcher = CAPACITY_EXCEEDED.matcher(line);
+          if (matcher.find()) {
+            capacity[0] = matcher.group(1);
+            capacity[1] = matcher.group(2);
+          }
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return rerun;
+  }
+
+}
@@ -0,0 +1,283 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
+import org.apache.pdfbox.pdmodel.PDDocumentNameDictionary;
+import org.apache.pdfbox.pdmodel.PDDestinationNameTreeNode;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDNameTreeNode;
+import org.apache.pdfbox.pdmodel.common.PDPageLabelRange;
+import org.apache.pdfbox.pdmodel.common.PDPageLabels;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDDestination;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageDestination;
+
+/**
+ * Concatenates PDF files that have been created by pdfTeX from parts of the
+ * same LaTeX document. The pages, bookmarks, and links of all parts are copied
+ * with Apache PDFBox, whereas the named destinations and page labels are
+ * merged here. Because hyperref refers to all link targets by name, links
+ * from one part to another work in the merged file as long as each target is
+ * defined in exactly one part. If several parts define the same destination,
+ * e.g., because pdfTeX replaces unresolved targets by a fixed destination, the
+ * owner of each name can be given explicitly.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class PDFMerger {
+
+  /**
+   * The maximal number of names in one node of the merged name tree.
+   */
+  private static final int NAMES_PER_NODE = 256;
+
+  /**
+   * The part that defines each named destination, if known.
+   */
+  private final Map<String, Integer> owners;
+
+  /**
+   * The files to be merged.
+   */
+  private final List<File> parts;
+
+  /**
+   *
+   * @param parts
+   *        the files in the order of their pages in the result.
+   * @param owners
+   *        the index of the part that defines each named destination, may be
+   *        {@code null} or incomplete. Names that are defined in several parts
+   *        and not listed here are taken from the first part.
+   */
+  public PDFMerger(List<File> parts, Map<String, Integer> owners) {
+    this.parts = new ArrayList<File>(parts);
+    this.owners = owners != null ? owners : Collections.<String, Integer>emptyMap();
+  }
+
+  /**
+   * Writes the merged file.
+   *
+   * @param target
+   * @throws IOException
+   *         if one of the parts cannot be read or the result cannot be
+   *         written.
+   */
+  public void merge(File target) throws IOException {
+    PDDocument result = new PDDocument();
+    // The parts must remain open until the result has been saved.
+    List<PDDocument> documents = new ArrayList<PDDocument>(parts.size());
+    try {
+      PDFMergerUtility utility = new PDFMergerUtility();
+      Map<String, PDPageDestination> destinations = new TreeMap<String, PDPageDestination>();
+      PDPageLabels labels = new PDPageLabels(result);
+      boolean labeled = false;
+      for (int i = 0; i < parts.size(); i++) {
+        PDDocument part = PDDocument.load(parts.get(i));
+        documents.add(part);
+        PDDocumentCatalog catalog = part.getDocumentCatalog();
+        int offset = result.getNumberOfPages();
+
+        // Destinations and page labels are merged below, PDFBox copies the rest.
+        Map<String, PDPageDestination> partDestinations = new TreeMap<String, PDPageDestination>();
+        PDDocumentNameDictionary names = catalog.getNames();
+        if ((names != null) && (names.getDests() != null)) {
+          collectDestinations(names.getDests(), partDestinations);
+          names.setDests(null);
+        }
+        PDPageLabels partLabels = catalog.getPageLabels();
+        catalog.getCOSObject().removeItem(COSName.PAGE_LABELS);
+        utility.appendDocument(result, part);
+
+        Map<COSDictionary, Integer> pageIndices = new IdentityHashMap<COSDictionary, Integer>();
+        int index = 0;
+        for (PDPage page : part.getPages()) {
+          pageIndices.put(page.getCOSObject(), Integer.valueOf(index++));
+        }
+        for (Map.Entry<String, PDPageDestination> entry : partDestinations.entrySet()) {
+          String name = entry.getKey();
+          Integer owner = owners.get(name);
+          if (owner != null ? (owner.intValue() != i) : destinations.containsKey(name)) {
+            continue;
+          }
+          PDPageDestination destination = move(entry.getValue(), pageIndices, result, offset);
+          if (destination != null) {
+            destinations.put(name, destination);
+          }
+        }
+
+        if (partLabels != null) {
+          labeled = true;
+        }
+        if ((partLabels == null) || (partLabels.getPageLabelRange(0) == null)) {
+          // Continue with decimal numbers if the part does not start with a label.
+          PDPageLabelRange decimal = new PDPageLabelRange();
+          decimal.setStyle(PDPageLabelRange.STYLE_DECIMAL);
+          decimal.setStart(offset + 1);
+          labels.setLabelItem(offset, decimal);
+        }
+        if (partLabels != null) {
+          for (Integer start : partLabels.getPageIndices()) {
+            labels.setLabelItem(offset + start.intValue(), copy(partLabels.getPageLabelRange(start.intValue())));
+          }
+        }
+      }
+
+      PDDocumentCatalog catalog = result.getDocumentCatalog();
+      if (labeled) {
+        catalog.setPageLabels(labels);
+      }
+      if (!destinations.isEmpty()) {
+        PDDocumentNameDictionary names = catalog.getNames();
+        if (names == null) {
+          names = new PDDocumentNameDictionary(catalog);
+          catalog.setNames(names);
+        }
+        names.setDests(createNameTree(destinations));
+      }
+      result.save(target);
+    } finally {
+      result.close();
+      for (PDDocument document : documents) {
+        document.close();
+      }
+    }
+  }
+
+  /**
+   * Collects the entries of the given name tree.
+   *
+   * @param node
+   * @param destinations
+   * @throws IOException
+   */
+  private static void collectDestinations(PDDestinationNameTreeNode node,
+    Map<String, PDPageDestination> destinations) throws IOException {
+    Map<String, PDPageDestination> names = node.getNames();
+    if (names != null) {
+      destinations.putAll(names);
+    }
+    List<PDNameTreeNode<PDPageDestination>> kids = node.getKids();
+    if (kids != null) {
+      for (PDNameTreeNode<PDPageDestination> kid : kids) {
+        collectDestinations((PDDestinationNameTreeNode) kid, destinations);
+      }
+    }
+  }
+
+  /**
+   *
+   * @param range
+   * @return a copy of the given page label that belongs to no document.
+   */
+  private static PDPageLabelRange copy(PDPageLabelRange range) {
+    PDPageLabelRange copy = new PDPageLabelRange();
+    if (range.getStyle() != null) {
+      copy.setStyle(range.getStyle());
+    }
+    copy.setStart(range.getStart());
+    if (range.getPrefix() != null) {
+      copy.setPrefix(range.getPrefix());
+    }
+    return copy;
+  }
+
+  /**
+   *
+   * @param destinations
+   *        sorted by name.
+   * @return a name tree with at most {@link #NAMES_PER_NODE} names per node.
+   */
+  private static PDDestinationNameTreeNode createNameTree(Map<String, PDPageDestination> destinations) {
+    PDDestinationNameTreeNode root = new PDDestinationNameTreeNode();
+    if (destinations.size() <= NAMES_PER_NODE) {
+      root.setNames(destinations);
+      return root;
+    }
+    List<PDDestinationNameTreeNode> leaves = new ArrayList<PDDestinationNameTreeNode>();
+    List<Map<String, PDPageDestination>> chunks = new ArrayList<Map<String, PDPageDestination>>();
+    Map<String, PDPageDestination> chunk = null;
+    for (Map.Entry<String, PDPageDestination> entry : destinations.entrySet()) {
+      if ((chunk == null) || (chunk.size() == NAMES_PER_NODE)) {
+        chunk = new TreeMap<String, PDPageDestination>();
+        chunks.add(chunk);
+        leaves.add(new PDDestinationNameTreeNode());
+      }
+      chunk.put(entry.getKey(), entry.getValue());
+    }
+    // The limits of a leaf can only be set once it has a parent.
+    root.setKids(leaves);
+    for (int i = 0; i < leaves.size(); i++) {
+      leaves.get(i).setNames(chunks.get(i));
+    }
+    return root;
+  }
+
+  /**
+   *
+   * @param destination
+   *        a destination in a part.
+   * @param pageIndices
+   *        the index of each page of the part.
+   * @param result
+   * @param offset
+   *        the index of the first page of the part in the result.
+   * @return the same destination on the copied page in the result or
+   *         {@code null} if the page is not part of the document.
+   * @throws IOException
+   */
+  private static PDPageDestination move(PDPageDestination destination, Map<COSDictionary, Integer> pageIndices,
+    PDDocument result, int offset) throws IOException {
+    COSArray array = destination.getCOSObject();
+    Integer index = (array.size() > 0) && (array.getObject(0) instanceof COSDictionary)
+        ? pageIndices.get(array.getObject(0)) : null;
+    if (index == null) {
+      return null;
+    }
+    COSArray moved = new COSArray();
+    moved.add(result.getPage(offset + index.intValue()));
+    // The remaining entries are numbers and names.
+    for (int i = 1; i < array.size(); i++) {
+      moved.add(array.getObject(i));
+    }
+    return (PDPageDestination) PDDestination.create(moved);
+  }
+
+}
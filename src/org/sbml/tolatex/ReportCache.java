@@ -0,0 +1,439 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex;
+
+import static java.text.MessageFormat.format;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.sbml.jsbml.SBMLDocument;
+
+import de.zbit.io.FileTools;
+import de.zbit.io.filefilter.SBFileFilter;
+import de.zbit.util.ResourceManager;
+
+/**
+ * A size-bounded cache of finished reports (TeX or PDF files) on disk. Each
+ * report is stored under a key that identifies everything it depends on: the
+ * content of the SBML file, the values of all {@link LaTeXOptions} given by a
+ * {@link ReportConfiguration}, the build of this program and of the libraries
+ * that write the report (see {@link #buildIdentifier()}), and the type of
+ * the report. TeX files refer to the logo of SBML2LaTeX in their own
+ * directory, hence their key additionally contains the output directory.
+ * Because the key is computed from the bytes of the file, a cached report can
+ * be returned without parsing the SBML file or running LaTeX.
+ * <p>
+ * When the total size of all entries exceeds the given limit, the least
+ * recently used entries are deleted. The time of the last use of each entry
+ * is its modification time, so that the order of the entries persists across
+ * several runs of the program. Several threads and processes may use the
+ * same cache directory at the same time.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class ReportCache {
+
+  /**
+   * Computes the build identifier when it is needed for the first time.
+   *
+   * @author agent
+   * @since 1.0
+   * @version $Rev$
+   */
+  private static class Build {
+    /**
+     *
+     */
+    private static final String IDENTIFIER = computeBuildIdentifier();
+  }
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(ReportCache.class.getName());
+
+  /**
+   * Localization support.
+   */
+  private static final transient ResourceBundle bundle = ResourceManager.getBundle("org.sbml.tolatex.locales.UI");
+
+  /**
+   * Suffix of files that are being written.
+   */
+  private static final String TEMP_SUFFIX = ".part";
+
+  /**
+   * Classes whose code determines the content of a report: this program,
+   * JSBML and the SysBio library.
+   */
+  private static final Class<?> CODE[] = {SBML2LaTeX.class, SBMLDocument.class, ResourceManager.class};
+
+  /**
+   * Identifies the build of this program and its libraries. The version
+   * number of SBML2LaTeX is not changed by every build, hence the identifier
+   * is made of the size and modification time of the JAR file of each class
+   * in {@link #CODE}, or, if the classes are loaded from a directory, of the
+   * number of files and the latest modification time within this directory.
+   * If the location of the code is unknown, the identifier is different in
+   * each run, so that no report of another build is used.
+   *
+   * @return the identifier of the running build.
+   */
+  static String buildIdentifier() {
+    return Build.IDENTIFIER;
+  }
+
+  /**
+   *
+   * @return
+   */
+  private static String computeBuildIdentifier() {
+    StringBuilder identifier = new StringBuilder(SBML2LaTeX.VERSION_NUMBER);
+    for (Class<?> clazz : CODE) {
+      File location = null;
+      try {
+        CodeSource source = clazz.getProtectionDomain().getCodeSource();
+        if ((source != null) && (source.getLocation() != null)) {
+          location = new File(source.getLocation().toURI());
+        }
+      } catch (URISyntaxException exc) {
+        logger.fine(exc.getLocalizedMessage());
+      } catch (SecurityException exc) {
+        logger.fine(exc.getLocalizedMessage());
+      } catch (IllegalArgumentException exc) {
+        // Not a file URI.
+        logger.fine(exc.getLocalizedMessage());
+      }
+      if ((location == null) || !location.exists()) {
+        return identifier.append('\n').append(UUID.randomUUID()).toString();
+      }
+      long modified = 0, count = 0;
+      if (location.isDirectory()) {
+        List<File> directories = new ArrayList<File>();
+        directories.add(location);
+        while (!directories.isEmpty()) {
+          File files[] = directories.remove(directories.size() - 1).listFiles();
+          if (files != null) {
+            for (File file : files) {
+              if (file.isDirectory()) {
+                directories.add(file);
+              } else {
+                modified = Math.max(modified, file.lastModified());
+                count++;
+              }
+            }
+          }
+        }
+      } else {
+        modified = location.lastModified();
+        count = location.length();
+      }
+      identifier.append('\n').append(location.getAbsolutePath());
+      identifier.append('\t').append(count).append('\t').append(modified);
+    }
+    return identifier.toString();
+  }
+
+  /**
+   * Computes the cache key of a report. Line breaks and a leading byte order
+   * mark in the SBML file are normalized, so that copies of the same model
+   * that only differ in these respects share their reports.
+   *
+   * @param sbmlFile
+   *        the SBML file to be converted.
+   * @param outfile
+   *        the TeX or PDF file to be created.
+   * @param configuration
+   *        the options of the report.
+   * @return a hexadecimal hash code.
+   * @throws IOException
+   *         if the SBML file cannot be read.
+   */
+  public static String key(File sbmlFile, File outfile, ReportConfiguration configuration) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException exc) {
+      // SHA-256 is supported by every JVM.
+      throw new IllegalStateException(exc);
+    }
+    boolean pdf = SBFileFilter.isPDFFile(outfile);
+    StringBuilder header = new StringBuilder();
+    header.append(buildIdentifier()).append('\n');
+    header.append(pdf ? "pdf" : "tex").append('\n');
+    if (!pdf) {
+      header.append(outfile.getAbsoluteFile().getParent()).append('\n');
+    }
+    header.append(configuration).append('\n');
+    digest.update(header.toString().getBytes("UTF-8"));
+
+    InputStream in = new FileInputStream(sbmlFile);
+    try {
+      byte buffer[] = new byte[8192], canonical[] = new byte[8192];
+      boolean first = true, carriageReturn = false;
+      int n;
+      while ((n = in.read(buffer)) >= 0) {
+        int start = 0, length = 0;
+        if (first && (n >= 3) && ((buffer[0] & 0xff) == 0xef) && ((buffer[1] & 0xff) == 0xbb)
+            && ((buffer[2] & 0xff) == 0xbf)) {
+          start = 3;
+        }
+        first = first && (n == 0);
+        for (int i = start; i < n; i++) {
+          byte b = buffer[i];
+          if (b == '\r') {
+            canonical[length++] = '\n';
+            carriageReturn = true;
+          } else {
+            if ((b != '\n') || !carriageReturn) {
+              canonical[length++] = b;
+            }
+            carriageReturn = false;
+          }
+        }
+        digest.update(canonical, 0, length);
+      }
+    } finally {
+      in.close();
+    }
+
+    byte hash[] = digest.digest();
+    StringBuilder key = new StringBuilder(2 * hash.length);
+    for (byte b : hash) {
+      key.append(Character.forDigit((b >> 4) & 0xf, 16));
+      key.append(Character.forDigit(b & 0xf, 16));
+    }
+    return key.toString();
+  }
+
+  /**
+   * Where the reports are stored.
+   */
+  private final File directory;
+
+  /**
+   * Number of successful and failed lookups since this cache was created.
+   */
+  private final AtomicLong hits, misses;
+
+  /**
+   * The maximal total size of all entries in bytes.
+   */
+  private final long maxSize;
+
+  /**
+   *
+   * @param directory
+   *        where the reports are stored, created if necessary.
+   * @param maxSize
+   *        the maximal total size of all reports in bytes.
+   * @throws IOException
+   *         if the directory cannot be created.
+   */
+  public ReportCache(File directory, long maxSize) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException(format(bundle.getString("INVALID_DIRECTORY"), directory.getAbsolutePath()));
+    }
+    this.directory = directory;
+    this.maxSize = maxSize;
+    hits = new AtomicLong();
+    misses = new AtomicLong();
+  }
+
+  /**
+   * Deletes all entries.
+   */
+  public synchronized void clear() {
+    for (File file : entries()) {
+      delete(file);
+    }
+  }
+
+  /**
+   *
+   * @param file
+   */
+  private void delete(File file) {
+    if (file.delete()) {
+      logger.fine(format(bundle.getString("DELETING_TEMP_FILE"), file.getAbsolutePath()));
+    } else if (file.exists()) {
+      logger.warning(format(bundle.getString("CANNOT_DELETE_FILE"), file.getAbsolutePath()));
+    }
+  }
+
+  /**
+   * @return all complete entries of this cache.
+   */
+  private File[] entries() {
+    File files[] = directory.listFiles(new FileFilter() {
+      /* (non-Javadoc)
+       * @see java.io.FileFilter#accept(java.io.File)
+       */
+      @Override
+      public boolean accept(File file) {
+        return file.isFile() && !file.getName().endsWith(TEMP_SUFFIX);
+      }
+    });
+    return files == null ? new File[0] : files;
+  }
+
+  /**
+   *
+   * @param key
+   * @param outfile
+   * @return the file in which the report of the given key is stored.
+   */
+  private File entry(String key, File outfile) {
+    return new File(directory, key + (SBFileFilter.isPDFFile(outfile) ? ".pdf" : ".tex"));
+  }
+
+  /**
+   * Copies the report of the given key to the given file if it is available.
+   *
+   * @param key
+   *        see {@link #key(File, File, ReportConfiguration)}.
+   * @param outfile
+   *        the TeX or PDF file to be created.
+   * @return {@code true} if the report was found in this cache.
+   */
+  public boolean get(String key, File outfile) {
+    File entry = entry(key, outfile);
+    if (entry.isFile() && FileTools.copyFile(entry, outfile)) {
+      // Marks the entry as recently used.
+      entry.setLastModified(System.currentTimeMillis());
+      hits.incrementAndGet();
+      return true;
+    }
+    misses.incrementAndGet();
+    return false;
+  }
+
+  /**
+   * @return the directory of this cache.
+   */
+  public File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * @return the number of reports taken from this cache.
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * @return the maximal total size of all reports in bytes.
+   */
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * @return the number of reports that were not found in this cache.
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Deletes the least recently used entries until the total size does not
+   * exceed the limit.
+   */
+  public synchronized void prune() {
+    File files[] = entries();
+    long size = 0;
+    for (File file : files) {
+      size += file.length();
+    }
+    if (size <= maxSize) {
+      return;
+    }
+    Arrays.sort(files, new Comparator<File>() {
+      /* (non-Javadoc)
+       * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+       */
+      @Override
+      public int compare(File f1, File f2) {
+        long m1 = f1.lastModified(), m2 = f2.lastModified();
+        return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+      }
+    });
+    for (int i = 0; (i < files.length) && (size > maxSize); i++) {
+      size -= files[i].length();
+      delete(files[i]);
+    }
+  }
+
+  /**
+   * Stores a copy of the given report and removes old entries if necessary.
+   *
+   * @param key
+   *        see {@link #key(File, File, ReportConfiguration)}.
+   * @param report
+   *        the TeX or PDF file that has been created.
+   */
+  public void put(String key, File report) {
+    if (report.length() > maxSize) {
+      return;
+    }
+    File entry = entry(key, report);
+    try {
+      // Other threads must never see a partially written entry.
+      File temp = File.createTempFile(key, TEMP_SUFFIX, directory);
+      if (FileTools.copyFile(report, temp)) {
+        if (!temp.renameTo(entry)) {
+          entry.delete();
+          if (!temp.renameTo(entry)) {
+            temp.delete();
+          }
+        }
+      } else {
+        temp.delete();
+      }
+    } catch (IOException exc) {
+      logger.warning(format(bundle.getString("CANNOT_WRITE_TO_FILE"), entry.getAbsolutePath()));
+    }
+    prune();
+  }
+
+}
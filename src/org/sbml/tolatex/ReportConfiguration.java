@@ -0,0 +1,1259 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex;
+
+import java.io.File;
+import java.util.Map;
+
+import org.sbml.tolatex.LaTeXOptions.PaperSize;
+import org.sbml.tolatex.LaTeXOptions.Validator;
+
+import de.zbit.util.prefs.Option;
+import de.zbit.util.prefs.SBPreferences;
+
+/**
+ * An immutable snapshot of all {@link LaTeXOptions} that determine how a
+ * report is created. Instances are created by a {@link Builder}, either from
+ * the user's preferences, from command-line arguments, or programmatically.
+ * Since all properties are final and {@link #equals(Object)} as well as
+ * {@link #hashCode()} consider all of them, an instance can be shared between
+ * threads and used as a key for caching reports.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public final class ReportConfiguration {
+
+  /**
+   * Collects the properties of a {@link ReportConfiguration}. All properties
+   * are initialized with the default values of the corresponding
+   * {@link LaTeXOptions}.
+   *
+   * @author agent
+   * @since 1.0
+   * @version $Rev$
+   */
+  public static class Builder {
+
+
+    /**
+     * @see LaTeXOptions#CHECK_CONSISTENCY
+     */
+    private boolean checkConsistency;
+
+    /**
+     * @see LaTeXOptions#CLEAN_WORKSPACE
+     */
+    private boolean cleanWorkspace;
+
+    /**
+     * @see LaTeXOptions#FONT_HEADINGS
+     */
+    private String fontHeadings;
+
+    /**
+     * @see LaTeXOptions#FONT_SIZE
+     */
+    private short fontSize;
+
+    /**
+     * @see LaTeXOptions#FONT_TEXT
+     */
+    private String fontText;
+
+    /**
+     * @see LaTeXOptions#FONT_TYPEWRITER
+     */
+    private String fontTypewriter;
+
+    /**
+     * @see LaTeXOptions#INCLUDE_SECTION_COMPARTMENT_TYPES
+     */
+    private boolean includeCompartmentTypesSection;
+
+    /**
+     * @see LaTeXOptions#INCLUDE_SECTION_COMPARTMENTS
+     */
+    private boolean includeCompartmentsSection;
+
+    /**
+     * @see LaTeXOptions#INCLUDE_SECTION_CONSTRAINTS
+     */
+    private boolean includeConstraintsSection;
+
+    /**
+     * @see LaTeXOptions#INCLUDE_SECTION_EVENTS
+     */
+    private boolean includeEventsSection;
+
+    /**
+     * @see LaTeXOptions#INCLUDE_SECTION_FUNCTION_DEFINITIONS
+     */
+    private boolean includeFunctionDefinitionsSection;
+
+    /**
+     * @see LaTeXOptions#INCLUDE_SECTION_INITIAL_ASSIGNMENTS
+     */
+    private boolean includeInitialAssignmentsSection;
+
+    /**
+     * @see LaTeXOptions#INCLUDE_SECTION_LAYOUTS
+     */
+    private boolean includeLayoutSection;
+
+    /**
+     * @see LaTeXOptions#INCLUDE_SECTION_PARAMETERS
+     */
+    private boolean includeParametersSection;
+
+    /**
+     * @see LaTeXOptions#INCLUDE_SECTION_REACTIONS
+     */
+    private boolean includeReactionsSection;
+
+    /**
+     * @see LaTeXOptions#INCLUDE_SECTION_RULES
+     */
+    private boolean includeRulesSection;
+
+    /**
+     * @see LaTeXOptions#INCLUDE_SECTION_SPECIES
+     */
+    private boolean includeSpeciesSection;
+
+    /**
+     * @see LaTeXOptions#INCLUDE_SECTION_SPECIES_TYPES
+     */
+    private boolean includeSpeciesTypesSection;
+
+    /**
+     * @see LaTeXOptions#INCLUDE_SECTION_UNIT_DEFINITIONS
+     */
+    private boolean includeUnitDefinitionsSection;
+
+    /**
+     * @see LaTeXOptions#LANDSCAPE
+     */
+    private boolean landscape;
+
+    /**
+     * @see LaTeXOptions#LOAD_LATEX_COMPILER
+     */
+    private File latexCompiler;
+
+    /**
+     * @see LaTeXOptions#MIRIAM_ANNOTATION
+     */
+    private boolean miriamAnnotation;
+
+    /**
+     * @see LaTeXOptions#PAPER_SIZE
+     */
+    private PaperSize paperSize;
+
+    /**
+     * @see LaTeXOptions#PRINT_FULL_ODE_SYSTEM
+     */
+    private boolean printFullODEsystem;
+
+    /**
+     * @see LaTeXOptions#PRINT_NAMES_IF_AVAILABLE
+     */
+    private boolean printNamesIfAvailable;
+
+    /**
+     * @see LaTeXOptions#REACTANTS_OVERVIEW_TABLE
+     */
+    private boolean reactantsOverviewTable;
+
+    /**
+     * @see LaTeXOptions#SHOW_PREDEFINED_UNITS
+     */
+    private boolean showPredefinedUnits;
+
+    /**
+     * @see LaTeXOptions#TITLE_PAGE
+     */
+    private boolean titlePage;
+
+    /**
+     * @see LaTeXOptions#TYPEWRITER
+     */
+    private boolean typewriter;
+
+    /**
+     * @see LaTeXOptions#VALIDATOR
+     */
+    private Validator validator;
+
+
+    /**
+     * Initializes all properties with the default values of the corresponding
+     * {@link LaTeXOptions}.
+     */
+    public Builder() {
+      checkConsistency = LaTeXOptions.CHECK_CONSISTENCY.getDefaultValue().booleanValue();
+      cleanWorkspace = LaTeXOptions.CLEAN_WORKSPACE.getDefaultValue().booleanValue();
+      fontHeadings = LaTeXOptions.FONT_HEADINGS.getDefaultValue().toString();
+      fontSize = LaTeXOptions.FONT_SIZE.getDefaultValue().shortValue();
+      fontText = LaTeXOptions.FONT_TEXT.getDefaultValue().toString();
+      fontTypewriter = LaTeXOptions.FONT_TYPEWRITER.getDefaultValue().toString();
+      includeCompartmentTypesSection = LaTeXOptions.INCLUDE_SECTION_COMPARTMENT_TYPES.getDefaultValue().booleanValue();
+      includeCompartmentsSection = LaTeXOptions.INCLUDE_SECTION_COMPARTMENTS.getDefaultValue().booleanValue();
+      includeConstraintsSection = LaTeXOptions.INCLUDE_SECTION_CONSTRAINTS.getDefaultValue().booleanValue();
+      includeEventsSection = LaTeXOptions.INCLUDE_SECTION_EVENTS.getDefaultValue().booleanValue();
+      includeFunctionDefinitionsSection = LaTeXOptions.INCLUDE_SECTION_FUNCTION_DEFINITIONS.getDefaultValue().booleanValue();
+      includeInitialAssignmentsSection = LaTeXOptions.INCLUDE_SECTION_INITIAL_ASSIGNMENTS.getDefaultValue().booleanValue();
+      includeLayoutSection = LaTeXOptions.INCLUDE_SECTION_LAYOUTS.getDefaultValue().booleanValue();
+      includeParametersSection = LaTeXOptions.INCLUDE_SECTION_PARAMETERS.getDefaultValue().booleanValue();
+      includeReactionsSection = LaTeXOptions.INCLUDE_SECTION_REACTIONS.getDefaultValue().booleanValue();
+      includeRulesSection = LaTeXOptions.INCLUDE_SECTION_RULES.getDefaultValue().booleanValue();
+      includeSpeciesSection = LaTeXOptions.INCLUDE_SECTION_SPECIES.getDefaultValue().booleanValue();
+      includeSpeciesTypesSection = LaTeXOptions.INCLUDE_SECTION_SPECIES_TYPES.getDefaultValue().booleanValue();
+      includeUnitDefinitionsSection = LaTeXOptions.INCLUDE_SECTION_UNIT_DEFINITIONS.getDefaultValue().booleanValue();
+      landscape = LaTeXOptions.LANDSCAPE.getDefaultValue().booleanValue();
+      latexCompiler = LaTeXOptions.LOAD_LATEX_COMPILER.getDefaultValue();
+      miriamAnnotation = LaTeXOptions.MIRIAM_ANNOTATION.getDefaultValue().booleanValue();
+      paperSize = LaTeXOptions.PAPER_SIZE.getDefaultValue();
+      printFullODEsystem = LaTeXOptions.PRINT_FULL_ODE_SYSTEM.getDefaultValue().booleanValue();
+      printNamesIfAvailable = LaTeXOptions.PRINT_NAMES_IF_AVAILABLE.getDefaultValue().booleanValue();
+      reactantsOverviewTable = LaTeXOptions.REACTANTS_OVERVIEW_TABLE.getDefaultValue().booleanValue();
+      showPredefinedUnits = LaTeXOptions.SHOW_PREDEFINED_UNITS.getDefaultValue().booleanValue();
+      titlePage = LaTeXOptions.TITLE_PAGE.getDefaultValue().booleanValue();
+      typewriter = LaTeXOptions.TYPEWRITER.getDefaultValue().booleanValue();
+      validator = LaTeXOptions.VALIDATOR.getDefaultValue();
+    }
+
+    /**
+     * Initializes all properties with the values of the corresponding
+     * {@link LaTeXOptions} in the given map, which may be an instance of
+     * {@link SBPreferences} or {@link de.zbit.util.prefs.SBProperties}.
+     * Options not contained in the map keep their default value.
+     *
+     * @param options
+     */
+    public Builder(Map<Object, Object> options) {
+      checkConsistency = value(options, LaTeXOptions.CHECK_CONSISTENCY).booleanValue();
+      cleanWorkspace = value(options, LaTeXOptions.CLEAN_WORKSPACE).booleanValue();
+      fontHeadings = value(options, LaTeXOptions.FONT_HEADINGS).toString();
+      fontSize = value(options, LaTeXOptions.FONT_SIZE).shortValue();
+      fontText = value(options, LaTeXOptions.FONT_TEXT).toString();
+      fontTypewriter = value(options, LaTeXOptions.FONT_TYPEWRITER).toString();
+      includeCompartmentTypesSection = value(options, LaTeXOptions.INCLUDE_SECTION_COMPARTMENT_TYPES).booleanValue();
+      includeCompartmentsSection = value(options, LaTeXOptions.INCLUDE_SECTION_COMPARTMENTS).booleanValue();
+      includeConstraintsSection = value(options, LaTeXOptions.INCLUDE_SECTION_CONSTRAINTS).booleanValue();
+      includeEventsSection = value(options, LaTeXOptions.INCLUDE_SECTION_EVENTS).booleanValue();
+      includeFunctionDefinitionsSection = value(options, LaTeXOptions.INCLUDE_SECTION_FUNCTION_DEFINITIONS).booleanValue();
+      includeInitialAssignmentsSection = value(options, LaTeXOptions.INCLUDE_SECTION_INITIAL_ASSIGNMENTS).booleanValue();
+      includeLayoutSection = value(options, LaTeXOptions.INCLUDE_SECTION_LAYOUTS).booleanValue();
+      includeParametersSection = value(options, LaTeXOptions.INCLUDE_SECTION_PARAMETERS).booleanValue();
+      includeReactionsSection = value(options, LaTeXOptions.INCLUDE_SECTION_REACTIONS).booleanValue();
+      includeRulesSection = value(options, LaTeXOptions.INCLUDE_SECTION_RULES).booleanValue();
+      includeSpeciesSection = value(options, LaTeXOptions.INCLUDE_SECTION_SPECIES).booleanValue();
+      includeSpeciesTypesSection = value(options, LaTeXOptions.INCLUDE_SECTION_SPECIES_TYPES).booleanValue();
+      includeUnitDefinitionsSection = value(options, LaTeXOptions.INCLUDE_SECTION_UNIT_DEFINITIONS).booleanValue();
+      landscape = value(options, LaTeXOptions.LANDSCAPE).booleanValue();
+      latexCompiler = value(options, LaTeXOptions.LOAD_LATEX_COMPILER);
+      miriamAnnotation = value(options, LaTeXOptions.MIRIAM_ANNOTATION).booleanValue();
+      paperSize = value(options, LaTeXOptions.PAPER_SIZE);
+      printFullODEsystem = value(options, LaTeXOptions.PRINT_FULL_ODE_SYSTEM).booleanValue();
+      printNamesIfAvailable = value(options, LaTeXOptions.PRINT_NAMES_IF_AVAILABLE).booleanValue();
+      reactantsOverviewTable = value(options, LaTeXOptions.REACTANTS_OVERVIEW_TABLE).booleanValue();
+      showPredefinedUnits = value(options, LaTeXOptions.SHOW_PREDEFINED_UNITS).booleanValue();
+      titlePage = value(options, LaTeXOptions.TITLE_PAGE).booleanValue();
+      typewriter = value(options, LaTeXOptions.TYPEWRITER).booleanValue();
+      validator = value(options, LaTeXOptions.VALIDATOR);
+    }
+
+    /**
+     * Initializes all properties with the values of the given configuration.
+     *
+     * @param configuration
+     */
+    public Builder(ReportConfiguration configuration) {
+      checkConsistency = configuration.checkConsistency;
+      cleanWorkspace = configuration.cleanWorkspace;
+      fontHeadings = configuration.fontHeadings;
+      fontSize = configuration.fontSize;
+      fontText = configuration.fontText;
+      fontTypewriter = configuration.fontTypewriter;
+      includeCompartmentTypesSection = configuration.includeCompartmentTypesSection;
+      includeCompartmentsSection = configuration.includeCompartmentsSection;
+      includeConstraintsSection = configuration.includeConstraintsSection;
+      includeEventsSection = configuration.includeEventsSection;
+      includeFunctionDefinitionsSection = configuration.includeFunctionDefinitionsSection;
+      includeInitialAssignmentsSection = configuration.includeInitialAssignmentsSection;
+      includeLayoutSection = configuration.includeLayoutSection;
+      includeParametersSection = configuration.includeParametersSection;
+      includeReactionsSection = configuration.includeReactionsSection;
+      includeRulesSection = configuration.includeRulesSection;
+      includeSpeciesSection = configuration.includeSpeciesSection;
+      includeSpeciesTypesSection = configuration.includeSpeciesTypesSection;
+      includeUnitDefinitionsSection = configuration.includeUnitDefinitionsSection;
+      landscape = configuration.landscape;
+      latexCompiler = configuration.latexCompiler;
+      miriamAnnotation = configuration.miriamAnnotation;
+      paperSize = configuration.paperSize;
+      printFullODEsystem = configuration.printFullODEsystem;
+      printNamesIfAvailable = configuration.printNamesIfAvailable;
+      reactantsOverviewTable = configuration.reactantsOverviewTable;
+      showPredefinedUnits = configuration.showPredefinedUnits;
+      titlePage = configuration.titlePage;
+      typewriter = configuration.typewriter;
+      validator = configuration.validator;
+    }
+
+    /**
+     *
+     * @return a new immutable configuration with the current properties of
+     *         this builder.
+     */
+    public ReportConfiguration build() {
+      return new ReportConfiguration(this);
+    }
+
+    /**
+     * @param checkConsistency
+     * @return this builder
+     * @see LaTeXOptions#CHECK_CONSISTENCY
+     */
+    public Builder setCheckConsistency(boolean checkConsistency) {
+      this.checkConsistency = checkConsistency;
+      return this;
+    }
+
+    /**
+     * @param cleanWorkspace
+     * @return this builder
+     * @see LaTeXOptions#CLEAN_WORKSPACE
+     */
+    public Builder setCleanWorkspace(boolean cleanWorkspace) {
+      this.cleanWorkspace = cleanWorkspace;
+      return this;
+    }
+
+    /**
+     * @param fontHeadings
+     * @return this builder
+     * @see LaTeXOptions#FONT_HEADINGS
+     */
+    public Builder setFontHeadings(String fontHeadings) {
+      this.fontHeadings = fontHeadings;
+      return this;
+    }
+
+    /**
+     * @param fontSize
+     * @return this builder
+     * @see LaTeXOptions#FONT_SIZE
+     */
+    public Builder setFontSize(short fontSize) {
+      this.fontSize = fontSize;
+      return this;
+    }
+
+    /**
+     * @param fontText
+     * @return this builder
+     * @see LaTeXOptions#FONT_TEXT
+     */
+    public Builder setFontText(String fontText) {
+      this.fontText = fontText;
+      return this;
+    }
+
+    /**
+     * @param fontTypewriter
+     * @return this builder
+     * @see LaTeXOptions#FONT_TYPEWRITER
+     */
+    public Builder setFontTypewriter(String fontTypewriter) {
+      this.fontTypewriter = fontTypewriter;
+      return this;
+    }
+
+    /**
+     * @param includeCompartmentTypesSection
+     * @return this builder
+     * @see LaTeXOptions#INCLUDE_SECTION_COMPARTMENT_TYPES
+     */
+    public Builder setIncludeCompartmentTypesSection(boolean includeCompartmentTypesSection) {
+      this.includeCompartmentTypesSection = includeCompartmentTypesSection;
+      return this;
+    }
+
+    /**
+     * @param includeCompartmentsSection
+     * @return this builder
+     * @see LaTeXOptions#INCLUDE_SECTION_COMPARTMENTS
+     */
+    public Builder setIncludeCompartmentsSection(boolean includeCompartmentsSection) {
+      this.includeCompartmentsSection = includeCompartmentsSection;
+      return this;
+    }
+
+    /**
+     * @param includeConstraintsSection
+     * @return this builder
+     * @see LaTeXOptions#INCLUDE_SECTION_CONSTRAINTS
+     */
+    public Builder setIncludeConstraintsSection(boolean includeConstraintsSection) {
+      this.includeConstraintsSection = includeConstraintsSection;
+      return this;
+    }
+
+    /**
+     * @param includeEventsSection
+     * @return this builder
+     * @see LaTeXOptions#INCLUDE_SECTION_EVENTS
+     */
+    public Builder setIncludeEventsSection(boolean includeEventsSection) {
+      this.includeEventsSection = includeEventsSection;
+      return this;
+    }
+
+    /**
+     * @param includeFunctionDefinitionsSection
+     * @return this builder
+     * @see LaTeXOptions#INCLUDE_SECTION_FUNCTION_DEFINITIONS
+     */
+    public Builder setIncludeFunctionDefinitionsSection(boolean includeFunctionDefinitionsSection) {
+      this.includeFunctionDefinitionsSection = includeFunctionDefinitionsSection;
+      return this;
+    }
+
+    /**
+     * @param includeInitialAssignmentsSection
+     * @return this builder
+     * @see LaTeXOptions#INCLUDE_SECTION_INITIAL_ASSIGNMENTS
+     */
+    public Builder setIncludeInitialAssignmentsSection(boolean includeInitialAssignmentsSection) {
+      this.includeInitialAssignmentsSection = includeInitialAssignmentsSection;
+      return this;
+    }
+
+    /**
+     * @param includeLayoutSection
+     * @return this builder
+     * @see LaTeXOptions#INCLUDE_SECTION_LAYOUTS
+     */
+    public Builder setIncludeLayoutSection(boolean includeLayoutSection) {
+      this.includeLayoutSection = includeLayoutSection;
+      return this;
+    }
+
+    /**
+     * @param includeParametersSection
+     * @return this builder
+     * @see LaTeXOptions#INCLUDE_SECTION_PARAMETERS
+     */
+    public Builder setIncludeParametersSection(boolean includeParametersSection) {
+      this.includeParametersSection = includeParametersSection;
+      return this;
+    }
+
+    /**
+     * @param includeReactionsSection
+     * @return this builder
+     * @see LaTeXOptions#INCLUDE_SECTION_REACTIONS
+     */
+    public Builder setIncludeReactionsSection(boolean includeReactionsSection) {
+      this.includeReactionsSection = includeReactionsSection;
+      return this;
+    }
+
+    /**
+     * @param includeRulesSection
+     * @return this builder
+     * @see LaTeXOptions#INCLUDE_SECTION_RULES
+     */
+    public Builder setIncludeRulesSection(boolean includeRulesSection) {
+      this.includeRulesSection = includeRulesSection;
+      return this;
+    }
+
+    /**
+     * @param includeSpeciesSection
+     * @return this builder
+     * @see LaTeXOptions#INCLUDE_SECTION_SPECIES
+     */
+    public Builder setIncludeSpeciesSection(boolean includeSpeciesSection) {
+      this.includeSpeciesSection = includeSpeciesSection;
+      return this;
+    }
+
+    /**
+     * @param includeSpeciesTypesSection
+     * @return this builder
+     * @see LaTeXOptions#INCLUDE_SECTION_SPECIES_TYPES
+     */
+    public Builder setIncludeSpeciesTypesSection(boolean includeSpeciesTypesSection) {
+      this.includeSpeciesTypesSection = includeSpeciesTypesSection;
+      return this;
+    }
+
+    /**
+     * @param includeUnitDefinitionsSection
+     * @return this builder
+     * @see LaTeXOptions#INCLUDE_SECTION_UNIT_DEFINITIONS
+     */
+    public Builder setIncludeUnitDefinitionsSection(boolean includeUnitDefinitionsSection) {
+      this.includeUnitDefinitionsSection = includeUnitDefinitionsSection;
+      return this;
+    }
+
+    /**
+     * @param landscape
+     * @return this builder
+     * @see LaTeXOptions#LANDSCAPE
+     */
+    public Builder setLandscape(boolean landscape) {
+      this.landscape = landscape;
+      return this;
+    }
+
+    /**
+     * @param latexCompiler
+     * @return this builder
+     * @see LaTeXOptions#LOAD_LATEX_COMPILER
+     */
+    public Builder setLatexCompiler(File latexCompiler) {
+      this.latexCompiler = latexCompiler;
+      return this;
+    }
+
+    /**
+     * @param miriamAnnotation
+     * @return this builder
+     * @see LaTeXOptions#MIRIAM_ANNOTATION
+     */
+    public Builder setMiriamAnnotation(boolean miriamAnnotation) {
+      this.miriamAnnotation = miriamAnnotation;
+      return this;
+    }
+
+    /**
+     * @param paperSize
+     * @return this builder
+     * @see LaTeXOptions#PAPER_SIZE
+     */
+    public Builder setPaperSize(PaperSize paperSize) {
+      this.paperSize = paperSize;
+      return this;
+    }
+
+    /**
+     * @param printFullODEsystem
+     * @return this builder
+     * @see LaTeXOptions#PRINT_FULL_ODE_SYSTEM
+     */
+    public Builder setPrintFullODEsystem(boolean printFullODEsystem) {
+      this.printFullODEsystem = printFullODEsystem;
+      return this;
+    }
+
+    /**
+     * @param printNamesIfAvailable
+     * @return this builder
+     * @see LaTeXOptions#PRINT_NAMES_IF_AVAILABLE
+     */
+    public Builder setPrintNamesIfAvailable(boolean printNamesIfAvailable) {
+      this.printNamesIfAvailable = printNamesIfAvailable;
+      return this;
+    }
+
+    /**
+     * @param reactantsOverviewTable
+     * @return this builder
+     * @see LaTeXOptions#REACTANTS_OVERVIEW_TABLE
+     */
+    public Builder setReactantsOverviewTable(boolean reactantsOverviewTable) {
+      this.reactantsOverviewTable = reactantsOverviewTable;
+      return this;
+    }
+
+    /**
+     * @param showPredefinedUnits
+     * @return this builder
+     * @see LaTeXOptions#SHOW_PREDEFINED_UNITS
+     */
+    public Builder setShowPredefinedUnits(boolean showPredefinedUnits) {
+      this.showPredefinedUnits = showPredefinedUnits;
+      return this;
+    }
+
+    /**
+     * @param titlePage
+     * @return this builder
+     * @see LaTeXOptions#TITLE_PAGE
+     */
+    public Builder setTitlePage(boolean titlePage) {
+      this.titlePage = titlePage;
+      return this;
+    }
+
+    /**
+     * @param typewriter
+     * @return this builder
+     * @see LaTeXOptions#TYPEWRITER
+     */
+    public Builder setTypewriter(boolean typewriter) {
+      this.typewriter = typewriter;
+      return this;
+    }
+
+    /**
+     * @param validator
+     * @return this builder
+     * @see LaTeXOptions#VALIDATOR
+     */
+    public Builder setValidator(Validator validator) {
+      this.validator = validator;
+      return this;
+    }
+
+  }
+
+  /**
+   * Reads the value of the given {@link Option} from the given map or returns
+   * its default value if the map does not contain it.
+   *
+   * @param options
+   * @param option
+   * @return
+   */
+  private static <T> T value(Map<Object, Object> options, Option<T> option) {
+    Object value = options.get(option);
+    if (value == null) {
+      value = options.get(option.getOptionName());
+    }
+    return value == null ? option.getDefaultValue() : option.parseOrCast(value);
+  }
+
+  /**
+   * Reads the current values of all {@link LaTeXOptions} from the user's
+   * preferences. This accesses the preferences' backing store and should
+   * therefore be done once and not for every single report.
+   *
+   * @return
+   */
+  public static ReportConfiguration fromPreferences() {
+    return new Builder(SBPreferences.getPreferencesFor(LaTeXOptions.class)).build();
+  }
+
+
+  /**
+   * If {@code true}, the model consistency check is performed.
+   */
+  private final boolean checkConsistency;
+
+  /**
+   * If {@code true}, temporary files are deleted after the conversion.
+   */
+  private final boolean cleanWorkspace;
+
+  /**
+   * The font to be used for captions.
+   */
+  private final String fontHeadings;
+
+  /**
+   * The font size of the document.
+   */
+  private final short fontSize;
+
+  /**
+   * The font to be used in the regular text and in the math mode.
+   */
+  private final String fontText;
+
+  /**
+   * The font to be used for typewriter text.
+   */
+  private final String fontTypewriter;
+
+  /**
+   * Decides whether to include the section {@link LaTeXOptions#INCLUDE_SECTION_COMPARTMENT_TYPES}.
+   */
+  private final boolean includeCompartmentTypesSection;
+
+  /**
+   * Decides whether to include the section {@link LaTeXOptions#INCLUDE_SECTION_COMPARTMENTS}.
+   */
+  private final boolean includeCompartmentsSection;
+
+  /**
+   * Decides whether to include the section {@link LaTeXOptions#INCLUDE_SECTION_CONSTRAINTS}.
+   */
+  private final boolean includeConstraintsSection;
+
+  /**
+   * Decides whether to include the section {@link LaTeXOptions#INCLUDE_SECTION_EVENTS}.
+   */
+  private final boolean includeEventsSection;
+
+  /**
+   * Decides whether to include the section {@link LaTeXOptions#INCLUDE_SECTION_FUNCTION_DEFINITIONS}.
+   */
+  private final boolean includeFunctionDefinitionsSection;
+
+  /**
+   * Decides whether to include the section {@link LaTeXOptions#INCLUDE_SECTION_INITIAL_ASSIGNMENTS}.
+   */
+  private final boolean includeInitialAssignmentsSection;
+
+  /**
+   * Decides whether to include the section {@link LaTeXOptions#INCLUDE_SECTION_LAYOUTS}.
+   */
+  private final boolean includeLayoutSection;
+
+  /**
+   * Decides whether to include the section {@link LaTeXOptions#INCLUDE_SECTION_PARAMETERS}.
+   */
+  private final boolean includeParametersSection;
+
+  /**
+   * Decides whether to include the section {@link LaTeXOptions#INCLUDE_SECTION_REACTIONS}.
+   */
+  private final boolean includeReactionsSection;
+
+  /**
+   * Decides whether to include the section {@link LaTeXOptions#INCLUDE_SECTION_RULES}.
+   */
+  private final boolean includeRulesSection;
+
+  /**
+   * Decides whether to include the section {@link LaTeXOptions#INCLUDE_SECTION_SPECIES}.
+   */
+  private final boolean includeSpeciesSection;
+
+  /**
+   * Decides whether to include the section {@link LaTeXOptions#INCLUDE_SECTION_SPECIES_TYPES}.
+   */
+  private final boolean includeSpeciesTypesSection;
+
+  /**
+   * Decides whether to include the section {@link LaTeXOptions#INCLUDE_SECTION_UNIT_DEFINITIONS}.
+   */
+  private final boolean includeUnitDefinitionsSection;
+
+  /**
+   * If {@code true}, the document is set in landscape mode.
+   */
+  private final boolean landscape;
+
+  /**
+   * The LaTeX compiler to create PDF files.
+   */
+  private final File latexCompiler;
+
+  /**
+   * If {@code true}, MIRIAM annotations are included.
+   */
+  private final boolean miriamAnnotation;
+
+  /**
+   * The paper format.
+   */
+  private final PaperSize paperSize;
+
+  /**
+   * If {@code true}, the rate equations are written with all kinetic laws inserted.
+   */
+  private final boolean printFullODEsystem;
+
+  /**
+   * If {@code true}, names instead of identifiers are used in equations.
+   */
+  private final boolean printNamesIfAvailable;
+
+  /**
+   * If {@code true}, the participants of each reaction are listed in one table.
+   */
+  private final boolean reactantsOverviewTable;
+
+  /**
+   * If {@code true}, predefined units are declared explicitly.
+   */
+  private final boolean showPredefinedUnits;
+
+  /**
+   * If {@code true}, a title page is created.
+   */
+  private final boolean titlePage;
+
+  /**
+   * If {@code true}, identifiers are set in typewriter font.
+   */
+  private final boolean typewriter;
+
+  /**
+   * Selects the implementation of the consistency check.
+   */
+  private final Validator validator;
+
+
+  /**
+   *
+   * @param builder
+   */
+  private ReportConfiguration(Builder builder) {
+    checkConsistency = builder.checkConsistency;
+    cleanWorkspace = builder.cleanWorkspace;
+    fontHeadings = builder.fontHeadings;
+    fontSize = builder.fontSize;
+    fontText = builder.fontText;
+    fontTypewriter = builder.fontTypewriter;
+    includeCompartmentTypesSection = builder.includeCompartmentTypesSection;
+    includeCompartmentsSection = builder.includeCompartmentsSection;
+    includeConstraintsSection = builder.includeConstraintsSection;
+    includeEventsSection = builder.includeEventsSection;
+    includeFunctionDefinitionsSection = builder.includeFunctionDefinitionsSection;
+    includeInitialAssignmentsSection = builder.includeInitialAssignmentsSection;
+    includeLayoutSection = builder.includeLayoutSection;
+    includeParametersSection = builder.includeParametersSection;
+    includeReactionsSection = builder.includeReactionsSection;
+    includeRulesSection = builder.includeRulesSection;
+    includeSpeciesSection = builder.includeSpeciesSection;
+    includeSpeciesTypesSection = builder.includeSpeciesTypesSection;
+    includeUnitDefinitionsSection = builder.includeUnitDefinitionsSection;
+    landscape = builder.landscape;
+    latexCompiler = builder.latexCompiler;
+    miriamAnnotation = builder.miriamAnnotation;
+    paperSize = builder.paperSize;
+    printFullODEsystem = builder.printFullODEsystem;
+    printNamesIfAvailable = builder.printNamesIfAvailable;
+    reactantsOverviewTable = builder.reactantsOverviewTable;
+    showPredefinedUnits = builder.showPredefinedUnits;
+    titlePage = builder.titlePage;
+    typewriter = builder.typewriter;
+    validator = builder.validator;
+  }
+
+  /* (non-Javadoc)
+   * @see java.lang.Object#equals(java.lang.Object)
+   */
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if ((obj == null) || (getClass() != obj.getClass())) {
+      return false;
+    }
+    ReportConfiguration other = (ReportConfiguration) obj;
+    return (checkConsistency == other.checkConsistency)
+        && (cleanWorkspace == other.cleanWorkspace)
+        && equal(fontHeadings, other.fontHeadings)
+        && (fontSize == other.fontSize)
+        && equal(fontText, other.fontText)
+        && equal(fontTypewriter, other.fontTypewriter)
+        && (includeCompartmentTypesSection == other.includeCompartmentTypesSection)
+        && (includeCompartmentsSection == other.includeCompartmentsSection)
+        && (includeConstraintsSection == other.includeConstraintsSection)
+        && (includeEventsSection == other.includeEventsSection)
+        && (includeFunctionDefinitionsSection == other.includeFunctionDefinitionsSection)
+        && (includeInitialAssignmentsSection == other.includeInitialAssignmentsSection)
+        && (includeLayoutSection == other.includeLayoutSection)
+        && (includeParametersSection == other.includeParametersSection)
+        && (includeReactionsSection == other.includeReactionsSection)
+        && (includeRulesSection == other.includeRulesSection)
+        && (includeSpeciesSection == other.includeSpeciesSection)
+        && (includeSpeciesTypesSection == other.includeSpeciesTypesSection)
+        && (includeUnitDefinitionsSection == other.includeUnitDefinitionsSection)
+        && (landscape == other.landscape)
+        && equal(latexCompiler, other.latexCompiler)
+        && (miriamAnnotation == other.miriamAnnotation)
+        && (paperSize == other.paperSize)
+        && (printFullODEsystem == other.printFullODEsystem)
+        && (printNamesIfAvailable == other.printNamesIfAvailable)
+        && (reactantsOverviewTable == other.reactantsOverviewTable)
+        && (showPredefinedUnits == other.showPredefinedUnits)
+        && (titlePage == other.titlePage)
+        && (typewriter == other.typewriter)
+        && (validator == other.validator);
+  }
+
+  /**
+   *
+   * @param a
+   * @param b
+   * @return
+   */
+  private static boolean equal(Object a, Object b) {
+    return (a == null) ? (b == null) : a.equals(b);
+  }
+
+  /**
+   * @return the checkConsistency
+   * @see LaTeXOptions#CHECK_CONSISTENCY
+   */
+  public boolean isCheckConsistency() {
+    return checkConsistency;
+  }
+
+  /**
+   * @return the cleanWorkspace
+   * @see LaTeXOptions#CLEAN_WORKSPACE
+   */
+  public boolean isCleanWorkspace() {
+    return cleanWorkspace;
+  }
+
+  /**
+   * @return the fontHeadings
+   * @see LaTeXOptions#FONT_HEADINGS
+   */
+  public String getFontHeadings() {
+    return fontHeadings;
+  }
+
+  /**
+   * @return the fontSize
+   * @see LaTeXOptions#FONT_SIZE
+   */
+  public short getFontSize() {
+    return fontSize;
+  }
+
+  /**
+   * @return the fontText
+   * @see LaTeXOptions#FONT_TEXT
+   */
+  public String getFontText() {
+    return fontText;
+  }
+
+  /**
+   * @return the fontTypewriter
+   * @see LaTeXOptions#FONT_TYPEWRITER
+   */
+  public String getFontTypewriter() {
+    return fontTypewriter;
+  }
+
+  /**
+   * @return the includeCompartmentTypesSection
+   * @see LaTeXOptions#INCLUDE_SECTION_COMPARTMENT_TYPES
+   */
+  public boolean isIncludeCompartmentTypesSection() {
+    return includeCompartmentTypesSection;
+  }
+
+  /**
+   * @return the includeCompartmentsSection
+   * @see LaTeXOptions#INCLUDE_SECTION_COMPARTMENTS
+   */
+  public boolean isIncludeCompartmentsSection() {
+    return includeCompartmentsSection;
+  }
+
+  /**
+   * @return the includeConstraintsSection
+   * @see LaTeXOptions#INCLUDE_SECTION_CONSTRAINTS
+   */
+  public boolean isIncludeConstraintsSection() {
+    return includeConstraintsSection;
+  }
+
+  /**
+   * @return the includeEventsSection
+   * @see LaTeXOptions#INCLUDE_SECTION_EVENTS
+   */
+  public boolean isIncludeEventsSection() {
+    return includeEventsSection;
+  }
+
+  /**
+   * @return the includeFunctionDefinitionsSection
+   * @see LaTeXOptions#INCLUDE_SECTION_FUNCTION_DEFINITIONS
+   */
+  public boolean isIncludeFunctionDefinitionsSection() {
+    return includeFunctionDefinitionsSection;
+  }
+
+  /**
+   * @return the includeInitialAssignmentsSection
+   * @see LaTeXOptions#INCLUDE_SECTION_INITIAL_ASSIGNMENTS
+   */
+  public boolean isIncludeInitialAssignmentsSection() {
+    return includeInitialAssignmentsSection;
+  }
+
+  /**
+   * @return the includeLayoutSection
+   * @see LaTeXOptions#INCLUDE_SECTION_LAYOUTS
+   */
+  public boolean isIncludeLayoutSection() {
+    return includeLayoutSection;
+  }
+
+  /**
+   * @return the includeParametersSection
+   * @see LaTeXOptions#INCLUDE_SECTION_PARAMETERS
+   */
+  public boolean isIncludeParametersSection() {
+    return includeParametersSection;
+  }
+
+  /**
+   * @return the includeReactionsSection
+   * @see LaTeXOptions#INCLUDE_SECTION_REACTIONS
+   */
+  public boolean isIncludeReactionsSection() {
+    return includeReactionsSection;
+  }
+
+  /**
+   * @return the includeRulesSection
+   * @see LaTeXOptions#INCLUDE_SECTION_RULES
+   */
+  public boolean isIncludeRulesSection() {
+    return includeRulesSection;
+  }
+
+  /**
+   * @return the includeSpeciesSection
+   * @see LaTeXOptions#INCLUDE_SECTION_SPECIES
+   */
+  public boolean isIncludeSpeciesSection() {
+    return includeSpeciesSection;
+  }
+
+  /**
+   * @return the includeSpeciesTypesSection
+   * @see LaTeXOptions#INCLUDE_SECTION_SPECIES_TYPES
+   */
+  public boolean isIncludeSpeciesTypesSection() {
+    return includeSpeciesTypesSection;
+  }
+
+  /**
+   * @return the includeUnitDefinitionsSection
+   * @see LaTeXOptions#INCLUDE_SECTION_UNIT_DEFINITIONS
+   */
+  public boolean isIncludeUnitDefinitionsSection() {
+    return includeUnitDefinitionsSection;
+  }
+
+  /**
+   * @return the landscape
+   * @see LaTeXOptions#LANDSCAPE
+   */
+  public boolean isLandscape() {
+    return landscape;
+  }
+
+  /**
+   * @return the latexCompiler
+   * @see LaTeXOptions#LOAD_LATEX_COMPILER
+   */
+  public File getLatexCompiler() {
+    return latexCompiler;
+  }
+
+  /**
+   * @return the miriamAnnotation
+   * @see LaTeXOptions#MIRIAM_ANNOTATION
+   */
+  public boolean isMiriamAnnotation() {
+    return miriamAnnotation;
+  }
+
+  /**
+   * @return the paperSize
+   * @see LaTeXOptions#PAPER_SIZE
+   */
+  public PaperSize getPaperSize() {
+    return paperSize;
+  }
+
+  /**
+   * @return the printFullODEsystem
+   * @see LaTeXOptions#PRINT_FULL_ODE_SYSTEM
+   */
+  public boolean isPrintFullODEsystem() {
+    return printFullODEsystem;
+  }
+
+  /**
+   * @return the printNamesIfAvailable
+   * @see LaTeXOptions#PRINT_NAMES_IF_AVAILABLE
+   */
+  public boolean isPrintNamesIfAvailable() {
+    return printNamesIfAvailable;
+  }
+
+  /**
+   * @return the reactantsOverviewTable
+   * @see LaTeXOptions#REACTANTS_OVERVIEW_TABLE
+   */
+  public boolean isReactantsOverviewTable() {
+    return reactantsOverviewTable;
+  }
+
+  /**
+   * @return the showPredefinedUnits
+   * @see LaTeXOptions#SHOW_PREDEFINED_UNITS
+   */
+  public boolean isShowPredefinedUnits() {
+    return showPredefinedUnits;
+  }
+
+  /**
+   * @return the titlePage
+   * @see LaTeXOptions#TITLE_PAGE
+   */
+  public boolean isTitlePage() {
+    return titlePage;
+  }
+
+  /**
+   * @return the typewriter
+   * @see LaTeXOptions#TYPEWRITER
+   */
+  public boolean isTypewriter() {
+    return typewriter;
+  }
+
+  /**
+   * @return the validator
+   * @see LaTeXOptions#VALIDATOR
+   */
+  public Validator getValidator() {
+    return validator;
+  }
+
+  /* (non-Javadoc)
+   * @see java.lang.Object#hashCode()
+   */
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + (checkConsistency ? 1231 : 1237);
+    result = prime * result + (cleanWorkspace ? 1231 : 1237);
+    result = prime * result + ((fontHeadings == null) ? 0 : fontHeadings.hashCode());
+    result = prime * result + fontSize;
+    result = prime * result + ((fontText == null) ? 0 : fontText.hashCode());
+    result = prime * result + ((fontTypewriter == null) ? 0 : fontTypewriter.hashCode());
+    result = prime * result + (includeCompartmentTypesSection ? 1231 : 1237);
+    result = prime * result + (includeCompartmentsSection ? 1231 : 1237);
+    result = prime * result + (includeConstraintsSection ? 1231 : 1237);
+    result = prime * result + (includeEventsSection ? 1231 : 1237);
+    result = prime * result + (includeFunctionDefinitionsSection ? 1231 : 1237);
+    result = prime * result + (includeInitialAssignmentsSection ? 1231 : 1237);
+    result = prime * result + (includeLayoutSection ? 1231 : 1237);
+    result = prime * result + (includeParametersSection ? 1231 : 1237);
+    result = prime * result + (includeReactionsSection ? 1231 : 1237);
+    result = prime * result + (includeRulesSection ? 1231 : 1237);
+    result = prime * result + (includeSpeciesSection ? 1231 : 1237);
+    result = prime * result + (includeSpeciesTypesSection ? 1231 : 1237);
+    result = prime * result + (includeUnitDefinitionsSection ? 1231 : 1237);
+    result = prime * result + (landscape ? 1231 : 1237);
+    result = prime * result + ((latexCompiler == null) ? 0 : latexCompiler.hashCode());
+    result = prime * result + (miriamAnnotation ? 1231 : 1237);
+    result = prime * result + ((paperSize == null) ? 0 : paperSize.hashCode());
+    result = prime * result + (printFullODEsystem ? 1231 : 1237);
+    result = prime * result + (printNamesIfAvailable ? 1231 : 1237);
+    result = prime * result + (reactantsOverviewTable ? 1231 : 1237);
+    result = prime * result + (showPredefinedUnits ? 1231 : 1237);
+    result = prime * result + (titlePage ? 1231 : 1237);
+    result = prime * result + (typewriter ? 1231 : 1237);
+    result = prime * result + ((validator == null) ? 0 : validator.hashCode());
+    return result;
+  }
+
+  /* (non-Javadoc)
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder(getClass().getSimpleName());
+    sb.append("[checkConsistency=");
+    sb.append(checkConsistency);
+    sb.append(", cleanWorkspace=");
+    sb.append(cleanWorkspace);
+    sb.append(", fontHeadings=");
+    sb.append(fontHeadings);
+    sb.append(", fontSize=");
+    sb.append(fontSize);
+    sb.append(", fontText=");
+    sb.append(fontText);
+    sb.append(", fontTypewriter=");
+    sb.append(fontTypewriter);
+    sb.append(", includeCompartmentTypesSection=");
+    sb.append(includeCompartmentTypesSection);
+    sb.append(", includeCompartmentsSection=");
+    sb.append(includeCompartmentsSection);
+    sb.append(", includeConstraintsSection=");
+    sb.append(includeConstraintsSection);
+    sb.append(", includeEventsSection=");
+    sb.append(includeEventsSection);
+    sb.append(", includeFunctionDefinitionsSection=");
+    sb.append(includeFunctionDefinitionsSection);
+    sb.append(", includeInitialAssignmentsSection=");
+    sb.append(includeInitialAssignmentsSection);
+    sb.append(", includeLayoutSection=");
+    sb.append(includeLayoutSection);
+    sb.append(", includeParametersSection=");
+    sb.append(includeParametersSection);
+    sb.append(", includeReactionsSection=");
+    sb.append(includeReactionsSection);
+    sb.append(", includeRulesSection=");
+    sb.append(includeRulesSection);
+    sb.append(", includeSpeciesSection=");
+    sb.append(includeSpeciesSection);
+    sb.append(", includeSpeciesTypesSection=");
+    sb.append(includeSpeciesTypesSection);
+    sb.append(", includeUnitDefinitionsSection=");
+    sb.append(includeUnitDefinitionsSection);
+    sb.append(", landscape=");
+    sb.append(landscape);
+    sb.append(", latexCompiler=");
+    sb.append(latexCompiler);
+    sb.append(", miriamAnnotation=");
+    sb.append(miriamAnnotation);
+    sb.append(", paperSize=");
+    sb.append(paperSize);
+    sb.append(", printFullODEsystem=");
+    sb.append(printFullODEsystem);
+    sb.append(", printNamesIfAvailable=");
+    sb.append(printNamesIfAvailable);
+    sb.append(", reactantsOverviewTable=");
+    sb.append(reactantsOverviewTable);
+    sb.append(", showPredefinedUnits=");
+    sb.append(showPredefinedUnits);
+    sb.append(", titlePage=");
+    sb.append(titlePage);
+    sb.append(", typewriter=");
+    sb.append(typewriter);
+    sb.append(", validator=");
+    sb.append(validator);
+    sb.append(']');
+    return sb.toString();
+  }
+
+}
@@ -49,21 +49,22 @@ import org.sbml.jsbml.SBMLDocument;
 import org.sbml.jsbml.SBMLException;
 import org.sbml.jsbml.SBase;
 import org.sbml.jsbml.xml.stax.SBMLReader;
-import org.sbml.tolatex.LaTeXOptions.PaperSize;
 import org.sbml.tolatex.gui.SBML2LaTeXGUI;
+import org.sbml.tolatex.io.FragmentCache;
 import org.sbml.tolatex.io.LaTeXOptionsIO;
 import org.sbml.tolatex.io.LaTeXReportGenerator;
+import org.sbml.tolatex.io.ReportResources;
+import org.sbml.tolatex.io.ServerOptions;
 
 import de.zbit.AppConf;
 import de.zbit.Launcher;
 import de.zbit.gui.GUIOptions;
 import de.zbit.gui.GUITools;
-import de.zbit.io.FileTools;
 import de.zbit.io.filefilter.SBFileFilter;
 import de.zbit.util.ResourceManager;
 import de.zbit.util.StringUtil;
-import de.zbit.util.Utils;
 import de.zbit.util.prefs.KeyProvider;
+import de.zbit.util.prefs.Option;
 import de.zbit.util.prefs.SBPreferences;
 import de.zbit.util.prefs.SBProperties;
 
@@ -98,6 +99,116 @@ public class SBML2LaTeX extends Launcher implements SBML2LaTeXView {
    */
   public static final String VERSION_NUMBER = "1.0";
 
+  /**
+   * Finished reports of SBML files, {@code null} if reports should always be
+   * created from scratch.
+   */
+  private static volatile ReportCache reportCache;
+
+  /**
+   * Sections, reactions and species of the reports created in this JVM, which
+   * are reused when a changed model is converted again, {@code null} if
+   * fragments should not be reused.
+   */
+  private static volatile FragmentCache fragmentCache = new FragmentCache();
+
+  /**
+   * Precompiled preambles for PDF reports, {@code null} if all packages
+   * should be loaded in each LaTeX run.
+   */
+  private static volatile FormatCache formatCache;
+
+  /**
+   * Runs LaTeX for all PDF reports, created on first use.
+   */
+  private static CompileService compileService;
+
+  /**
+   * @return the service that compiles all PDF reports, which is created with
+   *         default settings if none has been set.
+   * @throws IOException
+   *         if the default temporary directory cannot be used.
+   */
+  public static synchronized CompileService getCompileService() throws IOException {
+    if (compileService == null) {
+      compileService = new CompileService(0, null, 0);
+    }
+    return compileService;
+  }
+
+  /**
+   * @return the cache of report fragments shared by all conversions in this
+   *         JVM or {@code null} if no such cache is used.
+   */
+  public static FragmentCache getFragmentCache() {
+    return fragmentCache;
+  }
+
+  /**
+   * @return the cache of precompiled preambles or {@code null} if no such
+   *         cache is used.
+   */
+  public static FormatCache getFormatCache() {
+    return formatCache;
+  }
+
+  /**
+   * @return the cache of finished reports or {@code null} if no cache is used.
+   */
+  public static ReportCache getReportCache() {
+    return reportCache;
+  }
+
+  /**
+   * Sets the cache to be used by
+   * {@link #convert(File, File, SBML2LaTeXView, ReportConfiguration)} and all
+   * methods that delegate to it. By default, no cache is used.
+   * 
+   * @param cache
+   *        the cache or {@code null} to create all reports from scratch.
+   */
+  public static void setReportCache(ReportCache cache) {
+    reportCache = cache;
+  }
+
+  /**
+   * Sets the cache of report fragments to be used by
+   * {@link #toLaTeXreport(SBase, File, ReportConfiguration)} and all methods
+   * that delegate to it. By default, a {@link FragmentCache} of the default
+   * size is used.
+   * 
+   * @param cache
+   *        the cache or {@code null} to write all parts of each report from
+   *        scratch.
+   */
+  public static void setFragmentCache(FragmentCache cache) {
+    fragmentCache = cache;
+  }
+
+  /**
+   * Sets the cache of precompiled preambles to be used by
+   * {@link #toPDFreport(String, File, SBML2LaTeXView)} and all methods that
+   * delegate to it. By default, no such cache is used.
+   * 
+   * @param cache
+   *        the cache or {@code null} to load all packages in each LaTeX run.
+   */
+  public static void setFormatCache(FormatCache cache) {
+    formatCache = cache;
+  }
+
+  /**
+   * Sets the service that runs LaTeX in
+   * {@link #toPDFreport(String, File, SBML2LaTeXView)} and all methods that
+   * delegate to it.
+   * 
+   * @param service
+   *        the service or {@code null} to use a service with default settings.
+   */
+  public static synchronized void setCompileService(CompileService service) {
+    compileService = service;
+  }
+
   /**
    * 
    * @param infile
@@ -119,17 +230,60 @@ public class SBML2LaTeX extends Launcher implements SBML2LaTeXView {
    * @throws IOException
    */
   public static File convert(File infile, File outfile, SBML2LaTeXView gui) throws IOException, XMLStreamException {
+    return convert(infile, outfile, gui, ReportConfiguration.fromPreferences());
+  }
+
+  /**
+   * 
+   * @param infile
+   * @param outfile
+   * @param gui
+   * @param configuration
+   * @return
+   * @throws IOException
+   * @throws XMLStreamException
+   */
+  public static File convert(File infile, File outfile, SBML2LaTeXView gui, ReportConfiguration configuration) throws IOException, XMLStreamException {
     if (!SBFileFilter.isSBMLFile(infile)) {
       throw new IOException(format(
         bundle.getString("INVALID_SBML_FILE"),
         outfile.getAbsolutePath()));
     }
+    ReportCache cache = reportCache;
+    String key = null;
+    if (cache != null) {
+      key = ReportCache.key(infile, outfile, configuration);
+      if (cache.get(key, outfile)) {
+        logger.info(format(bundle.getString("REPORT_CACHE_HIT"), infile.getAbsolutePath()));
+        if (!SBFileFilter.isPDFFile(outfile)) {
+          copyLogo(outfile.getAbsoluteFile().getParentFile());
+        }
+        return outfile;
+      }
+    }
     logger.info(format(
       bundle.getString("CONVERTING_SBML_FILE_TO_REPORT"),
       infile.getAbsolutePath(),
       outfile.getAbsolutePath()));
     SBMLReader reader = new SBMLReader();
-    return convert(reader.readSBML(infile.getAbsolutePath()), outfile, gui);
+    File result = convert(reader.readSBML(infile.getAbsolutePath()), outfile, gui, configuration);
+    if (cache != null) {
+      cache.put(key, result);
+    }
+    return result;
+  }
+
+  /**
+   * Makes sure that the logo of SBML2LaTeX, which is included in every
+   * report, is available in the given directory. The logo is only written
+   * once per directory.
+   * 
+   * @param directory
+   * @return the logo file.
+   * @throws IOException
+   */
+  private static File copyLogo(File directory) throws IOException {
+    return ReportResources.stage(ReportResources.LOGO, directory);
   }
 
   /**
@@ -154,6 +308,43 @@ public class SBML2LaTeX extends Launcher implements SBML2LaTeXView {
    * @throws SBMLException
    */
   public static File convert(SBase sbase, File outfile, SBML2LaTeXView gui) throws IOException, SBMLException, XMLStreamException {
+    return convert(sbase, outfile, gui, ReportConfiguration.fromPreferences());
+  }
+
+  /**
+   * Copies the current values of all {@link LaTeXOptions} from the user's
+   * preferences. The result can be modified and passed to
+   * {@link ReportConfiguration.Builder#Builder(java.util.Map)} without
+   * affecting the preferences or any other conversion.
+   * 
+   * @return
+   */
+  @SuppressWarnings("rawtypes")
+  public static SBProperties getLaTeXOptions() {
+    SBPreferences prefsLaTeX = SBPreferences.getPreferencesFor(LaTeXOptions.class);
+    SBProperties options = new SBProperties();
+    for (Option option : KeyProvider.Tools.optionList(LaTeXOptions.class)) {
+      String value = prefsLaTeX.get(option);
+      if (value != null) {
+        options.put(option, value);
+      }
+    }
+    return options;
+  }
+
+  /**
+   * 
+   * @param sbase
+   * @param outfile
+   * @param gui
+   * @param configuration
+   *        the values of all {@link LaTeXOptions} to be used for this report.
+   * @return
+   * @throws IOException
+   * @throws SBMLException
+   * @throws XMLStreamException
+   */
+  public static File convert(SBase sbase, File outfile, SBML2LaTeXView gui, ReportConfiguration configuration) throws IOException, SBMLException, XMLStreamException {
     String texFile;
     if (SBFileFilter.isPDFFile(outfile)) {
       // Get the path and simply change extension
@@ -168,42 +359,15 @@ public class SBML2LaTeX extends Launcher implements SBML2LaTeXView {
         outfile.getAbsolutePath()));
     }
 
-    SBPreferences prefsLaTeX = SBPreferences.getPreferencesFor(LaTeXOptions.class);
-    boolean preDefUnits = prefsLaTeX.getBoolean(LaTeXOptions.SHOW_PREDEFINED_UNITS);
-    boolean landscape = prefsLaTeX.getBoolean(LaTeXOptions.LANDSCAPE);
-    boolean nameInEquations = prefsLaTeX.getBoolean(LaTeXOptions.PRINT_NAMES_IF_AVAILABLE);
-    boolean titlePage = prefsLaTeX.getBoolean(LaTeXOptions.TITLE_PAGE);
-    boolean idsInTypeWriter = prefsLaTeX.getBoolean(LaTeXOptions.TYPEWRITER);
-    boolean miriam = prefsLaTeX.getBoolean(LaTeXOptions.MIRIAM_ANNOTATION);
-    boolean reactantsOverviewTable = prefsLaTeX.getBoolean(LaTeXOptions.REACTANTS_OVERVIEW_TABLE);
-    boolean checkConsistency = prefsLaTeX.getBoolean(LaTeXOptions.CHECK_CONSISTENCY);
-    boolean printFullODEsystem = prefsLaTeX.getBoolean(LaTeXOptions.PRINT_FULL_ODE_SYSTEM);
-    short fontSize = prefsLaTeX.getShort(LaTeXOptions.FONT_SIZE);
-    PaperSize paperSize = PaperSize.valueOf(prefsLaTeX.get(LaTeXOptions.PAPER_SIZE));
-    String fontText = prefsLaTeX.get(LaTeXOptions.FONT_TEXT);
-    String fontHeadings = prefsLaTeX.get(LaTeXOptions.FONT_HEADINGS);
-    String fontTypeWriter = prefsLaTeX.get(LaTeXOptions.FONT_TYPEWRITER);
-    //String logoFile = prefsLaTeX.get(LaTeXOptions.LOGO_INPUT_FILE);
-    File latexCompiler = prefsLaTeX.getFile(LaTeXOptions.LOAD_LATEX_COMPILER);
-
     try {
-      toLaTeXreport(sbase, new File(texFile), preDefUnits, landscape,
-        nameInEquations, titlePage, idsInTypeWriter, miriam,
-        reactantsOverviewTable, checkConsistency, printFullODEsystem, fontSize,
-        paperSize, fontText, fontHeadings, fontTypeWriter,
-        prefsLaTeX.getBoolean(LaTeXOptions.INCLUDE_SECTION_COMPARTMENTS),
-        prefsLaTeX.getBoolean(LaTeXOptions.INCLUDE_SECTION_COMPARTMENT_TYPES),
-        prefsLaTeX.getBoolean(LaTeXOptions.INCLUDE_SECTION_CONSTRAINTS),
-        prefsLaTeX.getBoolean(LaTeXOptions.INCLUDE_SECTION_EVENTS),
-        prefsLaTeX.getBoolean(LaTeXOptions.INCLUDE_SECTION_FUNCTION_DEFINITIONS),
-        prefsLaTeX.getBoolean(LaTeXOptions.INCLUDE_SECTION_INITIAL_ASSIGNMENTS),
-        prefsLaTeX.getBoolean(LaTeXOptions.INCLUDE_SECTION_PARAMETERS),
-        prefsLaTeX.getBoolean(LaTeXOptions.INCLUDE_SECTION_REACTIONS),
-        prefsLaTeX.getBoolean(LaTeXOptions.INCLUDE_SECTION_RULES),
-        prefsLaTeX.getBoolean(LaTeXOptions.INCLUDE_SECTION_SPECIES),
-        prefsLaTeX.getBoolean(LaTeXOptions.INCLUDE_SECTION_SPECIES_TYPES),
-        prefsLaTeX.getBoolean(LaTeXOptions.INCLUDE_SECTION_UNIT_DEFINITIONS),
-        prefsLaTeX.getBoolean(LaTeXOptions.INCLUDE_SECTION_LAYOUTS));
+      if (SBFileFilter.isPDFFile(outfile)) {
+        // The TeX file is only an intermediate result.
+        toLaTeXreport(sbase, new File(texFile), configuration,
+          ReportResources.getSharedFile(ReportResources.LOGO),
+          getCompileService().getChunks() > 1);
+      } else {
+        toLaTeXreport(sbase, new File(texFile), configuration);
+      }
     } catch (IOException exc) {
       throw new IOException(format(
         bundle.getString("CANNOT_WRITE_TO_FILE"),
@@ -214,7 +378,7 @@ public class SBML2LaTeX extends Launcher implements SBML2LaTeXView {
      * Create a PDF file directly
      */
     if (SBFileFilter.createPDFFileFilter().accept(outfile)) {
-      File laTeXCompiler = latexCompiler; // the user-definex latex compiler
+      File laTeXCompiler = configuration.getLatexCompiler(); // the user-definex latex compiler
       String latexCommand = laTeXCompiler.getAbsolutePath(); // To be auto-infered, if no user-def. available
       if (!laTeXCompiler.exists() || laTeXCompiler.isDirectory() || !laTeXCompiler.canExecute()) {
         // Try to auto-detect the latex compiler
@@ -235,14 +399,21 @@ public class SBML2LaTeX extends Launcher implements SBML2LaTeXView {
       }
     }
 
-    if (prefsLaTeX.getBoolean(LaTeXOptions.CLEAN_WORKSPACE)) {
-      cleanUp(outfile);
+    if (configuration.isCleanWorkspace() && SBFileFilter.isPDFFile(outfile)) {
+      // LaTeX leaves no files behind, only the intermediate TeX file remains.
+      File tex = new File(texFile);
+      if (!tex.equals(outfile.getAbsoluteFile()) && tex.exists() && !tex.delete()) {
+        logger.fine(format(bundle.getString("CANNOT_DELETE_FILE"), texFile));
+      }
     }
 
     return outfile;
   }
 
   /**
+   * 
+   * Compiles the given TeX file with the {@link CompileService} in a private
+   * workspace and stores the PDF file next to it.
    * 
    * @param latexCommand
    * @param texFile
@@ -253,38 +424,20 @@ public class SBML2LaTeX extends Launcher implements SBML2LaTeXView {
    */
   public static File toPDFreport(String latexCommand, File texFile, SBML2LaTeXView gui) throws IOException, InterruptedException {
     gui.displayLimitations();
-
-    // Execute latex two times to ensure correct compilation
-    for (int i = 0; i < 2; i++) {
-      ProcessBuilder builder = new ProcessBuilder(
-        latexCommand, "-interaction", "nonstopmode", texFile.getAbsolutePath());
-      builder.redirectErrorStream(true);
-      builder.directory(new File(texFile.getParent()));
-      Process p = builder.start();
-
-      // Show the process output in the view.
-      gui.displayLaTeXOutput(p, i == 0);
-      p.waitFor();
-      if (p.exitValue() != 0) {
-        throw new IOException(format(bundle.getString("COULD_NOT_COMPILE_FILE"), texFile));
-      }
-    }
-
-    // move PDF file
-    File pdfFile = new File(texFile.getAbsolutePath().replace(".tex", ".pdf"));
-
-    // Notify the user
-    if (!pdfFile.exists() || (pdfFile.length() < 1)) {
-      throw new IOException(bundle.getString("COULD_NOT_COMPILE_LATEX_FILE"));
-    }
-
-    return pdfFile;
+    String path = texFile.getAbsolutePath();
+    File pdfFile = new File(path.substring(0, path.lastIndexOf('.')) + ".pdf");
+    return getCompileService().compile(latexCommand, formatCache, texFile, pdfFile, gui);
   }
 
   /**
    * 
    * @param outfile
+   * @deprecated {@link #toPDFreport(String, File, SBML2LaTeXView)} runs LaTeX
+   *             in a private workspace, which is deleted afterwards. This
+   *             method only removes files of earlier versions, which were
+   *             compiled next to the report.
    */
+  @Deprecated
   public static void cleanUp(File outfile) {
     String baseFile = outfile.getAbsolutePath();
     baseFile = baseFile.substring(0, baseFile.lastIndexOf('.'));
@@ -313,89 +466,47 @@ public class SBML2LaTeX extends Launcher implements SBML2LaTeXView {
    * 
    * @param sbase
    * @param texFile
-   * @param preDefUnits
-   * @param landscape
-   * @param nameInEquations
-   * @param titlePage
-   * @param idsInTypeWriter
-   * @param miriam
-   * @param reactantsOverviewTable
-   * @param checkConsistency
-   * @param printFullODEsystem
-   * @param fontSize
-   * @param paperSize
-   * @param fontText
-   * @param fontHeadings
-   * @param fontTypeWriter
-   * @param compadrtmentsSection
-   * @param compartmentTypesSection
-   * @param constraintsSection
-   * @param eventsSection
-   * @param FunctionDefSection
-   * @param initialAssignmentSection
-   * @param parameterSection
-   * @param reactionsSection
-   * @param rulesSection
-   * @param speciesSection
-   * @param speciesTypesSection
-   * @param unitDefSection
-   * @param layoutsSection
+   * @param configuration
    * @return
    * @throws IOException
    * @throws XMLStreamException
    * @throws SBMLException
    */
   public static File toLaTeXreport(SBase sbase, File texFile,
-    boolean preDefUnits, boolean landscape, boolean nameInEquations,
-    boolean titlePage, boolean idsInTypeWriter, boolean miriam,
-    boolean reactantsOverviewTable, boolean checkConsistency,
-    boolean printFullODEsystem, short fontSize, PaperSize paperSize,
-    String fontText, String fontHeadings, String fontTypeWriter,
-    boolean compadrtmentsSection, boolean compartmentTypesSection,
-    boolean constraintsSection, boolean eventsSection,
-    boolean FunctionDefSection, boolean initialAssignmentSection,
-    boolean parameterSection, boolean reactionsSection, boolean rulesSection,
-    boolean speciesSection, boolean speciesTypesSection, boolean unitDefSection, boolean layoutsSection)
-        throws IOException, SBMLException, XMLStreamException {
-
-    // Copy the logo-image
-    File logoFile = new File(Utils.ensureSlash(texFile.getParent()) + "SBML2LaTeX.pdf");
-    FileTools.copyStream(SBML2LaTeX.class.getResourceAsStream("/org/sbml/tolatex/gui/img/SBML2LaTeX.pdf"), logoFile);
+    ReportConfiguration configuration) throws IOException, SBMLException,
+    XMLStreamException {
+    return toLaTeXreport(sbase, texFile, configuration,
+      copyLogo(texFile.getAbsoluteFile().getParentFile()), false);
+  }
+
+  /**
+   * 
+   * @param sbase
+   * @param texFile
+   * @param configuration
+   * @param logoFile
+   *        the copy of the logo that the report refers to.
+   * @param chunkBreaks
+   *        whether the report is to be compiled in chunks, see
+   *        {@link CompileService#setChunks(int)}.
+   * @return
+   * @throws IOException
+   * @throws XMLStreamException
+   * @throws SBMLException
+   */
+  static File toLaTeXreport(SBase sbase, File texFile,
+    ReportConfiguration configuration, File logoFile, boolean chunkBreaks) throws IOException,
+    SBMLException, XMLStreamException {
     String logoFileString = logoFile.getAbsolutePath();
     if (File.separatorChar == '\\') {
       logoFileString = logoFileString.replace(File.separatorChar, '/');
     }
 
     long time = System.currentTimeMillis();
-    LaTeXReportGenerator export = new LaTeXReportGenerator();
-    export.setShowPredefinedUnitDeclarations(preDefUnits);
-    export.setFontSize(fontSize);
-    export.setLandscape(landscape);
-    export.setPaperSize(paperSize);
-    export.setPrintNameIfAvailable(nameInEquations);
-    export.setTitlepage(titlePage);
-    export.setTypewriter(idsInTypeWriter);
-    export.setCheckConsistency(checkConsistency);
-    export.setIncludeMIRIAM(miriam);
-    export.setTextFont(fontText);
-    export.setHeadingsFont(fontHeadings);
-    export.setTypewriterFont(fontTypeWriter);
-    export.setArrangeReactionParticipantsInOneTable(reactantsOverviewTable);
-    export.setPrintFullODEsystem(printFullODEsystem);
-    export.setIncludeCompartmentsSection(compadrtmentsSection);
-    export.setIncludeCompartmentTypesSection(compartmentTypesSection);
-    export.setIncludeConstraintsSection(constraintsSection);
-    export.setIncludeEventsSection(eventsSection);
-    export.setIncludeFunctionDefinitionsSection(FunctionDefSection);
-    export.setIncludeInitialAssignmentsSection(initialAssignmentSection);
-    export.setIncludeParametersSection(parameterSection);
-    export.setIncludeReactionsSection(reactionsSection);
-    export.setIncludeRulesSection(rulesSection);
-    export.setIncludeSpeciesSection(speciesSection);
-    export.setIncludeSpeciesTypesSection(speciesTypesSection);
-    export.setIncludeUnitDefinitionsSection(unitDefSection);
-    export.setIncludeLayoutSection(layoutsSection);
-    LaTeXReportGenerator.setLogoFile(logoFileString);
+    LaTeXReportGenerator export = new LaTeXReportGenerator(configuration);
+    export.setLogoFile(logoFileString);
+    export.setFragmentCache(fragmentCache);
+    export.setChunkBreaks(chunkBreaks);
     BufferedWriter buffer = new BufferedWriter(new FileWriter(texFile));
     if (sbase instanceof SBMLDocument) {
       export.format((SBMLDocument) sbase, buffer);
@@ -549,6 +660,18 @@ public class SBML2LaTeX extends Launcher implements SBML2LaTeXView {
   @Override
   public void commandLineMode(AppConf appConf) {
     SBProperties args = appConf.getCmdArgs();
+    initCompileService(args);
+    initFormatCache(args);
+    if (args.containsKey(ServerOptions.SERVER_PORT)) {
+      serverMode(args);
+      return;
+    }
+    initReportCache(args);
+    if (args.containsKey(LaTeXOptionsIO.SBML_INPUT_DIRECTORY)) {
+      batchMode(args);
+      logReportCacheStatistics();
+      return;
+    }
     File sbmlInput = null, reportOutput = null;
     if (args.containsKey(LaTeXOptionsIO.SBML_INPUT_FILE)) {
       sbmlInput = new File(args.get(LaTeXOptionsIO.SBML_INPUT_FILE));
@@ -556,11 +679,168 @@ public class SBML2LaTeX extends Launcher implements SBML2LaTeXView {
     if (args.containsKey(LaTeXOptionsIO.REPORT_OUTPUT_FILE)) {
       reportOutput = new File(args.get(LaTeXOptionsIO.REPORT_OUTPUT_FILE));
     }
+    if ((sbmlInput == null) && args.containsKey(LaTeXOptionsIO.PRUNE_REPORT_CACHE)) {
+      // Only the cache should be cleared.
+      return;
+    }
     try {
       display(convert(sbmlInput, reportOutput, this));
     } catch (Throwable exc) {
       exc.printStackTrace();
     }
+    logReportCacheStatistics();
+  }
+
+  /**
+   * Creates the {@link ReportCache} according to the
+   * {@link LaTeXOptionsIO#REPORT_CACHE} options given on the command line or
+   * in the user's preferences.
+   * 
+   * @param args
+   */
+  private void initReportCache(SBProperties args) {
+    SBPreferences prefsIO = SBPreferences.getPreferencesFor(LaTeXOptionsIO.class);
+    File directory = new File(args.containsKey(LaTeXOptionsIO.REPORT_CACHE_DIRECTORY) ? args
+      .get(LaTeXOptionsIO.REPORT_CACHE_DIRECTORY) : prefsIO.get(LaTeXOptionsIO.REPORT_CACHE_DIRECTORY));
+    int size = args.containsKey(LaTeXOptionsIO.REPORT_CACHE_SIZE) ? args
+      .getInt(LaTeXOptionsIO.REPORT_CACHE_SIZE) : prefsIO.getInt(LaTeXOptionsIO.REPORT_CACHE_SIZE);
+    boolean bypass = args.containsKey(LaTeXOptionsIO.BYPASS_REPORT_CACHE) ? args
+      .getBoolean(LaTeXOptionsIO.BYPASS_REPORT_CACHE) : prefsIO.getBoolean(LaTeXOptionsIO.BYPASS_REPORT_CACHE);
+    boolean prune = args.containsKey(LaTeXOptionsIO.PRUNE_REPORT_CACHE)
+        && args.getBoolean(LaTeXOptionsIO.PRUNE_REPORT_CACHE);
+    if (bypass && !prune) {
+      return;
+    }
+    try {
+      ReportCache cache = new ReportCache(directory, size * 1024L * 1024L);
+      if (prune) {
+        cache.clear();
+      }
+      if (!bypass) {
+        setReportCache(cache);
+      }
+    } catch (IOException exc) {
+      logger.warning(getMessage(exc));
+    }
+  }
+
+  /**
+   * Creates the {@link CompileService} according to the
+   * {@link LaTeXOptionsIO#LATEX_COMPILATION} options given on the command line
+   * or in the user's preferences.
+   * 
+   * @param args
+   */
+  private void initCompileService(SBProperties args) {
+    SBPreferences prefsIO = SBPreferences.getPreferencesFor(LaTeXOptionsIO.class);
+    int processes = args.containsKey(LaTeXOptionsIO.LATEX_PROCESSES) ? args
+      .getInt(LaTeXOptionsIO.LATEX_PROCESSES) : prefsIO.getInt(LaTeXOptionsIO.LATEX_PROCESSES);
+    File workspace = new File(args.containsKey(LaTeXOptionsIO.LATEX_WORKSPACE) ? args
+      .get(LaTeXOptionsIO.LATEX_WORKSPACE) : prefsIO.get(LaTeXOptionsIO.LATEX_WORKSPACE));
+    int timeout = args.containsKey(LaTeXOptionsIO.LATEX_TIMEOUT) ? args
+      .getInt(LaTeXOptionsIO.LATEX_TIMEOUT) : prefsIO.getInt(LaTeXOptionsIO.LATEX_TIMEOUT);
+    int chunks = args.containsKey(LaTeXOptionsIO.LATEX_CHUNKS) ? args
+      .getInt(LaTeXOptionsIO.LATEX_CHUNKS) : prefsIO.getInt(LaTeXOptionsIO.LATEX_CHUNKS);
+    try {
+      CompileService service = new CompileService(processes, workspace, 1000L * timeout);
+      service.setChunks(chunks);
+      setCompileService(service);
+    } catch (IOException exc) {
+      logger.warning(getMessage(exc));
+    }
+  }
+
+  /**
+   * Creates the {@link FormatCache} according to the
+   * {@link LaTeXOptionsIO#LATEX_FORMATS} options given on the command line or
+   * in the user's preferences.
+   * 
+   * @param args
+   */
+  private void initFormatCache(SBProperties args) {
+    SBPreferences prefsIO = SBPreferences.getPreferencesFor(LaTeXOptionsIO.class);
+    boolean precompile = args.containsKey(LaTeXOptionsIO.PRECOMPILE_PREAMBLE) ? args
+      .getBoolean(LaTeXOptionsIO.PRECOMPILE_PREAMBLE) : prefsIO.getBoolean(LaTeXOptionsIO.PRECOMPILE_PREAMBLE);
+    if (!precompile) {
+      return;
+    }
+    File directory = new File(args.containsKey(LaTeXOptionsIO.LATEX_FORMAT_DIRECTORY) ? args
+      .get(LaTeXOptionsIO.LATEX_FORMAT_DIRECTORY) : prefsIO.get(LaTeXOptionsIO.LATEX_FORMAT_DIRECTORY));
+    try {
+      setFormatCache(new FormatCache(directory));
+    } catch (IOException exc) {
+      logger.warning(getMessage(exc));
+    }
+  }
+
+  /**
+   * Reports how many reports were taken from the cache.
+   */
+  private void logReportCacheStatistics() {
+    ReportCache cache = reportCache;
+    if (cache != null) {
+      logger.info(format(bundle.getString("REPORT_CACHE_STATISTICS"),
+        cache.getHits(), cache.getMisses(), cache.getDirectory().getAbsolutePath()));
+    }
+  }
+
+  /**
+   * Converts all SBML files in the directory given by
+   * {@link LaTeXOptionsIO#SBML_INPUT_DIRECTORY}.
+   *
+   * @param args
+   * @see BatchConverter
+   */
+  private void batchMode(SBProperties args) {
+    SBPreferences prefsIO = SBPreferences.getPreferencesFor(LaTeXOptionsIO.class);
+    File inputDir = new File(args.get(LaTeXOptionsIO.SBML_INPUT_DIRECTORY));
+    File outputDir = args.containsKey(LaTeXOptionsIO.REPORT_OUTPUT_DIRECTORY) ? new File(
+      args.get(LaTeXOptionsIO.REPORT_OUTPUT_DIRECTORY)) : inputDir;
+    String pattern = args.containsKey(LaTeXOptionsIO.BATCH_FILE_PATTERN) ? args
+      .get(LaTeXOptionsIO.BATCH_FILE_PATTERN) : prefsIO.get(LaTeXOptionsIO.BATCH_FILE_PATTERN);
+    String extension = args.containsKey(LaTeXOptionsIO.BATCH_OUTPUT_FORMAT) ? args
+      .get(LaTeXOptionsIO.BATCH_OUTPUT_FORMAT) : prefsIO.get(LaTeXOptionsIO.BATCH_OUTPUT_FORMAT);
+    int threads = args.containsKey(LaTeXOptionsIO.BATCH_THREADS) ? args
+      .getInt(LaTeXOptionsIO.BATCH_THREADS) : prefsIO.getInt(LaTeXOptionsIO.BATCH_THREADS);
+    try {
+      new BatchConverter(inputDir, outputDir, pattern, extension, threads).convert();
+    } catch (Throwable exc) {
+      exc.printStackTrace();
+    }
+  }
+
+  /**
+   * Runs a {@link ConversionServer} until the JVM is terminated.
+   * 
+   * @param args
+   */
+  private void serverMode(SBProperties args) {
+    SBPreferences prefsServer = SBPreferences.getPreferencesFor(ServerOptions.class);
+    int port = args.getInt(ServerOptions.SERVER_PORT);
+    int threads = args.containsKey(ServerOptions.SERVER_THREADS) ? args
+      .getInt(ServerOptions.SERVER_THREADS) : prefsServer.getInt(ServerOptions.SERVER_THREADS);
+    int queueSize = args.containsKey(ServerOptions.SERVER_QUEUE_SIZE) ? args
+      .getInt(ServerOptions.SERVER_QUEUE_SIZE) : prefsServer.getInt(ServerOptions.SERVER_QUEUE_SIZE);
+    int timeout = args.containsKey(ServerOptions.SERVER_TIMEOUT) ? args
+      .getInt(ServerOptions.SERVER_TIMEOUT) : prefsServer.getInt(ServerOptions.SERVER_TIMEOUT);
+    int maxRequestSize = args.containsKey(ServerOptions.SERVER_MAX_REQUEST_SIZE) ? args
+      .getInt(ServerOptions.SERVER_MAX_REQUEST_SIZE) : prefsServer.getInt(ServerOptions.SERVER_MAX_REQUEST_SIZE);
+    try {
+      final ConversionServer server = new ConversionServer(port, threads, queueSize, timeout, maxRequestSize, getLaTeXOptions());
+      Runtime.getRuntime().addShutdownHook(new Thread() {
+        /* (non-Javadoc)
+         * @see java.lang.Thread#run()
+         */
+        @Override
+        public void run() {
+          server.stop();
+        }
+      });
+      server.start();
+      server.awaitTermination();
+    } catch (Throwable exc) {
+      exc.printStackTrace();
+    }
   }
 
   /* (non-Javadoc)
@@ -568,8 +848,9 @@ public class SBML2LaTeX extends Launcher implements SBML2LaTeXView {
    */
   @Override
   public List<Class<? extends KeyProvider>> getCmdLineOptions() {
-    List<Class<? extends KeyProvider>> defAndKeys = new ArrayList<Class<? extends KeyProvider>>(3);
+    List<Class<? extends KeyProvider>> defAndKeys = new ArrayList<Class<? extends KeyProvider>>(4);
     defAndKeys.add(LaTeXOptionsIO.class);
+    defAndKeys.add(ServerOptions.class);
     defAndKeys.add(LaTeXOptions.class);
     defAndKeys.add(GUIOptions.class);
     return defAndKeys;
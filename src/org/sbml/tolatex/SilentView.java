@@ -0,0 +1,80 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex;
+
+import static de.zbit.util.Utils.getMessage;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Consumes the output of the LaTeX compiler without printing it, because the
+ * output of several parallel runs would be interleaved on the console.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+class SilentView implements SBML2LaTeXView {
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(SilentView.class.getName());
+
+  /* (non-Javadoc)
+   * @see org.sbml.tolatex.SBML2LaTeXView#display(java.io.File)
+   */
+  @Override
+  public void display(File resultFile) throws IOException {
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.tolatex.SBML2LaTeXView#displayLaTeXOutput(java.lang.Process, boolean)
+   */
+  @Override
+  public void displayLaTeXOutput(Process process, boolean firstLaTeXrun) {
+    BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()));
+    String line;
+    try {
+      while ((line = in.readLine()) != null) {
+        logger.finest(line);
+      }
+    } catch (IOException exc) {
+      logger.log(Level.FINE, getMessage(exc), exc);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.tolatex.SBML2LaTeXView#displayLimitations()
+   */
+  @Override
+  public void displayLimitations() {
+  }
+
+}
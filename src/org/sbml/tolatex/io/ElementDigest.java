@@ -0,0 +1,207 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.swing.tree.TreeNode;
+
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.ListOf;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.SBase;
+
+/**
+ * Computes hash codes of the content of SBML elements, i.e., of their
+ * attributes, notes, annotations, math, and all their children. Two elements
+ * with the same content have the same hash code. The hash codes identify the
+ * inputs of the fragments in a {@link FragmentCache}.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+class ElementDigest {
+
+  /**
+   * Computes the hash code of everything in the given model except for the
+   * content of its reactions, of which only the identifiers and names are
+   * considered. Fragments that do not describe a particular reaction depend
+   * only on this part of the model.
+   *
+   * @param model
+   * @return
+   */
+  public static String environment(Model model) {
+    ElementDigest digest = new ElementDigest();
+    digest.update(model.getLevel()).update(model.getVersion());
+    digest.updateAttributes(model);
+    ListOf<Reaction> reactions = model.getListOfReactions();
+    for (int i = 0; i < model.getChildCount(); i++) {
+      TreeNode child = model.getChildAt(i);
+      if (child == reactions) {
+        for (int j = 0; j < reactions.size(); j++) {
+          Reaction r = reactions.get(j);
+          digest.update(r.getId()).update(r.isSetName() ? r.getName() : null);
+        }
+      } else {
+        digest.update(child);
+      }
+    }
+    return digest.digest();
+  }
+
+  /**
+   * @param node
+   * @return the hash code of the given element and all its children.
+   */
+  public static String of(TreeNode node) {
+    return new ElementDigest().update(node).digest();
+  }
+
+  /**
+   *
+   */
+  private final MessageDigest digest;
+
+  /**
+   *
+   */
+  public ElementDigest() {
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException exc) {
+      // SHA-256 is supported by every JVM.
+      throw new IllegalStateException(exc);
+    }
+  }
+
+  /**
+   * @return the hash code of all values passed to this object so far as a
+   *         hexadecimal string. Afterwards, this object is reset.
+   */
+  public String digest() {
+    byte hash[] = digest.digest();
+    StringBuilder sb = new StringBuilder(2 * hash.length);
+    for (byte b : hash) {
+      sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+      sb.append(Character.forDigit(b & 0xf, 16));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @param value
+   * @return this object
+   */
+  public ElementDigest update(int value) {
+    digest.update((byte) (value >>> 24));
+    digest.update((byte) (value >>> 16));
+    digest.update((byte) (value >>> 8));
+    digest.update((byte) value);
+    return this;
+  }
+
+  /**
+   * @param value
+   *        may be {@code null}, which is distinguished from the empty string.
+   * @return this object
+   */
+  public ElementDigest update(String value) {
+    if (value == null) {
+      return update(-1);
+    }
+    try {
+      byte bytes[] = value.getBytes("UTF-8");
+      update(bytes.length);
+      digest.update(bytes);
+    } catch (UnsupportedEncodingException exc) {
+      // UTF-8 is always supported.
+      throw new IllegalStateException(exc);
+    }
+    return this;
+  }
+
+  /**
+   * Adds the given element with all its children.
+   *
+   * @param node
+   * @return this object
+   */
+  public ElementDigest update(TreeNode node) {
+    update(node.getClass().getName());
+    if (node instanceof ASTNode) {
+      // The formula contains the whole sub-tree.
+      return update(node.toString());
+    }
+    if (node instanceof SBase) {
+      updateAttributes((SBase) node);
+    } else {
+      update(node.toString());
+    }
+    update(node.getChildCount());
+    for (int i = 0; i < node.getChildCount(); i++) {
+      update(node.getChildAt(i));
+    }
+    return this;
+  }
+
+  /**
+   * Adds the attributes, notes and annotation of the given element, but none
+   * of its children.
+   *
+   * @param sbase
+   * @return this object
+   */
+  private ElementDigest updateAttributes(SBase sbase) {
+    Map<String, String> attributes = new TreeMap<String, String>(sbase.writeXMLAttributes());
+    update(attributes.size());
+    for (Map.Entry<String, String> entry : attributes.entrySet()) {
+      update(entry.getKey()).update(entry.getValue());
+    }
+    if (sbase.isSetNotes()) {
+      String notes;
+      try {
+        notes = sbase.getNotesString();
+      } catch (Exception exc) {
+        notes = sbase.getNotes().toString();
+      }
+      update(notes);
+    }
+    update(sbase.getCVTermCount());
+    for (int i = 0; i < sbase.getCVTermCount(); i++) {
+      update(sbase.getCVTerm(i).toString());
+    }
+    if (sbase.isSetHistory()) {
+      update(sbase.getHistory().toString());
+    }
+    return this;
+  }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the LaTeX code of parts of reports, such as whole sections or the
+ * description of a single reaction or species, for later reports of the same
+ * or a slightly changed model. Each fragment is stored under a key that is
+ * computed from the layout options of the {@link LaTeXReportGenerator} and
+ * from the content of all SBML elements the fragment depends on (see
+ * {@link ElementDigest}), so that only fragments whose inputs have changed are
+ * created again. The total length of all fragments is bounded, when it is
+ * exceeded, the least recently used fragments are removed.
+ * <p>
+ * A cache can be shared by any number of generators and threads.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class FragmentCache {
+
+  /**
+   * The LaTeX code of one part of a report together with the side effects of
+   * its creation.
+   *
+   * @author agent
+   * @since 1.0
+   * @version $Rev$
+   */
+  static class Fragment {
+
+    /**
+     * Additional information about the content, e.g., whether a reaction
+     * lacks a kinetic law.
+     */
+    private final int flags;
+    /**
+     *
+     */
+    private final String latex;
+    /**
+     * The SBO terms to be listed in the glossary because of this fragment.
+     */
+    private final int sboTerms[];
+
+    /**
+     *
+     * @param latex
+     * @param sboTerms
+     * @param flags
+     */
+    public Fragment(String latex, int sboTerms[], int flags) {
+      this.latex = latex;
+      this.sboTerms = sboTerms;
+      this.flags = flags;
+    }
+
+    /**
+     * @return the flags
+     */
+    public int getFlags() {
+      return flags;
+    }
+
+    /**
+     * @return the LaTeX code
+     */
+    public String getLaTeX() {
+      return latex;
+    }
+
+    /**
+     * @return the SBO terms
+     */
+    public int[] getSBOTerms() {
+      return sboTerms;
+    }
+
+  }
+
+  /**
+   * The default maximal number of characters of all fragments.
+   */
+  public static final long DEFAULT_SIZE = 8L * 1024L * 1024L;
+
+  /**
+   * All fragments in the order of their last access.
+   */
+  private final Map<String, Fragment> fragments;
+
+  /**
+   * Number of successful and failed lookups.
+   */
+  private long hits, misses;
+
+  /**
+   * The maximal number of characters of all fragments.
+   */
+  private final long maxSize;
+
+  /**
+   * The current number of characters of all fragments.
+   */
+  private long size;
+
+  /**
+   * Creates a cache of {@link #DEFAULT_SIZE}.
+   */
+  public FragmentCache() {
+    this(DEFAULT_SIZE);
+  }
+
+  /**
+   *
+   * @param maxSize
+   *        the maximal number of characters of all fragments.
+   */
+  public FragmentCache(long maxSize) {
+    this.maxSize = maxSize;
+    fragments = new LinkedHashMap<String, Fragment>(64, 0.75f, true);
+  }
+
+  /**
+   * Removes all fragments.
+   */
+  public synchronized void clear() {
+    fragments.clear();
+    size = 0;
+  }
+
+  /**
+   *
+   * @param key
+   * @return the fragment stored under the given key or {@code null}.
+   */
+  synchronized Fragment get(String key) {
+    Fragment fragment = fragments.get(key);
+    if (fragment == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return fragment;
+  }
+
+  /**
+   * @return the number of fragments taken from this cache.
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return the number of fragments that had to be created.
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Stores the given fragment and removes the least recently used fragments
+   * if the maximal size is exceeded.
+   *
+   * @param key
+   * @param fragment
+   */
+  synchronized void put(String key, Fragment fragment) {
+    if (fragment.getLaTeX().length() > maxSize) {
+      return;
+    }
+    Fragment previous = fragments.put(key, fragment);
+    if (previous != null) {
+      size -= previous.getLaTeX().length();
+    }
+    size += fragment.getLaTeX().length();
+    Iterator<Fragment> iterator = fragments.values().iterator();
+    while ((size > maxSize) && iterator.hasNext()) {
+      size -= iterator.next().getLaTeX().length();
+      iterator.remove();
+    }
+  }
+
+}
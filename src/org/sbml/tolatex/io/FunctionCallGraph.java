@@ -0,0 +1,196 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.FunctionDefinition;
+import org.sbml.jsbml.Model;
+
+/**
+ * The graph of calls between the {@link FunctionDefinition}s of one
+ * {@link Model}. The direct calls of each function definition are determined
+ * once when the graph is created, the transitive closure of each function
+ * and the calls of any other expression, such as a kinetic law or a rule,
+ * are computed on first demand and memorized.
+ * <p>
+ * All call lists contain each identifier only once, in the order of a
+ * depth-first traversal, i.e., every function is directly followed by the
+ * functions it calls unless these have already been listed before. Calls of
+ * identifiers that are not defined in the model are ignored.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+class FunctionCallGraph {
+
+  /**
+   * Returned if an expression does not call any function.
+   */
+  private static final String EMPTY[] = new String[0];
+
+  /**
+   * Adds the names of all function calls within the given tree to the set in
+   * the order of their occurrence.
+   *
+   * @param ast
+   * @param calls
+   */
+  static void collectCalls(ASTNode ast, Set<String> calls) {
+    if (ast.getType() == ASTNode.Type.FUNCTION) {
+      calls.add(ast.getName());
+    } else {
+      for (int i = 0; i < ast.getChildCount(); i++) {
+        collectCalls(ast.getChild(i), calls);
+      }
+    }
+  }
+
+  /**
+   * The transitive calls of the function definitions computed so far.
+   */
+  private final Map<String, String[]> closure;
+  /**
+   * The direct calls of each function definition.
+   */
+  private final Map<String, String[]> direct;
+  /**
+   * The transitive calls of other expressions computed so far.
+   */
+  private final Map<ASTNode, String[]> expressions;
+  /**
+   * The model of this graph.
+   */
+  private final Model model;
+
+  /**
+   *
+   * @param model
+   */
+  public FunctionCallGraph(Model model) {
+    this.model = model;
+    int count = model.getFunctionDefinitionCount();
+    direct = new HashMap<String, String[]>(2 * count);
+    closure = new HashMap<String, String[]>(2 * count);
+    expressions = new IdentityHashMap<ASTNode, String[]>();
+    Set<String> calls = new LinkedHashSet<String>();
+    for (int i = 0; i < count; i++) {
+      FunctionDefinition fd = model.getFunctionDefinition(i);
+      calls.clear();
+      if (fd.isSetMath()) {
+        collectCalls(fd.getMath(), calls);
+      }
+      direct.put(fd.getId(), toArray(calls));
+    }
+  }
+
+  /**
+   * @param id
+   *        the identifier of a {@link FunctionDefinition}.
+   * @return the identifiers of all functions that are directly or indirectly
+   *         called by the given function, without the function itself unless
+   *         it is recursive.
+   */
+  public String[] getCallees(String id) {
+    String calls[] = closure.get(id);
+    if (calls == null) {
+      String callees[] = direct.get(id);
+      if (callees == null) {
+        return EMPTY;
+      }
+      // Stops infinite recursion in invalid models.
+      closure.put(id, EMPTY);
+      Set<String> transitive = new LinkedHashSet<String>();
+      addAll(Arrays.asList(callees), transitive);
+      calls = toArray(transitive);
+      closure.put(id, calls);
+    }
+    return calls;
+  }
+
+  /**
+   * @param ast
+   *        any expression within the model of this graph.
+   * @return the identifiers of all functions that are directly or indirectly
+   *         called by the given expression.
+   */
+  public String[] getCalls(ASTNode ast) {
+    String calls[] = expressions.get(ast);
+    if (calls == null) {
+      if (direct.isEmpty()) {
+        calls = EMPTY;
+      } else {
+        Set<String> directCalls = new LinkedHashSet<String>();
+        collectCalls(ast, directCalls);
+        Set<String> transitive = new LinkedHashSet<String>();
+        addAll(directCalls, transitive);
+        calls = toArray(transitive);
+      }
+      expressions.put(ast, calls);
+    }
+    return calls;
+  }
+
+  /**
+   * Adds each of the given functions, directly followed by its callees, to
+   * the set.
+   *
+   * @param ids
+   * @param calls
+   */
+  private void addAll(Iterable<String> ids, Set<String> calls) {
+    for (String id : ids) {
+      if (direct.containsKey(id)) {
+        calls.add(id);
+        for (String callee : getCallees(id)) {
+          calls.add(callee);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the model of this graph.
+   */
+  public Model getModel() {
+    return model;
+  }
+
+  /**
+   *
+   * @param calls
+   * @return
+   */
+  private static String[] toArray(Set<String> calls) {
+    return calls.isEmpty() ? EMPTY : calls.toArray(new String[calls.size()]);
+  }
+
+}
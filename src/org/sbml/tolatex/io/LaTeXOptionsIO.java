@@ -70,6 +70,119 @@ public interface LaTeXOptionsIO extends KeyProvider {
             .createTeXFileFilter(), SBFileFilter.createPDFFileFilter())),
             new File(System.getProperty("user.dir")));
   
+  /**
+   * A directory that is recursively searched for SBML files. If given, all
+   * matching files are converted in parallel and written to
+   * {@link #REPORT_OUTPUT_DIRECTORY}.
+   */
+  public static final Option<File> SBML_INPUT_DIRECTORY = new Option<File>(
+      "SBML_INPUT_DIRECTORY", File.class, resources, new File(System
+        .getProperty("user.dir")));
+  
+  /**
+   * The directory where to save the reports created in batch mode. The
+   * sub-directory structure of {@link #SBML_INPUT_DIRECTORY} is preserved.
+   */
+  public static final Option<File> REPORT_OUTPUT_DIRECTORY = new Option<File>(
+      "REPORT_OUTPUT_DIRECTORY", File.class, resources, new File(System
+        .getProperty("user.dir")));
+  
+  /**
+   * One or multiple glob patterns, separated by commas or semicolons, that
+   * select the files to be converted in batch mode.
+   */
+  public static final Option<String> BATCH_FILE_PATTERN = new Option<String>(
+      "BATCH_FILE_PATTERN", String.class, resources, "*.xml;*.sbml");
+  
+  /**
+   * The type of reports to be created in batch mode.
+   */
+  public static final Option<String> BATCH_OUTPUT_FORMAT = new Option<String>(
+      "BATCH_OUTPUT_FORMAT", String.class, resources, new Range<String>(
+        String.class, "{tex,pdf}"), "tex");
+  
+  /**
+   * The maximal number of models to be converted at the same time in batch
+   * mode. Defaults to the number of available processors.
+   */
+  public static final Option<Integer> BATCH_THREADS = new Option<Integer>(
+      "BATCH_THREADS", Integer.class, resources, Integer.valueOf(Runtime
+        .getRuntime().availableProcessors()));
+  
+  /**
+   * The directory where finished reports are cached, see
+   * {@link org.sbml.tolatex.ReportCache}.
+   */
+  public static final Option<File> REPORT_CACHE_DIRECTORY = new Option<File>(
+      "REPORT_CACHE_DIRECTORY", File.class, resources, new File(System
+        .getProperty("user.home"), ".SBML2LaTeX" + File.separatorChar + "cache"));
+  
+  /**
+   * The maximal total size of all cached reports in megabytes. The least
+   * recently used reports are removed if this size is exceeded.
+   */
+  public static final Option<Integer> REPORT_CACHE_SIZE = new Option<Integer>(
+      "REPORT_CACHE_SIZE", Integer.class, resources, new Range<Integer>(
+        Integer.class, "{[0,1048576]}"), Integer.valueOf(512));
+  
+  /**
+   * If {@code true}, all reports are created from scratch and are not stored
+   * in the cache.
+   */
+  public static final Option<Boolean> BYPASS_REPORT_CACHE = new Option<Boolean>(
+      "BYPASS_REPORT_CACHE", Boolean.class, resources, Boolean.FALSE);
+  
+  /**
+   * If {@code true}, all cached reports are deleted before any conversion.
+   */
+  public static final Option<Boolean> PRUNE_REPORT_CACHE = new Option<Boolean>(
+      "PRUNE_REPORT_CACHE", Boolean.class, resources, Boolean.FALSE);
+  
+  /**
+   * The maximal number of LaTeX processes at the same time. Defaults to the
+   * number of available processors.
+   */
+  public static final Option<Integer> LATEX_PROCESSES = new Option<Integer>(
+      "LATEX_PROCESSES", Integer.class, resources, Integer.valueOf(Runtime
+        .getRuntime().availableProcessors()));
+  
+  /**
+   * The directory in which each PDF report is compiled in its own temporary
+   * workspace, e.g., {@code /dev/shm} to avoid disk access.
+   */
+  public static final Option<File> LATEX_WORKSPACE = new Option<File>(
+      "LATEX_WORKSPACE", File.class, resources, new File(System
+        .getProperty("java.io.tmpdir")));
+  
+  /**
+   * The maximal time in seconds for compiling one report, zero for no limit.
+   */
+  public static final Option<Integer> LATEX_TIMEOUT = new Option<Integer>(
+      "LATEX_TIMEOUT", Integer.class, resources, new Range<Integer>(
+        Integer.class, "{[0,86400]}"), Integer.valueOf(600));
+  
+  /**
+   * The number of chunks into which each report is split for a parallel
+   * compilation, one to compile each report as a whole.
+   */
+  public static final Option<Integer> LATEX_CHUNKS = new Option<Integer>(
+      "LATEX_CHUNKS", Integer.class, resources, new Range<Integer>(
+        Integer.class, "{[1,64]}"), Integer.valueOf(1));
+  
+  /**
+   * If {@code true}, PDF reports are compiled with a precompiled format of
+   * their preamble, see {@link org.sbml.tolatex.FormatCache}.
+   */
+  public static final Option<Boolean> PRECOMPILE_PREAMBLE = new Option<Boolean>(
+      "PRECOMPILE_PREAMBLE", Boolean.class, resources, Boolean.FALSE);
+  
+  /**
+   * The directory where precompiled LaTeX formats are stored.
+   */
+  public static final Option<File> LATEX_FORMAT_DIRECTORY = new Option<File>(
+      "LATEX_FORMAT_DIRECTORY", File.class, resources, new File(System
+        .getProperty("user.home"), ".SBML2LaTeX" + File.separatorChar + "formats"));
+  
   /**
    * 
    */
@@ -77,4 +190,35 @@ public interface LaTeXOptionsIO extends KeyProvider {
   public static final OptionGroup<?> INPUT_AND_OUTPUT_FILES = new OptionGroup(
     "INPUT_AND_OUTPUT_FILES", resources, SBML_INPUT_FILE, REPORT_OUTPUT_FILE);
   
+  /**
+   * 
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public static final OptionGroup<?> BATCH_MODE = new OptionGroup(
+    "BATCH_MODE", resources, SBML_INPUT_DIRECTORY, REPORT_OUTPUT_DIRECTORY,
+    BATCH_FILE_PATTERN, BATCH_OUTPUT_FORMAT, BATCH_THREADS);
+  
+  /**
+   * 
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public static final OptionGroup<?> REPORT_CACHE = new OptionGroup(
+    "REPORT_CACHE", resources, REPORT_CACHE_DIRECTORY, REPORT_CACHE_SIZE,
+    BYPASS_REPORT_CACHE, PRUNE_REPORT_CACHE);
+  
+  /**
+   * 
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public static final OptionGroup<?> LATEX_COMPILATION = new OptionGroup(
+    "LATEX_COMPILATION", resources, LATEX_PROCESSES, LATEX_WORKSPACE, LATEX_TIMEOUT,
+    LATEX_CHUNKS);
+  
+  /**
+   * 
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public static final OptionGroup<?> LATEX_FORMATS = new OptionGroup(
+    "LATEX_FORMATS", resources, PRECOMPILE_PREAMBLE, LATEX_FORMAT_DIRECTORY);
+  
 }
@@ -23,12 +23,10 @@
  */
 package org.sbml.tolatex.io;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.text.DateFormatSymbols;
@@ -39,13 +37,15 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import javax.xml.stream.XMLStreamException;
@@ -75,10 +75,10 @@ import org.sbml.jsbml.QuantityWithUnit;
 import org.sbml.jsbml.Reaction;
 import org.sbml.jsbml.Rule;
 import org.sbml.jsbml.SBMLDocument;
-import org.sbml.jsbml.SBMLError;
 import org.sbml.jsbml.SBMLException;
 import org.sbml.jsbml.SBO;
 import org.sbml.jsbml.SBase;
+import org.sbml.jsbml.SBaseWithDerivedUnit;
 import org.sbml.jsbml.Species;
 import org.sbml.jsbml.SpeciesReference;
 import org.sbml.jsbml.SpeciesType;
@@ -94,23 +94,25 @@ import org.sbml.jsbml.ext.fbc.FBCSpeciesPlugin;
 import org.sbml.jsbml.ext.layout.Layout;
 import org.sbml.jsbml.ext.layout.LayoutConstants;
 import org.sbml.jsbml.ext.layout.LayoutModelPlugin;
-import org.sbml.jsbml.ontology.Term;
-import org.sbml.jsbml.util.NotImplementedException;
-import org.sbml.jsbml.util.SBMLtools;
 import org.sbml.jsbml.util.StringTools;
 import org.sbml.jsbml.util.filters.NameFilter;
 import org.sbml.jsbml.validator.OverdeterminationValidator;
 import org.sbml.jsbml.xml.XMLNode;
+import org.sbml.tolatex.CompileService;
+import org.sbml.tolatex.FormatCache;
 import org.sbml.tolatex.LaTeXOptions.PaperSize;
+import org.sbml.tolatex.LaTeXOptions.Validator;
+import org.sbml.tolatex.ReportConfiguration;
 import org.sbml.tolatex.SBML2LaTeX;
+import org.sbml.tolatex.io.ValidationReport.Problem;
+import org.sbml.tolatex.io.ValidationReport.Severity;
 import org.sbml.tolatex.util.LaTeX;
+import org.sbml.tolatex.util.LaTeXEscaper;
 import org.sbml.totikz.TikZLayoutAlgorithm;
 import org.sbml.totikz.TikZLayoutBuilder;
 
-import cz.kebrt.html2latex.HTML2LaTeX;
-import de.zbit.io.OpenFile;
+import cz.kebrt.html2latex.TreeConvertor;
 import de.zbit.io.filefilter.SBFileFilter;
-import de.zbit.sbml.io.SBOTermFormatter;
 import de.zbit.sbml.layout.LayoutAlgorithm;
 import de.zbit.sbml.layout.LayoutDirector;
 import de.zbit.text.LaTeXFormatter;
@@ -129,11 +131,6 @@ import de.zbit.util.Utils;
 @SuppressWarnings("deprecation")
 public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
 
-  /**
-   * The location of the SBML2LaTeX logo file.
-   */
-  private static String logo;
-
   /**
    * A {@link Logger} for this class.
    */
@@ -176,89 +173,109 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
    */
   private final static String notesEndString = "</body></notes>";
 
-  /* MiriamLink miriam = new MiriamLink(); */
-  static {
-    logo = (new File(System.getProperty("user.dir")
-      + "/resources/SBML2LaTeX.eps")).getAbsolutePath();
-    logo = logo.substring(0, logo.lastIndexOf('.'));
-  }
-
   /**
-   * 
-   * @return
+   * Flag of the fragment of a reaction without kinetic law.
    */
-  public static String getLogoFile() {
-    return logo;
-  }
+  private static final int MISSING_KINETIC_LAW = 1;
 
   /**
-   * This allows you to set the path of the logo file. It is more convenient to
-   * omit the file extension here so that LaTeX or PDFLaTeX can choose the
-   * desired file from the directory.
-   * 
-   * @param logoFilePath
-   *        Example: /home/user/logos/mylogo
+   * Flag of the fragment of a reaction whose kinetic law is not given in units
+   * of substance per time.
    */
-  public static void setLogoFile(String logoFilePath) {
-    logo = logoFilePath;
-  }
+  private static final int INVALID_KINETIC_LAW_UNITS = 2;
 
   /**
    * This converts HTML formation tags into associated LaTeX format
-   * assignments.
+   * assignments. The already parsed XHTML tree of the notes is converted
+   * directly, i.e., without writing it to XML first. The given node itself
+   * (e.g., {@code notes} or {@code message}) as well as the elements
+   * {@code html} and {@code body} are only containers, whose content is
+   * converted. The {@code head} is ignored. Identical notes are only
+   * converted once, see {@link NotesCache}.
    * 
-   * @param notes
-   * @return
+   * @param node
+   * @param out
+   *        receives the LaTeX code.
    * @throws IOException
    */
-  private static StringBuffer formatHTML(XMLNode node) throws IOException {
-    StringWriter st = new StringWriter();
-    StringBuffer sb = st.getBuffer();
+  private static void formatHTML(XMLNode node, Writer out) throws IOException {
     if (node != null) {
-      String notes = SBMLtools.toXML(node);
-      if (notes.startsWith("<notes") && notes.endsWith("</notes>")) {
-        int start = notes.indexOf('>') + 1, end = notes.indexOf("</notes") - 1;
-        notes = notes.substring(start, end);
-      }
-      BufferedWriter bw = new BufferedWriter(st);
-      BufferedReader br = new BufferedReader(new StringReader(notes.replace("html:", "")));
-      try {
-        new HTML2LaTeX(br, bw);
-      } catch (Throwable t) {
-        logger.warning(Utils.getMessage(t));
-        t.printStackTrace();
-      } finally {
-        br.close();
-        bw.close();
+      NotesCache cache = NotesCache.getInstance();
+      String key = NotesCache.key(node);
+      String latex = cache.get(key);
+      if (latex == null) {
+        StringWriter sw = new StringWriter();
+        TreeConvertor convertor = new TreeConvertor(sw);
+        try {
+          formatHTMLContent(node, convertor);
+          convertor.finish();
+          latex = sw.toString();
+          cache.put(key, latex);
+        } catch (RuntimeException exc) {
+          logger.warning(Utils.getMessage(exc));
+          // The incomplete result is not memorized for other elements.
+          latex = sw.toString();
+        }
       }
-      int index = sb.indexOf("\\begin{document}");
-      if (index > -1) {
-        sb.delete(0, index + 16);
-      } else {
-        index = sb.lastIndexOf("usepackage");
-        if (index > -1) {
-          sb.delete(0, index);
-          index = sb.indexOf("\n");
-          if (index > -1) {
-            sb.delete(0, index);
+      out.write(latex);
+    }
+  }
+
+  /**
+   * 
+   * @param container
+   * @param convertor
+   */
+  private static void formatHTMLContent(XMLNode container, TreeConvertor convertor) {
+    for (int i = 0; i < container.getChildCount(); i++) {
+      XMLNode child = container.getChildAt(i);
+      if (child.isText()) {
+        convertor.characters(child.getCharacters());
+      } else if (child.isElement()) {
+        String name = child.getName();
+        if (name.equalsIgnoreCase("html") || name.equalsIgnoreCase("body")) {
+          formatHTMLContent(child, convertor);
+        } else if (!name.equalsIgnoreCase("head")) {
+          Map<String, String> attributes = new HashMap<String, String>();
+          for (int j = 0; j < child.getAttributesLength(); j++) {
+            attributes.put(child.getAttrName(j), child.getAttrValue(j));
           }
-        } else {
-          return new StringBuffer();
+          convertor.startElement(name, attributes);
+          formatHTMLContent(child, convertor);
+          convertor.endElement();
         }
       }
-      index = sb.indexOf("\\end{document}");
-      if (index > -1) {
-        sb.delete(index, sb.length());
-      }
     }
-    return sb;
   }
 
   /**
-   * Set of SBO Term used in the current SBML document to be translated. This
-   * set stores the SBO ids.
+   * Writes a description item, whose description are the given notes.
+   * 
+   * @param item
+   * @param notes
+   * @param buffer
+   * @throws IOException
+   */
+  private void notesItem(String item, XMLNode notes, BufferedWriter buffer) throws IOException {
+    buffer.append("\\item[");
+    buffer.append(item);
+    buffer.append("] ");
+    formatHTML(notes, buffer);
+    buffer.append(newLine());
+  }
+
+  /**
+   * The state of the report that is currently written by each thread. Since
+   * all information that is collected during the creation of a report is kept
+   * here, one instance of this class can write several reports at the same
+   * time.
+   */
+  private final ThreadLocal<ReportContext> contexts = new ThreadLocal<ReportContext>();
+
+  /**
+   * The location of the SBML2LaTeX logo file.
    */
-  private Set<Integer> sboTerms = new HashSet<Integer>();
+  private String logo;
 
   /**
    * This is the font size to be used in this document. Allowed values are:
@@ -306,12 +323,6 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
    */
   private PaperSize paperSize;
 
-  /**
-   * This variable is needed to decide whether a method should write a document
-   * head and tail for the LaTeX output.
-   */
-  private boolean headTail;
-
   /**
    * If {@code true} species (reactants, modifiers and products) in reaction equations
    * will be displayed with their name if they have one. By default the ids of
@@ -347,6 +358,24 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
    */
   private boolean checkConsistency = false;
 
+  /**
+   * Performs the consistency check if {@link #checkConsistency} is
+   * {@code true}.
+   */
+  private ValidationBackend validationBackend = new OnlineValidation();
+
+  /**
+   * Keeps the LaTeX code of sections, reactions and species of previous
+   * reports. If {@code null}, every report is written from scratch.
+   */
+  private FragmentCache fragmentCache;
+
+  /**
+   * If {@code true}, the positions at which the report may be split for a
+   * chunked compilation are marked, see {@link #setChunkBreaks(boolean)}.
+   */
+  private boolean chunkBreaks = false;
+
   /**
    * If {@code true} MIRIAM annotations are included into the model report. This process
    * takes a bit time due to the necessary connection to EBI's web-service.
@@ -365,6 +394,26 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
   includeEventsSection, includeConstraintsSection, includeReactionsSection,
   includeLayoutSection;
 
+  /**
+   * 
+   * @return
+   */
+  public String getLogoFile() {
+    return logo;
+  }
+
+  /**
+   * This allows you to set the path of the logo file. It is more convenient to
+   * omit the file extension here so that LaTeX or PDFLaTeX can choose the
+   * desired file from the directory.
+   * 
+   * @param logoFilePath
+   *        Example: /home/user/logos/mylogo
+   */
+  public void setLogoFile(String logoFilePath) {
+    logo = logoFilePath;
+  }
+
   /**
    * @return the includeLayoutSection
    */
@@ -565,13 +614,9 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
   private LaTeXFormatter formatter;
 
   /**
-   * 
-   */
-  private OverdeterminationValidator validator;
-
-  /**
-   * Constructs a new instance of LaTeX export. For each document to be
-   * translated a new instance has to be created. Here default values are used
+   * Constructs a new instance of LaTeX export. The same instance can be used
+   * to translate any number of documents, also from several threads at the
+   * same time. Here default values are used
    * (A4 paper, 11pt, portrait, fancy headings, no titlepage).
    */
   public LaTeXReportGenerator() {
@@ -579,8 +624,43 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
   }
 
   /**
-   * Constructs a new instance of LaTeX export. For each document to be
-   * translated a new instance has to be created. This constructor allows you to
+   * Constructs a new instance of LaTeX export with all properties taken from
+   * the given configuration.
+   * 
+   * @param configuration
+   */
+  public LaTeXReportGenerator(ReportConfiguration configuration) {
+    this(configuration.isLandscape(), configuration.isTypewriter(),
+      configuration.getFontSize(), configuration.getPaperSize(),
+      configuration.isShowPredefinedUnits(), configuration.isTitlePage(),
+      configuration.isPrintNamesIfAvailable());
+    setCheckConsistency(configuration.isCheckConsistency());
+    setValidationBackend(configuration.getValidator() == Validator.offline ? new OfflineValidation() : new OnlineValidation());
+    setIncludeMIRIAM(configuration.isMiriamAnnotation());
+    setTextFont(configuration.getFontText());
+    setHeadingsFont(configuration.getFontHeadings());
+    setTypewriterFont(configuration.getFontTypewriter());
+    setArrangeReactionParticipantsInOneTable(configuration.isReactantsOverviewTable());
+    setPrintFullODEsystem(configuration.isPrintFullODEsystem());
+    setIncludeCompartmentsSection(configuration.isIncludeCompartmentsSection());
+    setIncludeCompartmentTypesSection(configuration.isIncludeCompartmentTypesSection());
+    setIncludeConstraintsSection(configuration.isIncludeConstraintsSection());
+    setIncludeEventsSection(configuration.isIncludeEventsSection());
+    setIncludeFunctionDefinitionsSection(configuration.isIncludeFunctionDefinitionsSection());
+    setIncludeInitialAssignmentsSection(configuration.isIncludeInitialAssignmentsSection());
+    setIncludeParametersSection(configuration.isIncludeParametersSection());
+    setIncludeReactionsSection(configuration.isIncludeReactionsSection());
+    setIncludeRulesSection(configuration.isIncludeRulesSection());
+    setIncludeSpeciesSection(configuration.isIncludeSpeciesSection());
+    setIncludeSpeciesTypesSection(configuration.isIncludeSpeciesTypesSection());
+    setIncludeUnitDefinitionsSection(configuration.isIncludeUnitDefinitionsSection());
+    setIncludeLayoutSection(configuration.isIncludeLayoutSection());
+  }
+
+  /**
+   * Constructs a new instance of LaTeX export. The same instance can be used
+   * to translate any number of documents, also from several threads at the
+   * same time. This constructor allows you to
    * set many properties of the resulting LaTeX file.
    * 
    * @param landscape
@@ -613,7 +693,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
   public LaTeXReportGenerator(boolean landscape, boolean typeWriter,
     short fontSize, PaperSize paperSize, boolean addPredefinedUnits,
     boolean titlepage, boolean printNameIfAvailable) {
-    headTail = true;
+    logo = new File(System.getProperty("user.dir"), "resources/SBML2LaTeX").getAbsolutePath();
     setLandscape(landscape);
     setTypewriter(typeWriter);
     setFontSize(fontSize);
@@ -639,37 +719,250 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
   }
 
   /**
-   * For a given empty list of function identifiers this method performs DFS to
-   * detect all functions called by the expression hidden in the given ASTNode
-   * and returns the filled list of function identifiers. Every function called
-   * in this tree is added only one time to the list (in the order the functions
-   * are called).
+   * Performs DFS to detect all functions directly called by the expression
+   * hidden in the given ASTNode and returns the list of function identifiers.
+   * Every function called in this tree is added only one time to the list (in
+   * the order the functions are called). Functions called indirectly, i.e., by
+   * other functions, are not included.
    * 
    * @param ast
-   * @param funcIDs
    * @return
    */
   public List<String> callsFunctions(ASTNode ast) {
-    List<String> funcIDs = new Vector<String>();
-    if (ast.getType() == ASTNode.Type.FUNCTION) {
-      if (!funcIDs.contains(ast.getName())) {
-        funcIDs.add(ast.getName());
+    Set<String> funcIDs = new LinkedHashSet<String>();
+    FunctionCallGraph.collectCalls(ast, funcIDs);
+    return new ArrayList<String>(funcIDs);
+  }
+
+  /**
+   * Starts a new report for the current thread unless a report is already
+   * being written, which happens if one of the public {@code format} methods
+   * calls another one.
+   * 
+   * @return {@code true} if a new {@link ReportContext} has been opened, i.e.,
+   *         the caller is responsible to write head and foot of the document
+   *         and must call {@link #closeContext(boolean)} when done.
+   */
+  private boolean openContext() {
+    if (contexts.get() == null) {
+      contexts.set(new ReportContext());
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * 
+   * @param opened
+   *        the value returned by the corresponding call of
+   *        {@link #openContext()}.
+   */
+  private void closeContext(boolean opened) {
+    if (opened) {
+      ReportContext context = contexts.get();
+      logger.fine(MessageFormat.format(bundleUI.getString("MATH_CACHE_STATISTICS"),
+        context.getLaTeXMisses(), context.getLaTeXHits()));
+      contexts.remove();
+    }
+  }
+
+  /**
+   * 
+   * @return the state of the report that is currently written by this thread.
+   */
+  private ReportContext context() {
+    return contexts.get();
+  }
+
+  /**
+   * 
+   * @param kind
+   *        the type of the fragment, e.g., a section or a reaction.
+   * @param model
+   *        the model the fragment belongs to.
+   * @param dependencies
+   *        further identifiers of the fragment, such as its position and the
+   *        hash codes of reactions it depends on.
+   * @return the key of a fragment of the current report or {@code null} if no
+   *         {@link FragmentCache} is used. Besides the given values, the key
+   *         contains all settings of this generator that influence the LaTeX
+   *         code and the hash code of the model except for the content of its
+   *         reactions.
+   */
+  private String fragmentKey(String kind, Model model, String... dependencies) {
+    if (fragmentCache == null) {
+      return null;
+    }
+    StringBuilder key = new StringBuilder(kind);
+    key.append('|');
+    key.append(Locale.getDefault());
+    key.append(',');
+    key.append(paperSize);
+    key.append(',');
+    key.append(fontHeadings);
+    key.append(',');
+    key.append(fontText);
+    key.append(',');
+    key.append(fontTypewriter);
+    for (boolean option : new boolean[] {landscape, typewriter,
+        printNameIfAvailable, showPredefinedUnitDeclarations, includeMIRIAM,
+        arrangeReactionParticipantsInOneTable, printFullODEsystem}) {
+      key.append(option ? '1' : '0');
+    }
+    key.append('|');
+    key.append(context().getEnvironmentDigest(model));
+    for (String dependency : dependencies) {
+      key.append('|');
+      key.append(dependency);
+    }
+    return key.toString();
+  }
+
+  /**
+   * 
+   * @param key
+   *        the result of {@link #fragmentKey(String, Model, String...)}.
+   * @return the cached fragment or {@code null}. If the fragment is found, the
+   *         SBO terms it refers to are added to the current report.
+   */
+  private FragmentCache.Fragment lookupFragment(String key) {
+    if (key == null) {
+      return null;
+    }
+    FragmentCache.Fragment fragment = fragmentCache.get(key);
+    if (fragment != null) {
+      for (int sboTerm : fragment.getSBOTerms()) {
+        context().addSBOTerm(sboTerm);
       }
+    }
+    return fragment;
+  }
+
+  /**
+   * Must be called before the LaTeX code of a fragment is created, which is
+   * later passed to {@link #storeFragment(String, String, int)}.
+   * 
+   * @param key
+   */
+  private void startFragment(String key) {
+    if (key != null) {
+      context().startRecording();
+    }
+  }
+
+  /**
+   * 
+   * @param key
+   *        the key of the fragment or {@code null} if it should not be cached.
+   * @param latex
+   * @param flags
+   * @return the new fragment.
+   */
+  private FragmentCache.Fragment storeFragment(String key, String latex, int flags) {
+    FragmentCache.Fragment fragment;
+    if (key == null) {
+      fragment = new FragmentCache.Fragment(latex, new int[0], flags);
     } else {
-      int i, j;
-      String elem;
-      List<String> calls;
-      for (i = 0; i < ast.getChildCount(); i++) {
-        calls = callsFunctions(ast.getChild(i));
-        for (j = 0; j < calls.size(); j++) {
-          elem = calls.get(j);
-          if (!funcIDs.contains(elem)) {
-            funcIDs.add(elem);
-          }
-        }
-      }
+      fragment = new FragmentCache.Fragment(latex, context().stopRecording(), flags);
+      fragmentCache.put(key, fragment);
+    }
+    return fragment;
+  }
+
+  /**
+   * Writes the given list as a section of the report or takes the section from
+   * the {@link FragmentCache} if the model did not change. This must not be
+   * used for the reactions, whose content is not considered in the key.
+   * 
+   * @param kind
+   *        identifies the section.
+   * @param list
+   * @param buffer
+   * @throws IOException
+   * @throws SBMLException
+   * @throws XMLStreamException
+   */
+  private void formatSection(String kind, ListOf<? extends SBase> list,
+    BufferedWriter buffer) throws IOException, SBMLException,
+    XMLStreamException {
+    chunkBreak(buffer);
+    String key = fragmentKey(kind, list.getModel());
+    if (key == null) {
+      formatSectionContent(list, buffer);
+      return;
+    }
+    FragmentCache.Fragment fragment = lookupFragment(key);
+    if (fragment == null) {
+      StringWriter section = new StringWriter();
+      BufferedWriter bw = new BufferedWriter(section);
+      startFragment(key);
+      formatSectionContent(list, bw);
+      bw.close();
+      fragment = storeFragment(key, section.toString(), 0);
+    }
+    buffer.append(fragment.getLaTeX());
+  }
+
+  /**
+   * 
+   * @param list
+   * @param buffer
+   * @throws IOException
+   * @throws SBMLException
+   * @throws XMLStreamException
+   */
+  @SuppressWarnings("unchecked")
+  private void formatSectionContent(ListOf<? extends SBase> list,
+    BufferedWriter buffer) throws IOException, SBMLException,
+    XMLStreamException {
+    Model model = list.getModel();
+    if (list == model.getListOfUnitDefinitions()) {
+      formatUnitDefinitions(list, buffer);
+    } else if (list == model.getListOfEvents()) {
+      formatEvents((ListOf<? extends Event>) list, buffer);
+    } else {
+      format(list, buffer, true);
+    }
+  }
+
+  /**
+   * 
+   * @param element
+   * @return the derived unit of the given element, which is only computed
+   *         once per report.
+   */
+  private UnitDefinition getDerivedUnit(SBaseWithDerivedUnit element) {
+    return context().getUnitCache().getDerivedUnitDefinition(element);
+  }
+
+  /**
+   * 
+   * @param ud
+   * @return the LaTeX code of the given unit definition, which is only created
+   *         once per report.
+   */
+  private String formatUnits(UnitDefinition ud) {
+    if (ud == null) {
+      return "";
+    }
+    UnitCache cache = context().getUnitCache();
+    String latex = cache.getFormatted(ud);
+    if (latex == null) {
+      latex = format(ud).toString();
+      cache.putFormatted(ud, latex);
     }
-    return funcIDs;
+    return latex;
+  }
+
+  /**
+   * 
+   * @param math
+   * @return the LaTeX code of the given expression, which is only rendered
+   *         once per report.
+   * @throws SBMLException
+   */
+  private String toLaTeX(ASTNode math) throws SBMLException {
+    return context().toLaTeX(math);
   }
 
   /**
@@ -698,6 +991,27 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
   @Override
   public void format(ListOf<? extends SBase> list, BufferedWriter buffer,
     boolean section) throws IOException, SBMLException {
+    boolean headTail = openContext();
+    try {
+      format(list, buffer, section, headTail);
+    } finally {
+      closeContext(headTail);
+    }
+  }
+
+  /**
+   * 
+   * @param list
+   * @param buffer
+   * @param section
+   * @param headTail
+   *        decides whether this method should write a document head and tail
+   *        for the LaTeX output.
+   * @throws IOException
+   * @throws SBMLException
+   */
+  private void format(ListOf<? extends SBase> list, BufferedWriter buffer,
+    boolean section, boolean headTail) throws IOException, SBMLException {
     if (list.isEmpty()) {
       return;
     }
@@ -736,7 +1050,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
       }
 
       if (section) {
-        buffer.append(section(name, true));
+        section(buffer, name, true);
         String text;
         if (compartments || species || reactions || parameters) {
           text = bundleContent.getString("INTRODUCTION_MODEL_COMPONENTS");
@@ -772,7 +1086,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
       }
 
       if (compartments) {
-        buffer.append(longtableHead("lllC{2cm}llcl",
+        longtableHead(buffer, "lllC{2cm}llcl",
           MessageFormat.format(
             bundleContent.getString("PROPERTIES_TABLE_CAPTION"),
             bundleElements.getString(first.getElementName())),
@@ -782,9 +1096,9 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
           bundleElements.getString("size"),
           bundleElements.getString("unit"),
           bundleElements.getString("constant"),
-          bundleElements.getString("outside")));
+          bundleElements.getString("outside"));
       } else if (species) {
-        buffer.append(longtableHead(
+        longtableHead(buffer,
           paperSize.equals("letter") || paperSize.equals("executive") ? "p{3.5cm}p{6cm}p{4.5cm}p{2.5cm}C{1.5cm}C{1.5cm}" : "p{3.5cm}p{6.5cm}p{5cm}p{3cm}C{1.5cm}C{1.5cm}",
             MessageFormat.format(
               bundleContent.getString("PROPERTIES_TABLE_CAPTION"),
@@ -794,14 +1108,14 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
             bundleElements.getString("compartment"),
             bundleElements.getString("derivedUnit"),
             bundleElements.getString("constant"),
-            bundleElements.getString("boundaryCondition")));
+            bundleElements.getString("boundaryCondition"));
       } else if (reactions) {
         buffer.append(MessageFormat.format(
           bundleContent.getString("INTRODUCTION_SECTION_REACTIONS"),
           printNameIfAvailable ? MessageFormat.format(bundleContent.getString("NAMES_IF_AVAILABLE"), formatter.emdash()) : ""
             ));
         buffer.newLine();
-        buffer.append(longtableHead("rp{3cm}p{7cm}p{8cm}p{1.5cm}",
+        longtableHead(buffer, "rp{3cm}p{7cm}p{8cm}p{1.5cm}",
           MessageFormat.format(
             bundleContent.getString("OVERVIEW_TABLE_CAPTION"),
             bundleElements.getString(list.getElementName())),
@@ -809,7 +1123,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
           bundleElements.getString("id"),
           bundleElements.getString("name"),
           bundleContent.getString("REACTION_EQUATION"),
-            "SBO"));
+            "SBO");
       } else if (parameters) {
         // TODO
         int preDecimal = 1, postDecimal = 1;
@@ -838,7 +1152,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
         head += Integer.toString(preDecimal) + "}{"
             + Integer.toString(Math.min(postDecimal, 3));
         head += (paperSize.equals("executive")) ? "}p{2.8cm}c" : "}p{3cm}c";
-        buffer.append(longtableHead(
+        longtableHead(buffer,
           head,
           MessageFormat.format(
             bundleContent.getString("PROPERTIES_TABLE_CAPTION"),
@@ -848,7 +1162,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
           "SBO",
           formatter.multicolumn(1, Align.center, bundleElements.getString("value")),
           bundleElements.getString("unit"),
-          formatter.multicolumn(1, Align.center, bundleElements.getString("constant"))));
+          formatter.multicolumn(1, Align.center, bundleElements.getString("constant")));
       }
 
       /*
@@ -860,8 +1174,8 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
         if (section && !(compartments || species || reactions || parameters)) {
           isRule = s instanceof Rule;
           name = isRule ? bundleElements.getString("rule") : bundleElements.getString(s.getElementName());
-          buffer.append(subsection(firstLetterUpperCase(name) + ' ' + (i + 1),
-            true));
+          subsection(buffer, firstLetterUpperCase(name) + ' ' + (i + 1),
+            true);
           if (isRule) {
             buffer.newLine();
             buffer.append(label("rule" + i));
@@ -874,7 +1188,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
           buffer.append('&');
           if (s.isSetSBOTerm()) {
             buffer.append(SBO.sboNumberString(s.getSBOTerm()));
-            sboTerms.add(Integer.valueOf(s.getSBOTerm()));
+            context().addSBOTerm(s.getSBOTerm());
           }
           buffer.append('&');
           QuantityWithUnit p = (QuantityWithUnit) s;
@@ -886,22 +1200,22 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
             buffer.append(value.contains("E") ? formatter.multicolumn(1, Align.right, format(p.getValue())) : value);
           }
           buffer.append('&');
-          UnitDefinition ud = p.getDerivedUnitDefinition();
+          UnitDefinition ud = getDerivedUnit(p);
           if ((ud == null) || (ud.getUnitCount() == 0)) {
             if (p.isSetUnits()) {
               if ((ud = p.getModel().getUnitDefinition(p.getUnits())) != null) {
-                buffer.append(math(format(ud)));
+                math(buffer, formatUnits(ud));
               } else if (Unit.isPredefined(p.getUnits(), p.getLevel())) {
                 Unit u = new Unit(1d, 0, Unit.Kind.valueOf(p.getUnits()), 1d, p.getLevel(), p.getVersion());
-                buffer.append(math(format(u)));
+                math(buffer, format(u));
               } else {
-                buffer.append(texttt(maskSpecialChars(p.getUnits())));
+                maskedTexttt(buffer, p.getUnits());
               }
             } else {
               buffer.append(' ');
             }
           } else {
-            buffer.append(math(format(ud)));
+            math(buffer, formatUnits(ud));
           }
           buffer.append('&');
           if (p instanceof LocalParameter) {
@@ -913,26 +1227,26 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
         } else if (compartments) {
           Compartment c = (Compartment) s;
           if (c.isSetId()) {
-            buffer.append(texttt(maskSpecialChars(c.getId())));
+            maskedTexttt(buffer, c.getId());
           }
           buffer.append('&');
-          buffer.append(maskSpecialChars(c.getName()));
+          maskSpecialChars(buffer, c.getName());
           buffer.append('&');
           if (c.isSetSBOTerm()) {
             buffer.append(SBO.sboNumberString(c.getSBOTerm()));
-            sboTerms.add(Integer.valueOf(c.getSBOTerm()));
+            context().addSBOTerm(c.getSBOTerm());
           }
           buffer.append('&');
           buffer.append(StringTools.toString(Locale.ENGLISH,
             c.getSpatialDimensions()));
           buffer.append('&');
-          buffer.append(math(format(c.getSize())));
+          math(buffer, format(c.getSize()));
           buffer.append('&');
           UnitDefinition ud;
           if (c.isSetUnits()) {
             ud = c.getModel().getUnitDefinition(c.getUnits());
           } else {
-            ud = c.getDerivedUnitDefinition();
+            ud = getDerivedUnit(c);
           }
           if ((ud == null) || (ud.getUnitCount() == 0)) {
             buffer.append(' ');
@@ -940,23 +1254,22 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
               && (c.getSize() == 1d) && (ud.getUnit(0).isLitre())) {
             buffer.append("litre");
           } else {
-            buffer.append(math(format(ud)));
+            math(buffer, formatUnits(ud));
           }
           buffer.append('&');
           buffer.append(c.getConstant() ? yes : no);
           buffer.append('&');
-          buffer.append(texttt(maskSpecialChars(c.getOutside())));
+          maskedTexttt(buffer, c.getOutside());
           buffer.append(lineBreak);
         } else if (species) {
           Species spec = (Species) s;
-          String mask = maskSpecialChars(spec.getId());
-          buffer.append(texttt(mask));
+          maskedTexttt(buffer, spec.getId());
           buffer.append('&');
-          buffer.append(maskSpecialChars(spec.getName()));
+          maskSpecialChars(buffer, spec.getName());
           buffer.append('&');
-          buffer.append(texttt(maskSpecialChars(spec.getCompartment())));
+          maskedTexttt(buffer, spec.getCompartment());
           buffer.append('&');
-          buffer.append(math(format(spec.getDerivedUnitDefinition())));
+          math(buffer, formatUnits(getDerivedUnit(spec)));
           buffer.append('&');
           buffer.append(spec.getConstant() ? yes : no);
           buffer.append('&');
@@ -969,7 +1282,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
           // buffer.append("\\hyperref[v");
           // buffer.append(Integer.toString(i + 1));
           // buffer.append("]{");
-          buffer.append(texttt(maskSpecialChars(r.getId())));
+          maskedTexttt(buffer, r.getId());
           // buffer.append("}&");
           buffer.append('&');
           buffer.append(r.isSetName() ? maskSpecialChars(r.getName()) : " ");
@@ -978,17 +1291,16 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
           buffer.append("}&");
           if (r.isSetSBOTerm()) {
             buffer.append(SBO.sboNumberString(r.getSBOTerm()));
-            sboTerms.add(Integer.valueOf(r.getSBOTerm()));
+            context().addSBOTerm(r.getSBOTerm());
           }
           buffer.append(lineBreak);
         } else if (s instanceof Constraint) {
           Constraint c = (Constraint) s;
           buffer.append(descriptionBegin);
           format(c, buffer, true);
-          buffer.append(descriptionItem(bundleElements.getString("message"),
-            formatHTML(c.getMessage()).toString()));
-          buffer.append(descriptionItem(bundleContent.getString("EQUATION"),
-            equation(new StringBuffer(c.getMath().toLaTeX()))));
+          notesItem(bundleElements.getString("message"), c.getMessage(), buffer);
+          descriptionItem(buffer, bundleContent.getString("EQUATION"),
+            equation(new StringBuffer(toLaTeX(c.getMath()))));
           buffer.append(descriptionEnd);
         } else if (s instanceof FunctionDefinition) {
           format((FunctionDefinition) s, buffer);
@@ -1006,10 +1318,10 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
               Species spec = s.getModel().getSpecies(j);
               if (spec.isSetSpeciesType()
                   && spec.getSpeciesType().equals(nsb.getId())) {
-                sb.append(texttt(maskSpecialChars(spec.getId())));
+                maskedTexttt(sb, spec.getId());
                 sb.append('&');
                 if (spec.isSetName()) {
-                  sb.append(maskSpecialChars(spec.getName()));
+                  maskSpecialChars(sb, spec.getName());
                 }
                 sb.append(lineBreak);
                 counter++;
@@ -1020,10 +1332,10 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
               Compartment c = s.getModel().getCompartment(j);
               if (c.isSetCompartmentType()
                   && c.getCompartmentType().equals(nsb.getId())) {
-                sb.append(texttt(maskSpecialChars(c.getId())));
+                maskedTexttt(sb, c.getId());
                 sb.append('&');
                 if (c.isSetName()) {
-                  sb.append(maskSpecialChars(c.getName()));
+                  maskSpecialChars(sb, c.getName());
                 }
                 sb.append(lineBreak);
                 counter++;
@@ -1037,14 +1349,14 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
               MessageFormat.format(isSpecType ? "GRAMMATICAL_NUMBER_SPECIES" : "GRAMMATICAL_NUMBER_COMPARTMENTS", counter)));
             buffer.append(bundleContent.getString("WHITE_SPACE"));
           } else {
-            buffer.append(longtableHead("ll",
+            longtableHead(buffer, "ll",
               MessageFormat.format(
                 bundleContent.getString("ELEMENTS_OF_THIS_TYPE"),
                 MessageFormat.format(isSpecType ?
                   "GRAMMATICAL_NUMBER_SPECIES" :
                     "GRAMMATICAL_NUMBER_COMPARTMENTS", counter)
                   ),
-              bundleElements.getString("id"), bundleElements.getString("name")));
+              bundleElements.getString("id"), bundleElements.getString("name"));
             buffer.append(sb);
             buffer.append(bottomrule);
           }
@@ -1082,7 +1394,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
       throws IOException {
     if (s instanceof NamedSBase) {
       NamedSBase nsb = (NamedSBase) s;
-      buffer.append(maskSpecialChars(nsb.isSetName() ? nsb.getName() : def));
+      maskSpecialChars(buffer, nsb.isSetName() ? nsb.getName() : def);
     }
     buffer.append(def);
   }
@@ -1097,7 +1409,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
       throws IOException {
     if (s instanceof NamedSBase) {
       NamedSBase nsb = (NamedSBase) s;
-      buffer.append(texttt(maskSpecialChars(nsb.getId())));
+      maskedTexttt(buffer, nsb.getId());
     } else {
       buffer.append(def);
     }
@@ -1108,14 +1420,11 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
    */
   private void formatEvents(ListOf<? extends Event> eventList,
     BufferedWriter buffer) throws IOException, SBMLException {
-    if (headTail) {
-      documentHead(eventList.getSBMLDocument(), buffer);
-    }
     if (eventList.size() > 0) {
       int i, j;
-      buffer.append(section(MessageFormat.format(
+      section(buffer, MessageFormat.format(
         bundleContent.getString("GRAMMATICAL_NUMBER_EVENT"),
-        eventList.size()), true));
+        eventList.size()), true);
       buffer.append(
         MessageFormat.format(bundleContent.getString("INTRODUCTION_SUBCOMPONENTS"),
           MessageFormat.format(bundleContent.getString("NUMERALS"), eventList.size()),
@@ -1140,19 +1449,19 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
         buffer.append(descriptionBegin);
         format(ev, buffer, true);
         Trigger trigger = ev.getTrigger();
-        buffer.append(descriptionItem(bundleElements.getString(trigger.getElementName()), format(trigger)));
+        descriptionItem(buffer, bundleElements.getString(trigger.getElementName()), format(trigger));
         if (ev.isSetPriority()) {
           Priority priority = ev.getPriority();
-          buffer.append(descriptionItem(bundleElements.getString(priority.getElementName()), format(priority)));
+          descriptionItem(buffer, bundleElements.getString(priority.getElementName()), format(priority));
         }
         if (ev.isSetDelay()) {
           Delay delay = ev.getDelay();
-          buffer.append(descriptionItem(bundleElements.getString(delay.getElementName()), equation(delay.getMath().toLaTeX())));
-          UnitDefinition ud = ev.getDelay().getDerivedUnitDefinition();
+          descriptionItem(buffer, bundleElements.getString(delay.getElementName()), equation(toLaTeX(delay.getMath())));
+          UnitDefinition ud = getDerivedUnit(delay);
           if ((ud != null) && (ud.getUnitCount() > 0)) {
-            buffer.append(descriptionItem(
+            descriptionItem(buffer,
               bundleContent.getString("DELAY_FUNCTION_TIME_UNITS"),
-              math(format(ud))));
+              math(formatUnits(ud)));
           }
         }
         StringBuffer description = new StringBuffer();
@@ -1175,18 +1484,17 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
             if (species.getHasOnlySubstanceUnits()) {
               description.append('[');
             }
-            description.append(mathtt(maskSpecialChars(model.getSpecies(var)
-              .getId())));
+            maskedMathtt(description, model.getSpecies(var).getId());
             if (species.getHasOnlySubstanceUnits()) {
               description.append(']');
             }
           } else if (model.getCompartment(var) != null) {
             description.append(getSize(model.getCompartment(var)));
           } else {
-            description.append(mathtt(maskSpecialChars(var)));
+            maskedMathtt(description, var);
           }
           description.append((ev.getEventAssignmentCount() > 1) ? " =& " : " = ");
-          description.append(ev.getEventAssignment(j).getMath().toLaTeX());
+          description.append(toLaTeX(ev.getEventAssignment(j).getMath()));
           if (j < ev.getEventAssignmentCount() - 1) {
             description.append(lineBreak);
           }
@@ -1197,18 +1505,15 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
           description.append("\\end{align}");
           description.append(newLine());
         }
-        buffer.append(descriptionItem(
+        descriptionItem(buffer,
           MessageFormat.format(
             bundleContent.getString("GRAMMATICAL_NUMBER_ASSIGNMENT"),
             ev.getEventAssignmentCount()),
-          description));
+          description);
         buffer.append(descriptionEnd);
       }
     }
     buffer.newLine();
-    if (headTail) {
-      documentFoot(eventList, buffer);
-    }
   }
 
   /**
@@ -1220,15 +1525,15 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
   private void subsection(NamedSBase nsb, int index, Writer buffer) throws IOException {
     String elementName = nsb.getElementName();
     if (nsb.isSetId()) {
-      buffer.append(subsection(MessageFormat.format(
+      subsection(buffer, MessageFormat.format(
         bundleContent.getString("LABELED_ELEMENT"),
         bundleElements.getString(elementName),
-        texttt(maskSpecialChars(nsb.getId()))), true));
+        texttt(maskSpecialChars(nsb.getId()))), true);
       buffer.append(label(elementName.toLowerCase() + nsb.getId()));
     } else {
-      buffer.append(subsection(MessageFormat.format(
+      subsection(buffer, MessageFormat.format(
         bundleContent.getString("ELEMENT_WITHOUT_IDENTIFIER"),
-        bundleElements.getString(elementName)), true));
+        bundleElements.getString(elementName)), true);
       buffer.append(label(elementName.toLowerCase() + index));
     }
     buffer.append(newLine());
@@ -1244,7 +1549,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
     StringBuilder sb = new StringBuilder();
     sb.append(bundleContent.getString("PRIORITY_INTRODUCTION"));
     sb.append(newLine());
-    sb.append(equation(priority.getMath().toLaTeX()));
+    sb.append(equation(toLaTeX(priority.getMath())));
     sb.append(newLine());
     return sb.toString();
   }
@@ -1273,7 +1578,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
       sb.append(newLine());
     }
     sb.append(bundleContent.getString("TRIGGER_CONDITION"));
-    sb.append(equation(trigger.getMath().toLaTeX()));
+    sb.append(equation(toLaTeX(trigger.getMath())));
     sb.append(newLine());
     return sb.toString();
   }
@@ -1288,9 +1593,6 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
    */
   private void formatUnitDefinitions(ListOf<? extends SBase> listOfUnits,
     BufferedWriter buffer) throws IOException, XMLStreamException {
-    if (headTail) {
-      documentHead(listOfUnits.getSBMLDocument(), buffer);
-    }
     List<String> defaults = new Vector<String>();
     UnitDefinition def;
     Model m = listOfUnits.getModel();
@@ -1340,7 +1642,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
       }
     }
     if (0 < lud.size()) {
-      buffer.append(section(bundleElements.getString(lud.getElementName()), true));
+      section(buffer, bundleElements.getString(lud.getElementName()), true);
       buffer.append(MessageFormat.format(
         bundleContent.getString("INTRODUCTION_SUBCOMPONENTS"),
         MessageFormat.format(bundleContent.getString("NUMERALS"), lud.size()),
@@ -1370,14 +1672,11 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
         buffer.append(descriptionBegin);
         format(def, buffer, true);
         if (def.getUnitCount() > 0) {
-          buffer.append(descriptionItem(bundleContent.getString("DEFINITION"), math(format(def))));
+          descriptionItem(buffer, bundleContent.getString("DEFINITION"), math(format(def)));
         }
         buffer.append(descriptionEnd);
       }
     }
-    if (headTail) {
-      documentFoot(lud, buffer);
-    }
   }
 
   /**
@@ -1408,16 +1707,37 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
   @Override
   public void format(Model model, BufferedWriter buffer) throws IOException,
   SBMLException, XMLStreamException {
+    boolean headTail = openContext();
+    try {
+      format(model, buffer, headTail);
+    } finally {
+      closeContext(headTail);
+    }
+  }
+
+  /**
+   * 
+   * @param model
+   * @param buffer
+   * @param headTail
+   *        decides whether this method should write a document head and tail
+   *        for the LaTeX output.
+   * @throws IOException
+   * @throws SBMLException
+   * @throws XMLStreamException
+   */
+  private void format(Model model, BufferedWriter buffer, boolean headTail)
+      throws IOException, SBMLException, XMLStreamException {
     if (headTail) {
       documentHead(model.getSBMLDocument(), buffer);
       // buffer.append("\\tableofcontents");
       buffer.newLine();
-      buffer.append(section(bundleContent.getString("GENERAL_OVERVIEW"), true));
+      section(buffer, bundleContent.getString("GENERAL_OVERVIEW"), true);
     }
     if (model.isSetSBOTerm()) {
-      sboTerms.add(Integer.valueOf(model.getSBOTerm()));
-      String sboModelName = maskSpecialChars(correctQuotationMarks(
-        SBO.getTerm(model.getSBOTerm()).getName(), leftQuotationMark, rightQuotationMark));
+      context().addSBOTerm(model.getSBOTerm());
+      String sboModelName = maskSpecialChars(
+        SBOIndex.getInstance().getName(model.getSBOTerm()), true, true);
       buffer.append(MessageFormat.format(
         bundleContent.getString("SBO_CONCEPT_OF_MODEL"),
         indefiniteArticle(sboModelName.charAt(0)),
@@ -1429,7 +1749,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
       buffer.newLine();
     }
 
-    validator = new OverdeterminationValidator(model);
+    context().initValidator(model);
 
     // buffer.append(subsection("Model History", false));
     formatHistory(model, buffer);
@@ -1498,15 +1818,15 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
         bundleContent.getString("ELEMENT_NOTES"),
         bundleElements.getString(model.getElementName())));
       buffer.append(", enhanced, breakable]");
-      buffer.append(formatHTML(model.getNotes()));
+      formatHTML(model.getNotes(), buffer);
       buffer.append("\\end{tcolorbox}");
       buffer.newLine();
     }
 
     if ((model.getCVTermCount() > 0) && (includeMIRIAM)) {
-      buffer.append(subsection(MessageFormat.format(
+      subsection(buffer, MessageFormat.format(
         bundleContent.getString("ELEMENT_ANNOTATION"),
-        bundleElements.getString(model.getElementName())), false));
+        bundleElements.getString(model.getElementName())), false);
       buffer.append(bundleContent.getString("MODEL_RESOURCES"));
       buffer.newLine();
       buffer.newLine();
@@ -1519,39 +1839,40 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
      * Create content of the report.
      */
     if (includeUnitDefinitionsSection) {
-      formatUnitDefinitions(model.getListOfUnitDefinitions(), buffer);
+      formatSection("unitDefinitions", model.getListOfUnitDefinitions(), buffer);
     }
     if (includeCompartmentTypesSection) {
-      format(model.getListOfCompartmentTypes(), buffer, true);
+      formatSection("compartmentTypes", model.getListOfCompartmentTypes(), buffer);
     }
     if (includeCompartmentsSection) {
-      format(model.getListOfCompartments(), buffer, true);
+      formatSection("compartments", model.getListOfCompartments(), buffer);
     }
     if (includeSpeciesTypesSection) {
-      format(model.getListOfSpeciesTypes(), buffer, true);
+      formatSection("speciesTypes", model.getListOfSpeciesTypes(), buffer);
     }
     if (includeSpeciesSection) {
-      format(model.getListOfSpecies(), buffer, true);
+      formatSection("species", model.getListOfSpecies(), buffer);
     }
     if (includeParametersSection) {
-      format(model.getListOfParameters(), buffer, true);
+      formatSection("parameters", model.getListOfParameters(), buffer);
     }
     if (includeInitialAssignmentsSection) {
-      format(model.getListOfInitialAssignments(), buffer, true);
+      formatSection("initialAssignments", model.getListOfInitialAssignments(), buffer);
     }
     if (includeFunctionDefinitionsSection) {
-      format(model.getListOfFunctionDefinitions(), buffer, true);
+      formatSection("functionDefinitions", model.getListOfFunctionDefinitions(), buffer);
     }
     if (includeRulesSection) {
-      format(model.getListOfRules(), buffer, true);
+      formatSection("rules", model.getListOfRules(), buffer);
     }
     if (includeEventsSection) {
-      formatEvents(model.getListOfEvents(), buffer);
+      formatSection("events", model.getListOfEvents(), buffer);
     }
     if (includeConstraintsSection) {
-      format(model.getListOfConstraints(), buffer, true);
+      formatSection("constraints", model.getListOfConstraints(), buffer);
     }
     if (includeReactionsSection) {
+      chunkBreak(buffer);
       format(model.getListOfReactions(), buffer, true);
     }
 
@@ -1581,10 +1902,29 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
     }
 
     if (headTail) {
+      chunkBreak(buffer);
       documentFoot(model.getSBMLDocument(), buffer);
     }
   }
 
+  /**
+   * Marks a position between two parts of the report, at which the report
+   * may be split for a chunked compilation (see
+   * {@link CompileService#setChunks(int)}). Such positions must not be within
+   * any environment. Nothing is written unless {@link #chunkBreaks} is set.
+   * 
+   * @param buffer
+   * @throws IOException
+   */
+  private void chunkBreak(Writer buffer) throws IOException {
+    if (!chunkBreaks) {
+      return;
+    }
+    buffer.append('\n');
+    buffer.append(CompileService.CHUNK_BREAK);
+    buffer.append('\n');
+  }
+
   /**
    * 
    * @param charAtStart
@@ -1647,10 +1987,31 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
   @Override
   public void format(SBMLDocument doc, BufferedWriter buffer)
       throws IOException, SBMLException, XMLStreamException {
+    boolean opened = openContext();
+    try {
+      formatDocument(doc, buffer);
+    } finally {
+      closeContext(opened);
+    }
+  }
+
+  /**
+   * 
+   * @param doc
+   * @param buffer
+   * @throws IOException
+   * @throws SBMLException
+   * @throws XMLStreamException
+   */
+  private void formatDocument(SBMLDocument doc, BufferedWriter buffer)
+      throws IOException, SBMLException, XMLStreamException {
+    if (checkConsistency) {
+      // The validation runs in the background while the report is written.
+      context().setValidation(ValidationService.submit(doc, validationBackend));
+    }
     /*
      * writing latex head
      */
-    headTail = false;
     documentHead(doc, buffer);
     // buffer.append("\\tableofcontents");
     buffer.newLine();
@@ -1658,7 +2019,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
     /*
      * Overview
      */
-    buffer.append(section(bundleContent.getString("GENERAL_OVERVIEW"), true));
+    section(buffer, bundleContent.getString("GENERAL_OVERVIEW"), true);
     buffer.append(MessageFormat.format(
       bundleContent.getString("SBML_DOCUMENT_INTRODUCTION"),
       Integer.valueOf(doc.getLevel()),
@@ -1670,11 +2031,10 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
      * The model: append model description
      */
     if (doc.getModel() != null) {
-      format(doc.getModel(), buffer);
+      format(doc.getModel(), buffer, false);
     }
 
     documentFoot(doc, buffer);
-    headTail = true;
   }
 
   /**
@@ -1842,6 +2202,21 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
     return checkConsistency;
   }
 
+  /**
+   * @return the backend that performs the consistency check.
+   */
+  public ValidationBackend getValidationBackend() {
+    return validationBackend;
+  }
+
+  /**
+   * @return the cache of report fragments or {@code null} if fragments are
+   *         not reused.
+   */
+  public FragmentCache getFragmentCache() {
+    return fragmentCache;
+  }
+
   /**
    * @return {@code true} if landscape format for the whole document is to be used.
    */
@@ -1887,6 +2262,16 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
     return !typewriter ? mathrm(id) : super.mathtt(id);
   }
 
+  @Override
+  public <A extends Appendable> A mathtt(A out, CharSequence id)
+      throws IOException {
+    if (typewriter) {
+      return super.mathtt(out, id);
+    }
+    out.append(mathrm(id.toString()));
+    return out;
+  }
+
   /**
    * This switch allows to change the way how the reactants, modifiers and
    * products are presented in each reaction. If {@code true}, one table is created
@@ -1915,6 +2300,40 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
     this.checkConsistency = checkConsistency;
   }
 
+  /**
+   * Selects the backend that performs the consistency check if
+   * {@link #isCheckConsistency()} is {@code true}. By default, the online
+   * validator is used.
+   * 
+   * @param validationBackend
+   */
+  public void setValidationBackend(ValidationBackend validationBackend) {
+    this.validationBackend = validationBackend;
+  }
+
+  /**
+   * Marks the positions at which the report may be split for a chunked
+   * compilation (see {@link CompileService#setChunks(int)}).
+   * 
+   * @param chunkBreaks
+   *        {@code false} to leave the report unchanged (default).
+   */
+  public void setChunkBreaks(boolean chunkBreaks) {
+    this.chunkBreaks = chunkBreaks;
+  }
+
+  /**
+   * Reuses the LaTeX code of all sections, reactions and species whose content
+   * did not change since they were written by a previous report with the same
+   * settings. The cache may be shared by several generators.
+   * 
+   * @param fragmentCache
+   *        {@code null} to write every report from scratch (default).
+   */
+  public void setFragmentCache(FragmentCache fragmentCache) {
+    this.fragmentCache = fragmentCache;
+  }
+
   /**
    * This is the font size to be used in this document.
    * 
@@ -2090,6 +2509,16 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
     return !typewriter ? new StringBuffer(id) : super.texttt(id);
   }
 
+  @Override
+  public <A extends Appendable> A texttt(A out, CharSequence id)
+      throws IOException {
+    if (typewriter) {
+      return super.texttt(out, id);
+    }
+    out.append(id);
+    return out;
+  }
+
   /**
    * Writes a document foot for the LaTeX Document for all objects derived from
    * {@see ListOf}.
@@ -2120,44 +2549,11 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
     buffer.append(formatter.appendix());
     buffer.newLine();
     if (checkConsistency) {
-      boolean notImplemented = false;
-      try {
-        doc.checkConsistency();
-      } catch (NotImplementedException exc) {
-        notImplemented = true;
-      }
-      if ((doc.getErrorCount() > 0) || notImplemented) {
-        int i;
-        SBMLError error;
-        Vector<Integer> infos = new Vector<Integer>();
-        Vector<Integer> warnings = new Vector<Integer>();
-        Vector<Integer> fatal = new Vector<Integer>();
-        Vector<Integer> system = new Vector<Integer>();
-        Vector<Integer> xml = new Vector<Integer>();
-        Vector<Integer> internal = new Vector<Integer>();
-        Vector<Integer> errors = new Vector<Integer>();
-        for (i = 0; i < doc.getErrorCount(); i++) {
-          error = doc.getError(i);
-          if (error.isInfo()) {
-            infos.add(Integer.valueOf(i));
-          } else if (error.isWarning()) {
-            warnings.add(Integer.valueOf(i));
-          } else if (error.isFatal()) {
-            fatal.add(Integer.valueOf(i));
-          } else if (error.isSystem()) {
-            system.add(Integer.valueOf(i));
-          } else if (error.isXML()) {
-            xml.add(Integer.valueOf(i));
-          } else if (error.isInternal()) {
-            internal.add(Integer.valueOf(i));
-          } else {
-            // error.isError())
-            errors.add(Integer.valueOf(i));
-          }
-        }
-        buffer.append(section(bundleContent.getString("DOCUMENT_CONSISTENCY_REPORT"), true));
+      ValidationReport report = validate(doc);
+      if ((report != null) && (!report.isSupported() || (report.getProblemCount() > 0))) {
+        section(buffer, bundleContent.getString("DOCUMENT_CONSISTENCY_REPORT"), true);
 
-        if (notImplemented) {
+        if (!report.isSupported()) {
           buffer.append(MessageFormat.format(
             bundleContent.getString("FULL_SBML_VALIDATION_NOT_YET_SUPPORTED"),
             formatter.trademark(),
@@ -2166,29 +2562,38 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
             formatter.link("http://sbml.org", "sbml.org")
               ));
         } else {
+          int count = report.getProblemCount();
           buffer.append(MessageFormat.format(
             bundleContent.getString("SBML_DOCUMENT_ERROR_INTRODUCTION"),
-            MessageFormat.format(bundleContent.getString("NUMERALS"), doc.getErrorCount()),
-            doc.getErrorCount(),
-            href("http://sbml.org/Facilities/Validator", bundleContent.getString("SBML_ONLINE_VALIDATOR"))));
+            MessageFormat.format(bundleContent.getString("NUMERALS"), count),
+            count,
+            validationBackend.isComplete() ? href("http://sbml.org/Facilities/Validator", bundleContent.getString("SBML_ONLINE_VALIDATOR"))
+              : bundleContent.getString("SBML_OFFLINE_VALIDATOR")));
           buffer.newLine();
+          List<Problem> xml = report.getProblems(Severity.XML);
+          List<Problem> fatal = report.getProblems(Severity.FATAL);
+          List<Problem> system = report.getProblems(Severity.SYSTEM);
+          List<Problem> internal = report.getProblems(Severity.INTERNAL);
+          List<Problem> errors = report.getProblems(Severity.ERROR);
+          List<Problem> infos = report.getProblems(Severity.INFO);
+          List<Problem> warnings = report.getProblems(Severity.WARNING);
           if (xml.size() > 0) {
-            problemMessage(xml, doc, MessageFormat.format(bundleContent.getString("LABELED_ELEMENT"), bundleContent
+            problemMessage(xml, MessageFormat.format(bundleContent.getString("LABELED_ELEMENT"), bundleContent
               .getString("XML"), MessageFormat.format(
                 bundleContent.getString("GRAMMATICAL_NUMBER_ERROR"), xml.size())), buffer, bundleContent.getString("ERROR"));
           }
           if (fatal.size() > 0) {
-            problemMessage(fatal, doc, MessageFormat.format(bundleContent.getString("LABELED_ELEMENT"), bundleContent
+            problemMessage(fatal, MessageFormat.format(bundleContent.getString("LABELED_ELEMENT"), bundleContent
               .getString("FATAL"), MessageFormat.format(
                 bundleContent.getString("GRAMMATICAL_NUMBER_ERROR"), fatal.size())), buffer, bundleContent.getString("ERROR"));
           }
           if (system.size() > 0) {
-            problemMessage(system, doc, MessageFormat.format(bundleContent.getString("LABELED_ELEMENT"), bundleContent
+            problemMessage(system, MessageFormat.format(bundleContent.getString("LABELED_ELEMENT"), bundleContent
               .getString("SYSTEM"), MessageFormat.format(
                 bundleContent.getString("GRAMMATICAL_NUMBER_MESSAGE"), system.size())), buffer, bundleContent.getString("ERROR"));
           }
           if (internal.size() > 0) {
-            problemMessage(internal, doc,
+            problemMessage(internal,
               MessageFormat.format(bundleContent.getString("LABELED_ELEMENT"), bundleContent
                 .getString("INTERNAL"), MessageFormat.format(
                   bundleContent.getString("GRAMMATICAL_NUMBER_PROBLEM"), internal.size())),
@@ -2197,7 +2602,6 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
           if (errors.size() > 0) {
             problemMessage(
               errors,
-              doc,
               MessageFormat.format(bundleContent.getString("LABELED_ELEMENT"), bundleContent
                 .getString("ERROR"), MessageFormat.format(
                   bundleContent.getString("GRAMMATICAL_NUMBER_MESSAGE"), errors.size())),
@@ -2206,7 +2610,6 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
           if (infos.size() > 0) {
             problemMessage(
               infos,
-              doc,
               MessageFormat.format(
                 bundleContent.getString("LABELED_ELEMENT"),
                 bundleContent.getString("INFORMATION"),
@@ -2215,7 +2618,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
               buffer, bundleContent.getString("INFORMATION"));
           }
           if (warnings.size() > 0) {
-            problemMessage(warnings, doc, MessageFormat.format(
+            problemMessage(warnings, MessageFormat.format(
               bundleContent.getString("GRAMMATICAL_NUMBER_WARNING"), warnings.size()),
               buffer, bundleContent.getString("WARNING"));
           }
@@ -2223,8 +2626,9 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
       }
     }
 
+    Set<Integer> sboTerms = context().getSBOTerms();
     if (sboTerms.size() > 0) {
-      buffer.append(section(bundleContent.getString("GLOSSARY_OF_ONTOLOGY"), true));
+      section(buffer, bundleContent.getString("GLOSSARY_OF_ONTOLOGY"), true);
       buffer.append(label("sec:glossary"));
       buffer.append(descriptionBegin);
       int sbo[] = new int[sboTerms.size()], i = 0;
@@ -2232,23 +2636,21 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
         sbo[i++] = it.intValue();
       }
       Arrays.sort(sbo);
-      Term term;
+      SBOIndex index = SBOIndex.getInstance();
       String name, def;
       for (int id : sbo) {
-        term = SBO.getTerm(id);
-        if (term != null) {
-          def = SBOTermFormatter.getShortDefinition(term);
-          def = maskSpecialChars(correctQuotationMarks(def, leftQuotationMark,
-            rightQuotationMark));
-          name = maskSpecialChars(correctQuotationMarks(term.getName(),
-            leftQuotationMark, rightQuotationMark));
-          buffer.append(descriptionItem(term.getId(),
-            String.format("\\textbf{%s:} %s%s", name, def, newLine())));
+        name = index.getName(id);
+        if (name != null) {
+          def = index.getShortDefinition(id);
+          def = maskSpecialChars(def, true, true);
+          name = maskSpecialChars(name, true, true);
+          descriptionItem(buffer, "SBO:" + SBO.sboNumberString(id),
+            String.format("\\textbf{%s:} %s%s", name, def, newLine()));
         }
       }
       buffer.append(descriptionEnd);
     }
-    buffer.append(OpenFile.readFile("../locales/literature.bbl"));
+    buffer.append(ReportResources.getText(ReportResources.LITERATURE));
     buffer.append(LaTeX.endDocument());
     buffer.newLine();
   }
@@ -2309,8 +2711,6 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
     buffer.append("  \\usepackage[pdfpagemode={UseOutlines},");
     buffer.newLine();
     String space = "              ";
-    buffer.append(space + "pdftitle={" + titlePrefix + "\"" + title + "\"},");
-    buffer.newLine();
     buffer.append(space + "pdfauthor={" + MessageFormat.format(bundleContent.getString("PRODUCED_BY_SBML2LATEX"), "SBML2LaTeX", SBML2LaTeX.VERSION_NUMBER) + "},");
     buffer.newLine();
     buffer.append(space + "pdfsubject={SBML model summary},");
@@ -2383,6 +2783,20 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
     }
 
     buffer.append("\\tcbset{boxrule=0pt,boxsep=0pt,arc=2mm,toptitle=3mm,top=3mm,left=7mm,right=1mm,pad at break=2mm, colframe=blue!2!white,interior hidden, coltitle=black,fonttitle=\\bfseries\\large,drop fuzzy shadow southeast=gray, overlay unbroken and first={\\node[inner sep=0pt] (logo) at ([xshift=4mm,yshift=-5mm]frame.north west) {\\bccrayon}; \\draw[lightgray,line width=3.5pt] (logo) -- ([xshift=4mm,yshift=1.5mm]frame.south west);  }, overlay middle and last={\\draw[lightgray,line width=3.5pt] ([xshift=4mm,yshift=-1.5mm]frame.north west) -- ([xshift=4mm,yshift=1.5mm]frame.south west); }}");
+    buffer.newLine();
+
+    /*
+     * Everything above only depends on the options of this generator and can
+     * be precompiled. Document-specific declarations follow.
+     */
+    buffer.append(FormatCache.END_OF_DUMP);
+    buffer.newLine();
+    buffer.append("\\ifpdf");
+    buffer.newLine();
+    buffer.append("  \\hypersetup{pdftitle={" + titlePrefix + "\"" + title + "\"}}");
+    buffer.newLine();
+    buffer.append("\\fi");
+    buffer.newLine();
 
     if (includeLayoutSection) {
       // TODO: More general way to include extension package declarations required!
@@ -2397,7 +2811,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
     buffer.append("\\selectlanguage{english}");
     buffer.newLine();
     if (0 < model.getFunctionDefinitionCount()) {
-      buffer.append(OpenFile.readFile("../locales/linebreakdef.sty"));
+      buffer.append(ReportResources.getText(ReportResources.LINEBREAK_DEFINITIONS));
     }
 
     buffer.append("\\definecolor{royalblue}{cmyk}{.93, .79, 0, 0}");
@@ -2478,19 +2892,11 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
    */
   private StringBuffer equation(StringBuffer formula, StringBuffer... formulae) {
     StringBuffer equation = new StringBuffer();
-    if (formula.length() == 0) {
-      return equation;
-    }
-    if (formula.charAt(0) != '$') {
-      equation.append(eqBegin);
-    }
-    equation.append(formula);
-    for (StringBuffer f : formulae) {
-      equation.append(f);
-    }
-    if ((formula.charAt(formula.length() - 1) != '$')
-        && (equation.charAt(equation.length() - 1) != '$')) {
-      equation.append(eqEnd);
+    try {
+      equation(equation, formula, formulae);
+    } catch (IOException exc) {
+      // Cannot happen when writing to memory.
+      throw new IllegalStateException(exc);
     }
     return equation;
   }
@@ -2591,20 +2997,19 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
       if (def.getArgumentCount() > 0) {
         List<String> eqnList = new ArrayList<String>(def.getArgumentCount());
         for (int j = 0; j < def.getArgumentCount(); j++) {
-          eqnList.add(math(def.getArgument(j).toLaTeX()).toString());
+          eqnList.add(math(toLaTeX(def.getArgument(j))).toString());
         }
-        buffer.append(descriptionItem(
+        descriptionItem(buffer,
           MessageFormat.format(bundleContent.getString("GRAMMATICAL_NUMBER_ARGUMENTS"),
-            def.getArgumentCount()), format(eqnList)));
+            def.getArgumentCount()), format(eqnList));
         if (def.getBody() != null) {
-          buffer.append(descriptionItem(bundleContent.getString("MATHEMATICAL_EXPRESSION"),
-            equation(new StringBuffer(def.getBody().toLaTeX()))));
+          descriptionItem(buffer, bundleContent.getString("MATHEMATICAL_EXPRESSION"),
+            equation(new StringBuffer(toLaTeX(def.getBody()))));
         }
       } else if (def.isSetMath()) {
-        buffer.append(descriptionItem(
+        descriptionItem(buffer,
           bundleContent.getString("MATHEMATICAL_FORMULA"),
-          equation(getNameOrID(def, true), new StringBuffer(def.getMath()
-            .toLaTeX()))));
+          equation(getNameOrID(def, true), new StringBuffer(toLaTeX(def.getMath()))));
       }
     }
     buffer.append(descriptionEnd);
@@ -2620,11 +3025,10 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
       throws IOException, SBMLException {
     buffer.append(descriptionBegin);
     format(a, buffer, true);
-    buffer.append(descriptionItem(
+    descriptionItem(buffer,
       bundleElements.getString("derivedUnit"),
-      a.containsUndeclaredUnits() ? bundleContent.getString("CONTAINS_UNDECLARED_UNITS") : math(format(a
-        .getDerivedUnitDefinition()))));
-    buffer.append(descriptionItem("Math", math(a.getMath().toLaTeX())));
+      a.containsUndeclaredUnits() ? bundleContent.getString("CONTAINS_UNDECLARED_UNITS") : math(formatUnits(getDerivedUnit(a))));
+    descriptionItem(buffer, "Math", math(toLaTeX(a.getMath())));
     buffer.append(descriptionEnd);
   }
 
@@ -2670,19 +3074,19 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
         buffer.append("not ");
       }
       String unitDef = "";
-      UnitDefinition unit = c.getDerivedUnitDefinition();
+      UnitDefinition unit = getDerivedUnit(c);
       buffer.append("constant size");
       if (c.isSetSize()) {
         buffer.append(" of ");
         if (c.getSize() - ((int) c.getSize()) == 0) {
           buffer.append(MessageFormat.format(bundleContent.getString("NUMERALS"), (int) c.getSize()));
         } else {
-          buffer.append(math(format(c.getSize())));
+          math(buffer, format(c.getSize()));
         }
       } else if (unit != null) {
         buffer.append(" given in ");
 
-        unitDef = format(unit).toString();
+        unitDef = formatUnits(unit);
         if (unitDef.equals("\\mathrm{l}")) {
           unitDef = "litre";
         } else {
@@ -2717,56 +3121,51 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
   @SuppressWarnings("unchecked")
   private void formatReactions(ListOf<? extends SBase> reactionList,
     BufferedWriter buffer) throws IOException, SBMLException {
-    int reactionIndex, speciesIndex, sReferenceIndex;
+    int reactionIndex, speciesIndex;
     Species species;
-    HashMap<String, Integer> speciesIDandIndex = new HashMap<String, Integer>();
     Model model = reactionList.getModel();
     if (model.getSpeciesCount() > 0) {
-      List<Integer>[] reactantsReaction = new List[model.getSpeciesCount()];
-      List<Integer>[] productsReaction = new List[model.getSpeciesCount()];
-      List<Integer>[] modifiersReaction = new List[model.getSpeciesCount()];
+      SpeciesIncidence incidence = new SpeciesIncidence(model,
+        (ListOf<Reaction>) reactionList);
+      SymbolIndex symbols = new SymbolIndex(model);
       boolean notSubstancePerTimeUnit = false, notExistingKineticLaw = false;
+      boolean missingKineticLaw[] = new boolean[reactionList.size()];
+      boolean invalidKineticLawUnits[] = new boolean[reactionList.size()];
 
-      for (speciesIndex = 0; speciesIndex < model.getSpeciesCount(); speciesIndex++) {
-        speciesIDandIndex.put(model.getSpecies(speciesIndex).getId(),
-          Integer.valueOf(speciesIndex));
-        reactantsReaction[speciesIndex] = new Vector<Integer>();
-        productsReaction[speciesIndex] = new Vector<Integer>();
-        modifiersReaction[speciesIndex] = new Vector<Integer>();
-      }
       for (reactionIndex = 0; reactionIndex < reactionList.size(); reactionIndex++) {
         Reaction r = (Reaction) reactionList.get(reactionIndex);
-        buffer.append(format(r, reactionIndex));
-        if (!r.isSetKineticLaw()) {
-          notExistingKineticLaw = true;
-        } else if (!r.getKineticLaw().getDerivedUnitDefinition()
-            .isVariantOfSubstancePerTime()) {
-          notSubstancePerTimeUnit = true;
+        if (reactionIndex > 0) {
+          // Keep the heading of the section together with its first reaction.
+          chunkBreak(buffer);
         }
-        for (sReferenceIndex = 0; sReferenceIndex < r.getReactantCount(); sReferenceIndex++) {
-          speciesIndex = speciesIDandIndex.get(
-            r.getReactant(sReferenceIndex).getSpecies()).intValue();
-          reactantsReaction[speciesIndex].add(Integer
-            .valueOf(reactionIndex + 1));
-        }
-        for (sReferenceIndex = 0; sReferenceIndex < r.getProductCount(); sReferenceIndex++) {
-          speciesIndex = speciesIDandIndex.get(
-            r.getProduct(sReferenceIndex).getSpecies()).intValue();
-          productsReaction[speciesIndex].add(Integer
-            .valueOf(reactionIndex + 1));
+        String key = (fragmentCache == null) ? null : fragmentKey("reaction",
+          model, Integer.toString(reactionIndex), context().getDigest(r));
+        FragmentCache.Fragment fragment = lookupFragment(key);
+        if (fragment == null) {
+          startFragment(key);
+          String latex = format(r, reactionIndex).toString();
+          int flags = 0;
+          if (!r.isSetKineticLaw()) {
+            flags = MISSING_KINETIC_LAW;
+          } else if (!getDerivedUnit(r.getKineticLaw())
+              .isVariantOfSubstancePerTime()) {
+            flags = INVALID_KINETIC_LAW_UNITS;
+          }
+          fragment = storeFragment(key, latex, flags);
         }
-        for (sReferenceIndex = 0; sReferenceIndex < r.getModifierCount(); sReferenceIndex++) {
-          speciesIndex = speciesIDandIndex.get(
-            r.getModifier(sReferenceIndex).getSpecies()).intValue();
-          modifiersReaction[speciesIndex].add(Integer
-            .valueOf(reactionIndex + 1));
+        buffer.append(fragment.getLaTeX());
+        if ((fragment.getFlags() & MISSING_KINETIC_LAW) != 0) {
+          missingKineticLaw[reactionIndex] = notExistingKineticLaw = true;
+        } else if ((fragment.getFlags() & INVALID_KINETIC_LAW_UNITS) != 0) {
+          invalidKineticLawUnits[reactionIndex] = notSubstancePerTimeUnit = true;
         }
       }
 
       // writing Equations
-      buffer.append(section(MessageFormat.format(
+      chunkBreak(buffer);
+      section(buffer, MessageFormat.format(
         bundleContent.getString("DERIVED_RATE_EQUATIONS"),
-        model.getSpeciesCount()), true));
+        model.getSpeciesCount()), true);
       buffer.append(label("sec:DerivedRateEquations"));
       buffer.newLine();
       buffer.append(MessageFormat.format(
@@ -2807,496 +3206,443 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
 
       for (speciesIndex = 0; speciesIndex < model.getSpeciesCount(); speciesIndex++) {
         species = model.getSpecies(speciesIndex);
-        subsection(species, speciesIndex, buffer);
-        buffer.append(descriptionBegin);
-        format(species, buffer, true);
-        if (species.isSetInitialConcentration()) {
-          String text = format(species.getInitialConcentration()).toString()
-              .replaceAll("\\$", "");
-          if ((model.getUnitDefinition("substance") != null)
-              || species.isSetSubstanceUnits()) {
-            text += "\\;";
-            UnitDefinition ud;
-            if (species.isSetSubstanceUnits()
-                && (model.getUnitDefinition(species.getSubstanceUnits()) == null)) {
-              ud = new UnitDefinition(species.getLevel(), species.getVersion());
-              if (Unit.isUnitKind(species.getSubstanceUnits(),
-                species.getLevel(), species.getVersion())) {
-                Unit u = new Unit(1d, 0, Unit.Kind.valueOf(species.getSubstanceUnits()), 1d, species.getLevel(), species.getVersion());
-                ud.addUnit(u);
-              }
-              // else: something's wrong.
-            } else {
-              ud = new UnitDefinition(
-                species.isSetSubstanceUnits() ? model.getUnitDefinition(species
-                  .getSubstanceUnits())
-                  : model.getUnitDefinition("substance"));
-            }
-            Compartment compartment = model.getCompartment(species
-              .getCompartment());
-            for (int i = 0; i < compartment.getDerivedUnitDefinition().getUnitCount(); i++) {
-              Unit unit = new Unit(compartment.getDerivedUnitDefinition().getUnit(i));
-              unit.setExponent(-unit.getExponent());
-              ud.addUnit(unit);
-            }
-            text += format(ud);
-          }
-          buffer.append(descriptionItem("Initial concentration", math(text)));
-        } else if (species.isSetInitialAmount()) {
-          String text = format(species.getInitialAmount()).toString()
-              .replaceAll("\\$", "");
-          if (species.isSetSubstanceUnits()) {
-            text += "\\;";
-            text += unitTest(species.getSubstanceUnits(), model);
-          } else if (model.getUnitDefinition("substance") != null) {
-            text += "\\;";
-            text += format(model.getUnitDefinition("substance"));
+        if (speciesIndex > 0) {
+          chunkBreak(buffer);
+        }
+        if (fragmentCache == null) {
+          formatSpecies(species, speciesIndex, reactionList, incidence,
+            symbols, missingKineticLaw, invalidKineticLawUnits, buffer);
+          continue;
+        }
+        // The species itself belongs to the environment of the model.
+        StringBuilder reactions = new StringBuilder();
+        for (int role : new int[] {SpeciesIncidence.REACTANT, SpeciesIncidence.PRODUCT, SpeciesIncidence.MODIFIER}) {
+          for (int i = 0; i < incidence.getCount(speciesIndex, role); i++) {
+            reactionIndex = incidence.getReaction(speciesIndex, role, i);
+            reactions.append(reactionIndex);
+            reactions.append(':');
+            reactions.append(context().getDigest(reactionList.get(reactionIndex)));
+            reactions.append(',');
           }
-          buffer.append(descriptionItem("Initial amount", math(text)));
         }
+        String key = fragmentKey("species", model, Integer.toString(speciesIndex), reactions.toString());
+        FragmentCache.Fragment fragment = lookupFragment(key);
+        if (fragment == null) {
+          StringWriter sw = new StringWriter();
+          BufferedWriter bw = new BufferedWriter(sw);
+          startFragment(key);
+          formatSpecies(species, speciesIndex, reactionList, incidence,
+            symbols, missingKineticLaw, invalidKineticLawUnits, bw);
+          bw.close();
+          fragment = storeFragment(key, sw.toString(), 0);
+        }
+        buffer.append(fragment.getLaTeX());
+      }
+      buffer.newLine();
+    }
+  }
 
-        boolean isSetCharge = false;
-        int charge = 0;
-        String formula = null;
+  /**
+   * Describes one species and its rate of change.
+   * 
+   * @param species
+   * @param speciesIndex
+   * @param reactionList
+   * @param incidence
+   * @param symbols
+   * @param missingKineticLaw
+   *        tells for each reaction if it does not have a kinetic law.
+   * @param invalidKineticLawUnits
+   *        tells for each reaction if the units of its kinetic law are not
+   *        substance per time.
+   * @param buffer
+   * @throws IOException
+   * @throws SBMLException
+   */
+  private void formatSpecies(Species species, int speciesIndex,
+    ListOf<? extends SBase> reactionList, SpeciesIncidence incidence,
+    SymbolIndex symbols, boolean missingKineticLaw[],
+    boolean invalidKineticLawUnits[], BufferedWriter buffer)
+        throws IOException, SBMLException {
+    Model model = species.getModel();
+    int reactionIndex;
+    subsection(species, speciesIndex, buffer);
+    buffer.append(descriptionBegin);
+    format(species, buffer, true);
+    if (species.isSetInitialConcentration()) {
+      String text = format(species.getInitialConcentration()).toString()
+          .replaceAll("\\$", "");
+      if ((model.getUnitDefinition("substance") != null)
+          || species.isSetSubstanceUnits()) {
+        text += "\\;";
+        text += formatConcentrationUnits(species, model);
+      }
+      descriptionItem(buffer, "Initial concentration", math(text));
+    } else if (species.isSetInitialAmount()) {
+      String text = format(species.getInitialAmount()).toString()
+          .replaceAll("\\$", "");
+      if (species.isSetSubstanceUnits()) {
+        text += "\\;";
+        text += unitTest(species.getSubstanceUnits(), model);
+      } else if (model.getUnitDefinition("substance") != null) {
+        text += "\\;";
+        text += formatUnits(model.getUnitDefinition("substance"));
+      }
+      descriptionItem(buffer, "Initial amount", math(text));
+    }
 
-        SBasePlugin sbPlug = species.getPlugin(FBCConstants.getNamespaceURI(species.getLevel(), species.getVersion()));
-        if (sbPlug != null) {
-          FBCSpeciesPlugin fbcSpecies = (FBCSpeciesPlugin) sbPlug;
-          if (fbcSpecies.isSetCharge()) {
-            isSetCharge = true;
-            charge = fbcSpecies.getCharge();
-          }
-          if (fbcSpecies.isSetChemicalFormula()) {
-            formula = fbcSpecies.getChemicalFormula();
-          }
-        }
+    boolean isSetCharge = false;
+    int charge = 0;
+    String formula = null;
 
-        if (species.isSetCharge()) {
-          charge = species.getCharge();
-        }
-        if (isSetCharge) {
-          buffer.append(descriptionItem("Charge",
-            Integer.toString(charge)));
-        }
-        if (formula != null) {
-          buffer.append(descriptionItem("Chemical formula",
-            "\\ce{" + formula + "}"));
-        }
+    SBasePlugin sbPlug = species.getPlugin(FBCConstants.getNamespaceURI(species.getLevel(), species.getVersion()));
+    if (sbPlug != null) {
+      FBCSpeciesPlugin fbcSpecies = (FBCSpeciesPlugin) sbPlug;
+      if (fbcSpecies.isSetCharge()) {
+        isSetCharge = true;
+        charge = fbcSpecies.getCharge();
+      }
+      if (fbcSpecies.isSetChemicalFormula()) {
+        formula = fbcSpecies.getChemicalFormula();
+      }
+    }
 
-        if (species.isSetSpeciesType()) {
-          SpeciesType type = model.getSpeciesType(species.getSpeciesType());
-          StringBuffer text = new StringBuffer(
-            texttt(maskSpecialChars(type.getId())));
-          if (type.isSetName()) {
-            text.append(" (");
-            text.append(maskSpecialChars(type.getName()));
-            text.append(")");
-          }
-          buffer.append(descriptionItem("Species type", text));
-        }
-        // if (species.getBoundaryCondition()) {
-        // buffer.append("\\item[Boundary condition] ");
-        // buffer.append(yes);
-        // buffer.newLine();
-        // }
-        // if (species.getConstant()) {
-        // buffer.append("\\item[Constant] ");
-        // buffer.append(yes);
-        // buffer.newLine();
-        // }
-
-        int i, j;
-
-        // ======= I N I T I A L A S S I G N M E N T S===========
-
-        boolean hasInitialAssignment = false;
-        for (i = 0; (i < model.getInitialAssignmentCount()); i++) {
-          hasInitialAssignment = model.getInitialAssignment(i).getVariable().equals(species.getId());
-          if (hasInitialAssignment) {
-            break;
-          }
-        }
-        if (hasInitialAssignment) {
-          buffer.append(descriptionItem(
-            bundleElements.getString("initialAssignment") + bundleContent.getString("WHITE_SPACE"),
-            Integer.toString(i)));
-        }
+    if (species.isSetCharge()) {
+      charge = species.getCharge();
+    }
+    if (isSetCharge) {
+      descriptionItem(buffer, "Charge",
+        Integer.toString(charge));
+    }
+    if (formula != null) {
+      descriptionItem(buffer, "Chemical formula",
+        "\\ce{" + formula + "}");
+    }
+
+    if (species.isSetSpeciesType()) {
+      SpeciesType type = model.getSpeciesType(species.getSpeciesType());
+      StringBuffer text = new StringBuffer(
+        texttt(maskSpecialChars(type.getId())));
+      if (type.isSetName()) {
+        text.append(" (");
+        text.append(maskSpecialChars(type.getName()));
+        text.append(")");
+      }
+      descriptionItem(buffer, "Species type", text);
+    }
+    // if (species.getBoundaryCondition()) {
+    // buffer.append("\\item[Boundary condition] ");
+    // buffer.append(yes);
+    // buffer.newLine();
+    // }
+    // if (species.getConstant()) {
+    // buffer.append("\\item[Constant] ");
+    // buffer.append(yes);
+    // buffer.newLine();
+    // }
+
+    int i;
+
+    // ======= I N I T I A L A S S I G N M E N T S===========
+
+    i = symbols.getInitialAssignment(species.getId());
+    if (i >= 0) {
+      descriptionItem(buffer,
+        bundleElements.getString("initialAssignment") + bundleContent.getString("WHITE_SPACE"),
+        Integer.toString(i));
+    }
 
-        // =========== R U L E S and E V E N T S =================
-
-        // Events, in which this species is involved in
-        Vector<String> eventsInvolved = new Vector<String>();
-        Event event = null;
-        for (i = 0; i < model.getEventCount(); i++) {
-          event = model.getEvent(i);
-          for (j = 0; j < event.getEventAssignmentCount(); j++) {
-            if (event.getEventAssignment(j).getVariable()
-                .equals(species.getId())) {
-              eventsInvolved.add(event.isSetId() ? event.getId() : Integer
-                .toString(i));
+    // =========== R U L E S and E V E N T S =================
+
+    // Events, in which this species is involved in
+    int events[] = symbols.getEvents(species.getId());
+    List<String> eventsInvolved = new ArrayList<String>(events.length);
+    Event event = null;
+    for (i = 0; i < events.length; i++) {
+      event = model.getEvent(events[i]);
+      eventsInvolved.add(event.isSetId() ? event.getId() : Integer
+        .toString(events[i]));
+    }
+    if (eventsInvolved.size() > 0) {
+      List<String> evtList = new ArrayList<String>(eventsInvolved.size());
+      for (String id : eventsInvolved) {
+        evtList.add(hyperref(event.getElementName().toLowerCase() + id, texttt(maskSpecialChars(id))).toString());
+      }
+      descriptionItem(buffer, MessageFormat.format(
+        bundleContent.getString("INVOLVED_IN_EVENTS"), evtList.size()),
+        format(evtList));
+
+      // buffer.append(" influence");
+      // if (eventsInvolved.size() == 1)
+      // buffer.append('s');
+      // buffer.append(" the rate of change of this species.");
+      buffer.newLine();
+    }
+
+    /*
+     * Rules
+     */
+
+    int rulesInvolved[] = symbols.getRulesDetermining(species.getId());
+    if (rulesInvolved.length > 0) {
+      buffer.append("\\item[Involved in rule");
+      if (rulesInvolved.length > 1) {
+        buffer.append('s');
+      }
+      buffer.append("] ");
+      List<String> ruleList = new ArrayList<String>(rulesInvolved.length);
+      for (i = 0; i < rulesInvolved.length; i++) {
+        int index = rulesInvolved[i];
+        ruleList.add(hyperref("rule" + index, "Rule " + index).toString());
+      }
+      buffer.append(format(ruleList));
+      // buffer.append(" determine");
+      // if (rulesInvolved.length == 1)
+      // buffer.append('s');
+      // buffer.append(" the rate of change of this species.");
+      buffer.newLine();
+    }
+    buffer.append(descriptionEnd);
+
+    /*
+     * Derived Rate of Change
+     */
+
+    StringWriter equation = new StringWriter();
+    BufferedWriter equationBW = new BufferedWriter(equation);
+    for (i = 0; i < incidence.getCount(speciesIndex, SpeciesIncidence.PRODUCT); i++) {
+      reactionIndex = incidence.getReaction(speciesIndex, SpeciesIncidence.PRODUCT, i);
+      Reaction r = (Reaction) reactionList.get(reactionIndex);
+      equationBW.flush();
+      if (equation.getBuffer().length() > 0) {
+        equationBW.append(" + ");
+      }
+      formatStoichiometry(r, incidence, speciesIndex, SpeciesIncidence.PRODUCT, i, equationBW);
+      formatVelocity(r, reactionIndex + 1, invalidKineticLawUnits[reactionIndex],
+        missingKineticLaw[reactionIndex], equationBW);
+    }
+    for (i = 0; i < incidence.getCount(speciesIndex, SpeciesIncidence.REACTANT); i++) {
+      reactionIndex = incidence.getReaction(speciesIndex, SpeciesIncidence.REACTANT, i);
+      Reaction r = (Reaction) reactionList.get(reactionIndex);
+      equationBW.append('-');
+      formatStoichiometry(r, incidence, speciesIndex, SpeciesIncidence.REACTANT, i, equationBW);
+      formatVelocity(r, reactionIndex + 1, invalidKineticLawUnits[reactionIndex],
+        missingKineticLaw[reactionIndex], equationBW);
+    }
+    equationBW.close();
+
+    final int numReactionsInvolved = incidence.getCount(speciesIndex);
+
+    if (species.getBoundaryCondition()) {
+      if (species.getConstant()) {
+        // never changes
+        if (0 < numReactionsInvolved) {
+          formatReactionsInvolved(reactionList, incidence, speciesIndex, buffer);
+          buffer.append(MessageFormat.format(
+            bundleContent.getString("SPECIES_NOT_INFLUENCED_BY_REACTIONS"),
+            numReactionsInvolved, 0));
+        }
+        buffer.append(eqBegin);
+        buffer.append("\\frac{\\mathrm d}{\\mathrm dt} ");
+        buffer.append(getNameOrID(species, true));
+        buffer.append(" = 0");
+        buffer.append(eqEnd);
+        if ((rulesInvolved.length > 0) || (eventsInvolved.size() > 0)) {
+          buffer.append("This species' quantity is affected by ");
+          if (rulesInvolved.length > 0) {
+            buffer.append(MessageFormat.format(bundleContent.getString("NUMERALS"), rulesInvolved.length));
+            buffer.append(" rule");
+            if (rulesInvolved.length > 1) {
+              buffer.append('s');
+            }
+            if (eventsInvolved.size() > 0) {
+              buffer.append(" and");
             }
           }
-        }
-        if (eventsInvolved.size() > 0) {
-          List<String> evtList = new ArrayList<String>(eventsInvolved.size());
-          for (String id : eventsInvolved) {
-            evtList.add(hyperref(event.getElementName().toLowerCase() + id, texttt(maskSpecialChars(id))).toString());
+          if (eventsInvolved.size() > 0) {
+            buffer.append(MessageFormat.format(bundleContent.getString("NUMERALS"), eventsInvolved.size()));
+            buffer.append(" event");
+            if (eventsInvolved.size() > 1) {
+              buffer.append('s');
+            }
           }
-          buffer.append(descriptionItem(MessageFormat.format(
-            bundleContent.getString("INVOLVED_IN_EVENTS"), evtList.size()),
-            format(evtList)));
-
-          // buffer.append(" influence");
-          // if (eventsInvolved.size() == 1)
-          // buffer.append('s');
-          // buffer.append(" the rate of change of this species.");
+          buffer.append(". Please verify this SBML document.");
           buffer.newLine();
         }
-
-        /*
-         * Rules
-         */
-
-        List<Integer> rulesInvolved = new Vector<Integer>();
-        for (i = 0; i < model.getRuleCount(); i++) {
-          Rule rule = model.getRule(i);
-          if (rule instanceof AlgebraicRule) {
-            if (contains(rule.getMath(), species.getId())) {
-              rulesInvolved.add(Integer.valueOf(i));
+      } else {
+        // changes only due to rules and events
+        if (numReactionsInvolved > 0) {
+          formatReactionsInvolved(reactionList, incidence, speciesIndex, buffer);
+        }
+        if ((rulesInvolved.length > 0) || (eventsInvolved.size() > 0)) {
+          if (numReactionsInvolved == 1) {
+            buffer.append(". Not this but ");
+          } else if (numReactionsInvolved > 1) {
+            buffer.append(". Not these but ");
+          }
+          if (rulesInvolved.length > 0) {
+            String number = MessageFormat.format(bundleContent.getString("NUMERALS"), rulesInvolved.length);
+            if (numReactionsInvolved == 0) {
+              number = firstLetterUpperCase(number);
             }
-          } else {
-            Assignment a = (Assignment) rule;
-            if (a.getVariable().equals(species.getId())) {
-              rulesInvolved.add(Integer.valueOf(i));
+            buffer.append(number);
+            buffer.append(" rule");
+            if (rulesInvolved.length > 1) {
+              buffer.append('s');
+            }
+            if (eventsInvolved.size() > 0) {
+              buffer.append(" together with ");
             }
           }
-        }
-        if (rulesInvolved.size() > 0) {
-          buffer.append("\\item[Involved in rule");
-          if (rulesInvolved.size() > 1) {
+          if (eventsInvolved.size() > 0) {
+            String number = MessageFormat.format(bundleContent.getString("NUMERALS"), eventsInvolved.size());
+            if (numReactionsInvolved == 0) {
+              number = firstLetterLowerCase(number);
+            }
+            buffer.append(number);
+            buffer.append(" event");
+            if (eventsInvolved.size() > 1) {
+              buffer.append('s');
+            }
+          }
+          if (rulesInvolved.length == 0) {
+            buffer.append(" influence");
+          } else {
+            buffer.append(" determine");
+          }
+          if (eventsInvolved.size() + rulesInvolved.length == 1) {
             buffer.append('s');
           }
-          buffer.append("] ");
-          List<String> ruleList = new ArrayList<String>(rulesInvolved.size());
-          for (i = 0; i < rulesInvolved.size(); i++) {
-            int index = rulesInvolved.get(i);
-            ruleList.add(hyperref("rule" + index, "Rule " + index).toString());
+          buffer.append(MessageFormat.format(
+            bundleContent.getString("SPECIES_INFLUENCED_BY_RULES_OR_EVENTS"),
+            numReactionsInvolved));
+        } else {
+          if (numReactionsInvolved > 0) {
+            buffer.append(MessageFormat.format(
+              bundleContent.getString("SPECIES_NOT_INFLUENCED_BY_REACTIONS"),
+              numReactionsInvolved, 1));
           }
-          buffer.append(format(ruleList));
-          // buffer.append(" determine");
-          // if (rulesInvolved.size() == 1)
-          // buffer.append('s');
-          // buffer.append(" the rate of change of this species.");
-          buffer.newLine();
+          buffer.append(eqBegin);
+          buffer.append("\\frac{\\mathrm d}{\\mathrm dt} ");
+          buffer.append(getNameOrID(species, true));
+          buffer.append(" = 0");
+          buffer.append(eqEnd);
         }
-        buffer.append(descriptionEnd);
-
-        /*
-         * Derived Rate of Change
-         */
-
-        StringWriter equation = new StringWriter();
-        BufferedWriter equationBW = new BufferedWriter(equation);
-        ASTNode ast;
-        for (i = 0; i < productsReaction[speciesIndex].size(); i++) {
-          reactionIndex = productsReaction[speciesIndex].get(i);
-          Reaction r = model.getReaction(reactionIndex - 1);
-          notSubstancePerTimeUnit = notExistingKineticLaw = false;
-          if (r != null) {
-            if (r.isSetKineticLaw()) {
-              notSubstancePerTimeUnit = !r.getKineticLaw()
-                  .getDerivedUnitDefinition().isVariantOfSubstancePerTime();
-            } else {
-              notExistingKineticLaw = true;
-            }
-          } else {
-            notExistingKineticLaw = true;
+      }
+    } else { // not boundary condition.
+      int numModification = incidence.getCount(speciesIndex, SpeciesIncidence.MODIFIER);
+      if (species.getConstant()) {
+        // never changes, cannot be reactant or product and no
+        // rules; but can be a modifier of reactions
+        if ((rulesInvolved.length == eventsInvolved.size())
+            && (numReactionsInvolved - numModification == 0)
+            && (numReactionsInvolved - numModification == rulesInvolved.length)) {
+          if (0 < numModification) {
+            formatReactionsInvolved(reactionList, incidence, speciesIndex, buffer);
+            buffer.append('.');
+            buffer.newLine();
           }
-          equationBW.flush();
-          if (equation.getBuffer().length() > 0) {
-            equationBW.append(" + ");
+          buffer.append(eqBegin);
+          buffer.append("\\frac{\\mathrm d}{\\mathrm dt} ");
+          buffer.append(getNameOrID(species, true));
+          buffer.append(" = 0");
+          buffer.append(eqEnd);
+        } else {
+          buffer.append("As this species is constant and its boundary condition is ");
+          texttt(buffer, bundleContent.getString("FALSE"));
+          buffer.append(" it cannot be involved in");
+          boolean comma = false;
+          if (rulesInvolved.length > 0) {
+            buffer.append(" any rules");
+            comma = true;
           }
-          SpeciesReference product = r.getProductForSpecies(species.getId());
-          if (product.isSetStoichiometryMath()) {
-            ast = product.getStoichiometryMath().getMath();
-            if ((ast.getType() == ASTNode.Type.PLUS)
-                || (ast.getType() == ASTNode.Type.MINUS)) {
-              equationBW.append(brackets(ast.toLaTeX()));
+          if (eventsInvolved.size() > 0) {
+            if (comma) {
+              buffer.append(bundleContent.getString("SERIES_SEPARATOR"));
             } else {
-              equationBW.append(ast.toLaTeX());
+              comma = true;
             }
-          } else {
-            double doubleStoch = product.getStoichiometry();
-            if (doubleStoch != 1d) {
-              equationBW.append(format(doubleStoch).toString().replaceAll("\\$", ""));
+            buffer.append(" any events");
+          }
+          if (numReactionsInvolved - numModification > 0) {
+            if (comma) {
+              buffer.append(" or");
             }
+            buffer.append(" any reactions except it acts as as a modifier");
           }
-          formatVelocity(r, reactionIndex, notSubstancePerTimeUnit,
-            notExistingKineticLaw, equationBW);
+          buffer.append(". Please verify this SBML document.");
         }
-        for (i = 0; i < reactantsReaction[speciesIndex].size(); i++) {
-          reactionIndex = reactantsReaction[speciesIndex].get(i) - 1;
-          Reaction r = model.getReaction(reactionIndex);
-          notSubstancePerTimeUnit = notExistingKineticLaw = false;
-          if (r != null) {
-            KineticLaw kl = r.getKineticLaw();
-            if (kl != null) {
-              notSubstancePerTimeUnit = !kl.getDerivedUnitDefinition()
-                  .isVariantOfSubstancePerTime();
-            } else {
-              notExistingKineticLaw = true;
+      } else { // not constant
+        // changes by reactions xor rules; and events
+        if (rulesInvolved.length > 0) {
+          boolean allAlgebraic = true;
+          for (i = 0; i < rulesInvolved.length; i++) {
+            if (!(model.getRule(rulesInvolved[i]) instanceof AlgebraicRule)) {
+              allAlgebraic = false;
             }
-          } else {
-            notExistingKineticLaw = true;
           }
-
-          SpeciesReference reactant = r.getReactantForSpecies(species.getId());
-          equationBW.append('-');
-          if (reactant.isSetStoichiometryMath()) {
-            ast = reactant.getStoichiometryMath().getMath();
-            if (ast.getType() == ASTNode.Type.PLUS
-                || ast.getType() == ASTNode.Type.MINUS) {
-              equationBW.append(brackets(ast.toLaTeX()));
-            } else {
-              equationBW.append(ast.toLaTeX());
-            }
+          String number = MessageFormat.format(bundleContent.getString("NUMERALS"), rulesInvolved.length);
+          if (0 < numReactionsInvolved) {
+            formatReactionsInvolved(reactionList, incidence, speciesIndex, buffer);
+            buffer.append(" and is also involved in ");
           } else {
-            double doubleStoch = reactant.getStoichiometry();
-            if (doubleStoch != 1d) {
-              equationBW.append(format(doubleStoch).toString().replaceAll(
-                "\\$", ""));
-            }
+            number = firstLetterUpperCase(number);
           }
-          formatVelocity(r, reactionIndex + 1, notSubstancePerTimeUnit,
-            notExistingKineticLaw, equationBW);
-        }
-        equationBW.close();
-
-        final int numReactionsInvolved = productsReaction[speciesIndex]
-            .size()
-            + modifiersReaction[speciesIndex].size()
-            + reactantsReaction[speciesIndex].size();
-
-        if (species.getBoundaryCondition()) {
-          if (species.getConstant()) {
-            // never changes
-            if (0 < numReactionsInvolved) {
-              formatReactionsInvolved(model, speciesIndex, reactantsReaction,
-                productsReaction, modifiersReaction, buffer);
-              buffer.append(MessageFormat.format(
-                bundleContent.getString("SPECIES_NOT_INFLUENCED_BY_REACTIONS"),
-                numReactionsInvolved, 0));
+          buffer.append(number);
+          if (allAlgebraic) {
+            buffer.append(" algebraic");
+          }
+          buffer.append(" rule");
+          if (rulesInvolved.length > 1) {
+            buffer.append('s');
+          }
+          if (0 < numReactionsInvolved) {
+            buffer.append(" that");
+          }
+          if (numReactionsInvolved - numModification == 0) {
+            buffer.append(" determine");
+            if (rulesInvolved.length == 1) {
+              buffer.append('s');
             }
+            buffer.append(" this species' quantity.");
+          } else if (!allAlgebraic) {
+            buffer.append(". Please verify this SBML document.");
+          } else {
+            buffer.append('.');
             buffer.append(eqBegin);
             buffer.append("\\frac{\\mathrm d}{\\mathrm dt} ");
             buffer.append(getNameOrID(species, true));
-            buffer.append(" = 0");
-            buffer.append(eqEnd);
-            if ((rulesInvolved.size() > 0) || (eventsInvolved.size() > 0)) {
-              buffer.append("This species' quantity is affected by ");
-              if (rulesInvolved.size() > 0) {
-                buffer.append(MessageFormat.format(bundleContent.getString("NUMERALS"), rulesInvolved.size()));
-                buffer.append(" rule");
-                if (rulesInvolved.size() > 1) {
-                  buffer.append('s');
-                }
-                if (eventsInvolved.size() > 0) {
-                  buffer.append(" and");
-                }
-              }
-              if (eventsInvolved.size() > 0) {
-                buffer.append(MessageFormat.format(bundleContent.getString("NUMERALS"), eventsInvolved.size()));
-                buffer.append(" event");
-                if (eventsInvolved.size() > 1) {
-                  buffer.append('s');
-                }
-              }
-              buffer.append(". Please verify this SBML document.");
-              buffer.newLine();
-            }
-          } else {
-            // changes only due to rules and events
-            if (numReactionsInvolved > 0) {
-              formatReactionsInvolved(model, speciesIndex, reactantsReaction,
-                productsReaction, modifiersReaction, buffer);
-            }
-            if ((rulesInvolved.size() > 0) || (eventsInvolved.size() > 0)) {
-              if (numReactionsInvolved == 1) {
-                buffer.append(". Not this but ");
-              } else if (numReactionsInvolved > 1) {
-                buffer.append(". Not these but ");
-              }
-              if (rulesInvolved.size() > 0) {
-                String number = MessageFormat.format(bundleContent.getString("NUMERALS"), rulesInvolved.size());
-                if (numReactionsInvolved == 0) {
-                  number = firstLetterUpperCase(number);
-                }
-                buffer.append(number);
-                buffer.append(" rule");
-                if (rulesInvolved.size() > 1) {
-                  buffer.append('s');
-                }
-                if (eventsInvolved.size() > 0) {
-                  buffer.append(" together with ");
-                }
-              }
-              if (eventsInvolved.size() > 0) {
-                String number = MessageFormat.format(bundleContent.getString("NUMERALS"), eventsInvolved.size());
-                if (numReactionsInvolved == 0) {
-                  number = firstLetterLowerCase(number);
-                }
-                buffer.append(number);
-                buffer.append(" event");
-                if (eventsInvolved.size() > 1) {
-                  buffer.append('s');
-                }
-              }
-              if (rulesInvolved.size() == 0) {
-                buffer.append(" influence");
-              } else {
-                buffer.append(" determine");
-              }
-              if (eventsInvolved.size() + rulesInvolved.size() == 1) {
-                buffer.append('s');
-              }
-              buffer.append(MessageFormat.format(
-                bundleContent.getString("SPECIES_INFLUENCED_BY_RULES_OR_EVENTS"),
-                numReactionsInvolved));
+            buffer.append(" = ");
+            if (equation.getBuffer().length() > 0) {
+              buffer.append(equation.getBuffer());
             } else {
-              if (numReactionsInvolved > 0) {
-                buffer.append(MessageFormat.format(
-                  bundleContent.getString("SPECIES_NOT_INFLUENCED_BY_REACTIONS"),
-                  numReactionsInvolved, 1));
-              }
-              buffer.append(eqBegin);
-              buffer.append("\\frac{\\mathrm d}{\\mathrm dt} ");
-              buffer.append(getNameOrID(species, true));
-              buffer.append(" = 0");
-              buffer.append(eqEnd);
+              buffer.append('0');
             }
+            buffer.append(eqEnd);
           }
-        } else { // not boundary condition.
-          int numModification = modifiersReaction[speciesIndex].size();
-          if (species.getConstant()) {
-            // never changes, cannot be reactant or product and no
-            // rules; but can be a modifier of reactions
-            if ((rulesInvolved.size() == eventsInvolved.size())
-                && (numReactionsInvolved - numModification == 0)
-                && (numReactionsInvolved - numModification == rulesInvolved
-                .size())) {
-              if (0 < numModification) {
-                formatReactionsInvolved(model, speciesIndex, reactantsReaction,
-                  productsReaction, modifiersReaction, buffer);
-                buffer.append('.');
-                buffer.newLine();
-              }
-              buffer.append(eqBegin);
-              buffer.append("\\frac{\\mathrm d}{\\mathrm dt} ");
-              buffer.append(getNameOrID(species, true));
-              buffer.append(" = 0");
-              buffer.append(eqEnd);
-            } else {
-              buffer.append("As this species is constant and its boundary condition is ");
-              buffer.append(texttt(bundleContent.getString("FALSE")));
-              buffer.append(" it cannot be involved in");
-              boolean comma = false;
-              if (rulesInvolved.size() > 0) {
-                buffer.append(" any rules");
-                comma = true;
-              }
-              if (eventsInvolved.size() > 0) {
-                if (comma) {
-                  buffer.append(bundleContent.getString("SERIES_SEPARATOR"));
-                } else {
-                  comma = true;
-                }
-                buffer.append(" any events");
-              }
-              if (numReactionsInvolved - numModification > 0) {
-                if (comma) {
-                  buffer.append(" or");
-                }
-                buffer.append(" any reactions except it acts as as a modifier");
-              }
-              buffer.append(". Please verify this SBML document.");
-            }
-          } else { // not constant
-            // changes by reactions xor rules; and events
-            if (rulesInvolved.size() > 0) {
-              boolean allAlgebraic = true;
-              for (Iterator<Integer> iterator = rulesInvolved.iterator(); iterator
-                  .hasNext();) {
-                if (!(model.getRule(iterator.next()) instanceof AlgebraicRule)) {
-                  allAlgebraic = false;
-                }
-              }
-              String number = MessageFormat.format(bundleContent.getString("NUMERALS"), rulesInvolved.size());
-              if (0 < numReactionsInvolved) {
-                formatReactionsInvolved(model, speciesIndex, reactantsReaction,
-                  productsReaction, modifiersReaction, buffer);
-                buffer.append(" and is also involved in ");
-              } else {
-                number = firstLetterUpperCase(number);
-              }
-              buffer.append(number);
-              if (allAlgebraic) {
-                buffer.append(" algebraic");
-              }
-              buffer.append(" rule");
-              if (rulesInvolved.size() > 1) {
-                buffer.append('s');
-              }
-              if (0 < numReactionsInvolved) {
-                buffer.append(" that");
-              }
-              if (numReactionsInvolved - numModification == 0) {
-                buffer.append(" determine");
-                if (rulesInvolved.size() == 1) {
-                  buffer.append('s');
-                }
-                buffer.append(" this species' quantity.");
-              } else if (!allAlgebraic) {
-                buffer.append(". Please verify this SBML document.");
-              } else {
-                buffer.append('.');
-                buffer.append(eqBegin);
-                buffer.append("\\frac{\\mathrm d}{\\mathrm dt} ");
-                buffer.append(getNameOrID(species, true));
-                buffer.append(" = ");
-                if (equation.getBuffer().length() > 0) {
-                  buffer.append(equation.getBuffer());
-                } else {
-                  buffer.append('0');
-                }
-                buffer.append(eqEnd);
-              }
-              buffer.newLine();
-            } else { // not involved in any rules.
-              if (numReactionsInvolved == 0) {
-                buffer.append(bundleContent.getString("SPECIES_NOT_INVOLVED_IN_REACTIONS"));
-              } else {
-                formatReactionsInvolved(model, speciesIndex, reactantsReaction,
-                  productsReaction, modifiersReaction, buffer);
-                buffer.append('.');
-                buffer.newLine();
-              }
-              buffer.append(eqBegin);
-              buffer.append("\\frac{\\mathrm d}{\\mathrm dt} ");
-              buffer.append(getNameOrID(species, true));
-              buffer.append(" = ");
-              buffer.append((equation.getBuffer().length() > 0) ? equation.getBuffer() : "0");
-              buffer.append(eqEnd);
-            }
-            if (eventsInvolved.size() > 0) {
-              buffer.append(MessageFormat.format(
-                bundleContent.getString("EVENTS_INFLUENCING_SPECIES"),
-                MessageFormat.format(bundleContent.getString("NUMERALS"), eventsInvolved.size()),
-                eventsInvolved.size()));
-            }
+          buffer.newLine();
+        } else { // not involved in any rules.
+          if (numReactionsInvolved == 0) {
+            buffer.append(bundleContent.getString("SPECIES_NOT_INVOLVED_IN_REACTIONS"));
+          } else {
+            formatReactionsInvolved(reactionList, incidence, speciesIndex, buffer);
+            buffer.append('.');
+            buffer.newLine();
           }
+          buffer.append(eqBegin);
+          buffer.append("\\frac{\\mathrm d}{\\mathrm dt} ");
+          buffer.append(getNameOrID(species, true));
+          buffer.append(" = ");
+          buffer.append((equation.getBuffer().length() > 0) ? equation.getBuffer() : "0");
+          buffer.append(eqEnd);
+        }
+        if (eventsInvolved.size() > 0) {
+          buffer.append(MessageFormat.format(
+            bundleContent.getString("EVENTS_INFLUENCING_SPECIES"),
+            MessageFormat.format(bundleContent.getString("NUMERALS"), eventsInvolved.size()),
+            eventsInvolved.size()));
         }
       }
-      buffer.newLine();
     }
   }
 
@@ -3433,10 +3779,10 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
         for (i = 0; i < r.getReactantCount(); i++) {
           SpeciesReference reactant = r.getReactant(i);
           if (r.getReactant(i).isSetSBOTerm()) {
-            reactString.append(texttt(maskSpecialChars(reactant.getSpecies())));
+            maskedTexttt(reactString, reactant.getSpecies());
             reactString.append(" (");
             reactString.append(SBO.sboNumberString(reactant.getSBOTerm()));
-            sboTerms.add(Integer.valueOf(reactant.getSBOTerm()));
+            context().addSBOTerm(reactant.getSBOTerm());
             reactString.append(')');
             if (--hasSBOReactants > 0) {
               reactString.append(bundleContent.getString("SERIES_SEPARATOR"));
@@ -3454,10 +3800,10 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
         for (i = 0; i < r.getProductCount(); i++) {
           SpeciesReference product = r.getProduct(i);
           if (r.getProduct(i).isSetSBOTerm()) {
-            reactString.append(texttt(maskSpecialChars(product.getSpecies())));
+            maskedTexttt(reactString, product.getSpecies());
             reactString.append(" (");
             reactString.append(SBO.sboNumberString(product.getSBOTerm()));
-            sboTerms.add(Integer.valueOf(product.getSBOTerm()));
+            context().addSBOTerm(product.getSBOTerm());
             reactString.append(')');
             if (--hasSBOProducts > 0) {
               reactString.append(bundleContent.getString("SERIES_SEPARATOR"));
@@ -3479,10 +3825,9 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
               reactString.append(" (");
               reactString.append(SBO.sboNumberString(m.getSBOTerm()));
               reactString.append(" ");
-              reactString.append(maskSpecialChars(correctQuotationMarks(SBO
-                .getTerm(m.getSBOTerm()).getName(), leftQuotationMark,
-                rightQuotationMark)));
-              sboTerms.add(Integer.valueOf(m.getSBOTerm()));
+              reactString.append(maskSpecialChars(SBO
+                .getTerm(m.getSBOTerm()).getName(), true, true));
+              context().addSBOTerm(m.getSBOTerm());
               reactString.append(')');
               if (--hasSBOModifiers > 0) {
                 reactString.append(bundleContent.getString("SERIES_SEPARATOR"));
@@ -3496,7 +3841,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
       }
     }
 
-    reactString.append(subsubsection(bundleContent.getString("REACTION_EQUATION"), false));
+    subsubsection(reactString, bundleContent.getString("REACTION_EQUATION"), false);
     reactString.append("\\reaction{");
     reactString.append(reactionEquation(r));
     reactString.append('}');
@@ -3573,19 +3918,19 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
       for (i = 1; i < cols; i++) {
         headLine += '&' + idAndNameColumnDef;
       }
-      reactString.append(longtableHead(head, MessageFormat.format(
+      longtableHead(reactString, head, MessageFormat.format(
         bundleContent.getString("OVERVIEW_TABLE_CAPTION"),
         bundleContent.getString("PARTICIPATING_SPECIES")),
-        headLine));
+        headLine);
       for (i = 0; i < Math.max(r.getReactantCount(),
         Math.max(r.getProductCount(), r.getModifierCount())); i++) {
         Species s;
         if (r.getReactantCount() > 0) {
           if (i < r.getReactantCount()) {
             s = r.getModel().getSpecies(r.getReactant(i).getSpecies());
-            reactString.append(texttt(maskSpecialChars(s.getId())));
+            maskedTexttt(reactString, s.getId());
             reactString.append('&');
-            reactString.append(maskSpecialChars(s.getName()));
+            maskSpecialChars(reactString, s.getName());
             /*
              * reactString.append('&'); reactString.append(s.isSetSBOTerm() ?
              * SBO.sboNumberString(s .getSBOTerm()) : " ");
@@ -3600,9 +3945,9 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
         if (r.getModifierCount() > 0) {
           if (i < r.getModifierCount()) {
             s = r.getModel().getSpecies(r.getModifier(i).getSpecies());
-            reactString.append(texttt(maskSpecialChars(s.getId())));
+            maskedTexttt(reactString, s.getId());
             reactString.append('&');
-            reactString.append(maskSpecialChars(s.getName()));
+            maskSpecialChars(reactString, s.getName());
             /*
              * reactString.append('&'); reactString.append(s.isSetSBOTerm() ?
              * SBO.sboNumberString(s .getSBOTerm()) : " ");
@@ -3617,9 +3962,9 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
         if (r.getProductCount() > 0) {
           if (i < r.getProductCount()) {
             s = r.getModel().getSpecies(r.getProduct(i).getSpecies());
-            reactString.append(texttt(maskSpecialChars(s.getId())));
+            maskedTexttt(reactString, s.getId());
             reactString.append('&');
-            reactString.append(maskSpecialChars(s.getName()));
+            maskSpecialChars(reactString, s.getName());
             /*
              * reactString.append('&'); reactString.append(s.isSetSBOTerm() ?
              * SBO.sboNumberString(s .getSBOTerm()) : " ");
@@ -3644,56 +3989,55 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
       String headLine = "Id & Name & SBO";
 
       if (r.getReactantCount() > 0) {
-        reactString.append(subsubsection(bundleElements.getString(r.getListOfReactants().getElementName()), false));
-        reactString.append(longtableHead(columnDef, caption + "reactant.", headLine));
+        subsubsection(reactString, bundleElements.getString(r.getListOfReactants().getElementName()), false);
+        longtableHead(reactString, columnDef, caption + "reactant.", headLine);
         for (i = 0; i < r.getListOfReactants().size(); i++) {
           specRef = r.getReactant(i);
           species = r.getModel().getSpecies(specRef.getSpecies());
-          reactString.append(texttt(maskSpecialChars(specRef.getSpecies())));
+          maskedTexttt(reactString, specRef.getSpecies());
           reactString.append('&');
-          reactString.append(
-            maskSpecialChars(specRef.getName().length() == 0 ? species.getName() : specRef.getName()));
+          maskSpecialChars(reactString, specRef.getName().length() == 0 ? species.getName() : specRef.getName());
           reactString.append('&');
           if (specRef.isSetSBOTerm()) {
             reactString.append(SBO.sboNumberString(specRef.getSBOTerm()));
-            sboTerms.add(Integer.valueOf(specRef.getSBOTerm()));
+            context().addSBOTerm(specRef.getSBOTerm());
           }
           reactString.append(lineBreak);
         }
         reactString.append(bottomrule);
       }
       if (r.getModifierCount() > 0) {
-        reactString.append(subsubsection(bundleElements.getString(r.getListOfModifiers().getElementName()), false));
-        reactString.append(longtableHead(columnDef, caption + "modifier.", headLine));
+        subsubsection(reactString, bundleElements.getString(r.getListOfModifiers().getElementName()), false);
+        longtableHead(reactString, columnDef, caption + "modifier.", headLine);
         for (i = 0; i < r.getListOfModifiers().size(); i++) {
           modRef = r.getModifier(i);
           species = r.getModel().getSpecies(modRef.getSpecies());
-          reactString.append(texttt(maskSpecialChars(modRef.getSpecies())));
+          maskedTexttt(reactString, modRef.getSpecies());
           reactString.append('&');
-          reactString.append(maskSpecialChars(modRef.getName().length() == 0 ? species.getName() : modRef.getName()));
+          maskSpecialChars(reactString, modRef.getName().length() == 0 ? species.getName() : modRef.getName());
           reactString.append('&');
           if (modRef.isSetSBOTerm()) {
             reactString.append(SBO.sboNumberString(modRef.getSBOTerm()));
-            sboTerms.add(Integer.valueOf(modRef.getSBOTerm()));
+            context().addSBOTerm(modRef.getSBOTerm());
           }
           reactString.append(lineBreak);
         }
         reactString.append(bottomrule);
       }
       if (r.getProductCount() > 0) {
-        reactString.append(subsubsection(bundleElements.getString(r.getListOfProducts().getElementName()), false));
-        reactString.append(longtableHead(columnDef, caption + "product.", headLine));
+        subsubsection(reactString, bundleElements.getString(r.getListOfProducts().getElementName()), false);
+        longtableHead(reactString, columnDef, caption + "product.", headLine);
         for (i = 0; i < r.getListOfProducts().size(); i++) {
           specRef = r.getProduct(i);
           species = r.getModel().getSpecies(specRef.getSpecies());
-          reactString.append(texttt(maskSpecialChars(specRef.getSpecies())));
+          maskedTexttt(reactString, specRef.getSpecies());
           reactString.append('&');
-          reactString.append(maskSpecialChars(specRef.getName().length() == 0 ? species
-            .getName() : specRef.getName()));
+          maskSpecialChars(reactString, specRef.getName().length() == 0 ? species
+            .getName() : specRef.getName());
           reactString.append('&');
           if (specRef.isSetSBOTerm()) {
             reactString.append(SBO.sboNumberString(specRef.getSBOTerm()));
-            sboTerms.add(Integer.valueOf(specRef.getSBOTerm()));
+            context().addSBOTerm(specRef.getSBOTerm());
           }
           reactString.append(lineBreak);
         }
@@ -3701,16 +4045,16 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
       }
     }
 
-    reactString.append(subsubsection(bundleElements.getString("kineticLaw"), false));
+    subsubsection(reactString, bundleElements.getString("kineticLaw"), false);
     StringWriter localParameters = new StringWriter();
-    List<String> functionCalls = null;
+    String functionCalls[] = null;
     if (r.isSetKineticLaw()) {
       KineticLaw kin = r.getKineticLaw();
       reactString.append(descriptionBegin);
       BufferedWriter pBuffer = new BufferedWriter(reactString);
       format(kin, pBuffer, true);
       pBuffer.close();
-      UnitDefinition ud = kin.getDerivedUnitDefinition();
+      UnitDefinition ud = getDerivedUnit(kin);
       reactString.append(formatter.labeledItem(bundleElements.getString("derivedUnit")));
       if (ud.getUnitCount() == 0) {
         reactString.append(bundleContent.getString("NOT_AVAILABLE"));
@@ -3718,16 +4062,16 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
         reactString.append(bundleContent.getString("CONTAINS_UNDECLARED_UNITS"));
       } else {
         UnitDefinition.simplify(ud);
-        reactString.append(math(format(ud)));
+        math(reactString, formatUnits(ud));
       }
       reactString.append(newLine());
       reactString.append(descriptionEnd);
       reactString.append(eqBegin);
       reactString.append("v_{" + (reactionIndex + 1) + "}=");
       if (kin.getMath() != null) {
-        reactString.append(kin.getMath().toLaTeX());
+        reactString.append(toLaTeX(kin.getMath()));
         if (0 < r.getModel().getFunctionDefinitionCount()) {
-          functionCalls = callsFunctions(kin.getMath());
+          functionCalls = context().getFunctionCallGraph(r.getModel()).getCalls(kin.getMath());
         }
       } else {
         reactString.append(formatter.mathText(bundleContent.getString("NO_MATH_SPECIFIED")));
@@ -3749,9 +4093,8 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
       // If a kinetic law calls functions we add their definitions
       // redundantly right after the kinetic law.
       for (String id : functionCalls) {
-        reactString.append(equation(mathtt(maskSpecialChars(id)),
-          new StringBuffer(r.getModel().getFunctionDefinition(id).getMath()
-            .toLaTeX())));
+        equation(reactString, mathtt(maskSpecialChars(id)),
+          toLaTeX(r.getModel().getFunctionDefinition(id).getMath()));
       }
     }
     reactString.append(localParameters.getBuffer());
@@ -3771,14 +4114,19 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
     if (rl.isSetSBOTerm()) {
       buffer.append(" has the SBO reference ");
       buffer.append(SBO.sboNumberString(rl.getSBOTerm()));
-      sboTerms.add(Integer.valueOf(rl.getSBOTerm()));
+      context().addSBOTerm(rl.getSBOTerm());
       buffer.append(" and");
     }
     if (rl.isAlgebraic()) {
       buffer.append(" is an algebraic rule");
-      buffer.append(equation(new StringBuffer(rl.getMath().toLaTeX()), new StringBuffer("\\equiv 0")));
+      equation(buffer, toLaTeX(rl.getMath()), "\\equiv 0");
       buffer.newLine();
       Variable variable;
+      OverdeterminationValidator validator = context().getValidator();
+      if (validator == null) {
+        context().initValidator(rl.getModel());
+        validator = context().getValidator();
+      }
       if (!validator.isOverdetermined()) {
         variable = (Variable) validator.getMatching().get(rl);
         buffer.append(MessageFormat.format(
@@ -3795,32 +4143,32 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
       String id = ((Assignment) rl).getVariable();
       if (model.getSpecies(id) != null) {
         buffer.append("species ");
-        buffer.append(texttt(maskSpecialChars(id)));
+        maskedTexttt(buffer, id);
         buffer.append(':');
         buffer.append(eqBegin);
         Species species = model.getSpecies(id);
         if (species.getHasOnlySubstanceUnits()) {
           buffer.append('[');
         }
-        buffer.append(mathtt(maskSpecialChars(id)));
+        maskedMathtt(buffer, id);
         if (species.getHasOnlySubstanceUnits()) {
           buffer.append(']');
         }
       } else if (model.getCompartment(id) != null) {
         buffer.append("compartment ");
-        buffer.append(texttt(maskSpecialChars(id)));
+        maskedTexttt(buffer, id);
         buffer.append(':');
         buffer.append(eqBegin);
         buffer.append(getSize(model.getCompartment(id)));
       } else {
         buffer.append("parameter ");
-        buffer.append(texttt(maskSpecialChars(id)));
+        maskedTexttt(buffer, id);
         buffer.append(':');
         buffer.append(eqBegin);
-        buffer.append(mathtt(maskSpecialChars(id)));
+        maskedMathtt(buffer, id);
       }
       buffer.append(" = ");
-      buffer.append(rl.getMath().toLaTeX());
+      buffer.append(toLaTeX(rl.getMath()));
       buffer.append(eqEnd);
     } else {
       buffer.append(" is a rate rule for ");
@@ -3835,7 +4183,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
       } else {
         buffer.append("parameter ");
       }
-      buffer.append(texttt(maskSpecialChars(((Assignment) rl).getVariable())));
+      maskedTexttt(buffer, ((Assignment) rl).getVariable());
       buffer.append(':');
       buffer.append(eqBegin);
       buffer.append("\\frac{\\mathrm d}{\\mathrm dt} ");
@@ -3846,30 +4194,28 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
         buffer.append(getSize(rl.getModel().getCompartment(
           ((Assignment) rl).getVariable())));
       } else {
-        buffer.append(mathtt(maskSpecialChars(((Assignment) rl).getVariable())));
+        maskedMathtt(buffer, ((Assignment) rl).getVariable());
       }
       if (hasOnlySubstanceUnits) {
         buffer.append(']');
       }
       buffer.append(" = ");
-      buffer.append(rl.getMath().toLaTeX());
+      buffer.append(toLaTeX(rl.getMath()));
       buffer.append(eqEnd);
     }
     boolean containsUndeclaredUnits = rl.containsUndeclaredUnits();
-    UnitDefinition derivedUnit = rl.getDerivedUnitDefinition();
+    UnitDefinition derivedUnit = getDerivedUnit(rl);
     if (rl.isSetNotes() ||
         ((derivedUnit.getUnitCount() > 0) && !containsUndeclaredUnits) ||
         ((rl.getCVTermCount() > 0) && includeMIRIAM)) {
       buffer.append(descriptionBegin);
       if ((derivedUnit.getUnitCount() > 0) && !containsUndeclaredUnits) {
-        buffer.append(descriptionItem(
+        descriptionItem(buffer,
           bundleElements.getString("derivedUnit"),
-          math(format(derivedUnit))));
+          math(formatUnits(derivedUnit)));
       }
       if (rl.isSetNotes()) {
-        buffer.append(descriptionItem(
-          bundleElements.getString("notes"),
-          formatHTML(rl.getNotes())));
+        notesItem(bundleElements.getString("notes"), rl.getNotes(), buffer);
       }
       if ((rl.getCVTermCount() > 0) && includeMIRIAM) {
         buffer.append(formatter.labeledItem("Annotation"));
@@ -3903,19 +4249,18 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
         buffer.append(descriptionBegin);
       }
       if (((sBase instanceof NamedSBase) && ((NamedSBase) sBase).isSetName())) {
-        buffer.append(descriptionItem(bundleElements.getString("name"),
-          maskSpecialChars(((NamedSBase) sBase).getName())));
+        descriptionItem(buffer, bundleElements.getString("name"),
+          maskSpecialChars(((NamedSBase) sBase).getName()));
       }
       if (sBase.isSetSBOTerm()) {
-        buffer.append(descriptionItem(
+        descriptionItem(buffer,
           "SBO:" + SBO.sboNumberString(sBase.getSBOTerm()),
-          correctQuotationMarks(SBO.getTerm(sBase.getSBOTerm()).getName(),
-            leftQuotationMark, rightQuotationMark)));
-        sboTerms.add(Integer.valueOf(sBase.getSBOTerm()));
+          LaTeXEscaper.QUOTATION_MARKS.escape(
+            SBOIndex.getInstance().getName(sBase.getSBOTerm()), false, true));
+        context().addSBOTerm(sBase.getSBOTerm());
       }
       if (sBase.isSetNotes()) {
-        buffer.append(descriptionItem(bundleElements.getString("notes"),
-          formatHTML(sBase.getNotes()).toString()));
+        notesItem(bundleElements.getString("notes"), sBase.getNotes(), buffer);
       }
       if ((sBase.getCVTermCount() > 0) && includeMIRIAM) {
         StringWriter description = new StringWriter();
@@ -3925,7 +4270,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
           bw.newLine();
         }
         bw.close();
-        buffer.append(descriptionItem("MIRIAM Annotation", description));
+        descriptionItem(buffer, "MIRIAM Annotation", description);
       }
       if (!onlyItems) {
         buffer.append(descriptionEnd);
@@ -3972,21 +4317,18 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
    * respective kinetic laws, in which the given species is involved in. This
    * list is enclosed in parenthesis.
    * 
-   * @param model
+   * @param reactionList
+   * @param incidence
    * @param speciesIndex
-   * @param reactantsReaction
-   * @param productsReaction
    * @param buffer
-   * @param modifierReaction
    * @throws IOException
    */
-  private void formatReactionsInvolved(Model model, int speciesIndex,
-    List<Integer>[] reactantsReaction, List<Integer>[] productsReaction,
-    List<Integer>[] modifierReaction, BufferedWriter buffer) throws IOException {
-    int numReactants = reactantsReaction[speciesIndex].size();
-    int numProducts = productsReaction[speciesIndex].size();
-    int numModifiers = modifierReaction[speciesIndex].size();
-    final int numReactionsInvolved = numReactants + numProducts + numModifiers;
+  private void formatReactionsInvolved(ListOf<? extends SBase> reactionList,
+    SpeciesIncidence incidence, int speciesIndex, BufferedWriter buffer)
+        throws IOException {
+    int numReactants = incidence.getCount(speciesIndex, SpeciesIncidence.REACTANT);
+    int numProducts = incidence.getCount(speciesIndex, SpeciesIncidence.PRODUCT);
+    final int numReactionsInvolved = incidence.getCount(speciesIndex);
     buffer.append(MessageFormat.format(
       bundleContent.getString("REACTION_PARTICIPATION_OF_SPECIES"),
       MessageFormat.format(bundleContent.getString("NUMERALS"), numReactionsInvolved),
@@ -4002,7 +4344,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
         } else {
           noComma = false;
         }
-        reactionIndex = reactantsReaction[speciesIndex].get(i).intValue();
+        reactionIndex = incidence.getReaction(speciesIndex, SpeciesIncidence.REACTANT, i);
       } else if (i < numReactants + numProducts) {
         if (i == numReactants) {
           if (0 < i) {
@@ -4013,8 +4355,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
         } else {
           noComma = false;
         }
-        reactionIndex = productsReaction[speciesIndex].get(i - numReactants)
-            .intValue();
+        reactionIndex = incidence.getReaction(speciesIndex, SpeciesIncidence.PRODUCT, i - numReactants);
       } else {
         if (i == numReactants + numProducts) {
           if (0 < i) {
@@ -4025,21 +4366,54 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
         } else {
           noComma = false;
         }
-        reactionIndex = modifierReaction[speciesIndex].get(
-          i - numReactants - numProducts).intValue();
+        reactionIndex = incidence.getReaction(speciesIndex,
+          SpeciesIncidence.MODIFIER, i - numReactants - numProducts);
       }
-      reaction = model.getReaction(reactionIndex - 1);
+      reaction = (Reaction) reactionList.get(reactionIndex);
       if ((0 < i) && (!noComma)) {
         buffer.append(bundleContent.getString("SERIES_SEPARATOR"));
       } else {
         buffer.append(' ');
       }
-      buffer.append(hyperref("v" + Integer.toString(reactionIndex),
-        texttt(maskSpecialChars(reaction.getId()))));
+      hyperref(buffer, "v" + Integer.toString(reactionIndex + 1),
+        texttt(maskSpecialChars(reaction.getId())));
     }
     buffer.append(')');
   }
 
+  /**
+   * Writes the stoichiometric coefficient of one entry of the
+   * {@link SpeciesIncidence} in math mode into the given equation. Nothing is
+   * written for a coefficient of one.
+   * 
+   * @param reaction
+   * @param incidence
+   * @param speciesIndex
+   * @param role
+   * @param i
+   * @param equationBW
+   * @throws IOException
+   * @throws SBMLException
+   */
+  private void formatStoichiometry(Reaction reaction,
+    SpeciesIncidence incidence, int speciesIndex, int role, int i,
+    BufferedWriter equationBW) throws IOException, SBMLException {
+    double doubleStoch = incidence.getStoichiometry(speciesIndex, role, i);
+    if (Double.isNaN(doubleStoch)) {
+      SpeciesReference specRef = (SpeciesReference) incidence
+          .getSpeciesReference(reaction, speciesIndex, role, i);
+      ASTNode ast = specRef.getStoichiometryMath().getMath();
+      if ((ast.getType() == ASTNode.Type.PLUS)
+          || (ast.getType() == ASTNode.Type.MINUS)) {
+        equationBW.append(brackets(toLaTeX(ast)));
+      } else {
+        equationBW.append(toLaTeX(ast));
+      }
+    } else if (doubleStoch != 1d) {
+      equationBW.append(format(doubleStoch).toString().replaceAll("\\$", ""));
+    }
+  }
+
   /**
    * Returns a mathematical formula if {@link StoichiometryMath} is used or the
    * formated stoichiometric coefficient of the given {@link SpeciesReference}. Be aware
@@ -4056,7 +4430,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
       throws SBMLException, IOException {
     StringWriter sw = new StringWriter();
     if (spec.isSetStoichiometryMath()) {
-      sw.append(math(spec.getStoichiometryMath().getMath().toLaTeX()));
+      sw.append(math(toLaTeX(spec.getStoichiometryMath().getMath())));
     } else if (spec.getStoichiometry() != 1d) {
       sw.append(format(spec.getStoichiometry()));
     }
@@ -4084,7 +4458,7 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
       if ((reaction == null) || !reaction.isSetKineticLaw() || !reaction.getKineticLaw().isSetMath()) {
         v.append(formatter.mathText(bundleContent.getString("NO_MATH_SPECIFIED")));
       } else {
-        v.append(reaction.getKineticLaw().getMath().toLaTeX());
+        v.append(toLaTeX(reaction.getKineticLaw().getMath()));
       }
       v.append("}_{");
     }
@@ -4161,12 +4535,41 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
   }
 
   /**
-   * Creates a subsection for the given problem class.
+   * Waits for the consistency check of the given document. If the check has
+   * not been started before, e.g., because only a part of the document is
+   * written, it is performed now.
    * 
-   * @param listOfErrorIndices
-   *        A list containing indices of document errors.
    * @param doc
-   *        The SBML document containing the problems
+   * @return the result of the consistency check or {@code null} if it could
+   *         not be performed.
+   * @throws IOException
+   *         if the current thread is interrupted while waiting.
+   */
+  private ValidationReport validate(SBMLDocument doc) throws IOException {
+    try {
+      Future<ValidationReport> validation = context().getValidation();
+      if (validation == null) {
+        validation = ValidationService.submit(doc, validationBackend);
+      }
+      return validation.get();
+    } catch (InterruptedException exc) {
+      Thread.currentThread().interrupt();
+      throw new IOException(exc);
+    } catch (ExecutionException exc) {
+      logger.warning(Utils.getMessage(exc.getCause()));
+    } catch (SBMLException exc) {
+      logger.warning(Utils.getMessage(exc));
+    } catch (XMLStreamException exc) {
+      logger.warning(Utils.getMessage(exc));
+    }
+    return null;
+  }
+
+  /**
+   * Creates a subsection for the given problem class.
+   * 
+   * @param problems
+   *        A list of problems of one category.
    * @param title
    *        The title of a subsection for the problem class.
    * @param buffer
@@ -4175,29 +4578,26 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
    *        An identifier, e. g., "Error" or "Problem" or "Information" etc.
    * @throws IOException
    */
-  private void problemMessage(List<Integer> listOfErrorIndices,
-    SBMLDocument doc, String title, BufferedWriter buffer, String messageType)
+  private void problemMessage(List<Problem> problems,
+    String title, BufferedWriter buffer, String messageType)
         throws IOException {
-    buffer.append(subsection(title, true));
+    subsection(buffer, title, true);
     buffer.append(MessageFormat.format(bundleContent
       .getString("SBML_DOCUMENT_PROBLEM_DESCRIPTION"), MessageFormat.format(
-        bundleContent.getString("NUMERALS"), listOfErrorIndices.size()), title
+        bundleContent.getString("NUMERALS"), problems.size()), title
       .startsWith("XML") ? title : firstLetterLowerCase(title)));
     buffer.newLine();
     buffer.append(descriptionBegin);
-    Integer[] errors = listOfErrorIndices.toArray(new Integer[0]);
-    Arrays.sort(errors);
-    SBMLError error = null;
+    String previous = null;
     StringBuffer message = new StringBuffer();
-    for (Integer e : errors) {
-      SBMLError curr = doc.getError(e.intValue());
-      if (!curr.equals(error)) {
-        error = curr;
-        message = formatErrorMessage(error.getMessage());
+    for (Problem problem : problems) {
+      if ((previous == null) || !previous.equals(problem.getMessage())) {
+        previous = problem.getMessage();
+        message = formatErrorMessage(previous);
       }
-      buffer.append(descriptionItem(
-        messageType + ' ' + Integer.toString(error.getErrorId()),
-        message.toString()));
+      descriptionItem(buffer,
+        messageType + ' ' + Integer.toString(problem.getId()),
+        message.toString());
     }
     buffer.append(descriptionEnd);
     buffer.newLine();
@@ -4223,22 +4623,22 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
     int i;
     StringBuffer reactString = new StringBuffer();
     if (r.getReactantCount() == 0) {
-      reactString.append(math(formatter.emptySet()));
+      math(reactString, formatter.emptySet());
     } else {
       for (i = 0; i < r.getReactantCount(); i++) {
         if (r.getReactant(i) == null) {
-          reactString.append(math(formatter.mathText(
+          math(reactString, formatter.mathText(
             MessageFormat.format(bundleContent.getString("INVALID_SPECIES_REFERENCE_FOR_REACTION_PARTICIPANT"),
               bundleContent.getString("REACTANT"),
-              MessageFormat.format(bundleContent.getString("NUMERALS"), i + 1)))));
+              MessageFormat.format(bundleContent.getString("NUMERALS"), i + 1))));
         } else {
           StringBuffer stoich = formatStoichiometry(r.getReactant(i));
           reactString.append(stoich);
           if (stoich.length() > 0) {
             reactString.append("\\,");
           }
-          reactString.append(math(getNameOrID(
-            r.getModel().getSpecies(r.getReactant(i).getSpecies()), true)));
+          math(reactString, getNameOrID(
+            r.getModel().getSpecies(r.getReactant(i).getSpecies()), true));
         }
         if (i < r.getReactantCount() - 1) {
           reactString.append(" + ");
@@ -4248,33 +4648,33 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
     reactString.append(r.getReversible() ? " <=>" : " ->");
     if (r.getModifierCount() > 0) {
       reactString.append("[\\text{");
-      reactString.append(math(getNameOrID(r.getModifier(0).getSpeciesInstance(), true)));
+      math(reactString, getNameOrID(r.getModifier(0).getSpeciesInstance(), true));
       for (i = 1; i < r.getModifierCount(); i++) {
         reactString.append(",");
         reactString.append(formatter.smallSpace());
-        reactString.append(math(getNameOrID(r.getModifier(i).getSpeciesInstance(), true)));
+        math(reactString, getNameOrID(r.getModifier(i).getSpeciesInstance(), true));
       }
       reactString.append("}] ");
     } else {
       reactString.append(" ");
     }
     if (r.getProductCount() == 0) {
-      reactString.append(math(formatter.emptySet()));
+      math(reactString, formatter.emptySet());
     } else {
       for (i = 0; i < r.getProductCount(); i++) {
         if (r.getProduct(i) == null) {
-          reactString.append(math(formatter.mathText(
+          math(reactString, formatter.mathText(
             MessageFormat.format(bundleContent.getString("INVALID_SPECIES_REFERENCE_FOR_REACTION_PARTICIPANT"),
               bundleContent.getString("PRODUCT"),
-              MessageFormat.format(bundleContent.getString("NUMERALS"), i + 1)))));
+              MessageFormat.format(bundleContent.getString("NUMERALS"), i + 1))));
         } else {
           StringBuffer stoich = formatStoichiometry(r.getProduct(i));
           reactString.append(stoich);
           if (stoich.length() > 0) {
             reactString.append("\\,");
           }
-          reactString.append(math(getNameOrID(
-            r.getModel().getSpecies(r.getProduct(i).getSpecies()), true)));
+          math(reactString, getNameOrID(
+            r.getModel().getSpecies(r.getProduct(i).getSpecies()), true));
         }
         if (i < r.getProductCount() - 1) {
           reactString.append(" + ");
@@ -4284,6 +4684,47 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
     return reactString;
   }
 
+  /**
+   * Creates the units of the initial concentration of the given species by
+   * dividing its substance units by the units of its compartment. The result
+   * is only created once per combination of substance units and compartment.
+   * 
+   * @param species
+   * @param model
+   * @return
+   */
+  private String formatConcentrationUnits(Species species, Model model) {
+    String substanceUnits = species.isSetSubstanceUnits() ? species.getSubstanceUnits() : "substance";
+    UnitCache cache = context().getUnitCache();
+    String latex = cache.getConcentrationUnits(substanceUnits, species.getCompartment());
+    if (latex != null) {
+      return latex;
+    }
+    UnitDefinition ud;
+    if (species.isSetSubstanceUnits()
+        && (model.getUnitDefinition(species.getSubstanceUnits()) == null)) {
+      ud = new UnitDefinition(species.getLevel(), species.getVersion());
+      if (Unit.isUnitKind(species.getSubstanceUnits(),
+        species.getLevel(), species.getVersion())) {
+        Unit u = new Unit(1d, 0, Unit.Kind.valueOf(species.getSubstanceUnits()), 1d, species.getLevel(), species.getVersion());
+        ud.addUnit(u);
+      }
+      // else: something's wrong.
+    } else {
+      ud = new UnitDefinition(model.getUnitDefinition(substanceUnits));
+    }
+    Compartment compartment = model.getCompartment(species.getCompartment());
+    UnitDefinition compartmentUnits = getDerivedUnit(compartment);
+    for (int i = 0; i < compartmentUnits.getUnitCount(); i++) {
+      Unit unit = new Unit(compartmentUnits.getUnit(i));
+      unit.setExponent(-unit.getExponent());
+      ud.addUnit(unit);
+    }
+    latex = format(ud).toString();
+    cache.putConcentrationUnits(substanceUnits, species.getCompartment(), latex);
+    return latex;
+  }
+
   /**
    * Checks whether a unit with the given kind is one of the base units (given
    * SBML Level and Version from the model) and returns the corresponding LaTeX
@@ -4318,7 +4759,12 @@ public class LaTeXReportGenerator extends LaTeX implements SBMLReportGenerator {
    */
   public StringBuffer toLaTeX(Reaction reaction) throws IOException,
   SBMLException {
-    return format(reaction, reaction.getParent().getIndex(reaction));
+    boolean opened = openContext();
+    try {
+      return format(reaction, reaction.getParent().getIndex(reaction));
+    } finally {
+      closeContext(opened);
+    }
   }
 
   /**
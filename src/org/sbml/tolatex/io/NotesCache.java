@@ -0,0 +1,203 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.sbml.jsbml.xml.XMLNode;
+
+/**
+ * Memorizes the LaTeX code of converted notes and messages. Generated models
+ * often carry the same notes on thousands of elements, which then only need
+ * to be converted once. The conversion does not depend on the options of a
+ * report, hence one cache is shared by all reports within the JVM.
+ * <p>
+ * The key of an entry is the SHA-256 digest of the content of the XHTML tree,
+ * see {@link #key(XMLNode)}. The cache keeps the most recently used entries
+ * up to a total of {@value #MAX_CHARACTERS} characters; larger results than
+ * {@value #MAX_ENTRY_CHARACTERS} characters are not stored at all.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+class NotesCache {
+
+  /**
+   * Initializes the cache on first access in a thread-safe way.
+   *
+   * @author agent
+   * @since 1.0
+   * @version $Rev$
+   */
+  private static class Holder {
+    /**
+     *
+     */
+    private static final NotesCache INSTANCE = new NotesCache();
+  }
+
+  /**
+   * The maximal number of characters of all entries together.
+   */
+  private static final int MAX_CHARACTERS = 1 << 22;
+
+  /**
+   * The maximal number of characters of a single entry.
+   */
+  private static final int MAX_ENTRY_CHARACTERS = 1 << 16;
+
+  /**
+   * Separates the parts of the digested content.
+   */
+  private static final byte SEPARATOR[] = {0};
+
+  /**
+   * @return the cache, which is created when this method is called for the
+   *         first time.
+   */
+  public static NotesCache getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  /**
+   * Computes the digest of the names, attributes and texts of the given node
+   * and all its descendants.
+   *
+   * @param node
+   * @return the key for the LaTeX code of the given node.
+   */
+  public static String key(XMLNode node) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException exc) {
+      // Every Java platform supports SHA-256.
+      throw new IllegalStateException(exc);
+    }
+    update(digest, node);
+    byte hash[] = digest.digest();
+    StringBuilder sb = new StringBuilder(2 * hash.length);
+    for (byte b : hash) {
+      sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+      sb.append(Character.forDigit(b & 0xf, 16));
+    }
+    return sb.toString();
+  }
+
+  /**
+   *
+   * @param digest
+   * @param node
+   */
+  private static void update(MessageDigest digest, XMLNode node) {
+    if (node.isText()) {
+      update(digest, "T");
+      update(digest, node.getCharacters());
+    } else {
+      update(digest, "E");
+      update(digest, node.getName());
+      for (int i = 0; i < node.getAttributesLength(); i++) {
+        update(digest, "A");
+        update(digest, node.getAttrName(i));
+        update(digest, node.getAttrValue(i));
+      }
+      for (int i = 0; i < node.getChildCount(); i++) {
+        update(digest, node.getChildAt(i));
+      }
+      update(digest, "/");
+    }
+  }
+
+  /**
+   *
+   * @param digest
+   * @param value
+   */
+  private static void update(MessageDigest digest, String value) {
+    if (value != null) {
+      try {
+        digest.update(value.getBytes("UTF-8"));
+      } catch (UnsupportedEncodingException exc) {
+        // UTF-8 is always supported.
+        throw new IllegalStateException(exc);
+      }
+    }
+    digest.update(SEPARATOR);
+  }
+
+  /**
+   * The entries in the order of their last use.
+   */
+  private final Map<String, String> entries;
+
+  /**
+   * The number of characters of all entries.
+   */
+  private int size;
+
+  /**
+   *
+   */
+  private NotesCache() {
+    entries = new LinkedHashMap<String, String>(256, 0.75f, true);
+    size = 0;
+  }
+
+  /**
+   *
+   * @param key
+   * @return the LaTeX code stored for the given key or {@code null} if there
+   *         is none.
+   */
+  public synchronized String get(String key) {
+    return entries.get(key);
+  }
+
+  /**
+   * Stores the LaTeX code for the given key unless it is too large and
+   * removes the least recently used entries if necessary.
+   *
+   * @param key
+   * @param latex
+   */
+  public synchronized void put(String key, String latex) {
+    if (latex.length() > MAX_ENTRY_CHARACTERS) {
+      return;
+    }
+    String previous = entries.put(key, latex);
+    size += latex.length() - (previous != null ? previous.length() : 0);
+    Iterator<String> iterator = entries.values().iterator();
+    while ((size > MAX_CHARACTERS) && iterator.hasNext()) {
+      size -= iterator.next().length();
+      iterator.remove();
+    }
+  }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.Set;
+
+import org.sbml.jsbml.FunctionDefinition;
+import org.sbml.jsbml.KineticLaw;
+import org.sbml.jsbml.ListOf;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SimpleSpeciesReference;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.UnitDefinition;
+import org.sbml.jsbml.validator.OverdeterminationValidator;
+import org.sbml.tolatex.io.ValidationReport.Problem;
+import org.sbml.tolatex.io.ValidationReport.Severity;
+
+import de.zbit.util.ResourceManager;
+
+/**
+ * Checks the most important structural rules of the SBML specification
+ * locally, i.e., without network access. This covers references to undefined
+ * compartments, species, and functions, the units of kinetic laws, and
+ * overdetermined models. All other rules of the specification are not
+ * checked, a document without any problems is hence not necessarily valid.
+ * The identification codes of the problems are those of the corresponding
+ * validation rules of the SBML specification.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class OfflineValidation implements ValidationBackend {
+
+  /**
+   * Localization support.
+   */
+  private static final ResourceBundle bundleContent = ResourceManager.getBundle("org.sbml.tolatex.locales.SBMLreport");
+
+  /**
+   * A call of a function that is not defined in the model.
+   */
+  public static final int UNDEFINED_FUNCTION = 10214;
+  /**
+   * The units of a kinetic law are not substance per time.
+   */
+  public static final int INVALID_KINETIC_LAW_UNITS = 10541;
+  /**
+   * The system of equations of the model is overdetermined.
+   */
+  public static final int OVERDETERMINED_MODEL = 10601;
+  /**
+   * The compartment of a species is not defined in the model.
+   */
+  public static final int UNDEFINED_COMPARTMENT = 20601;
+  /**
+   * A species reference refers to a species that is not defined in the model.
+   */
+  public static final int UNDEFINED_SPECIES = 21111;
+
+  /* (non-Javadoc)
+   * @see org.sbml.tolatex.io.ValidationBackend#getName()
+   */
+  @Override
+  public String getName() {
+    return "offline";
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.tolatex.io.ValidationBackend#isComplete()
+   */
+  @Override
+  public boolean isComplete() {
+    return false;
+  }
+
+  /**
+   *
+   * @param problems
+   * @param severity
+   * @param id
+   * @param key
+   * @param arguments
+   */
+  private void report(List<Problem> problems, Severity severity, int id, String key, Object... arguments) {
+    problems.add(new Problem(severity, id, MessageFormat.format(bundleContent.getString(key), arguments)));
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.tolatex.io.ValidationBackend#validate(org.sbml.jsbml.SBMLDocument)
+   */
+  @Override
+  public ValidationReport validate(SBMLDocument doc) {
+    List<Problem> problems = new ArrayList<Problem>();
+    Model model = doc.getModel();
+    if (model == null) {
+      return new ValidationReport(problems);
+    }
+    for (int i = 0; i < model.getSpeciesCount(); i++) {
+      Species species = model.getSpecies(i);
+      if (species.isSetCompartment() && (model.getCompartment(species.getCompartment()) == null)) {
+        report(problems, Severity.ERROR, UNDEFINED_COMPARTMENT, "VALIDATION_UNDEFINED_COMPARTMENT",
+          species.getId(), species.getCompartment());
+      }
+    }
+    Set<String> calls = new LinkedHashSet<String>();
+    for (int i = 0; i < model.getFunctionDefinitionCount(); i++) {
+      FunctionDefinition fd = model.getFunctionDefinition(i);
+      if (fd.isSetMath()) {
+        FunctionCallGraph.collectCalls(fd.getMath(), calls);
+      }
+    }
+    for (int i = 0; i < model.getRuleCount(); i++) {
+      if (model.getRule(i).isSetMath()) {
+        FunctionCallGraph.collectCalls(model.getRule(i).getMath(), calls);
+      }
+    }
+    for (int i = 0; i < model.getInitialAssignmentCount(); i++) {
+      if (model.getInitialAssignment(i).isSetMath()) {
+        FunctionCallGraph.collectCalls(model.getInitialAssignment(i).getMath(), calls);
+      }
+    }
+    for (int i = 0; i < model.getReactionCount(); i++) {
+      Reaction reaction = model.getReaction(i);
+      checkSpeciesReferences(reaction, reaction.getListOfReactants(), model, problems);
+      checkSpeciesReferences(reaction, reaction.getListOfProducts(), model, problems);
+      checkSpeciesReferences(reaction, reaction.getListOfModifiers(), model, problems);
+      if (reaction.isSetKineticLaw()) {
+        KineticLaw kl = reaction.getKineticLaw();
+        if (kl.isSetMath()) {
+          FunctionCallGraph.collectCalls(kl.getMath(), calls);
+          if (!kl.containsUndeclaredUnits()) {
+            UnitDefinition ud = kl.getDerivedUnitDefinition();
+            if ((ud != null) && !ud.isVariantOfSubstancePerTime()) {
+              report(problems, Severity.WARNING, INVALID_KINETIC_LAW_UNITS,
+                "VALIDATION_INVALID_KINETIC_LAW_UNITS", reaction.getId());
+            }
+          }
+        }
+      }
+    }
+    for (String call : calls) {
+      if (model.getFunctionDefinition(call) == null) {
+        report(problems, Severity.ERROR, UNDEFINED_FUNCTION, "VALIDATION_UNDEFINED_FUNCTION", call);
+      }
+    }
+    if ((model.getRuleCount() > 0) && new OverdeterminationValidator(model).isOverdetermined()) {
+      report(problems, Severity.ERROR, OVERDETERMINED_MODEL, "VALIDATION_OVERDETERMINED_MODEL", model.getId());
+    }
+    return new ValidationReport(problems);
+  }
+
+  /**
+   *
+   * @param reaction
+   * @param list
+   * @param model
+   * @param problems
+   */
+  private void checkSpeciesReferences(Reaction reaction, ListOf<? extends SimpleSpeciesReference> list,
+    Model model, List<Problem> problems) {
+    for (int j = 0; j < list.size(); j++) {
+      SimpleSpeciesReference ref = list.get(j);
+      if (model.getSpecies(ref.getSpecies()) == null) {
+        report(problems, Severity.ERROR, UNDEFINED_SPECIES, "VALIDATION_UNDEFINED_SPECIES",
+          reaction.getId(), ref.getSpecies());
+      }
+    }
+  }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.util.NotImplementedException;
+
+/**
+ * Performs the full consistency check of JSBML, which sends the document to
+ * the online validator at sbml.org.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class OnlineValidation implements ValidationBackend {
+
+  /* (non-Javadoc)
+   * @see org.sbml.tolatex.io.ValidationBackend#getName()
+   */
+  @Override
+  public String getName() {
+    return "online";
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.tolatex.io.ValidationBackend#isComplete()
+   */
+  @Override
+  public boolean isComplete() {
+    return true;
+  }
+
+  /* (non-Javadoc)
+   * @see org.sbml.tolatex.io.ValidationBackend#validate(org.sbml.jsbml.SBMLDocument)
+   */
+  @Override
+  public ValidationReport validate(SBMLDocument doc) {
+    try {
+      doc.checkConsistency();
+    } catch (NotImplementedException exc) {
+      return ValidationReport.NOT_SUPPORTED;
+    }
+    return ValidationReport.fromErrorLog(doc);
+  }
+
+}
@@ -0,0 +1,280 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2008-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.SBMLException;
+import org.sbml.jsbml.SBase;
+import org.sbml.jsbml.validator.OverdeterminationValidator;
+
+/**
+ * Holds all information that a {@link LaTeXReportGenerator} collects while
+ * writing one single report. A new instance is created for each report, so
+ * that the generator itself only contains the layout options and can be used
+ * by several threads at the same time.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+class ReportContext {
+
+  /**
+   * The function calls of the current model, created on demand.
+   */
+  private FunctionCallGraph callGraph;
+
+  /**
+   * The content hash codes of the elements computed so far, see
+   * {@link ElementDigest}.
+   */
+  private Map<SBase, String> digests;
+
+  /**
+   * The hash code of everything in {@link #environmentModel} except for the
+   * content of its reactions.
+   */
+  private String environment;
+
+  /**
+   * The model of {@link #environment}.
+   */
+  private Model environmentModel;
+
+  /**
+   * The LaTeX code of all expressions rendered so far, identified by their
+   * root node.
+   */
+  private Map<ASTNode, String> latex;
+
+  /**
+   * Number of expressions taken from or added to {@link #latex}.
+   */
+  private int latexHits, latexMisses;
+
+  /**
+   * The SBO terms added since the last call of {@link #startRecording()} or
+   * {@code null} if nothing is being recorded.
+   */
+  private Set<Integer> recorded;
+
+  /**
+   * Set of SBO Term used in the current SBML document to be translated. This
+   * set stores the SBO ids.
+   */
+  private Set<Integer> sboTerms;
+
+  /**
+   * Derived and formatted units.
+   */
+  private UnitCache units;
+
+  /**
+   * The consistency check of the current document, which runs in the
+   * background.
+   */
+  private Future<ValidationReport> validation;
+
+  /**
+   * Determines the variables of rules.
+   */
+  private OverdeterminationValidator validator;
+
+  /**
+   *
+   */
+  public ReportContext() {
+    sboTerms = new HashSet<Integer>();
+    latex = new IdentityHashMap<ASTNode, String>();
+    units = new UnitCache();
+    digests = new IdentityHashMap<SBase, String>();
+  }
+
+  /**
+   * Memorizes the given SBO term for the glossary of the report.
+   *
+   * @param sboTerm
+   */
+  public void addSBOTerm(int sboTerm) {
+    sboTerms.add(Integer.valueOf(sboTerm));
+    if (recorded != null) {
+      recorded.add(Integer.valueOf(sboTerm));
+    }
+  }
+
+  /**
+   * @param sbase
+   * @return the hash code of the content of the given element, which is only
+   *         computed once per report.
+   */
+  public String getDigest(SBase sbase) {
+    String digest = digests.get(sbase);
+    if (digest == null) {
+      digest = ElementDigest.of(sbase);
+      digests.put(sbase, digest);
+    }
+    return digest;
+  }
+
+  /**
+   * @param model
+   * @return the hash code of the given model without the content of its
+   *         reactions (see {@link ElementDigest#environment(Model)}), which is
+   *         only computed once per model.
+   */
+  public String getEnvironmentDigest(Model model) {
+    if ((environment == null) || (environmentModel != model)) {
+      environment = ElementDigest.environment(model);
+      environmentModel = model;
+    }
+    return environment;
+  }
+
+  /**
+   * @param model
+   * @return the graph of function calls of the given model, which is only
+   *         computed once per model.
+   */
+  public FunctionCallGraph getFunctionCallGraph(Model model) {
+    if ((callGraph == null) || (callGraph.getModel() != model)) {
+      callGraph = new FunctionCallGraph(model);
+    }
+    return callGraph;
+  }
+
+  /**
+   * @return how often {@link #toLaTeX(ASTNode)} returned a memorized result.
+   */
+  public int getLaTeXHits() {
+    return latexHits;
+  }
+
+  /**
+   * @return how often {@link #toLaTeX(ASTNode)} had to render an expression.
+   */
+  public int getLaTeXMisses() {
+    return latexMisses;
+  }
+
+  /**
+   * @return the SBO terms collected so far.
+   */
+  public Set<Integer> getSBOTerms() {
+    return sboTerms;
+  }
+
+  /**
+   * @return the units of the current report.
+   */
+  public UnitCache getUnitCache() {
+    return units;
+  }
+
+  /**
+   * @return the consistency check of the current document or {@code null} if
+   *         it has not been started.
+   */
+  public Future<ValidationReport> getValidation() {
+    return validation;
+  }
+
+  /**
+   * @return the validator of the current model or {@code null} if no model has
+   *         been processed yet.
+   */
+  public OverdeterminationValidator getValidator() {
+    return validator;
+  }
+
+  /**
+   * Creates the validator for the given model.
+   *
+   * @param model
+   */
+  public void initValidator(Model model) {
+    validator = new OverdeterminationValidator(model);
+  }
+
+  /**
+   * @param validation
+   *        the consistency check of the current document.
+   */
+  public void setValidation(Future<ValidationReport> validation) {
+    this.validation = validation;
+  }
+
+  /**
+   * Starts to record all SBO terms that are added until the next call of
+   * {@link #stopRecording()}, i.e., the SBO terms referred to by one fragment
+   * of the report. Recordings cannot be nested.
+   */
+  public void startRecording() {
+    recorded = new HashSet<Integer>();
+  }
+
+  /**
+   * @return the SBO terms added since the last call of
+   *         {@link #startRecording()}.
+   */
+  public int[] stopRecording() {
+    if (recorded == null) {
+      return new int[0];
+    }
+    int terms[] = new int[recorded.size()], i = 0;
+    for (Integer term : recorded) {
+      terms[i++] = term.intValue();
+    }
+    recorded = null;
+    return terms;
+  }
+
+  /**
+   * Renders the given expression only once per report. Expressions are
+   * identified by their root node, which must not be changed while the report
+   * is being written.
+   *
+   * @param math
+   * @return the LaTeX code of the given expression.
+   * @throws SBMLException
+   */
+  public String toLaTeX(ASTNode math) throws SBMLException {
+    String code = latex.get(math);
+    if (code == null) {
+      latexMisses++;
+      code = math.toLaTeX();
+      latex.put(math, code);
+    } else {
+      latexHits++;
+    }
+    return code;
+  }
+
+}
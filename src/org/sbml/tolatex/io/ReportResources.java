@@ -0,0 +1,245 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+/**
+ * Provides the static files that every report needs: the logo of SBML2LaTeX,
+ * the bibliography, and the definitions for line breaks in long formulas.
+ * Each resource is read from the class path only once per JVM. Files that
+ * LaTeX needs to read, such as the logo, are staged once per directory: if
+ * the directory already contains an identical copy, nothing is written.
+ * Alternatively, {@link #getSharedFile(String)} stages a resource once in a
+ * temporary directory named after its content, which all reports can refer
+ * to.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class ReportResources {
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(ReportResources.class.getName());
+
+  /**
+   * The bibliography of all reports.
+   */
+  public static final String LITERATURE = "/org/sbml/tolatex/locales/literature.bbl";
+
+  /**
+   * Definitions for line breaks in long formulas.
+   */
+  public static final String LINEBREAK_DEFINITIONS = "/org/sbml/tolatex/locales/linebreakdef.sty";
+
+  /**
+   * The logo on the title page of all reports.
+   */
+  public static final String LOGO = "/org/sbml/tolatex/gui/img/SBML2LaTeX.pdf";
+
+  /**
+   * Name of the directory below the temporary directory, in which shared
+   * copies are stored.
+   */
+  private static final String SHARED_DIRECTORY = "SBML2LaTeX-resources";
+
+  /**
+   * The content of all resources read so far.
+   */
+  private static final ConcurrentMap<String, byte[]> contents = new ConcurrentHashMap<String, byte[]>();
+
+  /**
+   * The text of all resources read so far, see {@link #getText(String)}.
+   */
+  private static final ConcurrentMap<String, String> texts = new ConcurrentHashMap<String, String>();
+
+  /**
+   *
+   * @param resource
+   *        the absolute path of the resource on the class path.
+   * @return the content of the given resource, which must not be modified.
+   * @throws IOException
+   *         if the resource cannot be found or read.
+   */
+  public static byte[] getBytes(String resource) throws IOException {
+    byte content[] = contents.get(resource);
+    if (content == null) {
+      InputStream in = ReportResources.class.getResourceAsStream(resource);
+      if (in == null) {
+        throw new IOException(resource);
+      }
+      try {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte buffer[] = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+          out.write(buffer, 0, n);
+        }
+        content = out.toByteArray();
+      } finally {
+        in.close();
+      }
+      byte previous[] = contents.putIfAbsent(resource, content);
+      if (previous != null) {
+        content = previous;
+      }
+    }
+    return content;
+  }
+
+  /**
+   * Stages the given resource in a directory below the temporary directory,
+   * whose name depends on the content of the resource. Hence, all reports can
+   * refer to the same copy, which is only written once.
+   *
+   * @param resource
+   *        the absolute path of the resource on the class path.
+   * @return the shared copy of the given resource.
+   * @throws IOException
+   */
+  public static File getSharedFile(String resource) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException exc) {
+      // SHA-256 is supported by every JVM.
+      throw new IllegalStateException(exc);
+    }
+    byte hash[] = digest.digest(getBytes(resource));
+    StringBuilder name = new StringBuilder(16);
+    for (int i = 0; i < 8; i++) {
+      name.append(Character.forDigit((hash[i] >> 4) & 0xf, 16));
+      name.append(Character.forDigit(hash[i] & 0xf, 16));
+    }
+    File directory = new File(new File(System.getProperty("java.io.tmpdir"), SHARED_DIRECTORY), name.toString());
+    if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+      throw new IOException(directory.getAbsolutePath());
+    }
+    return stage(resource, directory);
+  }
+
+  /**
+   *
+   * @param resource
+   *        the absolute path of a text file on the class path.
+   * @return the lines of the given resource, each terminated by a line feed.
+   * @throws IOException
+   */
+  public static String getText(String resource) throws IOException {
+    String text = texts.get(resource);
+    if (text == null) {
+      StringBuilder sb = new StringBuilder();
+      BufferedReader reader = new BufferedReader(new StringReader(new String(getBytes(resource), "UTF-8")));
+      String line;
+      while ((line = reader.readLine()) != null) {
+        sb.append(line).append('\n');
+      }
+      text = sb.toString();
+      texts.putIfAbsent(resource, text);
+    }
+    return text;
+  }
+
+  /**
+   * Makes sure that the given directory contains a copy of the given
+   * resource. The file is only written if it does not exist or differs from
+   * the resource, and it is replaced as a whole, so that concurrent reports
+   * never see an incomplete file. The existing file is compared on disk
+   * instead of remembering the staged files, because batch conversions and
+   * the server use a new directory for each document.
+   *
+   * @param resource
+   *        the absolute path of the resource on the class path.
+   * @param directory
+   * @return the copy of the given resource in the given directory, whose name
+   *         is the name of the resource.
+   * @throws IOException
+   */
+  public static File stage(String resource, File directory) throws IOException {
+    byte content[] = getBytes(resource);
+    File target = new File(directory, resource.substring(resource.lastIndexOf('/') + 1)).getAbsoluteFile();
+    if (!isCopy(target, content)) {
+      logger.fine(target.getAbsolutePath());
+      File part = File.createTempFile(target.getName(), ".part", target.getParentFile());
+      try {
+        OutputStream out = new FileOutputStream(part);
+        try {
+          out.write(content);
+        } finally {
+          out.close();
+        }
+        if (!part.renameTo(target) && !(target.delete() && part.renameTo(target))) {
+          throw new IOException(target.getAbsolutePath());
+        }
+      } finally {
+        if (part.exists()) {
+          part.delete();
+        }
+      }
+    }
+    return target;
+  }
+
+  /**
+   *
+   * @param file
+   * @param content
+   * @return {@code true} if the given file exists and has the given content.
+   * @throws IOException
+   */
+  private static boolean isCopy(File file, byte content[]) throws IOException {
+    if (!file.isFile() || (file.length() != content.length)) {
+      return false;
+    }
+    byte existing[] = new byte[content.length];
+    InputStream in = new FileInputStream(file);
+    try {
+      int offset = 0, n;
+      while ((offset < existing.length) && ((n = in.read(existing, offset, existing.length - offset)) >= 0)) {
+        offset += n;
+      }
+    } finally {
+      in.close();
+    }
+    return Arrays.equals(existing, content);
+  }
+
+}
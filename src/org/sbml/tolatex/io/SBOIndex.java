@@ -0,0 +1,406 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import static de.zbit.util.Utils.getMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.sbml.jsbml.SBO;
+import org.sbml.jsbml.ontology.Term;
+
+import de.zbit.sbml.io.SBOTermFormatter;
+
+/**
+ * A compact index of the names and short definitions of all terms of the
+ * Systems Biology Ontology (SBO). Reports only need these two strings per
+ * term, but {@link SBO#getTerm(int)} parses the complete ontology on first
+ * use in each JVM. The index is therefore created from the ontology once at
+ * build time (see {@link #main(String[])}) and bundled as resource
+ * {@value #RESOURCE} next to this class. It is loaded on first use, by memory
+ * mapping if the resource is a plain file. If the resource is missing, e.g.,
+ * when running directly from the sources, the index is created from the
+ * ontology in memory.
+ * <p>
+ * The binary format (big endian) consists of a header with a magic number, the
+ * format version and the number of terms {@code n}, followed by the sorted
+ * numeric term identifiers ({@code n} ints), the offsets of the names and of
+ * the short definitions within the string table ({@code n} ints each,
+ * {@code -1} if not available) and finally the string table. Each string is
+ * stored as an unsigned short length followed by the UTF-8 encoded
+ * characters.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class SBOIndex {
+
+  /**
+   * Initializes the index on first access in a thread-safe way.
+   *
+   * @author agent
+   * @since 1.0
+   * @version $Rev$
+   */
+  private static class Holder {
+    /**
+     *
+     */
+    private static final SBOIndex INSTANCE = load();
+  }
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(SBOIndex.class.getName());
+
+  /**
+   * Identifies the file format.
+   */
+  private static final int MAGIC = 0x53424f49;
+
+  /**
+   * The name of the resource relative to this class.
+   */
+  public static final String RESOURCE = "SBO.idx";
+
+  /**
+   * Version of the file format.
+   */
+  private static final int VERSION = 1;
+
+  /**
+   * @return the index, which is loaded when this method is called for the
+   *         first time.
+   */
+  public static SBOIndex getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  /**
+   *
+   * @return
+   */
+  private static SBOIndex load() {
+    URL url = SBOIndex.class.getResource(RESOURCE);
+    if (url != null) {
+      try {
+        return new SBOIndex(read(url));
+      } catch (IOException exc) {
+        logger.log(Level.WARNING, getMessage(exc), exc);
+      }
+    }
+    logger.fine("Creating the SBO index from the ontology.");
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      write(out);
+      return new SBOIndex(ByteBuffer.wrap(out.toByteArray()));
+    } catch (IOException exc) {
+      // Cannot happen when writing to memory.
+      throw new IllegalStateException(exc);
+    }
+  }
+
+  /**
+   * Creates the index file.
+   *
+   * @param args
+   *        the path of the file to be written.
+   * @throws IOException
+   */
+  public static void main(String[] args) throws IOException {
+    File file = new File(args[0]);
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (!parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException(parent.getAbsolutePath());
+    }
+    OutputStream out = new FileOutputStream(file);
+    try {
+      write(out);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Maps the given resource into memory if it is a file, otherwise reads it
+   * completely.
+   *
+   * @param url
+   * @return
+   * @throws IOException
+   */
+  private static ByteBuffer read(URL url) throws IOException {
+    if ("file".equals(url.getProtocol())) {
+      RandomAccessFile raf;
+      try {
+        raf = new RandomAccessFile(new File(url.toURI()), "r");
+      } catch (Exception exc) {
+        raf = null;
+      }
+      if (raf != null) {
+        try {
+          FileChannel channel = raf.getChannel();
+          return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+          // The mapping stays valid after closing the file.
+          raf.close();
+        }
+      }
+    }
+    InputStream in = url.openStream();
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte buffer[] = new byte[8192];
+      int n;
+      while ((n = in.read(buffer)) >= 0) {
+        out.write(buffer, 0, n);
+      }
+      return ByteBuffer.wrap(out.toByteArray());
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Writes the index of all terms of the ontology to the given stream.
+   *
+   * @param out
+   * @throws IOException
+   */
+  public static void write(OutputStream out) throws IOException {
+    Set<Term> terms = SBO.getTerms();
+    List<Term> sorted = new ArrayList<Term>(terms.size());
+    int ids[] = new int[terms.size()], n = 0;
+    for (Term term : terms) {
+      int id = SBO.stringToInt(term.getId());
+      if (id >= 0) {
+        ids[n++] = id;
+      }
+    }
+    Arrays.sort(ids, 0, n);
+    // SBO.getTerms() may return the same term more than once.
+    int distinct = 0;
+    for (int i = 0; i < n; i++) {
+      if ((distinct == 0) || (ids[distinct - 1] != ids[i])) {
+        ids[distinct++] = ids[i];
+      }
+    }
+    n = distinct;
+    ids = Arrays.copyOf(ids, n);
+    for (int id : ids) {
+      sorted.add(SBO.getTerm(id));
+    }
+
+    ByteArrayOutputStream strings = new ByteArrayOutputStream();
+    DataOutputStream table = new DataOutputStream(strings);
+    int names[] = new int[n], definitions[] = new int[n];
+    for (int i = 0; i < n; i++) {
+      Term term = sorted.get(i);
+      names[i] = writeString(table, term.getName());
+      definitions[i] = writeString(table, SBOTermFormatter.getShortDefinition(term));
+    }
+    table.flush();
+
+    DataOutputStream dos = new DataOutputStream(out);
+    dos.writeInt(MAGIC);
+    dos.writeInt(VERSION);
+    dos.writeInt(n);
+    for (int id : ids) {
+      dos.writeInt(id);
+    }
+    for (int offset : names) {
+      dos.writeInt(offset);
+    }
+    for (int offset : definitions) {
+      dos.writeInt(offset);
+    }
+    strings.writeTo(dos);
+    dos.flush();
+  }
+
+  /**
+   *
+   * @param table
+   * @param value
+   * @return the offset of the string in the table or -1 if the value is
+   *         {@code null}.
+   * @throws IOException
+   */
+  private static int writeString(DataOutputStream table, String value) throws IOException {
+    if (value == null) {
+      return -1;
+    }
+    int offset = table.size();
+    byte bytes[] = value.getBytes("UTF-8");
+    int length = Math.min(bytes.length, 0xffff);
+    table.writeShort(length);
+    table.write(bytes, 0, length);
+    return offset;
+  }
+
+  /**
+   * The whole index.
+   */
+  private final ByteBuffer buffer;
+
+  /**
+   * The number of terms.
+   */
+  private final int count;
+
+  /**
+   * Positions of the sections within the buffer.
+   */
+  private final int ids, names, definitions, strings;
+
+  /**
+   *
+   * @param buffer
+   * @throws IOException
+   *         if the buffer does not contain an index of the supported version.
+   */
+  private SBOIndex(ByteBuffer buffer) throws IOException {
+    if ((buffer.capacity() < 12) || (buffer.getInt(0) != MAGIC) || (buffer.getInt(4) != VERSION)) {
+      throw new IOException("Unsupported SBO index format.");
+    }
+    this.buffer = buffer;
+    count = buffer.getInt(8);
+    ids = 12;
+    names = ids + 4 * count;
+    definitions = names + 4 * count;
+    strings = definitions + 4 * count;
+  }
+
+  /**
+   * @param sboTerm
+   * @return {@code true} if the given term is part of this index.
+   */
+  public boolean contains(int sboTerm) {
+    return indexOf(sboTerm) >= 0;
+  }
+
+  /**
+   * @return the number of terms in this index.
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * @param sboTerm
+   * @return the name of the given term or {@code null} if the term is unknown.
+   */
+  public String getName(int sboTerm) {
+    return getString(names, indexOf(sboTerm));
+  }
+
+  /**
+   * @param sboTerm
+   * @return the short definition of the given term, see
+   *         {@link SBOTermFormatter#getShortDefinition(Term)}, or {@code null}
+   *         if the term is unknown.
+   */
+  public String getShortDefinition(int sboTerm) {
+    return getString(definitions, indexOf(sboTerm));
+  }
+
+  /**
+   *
+   * @param section
+   * @param index
+   * @return
+   */
+  private String getString(int section, int index) {
+    if (index < 0) {
+      return null;
+    }
+    int offset = buffer.getInt(section + 4 * index);
+    if (offset < 0) {
+      return null;
+    }
+    int position = strings + offset;
+    byte bytes[] = new byte[buffer.getShort(position) & 0xffff];
+    // Work on a duplicate because several threads may read at the same time.
+    ByteBuffer view = buffer.duplicate();
+    view.position(position + 2);
+    view.get(bytes);
+    try {
+      return new String(bytes, "UTF-8");
+    } catch (IOException exc) {
+      // UTF-8 is always supported.
+      throw new IllegalStateException(exc);
+    }
+  }
+
+  /**
+   * Looks up the given term. Because the identifiers of the ontology are
+   * almost consecutive, the position {@code sboTerm - first identifier} is
+   * tried first, which usually makes the lookup constant time. Otherwise a
+   * binary search is performed.
+   *
+   * @param sboTerm
+   * @return the position of the given term in the index or a negative value.
+   */
+  private int indexOf(int sboTerm) {
+    if (count == 0) {
+      return -1;
+    }
+    int guess = sboTerm - buffer.getInt(ids);
+    if ((0 <= guess) && (guess < count) && (buffer.getInt(ids + 4 * guess) == sboTerm)) {
+      return guess;
+    }
+    int low = 0, high = Math.min(count, Math.max(guess, 0)) - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int value = buffer.getInt(ids + 4 * mid);
+      if (value < sboTerm) {
+        low = mid + 1;
+      } else if (value > sboTerm) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2008-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import java.util.ResourceBundle;
+
+import de.zbit.util.ResourceManager;
+import de.zbit.util.prefs.KeyProvider;
+import de.zbit.util.prefs.Option;
+import de.zbit.util.prefs.OptionGroup;
+import de.zbit.util.prefs.Range;
+
+/**
+ * Provides {@link Option} instances to run SBML2LaTeX as a local conversion
+ * server.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public interface ServerOptions extends KeyProvider {
+
+  /**
+   *
+   */
+  static final ResourceBundle resources = ResourceManager
+      .getBundle("org.sbml.tolatex.locales.UI");
+
+  /**
+   * The port on which SBML2LaTeX listens for conversion requests. If this
+   * option is given on the command line, SBML2LaTeX does not convert any file
+   * but runs as a server until the process is terminated.
+   */
+  public static final Option<Integer> SERVER_PORT = new Option<Integer>(
+      "SERVER_PORT", Integer.class, resources, new Range<Integer>(
+        Integer.class, "{[1,65535]}"), Integer.valueOf(8432));
+
+  /**
+   * The maximal number of reports that are created at the same time.
+   */
+  public static final Option<Integer> SERVER_THREADS = new Option<Integer>(
+      "SERVER_THREADS", Integer.class, resources, Integer.valueOf(Runtime
+        .getRuntime().availableProcessors()));
+
+  /**
+   * The maximal number of requests that wait for a free thread. Further
+   * requests are rejected.
+   */
+  public static final Option<Integer> SERVER_QUEUE_SIZE = new Option<Integer>(
+      "SERVER_QUEUE_SIZE", Integer.class, resources, Integer.valueOf(16));
+
+  /**
+   * The maximal time in seconds that a single request may take.
+   */
+  public static final Option<Integer> SERVER_TIMEOUT = new Option<Integer>(
+      "SERVER_TIMEOUT", Integer.class, resources, Integer.valueOf(120));
+
+  /**
+   * The maximal size in kilobytes of an SBML document sent to the server.
+   * Larger requests are rejected.
+   */
+  public static final Option<Integer> SERVER_MAX_REQUEST_SIZE = new Option<Integer>(
+      "SERVER_MAX_REQUEST_SIZE", Integer.class, resources, new Range<Integer>(
+        Integer.class, "{[1,2097151]}"), Integer.valueOf(65536));
+
+  /**
+   *
+   */
+  @SuppressWarnings("unchecked")
+  public static final OptionGroup<Integer> SERVER_CONFIGURATION = new OptionGroup<Integer>(
+      "SERVER_CONFIGURATION", resources, SERVER_PORT, SERVER_THREADS,
+      SERVER_QUEUE_SIZE, SERVER_TIMEOUT, SERVER_MAX_REQUEST_SIZE);
+
+}
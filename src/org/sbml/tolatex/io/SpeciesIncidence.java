@@ -0,0 +1,258 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.sbml.jsbml.ListOf;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.SimpleSpeciesReference;
+import org.sbml.jsbml.SpeciesReference;
+
+/**
+ * The species-reaction incidence of a {@link Model} in compressed sparse row
+ * format. There is one row for each pair of species and role (reactant,
+ * product, modifier), i.e., the entries of the species with index {@code i}
+ * in role {@code r} are found at the positions from
+ * {@code offsets[3 * i + r]} (inclusive) to {@code offsets[3 * i + r + 1]}
+ * (exclusive) of the entry arrays. Each entry stores the index of the
+ * {@link Reaction}, the index of the species reference within the respective
+ * list of the reaction and its stoichiometry. The reactions of each row are
+ * sorted by their index.
+ * <p>
+ * The whole structure is built in one pass over all reactions and consists of
+ * primitive arrays only, which keeps it small even for genome-scale models.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+class SpeciesIncidence {
+
+  /**
+   * Role of a species that is consumed by a reaction.
+   */
+  public static final int REACTANT = 0;
+  /**
+   * Role of a species that is produced by a reaction.
+   */
+  public static final int PRODUCT = 1;
+  /**
+   * Role of a species that influences a reaction without being consumed or
+   * produced.
+   */
+  public static final int MODIFIER = 2;
+  /**
+   * The number of different roles.
+   */
+  private static final int ROLES = 3;
+
+  /**
+   * Start position of each row (species and role) within the entry arrays.
+   */
+  private final int offsets[];
+  /**
+   * The zero-based index of the reaction of each entry.
+   */
+  private final int reactions[];
+  /**
+   * The index of the species reference of each entry within the list of
+   * reactants, products, or modifiers of its reaction.
+   */
+  private final int references[];
+  /**
+   * The stoichiometry of each entry; {@link Double#NaN} for modifiers and for
+   * species references whose stoichiometry is given by a
+   * {@link org.sbml.jsbml.StoichiometryMath} element.
+   */
+  private final double stoichiometries[];
+
+  /**
+   * Indexes all species references within the given list of reactions.
+   * References to species that are not defined in the given model are
+   * ignored.
+   *
+   * @param model
+   *        defines the species and their indices.
+   * @param reactionList
+   *        the reactions whose indices are to be stored.
+   */
+  @SuppressWarnings("deprecation")
+  public SpeciesIncidence(Model model, ListOf<? extends Reaction> reactionList) {
+    int speciesCount = model.getSpeciesCount();
+    Map<String, Integer> speciesIndex = new HashMap<String, Integer>();
+    for (int i = 0; i < speciesCount; i++) {
+      speciesIndex.put(model.getSpecies(i).getId(), Integer.valueOf(i));
+    }
+
+    // First pass: resolve each species reference and count the entries of each row.
+    int reactionCount = reactionList.size();
+    int rows[][] = new int[reactionCount * ROLES][];
+    offsets = new int[speciesCount * ROLES + 1];
+    int entries = 0;
+    for (int r = 0; r < reactionCount; r++) {
+      Reaction reaction = reactionList.get(r);
+      for (int role = 0; role < ROLES; role++) {
+        ListOf<? extends SimpleSpeciesReference> list = getList(reaction, role);
+        int row[] = new int[list.size()];
+        for (int j = 0; j < row.length; j++) {
+          Integer index = speciesIndex.get(list.get(j).getSpecies());
+          if (index == null) {
+            row[j] = -1;
+          } else {
+            row[j] = index.intValue() * ROLES + role;
+            offsets[row[j] + 1]++;
+            entries++;
+          }
+        }
+        rows[r * ROLES + role] = row;
+      }
+    }
+    for (int i = 1; i < offsets.length; i++) {
+      offsets[i] += offsets[i - 1];
+    }
+
+    // Second pass: fill the entries in the order of increasing reaction index.
+    reactions = new int[entries];
+    references = new int[entries];
+    stoichiometries = new double[entries];
+    int next[] = new int[offsets.length - 1];
+    System.arraycopy(offsets, 0, next, 0, next.length);
+    for (int r = 0; r < reactionCount; r++) {
+      Reaction reaction = reactionList.get(r);
+      for (int role = 0; role < ROLES; role++) {
+        int row[] = rows[r * ROLES + role];
+        for (int j = 0; j < row.length; j++) {
+          if (row[j] >= 0) {
+            int pos = next[row[j]]++;
+            reactions[pos] = r;
+            references[pos] = j;
+            stoichiometries[pos] = Double.NaN;
+            if (role != MODIFIER) {
+              SpeciesReference specRef = (SpeciesReference) getList(reaction, role).get(j);
+              // Level 2 only: JSBML deprecates StoichiometryMath without a replacement.
+              if (!specRef.isSetStoichiometryMath()) {
+                stoichiometries[pos] = specRef.getStoichiometry();
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   *
+   * @param reaction
+   * @param role
+   * @return the list of species references of the given reaction in the given
+   *         role.
+   */
+  private static ListOf<? extends SimpleSpeciesReference> getList(Reaction reaction, int role) {
+    switch (role) {
+      case REACTANT:
+        return reaction.getListOfReactants();
+      case PRODUCT:
+        return reaction.getListOfProducts();
+      default:
+        return reaction.getListOfModifiers();
+    }
+  }
+
+  /**
+   * @param species
+   *        the index of a species within its model.
+   * @param role
+   *        one of {@link #REACTANT}, {@link #PRODUCT}, or {@link #MODIFIER}.
+   * @return the number of species references to the given species in the
+   *         given role.
+   */
+  public int getCount(int species, int role) {
+    int row = species * ROLES + role;
+    return offsets[row + 1] - offsets[row];
+  }
+
+  /**
+   * @param species
+   *        the index of a species within its model.
+   * @return the number of all species references to the given species.
+   */
+  public int getCount(int species) {
+    return offsets[(species + 1) * ROLES] - offsets[species * ROLES];
+  }
+
+  /**
+   * @param species
+   * @param role
+   * @param i
+   *        running index between zero and {@link #getCount(int, int)}.
+   * @return the zero-based index of the reaction of the i-th entry of the
+   *         given species in the given role.
+   */
+  public int getReaction(int species, int role, int i) {
+    return reactions[offsets[species * ROLES + role] + i];
+  }
+
+  /**
+   * @param species
+   * @param role
+   * @param i
+   *        running index between zero and {@link #getCount(int, int)}.
+   * @return the index of the i-th species reference to the given species in
+   *         the list of reactants, products, or modifiers of its reaction.
+   */
+  public int getReference(int species, int role, int i) {
+    return references[offsets[species * ROLES + role] + i];
+  }
+
+  /**
+   * Looks up the {@link SimpleSpeciesReference} of the i-th entry of the given
+   * species in the given role without searching the reaction for the species.
+   *
+   * @param reaction
+   *        the reaction given by {@link #getReaction(int, int, int)}.
+   * @param species
+   * @param role
+   * @param i
+   * @return
+   */
+  public SimpleSpeciesReference getSpeciesReference(Reaction reaction, int species, int role, int i) {
+    return getList(reaction, role).get(getReference(species, role, i));
+  }
+
+  /**
+   * @param species
+   * @param role
+   * @param i
+   *        running index between zero and {@link #getCount(int, int)}.
+   * @return the stoichiometry of the i-th entry of the given species in the
+   *         given role or {@link Double#NaN} if it is not a constant number.
+   */
+  public double getStoichiometry(int species, int role, int i) {
+    return stoichiometries[offsets[species * ROLES + role] + i];
+  }
+
+}
@@ -0,0 +1,281 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.AlgebraicRule;
+import org.sbml.jsbml.Assignment;
+import org.sbml.jsbml.Event;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Rule;
+
+/**
+ * Maps the identifiers of a {@link Model} to the indices of the rules, events,
+ * and initial assignments that refer to them. The index is built in one
+ * traversal over all rules, events, and initial assignments, afterwards each
+ * lookup only requires constant time. All arrays are sorted in ascending
+ * order and must not be modified.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+class SymbolIndex {
+
+  /**
+   * A growing list of ascending indices, which ignores duplicates.
+   *
+   * @author agent
+   * @since 1.0
+   * @version $Rev$
+   */
+  private static class Indices {
+
+    /**
+     *
+     */
+    private int data[] = EMPTY;
+    /**
+     *
+     */
+    private int size = 0;
+
+    /**
+     * Appends the given index unless it is already the last element.
+     *
+     * @param index
+     */
+    public void add(int index) {
+      if ((size > 0) && (data[size - 1] == index)) {
+        return;
+      }
+      if (size == data.length) {
+        int copy[] = new int[Math.max(4, 2 * size)];
+        System.arraycopy(data, 0, copy, 0, size);
+        data = copy;
+      }
+      data[size++] = index;
+    }
+
+    /**
+     * @return the indices in an array of the exact length.
+     */
+    public int[] toArray() {
+      if (size == data.length) {
+        return data;
+      }
+      int copy[] = new int[size];
+      System.arraycopy(data, 0, copy, 0, size);
+      return copy;
+    }
+
+  }
+
+  /**
+   * The indices of all elements that refer to one identifier.
+   *
+   * @author agent
+   * @since 1.0
+   * @version $Rev$
+   */
+  private static class Entry {
+
+    /**
+     * Events with an assignment to the identifier.
+     */
+    private int events[];
+    /**
+     * The first initial assignment of the identifier.
+     */
+    private int initialAssignment = -1;
+    /**
+     * Rules that assign a value or rate to the identifier.
+     */
+    private int assigningRules[];
+    /**
+     * Rules whose math contains the identifier.
+     */
+    private int referencingRules[];
+    /**
+     * Rules that determine the identifier, i.e., algebraic rules containing
+     * it and all other rules that assign it.
+     */
+    private int determiningRules[];
+    /**
+     * Collect the indices while the index is being built.
+     */
+    private Indices eventList = new Indices(), assigningList = new Indices(),
+        referencingList = new Indices(), determiningList = new Indices();
+
+    /**
+     * Replaces the lists by arrays of the exact size.
+     */
+    private void trim() {
+      events = eventList.toArray();
+      assigningRules = assigningList.toArray();
+      referencingRules = referencingList.toArray();
+      determiningRules = determiningList.toArray();
+      eventList = assigningList = referencingList = determiningList = null;
+    }
+
+  }
+
+  /**
+   * Returned if no element refers to an identifier.
+   */
+  private static final int EMPTY[] = new int[0];
+
+  /**
+   * Adds the names of all {@link ASTNode.Type#NAME} nodes within the given
+   * tree to the set.
+   *
+   * @param math
+   * @param names
+   */
+  private static void collectNames(ASTNode math, Set<String> names) {
+    if (math.getType() == ASTNode.Type.NAME) {
+      names.add(math.getName());
+    }
+    for (int i = 0; i < math.getChildCount(); i++) {
+      collectNames(math.getChild(i), names);
+    }
+  }
+
+  /**
+   *
+   */
+  private final Map<String, Entry> entries;
+
+  /**
+   *
+   * @param model
+   */
+  public SymbolIndex(Model model) {
+    entries = new HashMap<String, Entry>();
+    Entry entry;
+    for (int i = model.getInitialAssignmentCount() - 1; i >= 0; i--) {
+      entry = entry(model.getInitialAssignment(i).getVariable());
+      entry.initialAssignment = i;
+    }
+    for (int i = 0; i < model.getEventCount(); i++) {
+      Event event = model.getEvent(i);
+      for (int j = 0; j < event.getEventAssignmentCount(); j++) {
+        entry = entry(event.getEventAssignment(j).getVariable());
+        entry.eventList.add(i);
+      }
+    }
+    Set<String> names = new HashSet<String>();
+    for (int i = 0; i < model.getRuleCount(); i++) {
+      Rule rule = model.getRule(i);
+      boolean algebraic = rule instanceof AlgebraicRule;
+      if (!algebraic) {
+        entry = entry(((Assignment) rule).getVariable());
+        entry.assigningList.add(i);
+        entry.determiningList.add(i);
+      }
+      if (rule.isSetMath()) {
+        names.clear();
+        collectNames(rule.getMath(), names);
+        for (String name : names) {
+          entry = entry(name);
+          entry.referencingList.add(i);
+          if (algebraic) {
+            entry.determiningList.add(i);
+          }
+        }
+      }
+    }
+    for (Entry e : entries.values()) {
+      e.trim();
+    }
+  }
+
+  /**
+   *
+   * @param id
+   * @return the entry for the given identifier, which is created if necessary.
+   */
+  private Entry entry(String id) {
+    Entry entry = entries.get(id);
+    if (entry == null) {
+      entry = new Entry();
+      entries.put(id, entry);
+    }
+    return entry;
+  }
+
+  /**
+   * @param id
+   * @return the indices of all events that assign the given identifier.
+   */
+  public int[] getEvents(String id) {
+    Entry entry = entries.get(id);
+    return entry == null ? EMPTY : entry.events;
+  }
+
+  /**
+   * @param id
+   * @return the index of the first initial assignment of the given identifier
+   *         or -1 if there is none.
+   */
+  public int getInitialAssignment(String id) {
+    Entry entry = entries.get(id);
+    return entry == null ? -1 : entry.initialAssignment;
+  }
+
+  /**
+   * @param id
+   * @return the indices of all assignment and rate rules whose variable is the
+   *         given identifier.
+   */
+  public int[] getRulesAssigning(String id) {
+    Entry entry = entries.get(id);
+    return entry == null ? EMPTY : entry.assigningRules;
+  }
+
+  /**
+   * @param id
+   * @return the indices of all algebraic rules that contain the given
+   *         identifier together with all other rules that assign it.
+   */
+  public int[] getRulesDetermining(String id) {
+    Entry entry = entries.get(id);
+    return entry == null ? EMPTY : entry.determiningRules;
+  }
+
+  /**
+   * @param id
+   * @return the indices of all rules whose math contains the given identifier.
+   */
+  public int[] getRulesReferencing(String id) {
+    Entry entry = entries.get(id);
+    return entry == null ? EMPTY : entry.referencingRules;
+  }
+
+}
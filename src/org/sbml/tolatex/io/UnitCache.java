@@ -0,0 +1,129 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.sbml.jsbml.SBaseWithDerivedUnit;
+import org.sbml.jsbml.UnitDefinition;
+
+/**
+ * Memorizes units within one report: the derived unit of each element, the
+ * LaTeX code of each {@link UnitDefinition}, and the LaTeX code of the units
+ * of concentrations, which are composed of the substance units of a species
+ * and the units of its compartment. Deriving a unit requires to traverse the
+ * math of an element or to create new {@link UnitDefinition} objects, but the
+ * same elements are looked up in the tables, in the checks of the reactions,
+ * and in the description of each species.
+ * <p>
+ * Elements and unit definitions are identified by reference, hence the model
+ * must not be changed while its report is being written.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+class UnitCache {
+
+  /**
+   * The LaTeX code of concentration units, the key is the identifier of the
+   * substance units, followed by a tab and the compartment identifier.
+   */
+  private final Map<String, String> concentrationUnits;
+  /**
+   * The derived unit of each element, might contain {@code null} values.
+   */
+  private final Map<SBaseWithDerivedUnit, UnitDefinition> derived;
+  /**
+   * The LaTeX code of each unit definition.
+   */
+  private final Map<UnitDefinition, String> formatted;
+
+  /**
+   *
+   */
+  public UnitCache() {
+    concentrationUnits = new HashMap<String, String>();
+    derived = new IdentityHashMap<SBaseWithDerivedUnit, UnitDefinition>();
+    formatted = new IdentityHashMap<UnitDefinition, String>();
+  }
+
+  /**
+   *
+   * @param substanceUnits
+   * @param compartment
+   * @return the memorized LaTeX code of the given concentration unit or
+   *         {@code null} if it has not yet been formatted.
+   */
+  public String getConcentrationUnits(String substanceUnits, String compartment) {
+    return concentrationUnits.get(substanceUnits + '\t' + compartment);
+  }
+
+  /**
+   *
+   * @param element
+   * @return the derived unit of the given element, which is only computed
+   *         once.
+   */
+  public UnitDefinition getDerivedUnitDefinition(SBaseWithDerivedUnit element) {
+    UnitDefinition ud = derived.get(element);
+    if ((ud == null) && !derived.containsKey(element)) {
+      ud = element.getDerivedUnitDefinition();
+      derived.put(element, ud);
+    }
+    return ud;
+  }
+
+  /**
+   *
+   * @param ud
+   * @return the memorized LaTeX code of the given unit definition or
+   *         {@code null} if it has not yet been formatted.
+   */
+  public String getFormatted(UnitDefinition ud) {
+    return formatted.get(ud);
+  }
+
+  /**
+   *
+   * @param substanceUnits
+   * @param compartment
+   * @param latex
+   */
+  public void putConcentrationUnits(String substanceUnits, String compartment, String latex) {
+    concentrationUnits.put(substanceUnits + '\t' + compartment, latex);
+  }
+
+  /**
+   *
+   * @param ud
+   * @param latex
+   */
+  public void putFormatted(UnitDefinition ud, String latex) {
+    formatted.put(ud, latex);
+  }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import org.sbml.jsbml.SBMLDocument;
+
+/**
+ * Checks the consistency of an {@link SBMLDocument} for the appendix of a
+ * report. Implementations are called from a background thread while the
+ * report is being written. They always receive a private copy of the
+ * document, which they may modify, e.g., by adding errors to its error log.
+ * <p>
+ * Other validators, such as a local installation of the SBML validator, can
+ * be used by passing an implementation of this interface to
+ * {@link LaTeXReportGenerator#setValidationBackend(ValidationBackend)}.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public interface ValidationBackend {
+
+  /**
+   * @return a unique name of this backend, which distinguishes its results
+   *         from those of other backends in the cache of
+   *         {@link ValidationService}.
+   */
+  public String getName();
+
+  /**
+   * @return {@code true} if this backend performs all checks of the SBML
+   *         specification, {@code false} if it only checks a subset of them.
+   */
+  public boolean isComplete();
+
+  /**
+   * @param doc
+   *        a private copy of the document to be checked.
+   * @return the problems found in the given document.
+   * @throws Exception
+   *         if the validation could not be performed.
+   */
+  public ValidationReport validate(SBMLDocument doc) throws Exception;
+
+}
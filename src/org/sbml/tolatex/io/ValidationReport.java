@@ -0,0 +1,249 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SBMLError;
+
+/**
+ * The result of a {@link ValidationBackend}. In contrast to the error log of
+ * an {@link SBMLDocument}, a report is independent of the document it
+ * belongs to and cannot be changed, so that it can be cached and shared
+ * between several threads.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class ValidationReport {
+
+  /**
+   * A single problem found during the validation.
+   *
+   * @author agent
+   * @since 1.0
+   * @version $Rev$
+   */
+  public static class Problem {
+
+    /**
+     * The identification code of the problem, usually the number of the
+     * violated validation rule of the SBML specification.
+     */
+    private final int id;
+    /**
+     * A human-readable description.
+     */
+    private final String message;
+    /**
+     *
+     */
+    private final Severity severity;
+
+    /**
+     *
+     * @param severity
+     * @param id
+     * @param message
+     */
+    public Problem(Severity severity, int id, String message) {
+      this.severity = severity;
+      this.id = id;
+      this.message = message;
+    }
+
+    /**
+     * @return the identification code of this problem.
+     */
+    public int getId() {
+      return id;
+    }
+
+    /**
+     * @return the description of this problem.
+     */
+    public String getMessage() {
+      return message;
+    }
+
+    /**
+     * @return the category of this problem.
+     */
+    public Severity getSeverity() {
+      return severity;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+      return severity + " " + id + ": " + message;
+    }
+
+  }
+
+  /**
+   * The categories of problems, which are listed in separate subsections of
+   * the report.
+   *
+   * @author agent
+   * @since 1.0
+   */
+  public static enum Severity {
+    /**
+     *
+     */
+    ERROR,
+    /**
+     *
+     */
+    FATAL,
+    /**
+     *
+     */
+    INFO,
+    /**
+     *
+     */
+    INTERNAL,
+    /**
+     *
+     */
+    SYSTEM,
+    /**
+     *
+     */
+    WARNING,
+    /**
+     *
+     */
+    XML;
+  }
+
+  /**
+   * Indicates that a backend cannot validate documents.
+   */
+  public static final ValidationReport NOT_SUPPORTED = new ValidationReport(
+    false, Collections.<Problem>emptyList());
+
+  /**
+   * Converts the error log of the given document.
+   *
+   * @param doc
+   * @return a report containing all errors of the given document.
+   */
+  public static ValidationReport fromErrorLog(SBMLDocument doc) {
+    List<Problem> problems = new ArrayList<Problem>(doc.getErrorCount());
+    for (int i = 0; i < doc.getErrorCount(); i++) {
+      SBMLError error = doc.getError(i);
+      Severity severity;
+      if (error.isInfo()) {
+        severity = Severity.INFO;
+      } else if (error.isWarning()) {
+        severity = Severity.WARNING;
+      } else if (error.isFatal()) {
+        severity = Severity.FATAL;
+      } else if (error.isSystem()) {
+        severity = Severity.SYSTEM;
+      } else if (error.isXML()) {
+        severity = Severity.XML;
+      } else if (error.isInternal()) {
+        severity = Severity.INTERNAL;
+      } else {
+        severity = Severity.ERROR;
+      }
+      problems.add(new Problem(severity, error.getErrorId(), error.getMessage()));
+    }
+    return new ValidationReport(true, problems);
+  }
+
+  /**
+   *
+   */
+  private final List<Problem> problems;
+  /**
+   *
+   */
+  private final boolean supported;
+
+  /**
+   *
+   * @param problems
+   */
+  public ValidationReport(List<Problem> problems) {
+    this(true, problems);
+  }
+
+  /**
+   *
+   * @param supported
+   * @param problems
+   */
+  private ValidationReport(boolean supported, List<Problem> problems) {
+    this.supported = supported;
+    this.problems = Collections.unmodifiableList(new ArrayList<Problem>(problems));
+  }
+
+  /**
+   * @return the number of problems.
+   */
+  public int getProblemCount() {
+    return problems.size();
+  }
+
+  /**
+   * @return all problems in the order in which they were found.
+   */
+  public List<Problem> getProblems() {
+    return problems;
+  }
+
+  /**
+   * @param severity
+   * @return all problems of the given category.
+   */
+  public List<Problem> getProblems(Severity severity) {
+    List<Problem> list = new ArrayList<Problem>();
+    for (Problem problem : problems) {
+      if (problem.getSeverity() == severity) {
+        list.add(problem);
+      }
+    }
+    return list;
+  }
+
+  /**
+   * @return {@code false} if the backend could not perform the validation
+   *         because it is not implemented.
+   */
+  public boolean isSupported() {
+    return supported;
+  }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ *
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SBMLException;
+import org.sbml.jsbml.SBMLWriter;
+import org.sbml.jsbml.xml.stax.SBMLReader;
+
+/**
+ * Runs {@link ValidationBackend}s in the background and caches their results.
+ * A snapshot of the document is serialized when the validation is submitted,
+ * the backend then works on a copy parsed from this snapshot, so that the
+ * report can be written at the same time. Results are identified by the name
+ * of the backend and a SHA-256 hash of the snapshot, hence unchanged documents
+ * are only validated once per JVM, which in particular avoids repeated
+ * requests to the online validator.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class ValidationService {
+
+  /**
+   * A {@link Logger} for this class.
+   */
+  private static final transient Logger logger = Logger.getLogger(ValidationService.class.getName());
+
+  /**
+   * The maximal number of cached results.
+   */
+  public static final int CACHE_SIZE = 64;
+
+  /**
+   * The results of recent validations, in access order.
+   */
+  private static final Map<String, ValidationReport> cache = new LinkedHashMap<String, ValidationReport>(16, 0.75f, true) {
+    /**
+     * Generated serial version identifier.
+     */
+    private static final long serialVersionUID = -6412530829458366104L;
+
+    /* (non-Javadoc)
+     * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+     */
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, ValidationReport> eldest) {
+      return size() > CACHE_SIZE;
+    }
+  };
+
+  /**
+   * Runs the validations. Its threads do not prevent the JVM from exiting.
+   */
+  private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+    /* (non-Javadoc)
+     * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+     */
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "SBML validation");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  /**
+   * Utility class.
+   */
+  private ValidationService() {
+  }
+
+  /**
+   *
+   * @param backend
+   * @param xml
+   * @return the cache key of the given snapshot.
+   */
+  private static String key(ValidationBackend backend, String xml) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      byte hash[] = digest.digest(xml.getBytes("UTF-8"));
+      StringBuilder key = new StringBuilder(backend.getName().length() + 1 + 2 * hash.length);
+      key.append(backend.getName()).append(':');
+      for (byte b : hash) {
+        key.append(Character.forDigit((b >> 4) & 0xf, 16));
+        key.append(Character.forDigit(b & 0xf, 16));
+      }
+      return key.toString();
+    } catch (NoSuchAlgorithmException exc) {
+      // SHA-256 is supported by every JVM.
+      throw new IllegalStateException(exc);
+    } catch (UnsupportedEncodingException exc) {
+      // UTF-8 is supported by every JVM.
+      throw new IllegalStateException(exc);
+    }
+  }
+
+  /**
+   * Takes a snapshot of the given document and starts its validation in the
+   * background unless the result is already known.
+   *
+   * @param doc
+   * @param backend
+   * @return the result of the validation.
+   * @throws SBMLException
+   * @throws XMLStreamException
+   *         if the document cannot be serialized.
+   */
+  public static Future<ValidationReport> submit(SBMLDocument doc, final ValidationBackend backend)
+      throws SBMLException, XMLStreamException {
+    final String xml = new SBMLWriter().writeSBMLToString(doc);
+    final String key = key(backend, xml);
+    ValidationReport report;
+    synchronized (cache) {
+      report = cache.get(key);
+    }
+    if (report != null) {
+      logger.fine("Reusing the result of a previous validation.");
+      FutureTask<ValidationReport> done = new FutureTask<ValidationReport>(new Runnable() {
+        /* (non-Javadoc)
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+        }
+      }, report);
+      done.run();
+      return done;
+    }
+    return executor.submit(new Callable<ValidationReport>() {
+      /* (non-Javadoc)
+       * @see java.util.concurrent.Callable#call()
+       */
+      @Override
+      public ValidationReport call() throws Exception {
+        SBMLDocument copy = new SBMLReader().readSBMLFromString(xml);
+        ValidationReport result = backend.validate(copy);
+        synchronized (cache) {
+          cache.put(key, result);
+        }
+        return result;
+      }
+    });
+  }
+
+}
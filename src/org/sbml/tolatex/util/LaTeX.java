@@ -23,9 +23,16 @@
  */
 package org.sbml.tolatex.util;
 
+import java.io.IOException;
+
 import de.zbit.util.StringUtil;
 
 /**
+ * Creates LaTeX commands. Most commands exist in two variants: one returns a
+ * new buffer containing the command, the other one takes an
+ * {@link Appendable} as its first argument, writes the command directly to it
+ * and returns this output, so that no intermediate buffers are needed when
+ * writing a report.
  * 
  * @author Andreas Dr&auml;ger
  * @date 2009-01-03
@@ -178,6 +185,64 @@ public class LaTeX extends StringUtil {
 		return sb;
 	}
 
+	/**
+	 * Writes the command with one argument in braces for each of the given
+	 * objects to the output.
+	 * 
+	 * @param out
+	 * @param command
+	 * @param args
+	 * @return the given output
+	 * @throws IOException
+	 */
+	private static <A extends Appendable> A command(A out, String command,
+			Object... args) throws IOException {
+		out.append('\\');
+		out.append(command);
+		for (Object arg : args) {
+			out.append('{');
+			write(out, arg);
+			out.append('}');
+		}
+		return out;
+	}
+
+	/**
+	 * Writes the given formula as a mathematical equation in a math environment
+	 * (not in-line) to the output.
+	 * 
+	 * @param out
+	 * @param formula
+	 *        A formula to be displayed as an equation.
+	 * @param formulae
+	 *        Additional terms, for instance the following two: "=",
+	 *        "some expression"
+	 * @return the given output
+	 * @throws IOException
+	 */
+	public static <A extends Appendable> A equation(A out, CharSequence formula,
+			CharSequence... formulae) throws IOException {
+		if (formula.length() == 0) {
+			return out;
+		}
+		if (formula.charAt(0) != '$') {
+			out.append(eqBegin);
+		}
+		out.append(formula);
+		CharSequence last = formula;
+		for (CharSequence f : formulae) {
+			out.append(f);
+			if (f.length() > 0) {
+				last = f;
+			}
+		}
+		if ((formula.charAt(formula.length() - 1) != '$')
+				&& (last.charAt(last.length() - 1) != '$')) {
+			out.append(eqEnd);
+		}
+		return out;
+	}
+
 	/**
 	 * 
 	 * @param formula
@@ -200,6 +265,19 @@ public class LaTeX extends StringUtil {
 		return command("frac", numerator, denominator);
 	}
 
+	/**
+	 * 
+	 * @param out
+	 * @param numerator
+	 * @param denominator
+	 * @return the given output
+	 * @throws IOException
+	 */
+	public static <A extends Appendable> A frac(A out, Object numerator,
+			Object denominator) throws IOException {
+		return command(out, "frac", numerator, denominator);
+	}
+
 	/**
 	 * Without brackets.
 	 * 
@@ -278,6 +356,34 @@ public class LaTeX extends StringUtil {
 		return heading;
 	}
 
+	/**
+	 * Writes a heading to the output.
+	 * 
+	 * @param out
+	 * @param kind
+	 *        E.g., section, subsection, subsubsection, paragraph etc.
+	 * @param title
+	 *        The title of the heading.
+	 * @param numbering
+	 *        If true a number will be placed in front of the title.
+	 * @return the given output
+	 * @throws IOException
+	 */
+	private static <A extends Appendable> A heading(A out, String kind,
+			String title, boolean numbering) throws IOException {
+		out.append(newLine());
+		out.append('\\');
+		out.append(kind);
+		if (!numbering) {
+			out.append('*');
+		}
+		out.append('{');
+		out.append(title);
+		out.append('}');
+		out.append(newLine());
+		return out;
+	}
+
 	/**
 	 * Masks all special characters used by LaTeX with a backslash including
 	 * hyphen symbols.
@@ -296,31 +402,38 @@ public class LaTeX extends StringUtil {
 	 *        if true a hyphen symbol is introduced at each position where a
 	 *        special character has to be masked anyway.
 	 * @return
+	 * @see LaTeXEscaper#SPECIAL_CHARS
 	 */
 	public static String maskSpecialChars(String string, boolean hyphen) {
-		StringBuffer masked = new StringBuffer();
-		for (int i = 0; i < string.length(); i++) {
-			char atI = string.charAt(i);
-			if (atI == '<') {
-				masked.append("$<$");
-			} else if (atI == '>') {
-				masked.append("$>$");
-			} else {
-				if ((atI == '_') || (atI == '\\') || (atI == '$') || (atI == '&')
-						|| (atI == '#') || (atI == '{') || (atI == '}') || (atI == '~')
-						|| (atI == '%') || (atI == '^')) {
-					if ((i == 0) || (!hyphen)) {
-						masked.append('\\');
-					} else if (hyphen && (string.charAt(i - 1) != '\\'))
-					{
-						masked.append("\\-\\"); // masked.append('\\');
-						// } else if ((atI == '[') || (atI == ']')) {
-					}
-				}
-				masked.append(atI);
-			}
-		}
-		return masked.toString().trim();
+		return LaTeXEscaper.SPECIAL_CHARS.escape(string, hyphen, false);
+	}
+
+	/**
+	 * Masks all special characters including hyphen symbols and replaces
+	 * straight quotation marks by {@link #leftQuotationMark} and
+	 * {@link #rightQuotationMark} in alternation.
+	 * 
+	 * @param string
+	 * @param hyphen
+	 * @param quotationMarks
+	 * @return
+	 */
+	public static String maskSpecialChars(String string, boolean hyphen,
+		boolean quotationMarks) {
+		return LaTeXEscaper.SPECIAL_CHARS.escape(string, hyphen, quotationMarks);
+	}
+
+	/**
+	 * Appends the given string to the output, where all special characters
+	 * are masked including hyphen symbols.
+	 * 
+	 * @param out
+	 * @param string
+	 * @throws IOException
+	 */
+	public static void maskSpecialChars(Appendable out, String string)
+		throws IOException {
+		LaTeXEscaper.SPECIAL_CHARS.escape(out, string, true, false);
 	}
 
 	/**
@@ -410,6 +523,22 @@ public class LaTeX extends StringUtil {
 		return usepackage;
 	}
 
+	/**
+	 * Appends the given object to the output without creating a copy of it if
+	 * it already is a character sequence.
+	 * 
+	 * @param out
+	 * @param what
+	 * @throws IOException
+	 */
+	private static void write(Appendable out, Object what) throws IOException {
+		if (what instanceof CharSequence) {
+			out.append((CharSequence) what);
+		} else {
+			out.append(String.valueOf(what));
+		}
+	}
+
 	/**
 	 * An opening quotation mark.
 	 */
@@ -463,6 +592,26 @@ public class LaTeX extends StringUtil {
 		return itemBuffer;
 	}
 
+	/**
+	 * Writes an item of a description to the output, see
+	 * {@link #descriptionItem(String, Object)}.
+	 * 
+	 * @param out
+	 * @param item
+	 * @param description
+	 * @return the given output
+	 * @throws IOException
+	 */
+	public <A extends Appendable> A descriptionItem(A out, String item,
+			Object description) throws IOException {
+		out.append("\\item[");
+		out.append(item);
+		out.append("] ");
+		write(out, description);
+		out.append(newLine());
+		return out;
+	}
+
 	/**
 	 * This method returns a {@code StringBuffer} representing a properly
 	 * LaTeX formatted number. However, if the {@code double} argument
@@ -525,6 +674,24 @@ public class LaTeX extends StringUtil {
 		return sb;
 	}
 
+	/**
+	 * 
+	 * @param out
+	 * @param target
+	 * @param text
+	 * @return the given output
+	 * @throws IOException
+	 */
+	public <A extends Appendable> A hyperref(A out, String target,
+			Object text) throws IOException {
+		out.append("\\hyperref[");
+		out.append(target);
+		out.append("]{");
+		write(out, text);
+		out.append('}');
+		return out;
+	}
+
 	public StringBuffer label(String id) {
 		return command("label", new StringBuffer(id));
 	}
@@ -543,40 +710,95 @@ public class LaTeX extends StringUtil {
 	 */
 	public StringBuffer longtableHead(String columnDef, String caption,
 			String... headLine) {
-		StringBuffer buffer = new StringBuffer("\\begin{longtable}[h!]{");
+		StringBuffer buffer = new StringBuffer();
+		try {
+			longtableHead(buffer, columnDef, caption, headLine);
+		} catch (IOException exc) {
+			// Cannot happen when writing to memory.
+			throw new IllegalStateException(exc);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Writes the head of a longtable to the output, see
+	 * {@link #longtableHead(String, String, String...)}.
+	 * 
+	 * @param out
+	 * @param columnDef
+	 * @param caption
+	 * @param headLine
+	 * @return the given output
+	 * @throws IOException
+	 */
+	public <A extends Appendable> A longtableHead(A out,
+			String columnDef, String caption, String... headLine)
+			throws IOException {
+		out.append("\\begin{longtable}[h!]{");
 		if (!columnDef.startsWith("@{}")) {
-			buffer.append("@{}");
+			out.append("@{}");
 		}
-		buffer.append(columnDef);
+		out.append(columnDef);
 		if (!columnDef.endsWith("@{}")) {
-			buffer.append("@{}");
+			out.append("@{}");
 		}
-		buffer.append('}');
-		buffer.append(newLine());
-		buffer.append("\\caption{");
-		buffer.append(caption);
-		buffer.append('}');
-		buffer.append("\\\\");
-		StringBuffer head = new StringBuffer(toprule);
-		if (headLine != null) {
-			for (int i = 0; i < headLine.length; i++) {
-				head.append(headLine[i]);
-				if (i < headLine.length - 1) {
-					head.append('&');
+		out.append('}');
+		out.append(newLine());
+		out.append("\\caption{");
+		out.append(caption);
+		out.append('}');
+		out.append("\\\\");
+		// The head is repeated on each page of the table.
+		for (int k = 0; k < 2; k++) {
+			out.append(toprule);
+			if (headLine != null) {
+				for (int i = 0; i < headLine.length; i++) {
+					out.append(headLine[i]);
+					if (i < headLine.length - 1) {
+						out.append('&');
+					}
 				}
 			}
+			out.append("\\\\");
+			out.append(midrule);
+			out.append(k == 0 ? "\\endfirsthead" : "\\endhead");
 		}
-		head.append("\\\\");
-		head.append(midrule);
-		buffer.append(head);
-		buffer.append("\\endfirsthead");
-		// buffer.append(newLine());
-		buffer.append(head);
-		buffer.append("\\endhead");
-		// buffer.append(bottomrule);
-		// buffer.append("\\endlastfoot");
-		buffer.append(newLine());
-		return buffer;
+		out.append(newLine());
+		return out;
+	}
+
+	/**
+	 * Writes the given identifier in type writer font within a math
+	 * environment to the output, where all special characters are masked.
+	 * 
+	 * @param out
+	 * @param id
+	 * @return the given output
+	 * @throws IOException
+	 */
+	public <A extends Appendable> A maskedMathtt(A out, String id)
+			throws IOException {
+		out.append("\\mathtt{");
+		maskSpecialChars(out, id);
+		out.append('}');
+		return out;
+	}
+
+	/**
+	 * Writes the given identifier in type writer font to the output, where all
+	 * special characters are masked.
+	 * 
+	 * @param out
+	 * @param id
+	 * @return the given output
+	 * @throws IOException
+	 */
+	public <A extends Appendable> A maskedTexttt(A out, String id)
+			throws IOException {
+		out.append("\\texttt{");
+		maskSpecialChars(out, id);
+		out.append('}');
+		return out;
 	}
 
 	/**
@@ -601,6 +823,32 @@ public class LaTeX extends StringUtil {
 		return math;
 	}
 
+	/**
+	 * Encloses the given formula in dollar symbols (inline math mode) and
+	 * writes it to the output.
+	 * 
+	 * @param out
+	 * @param formula
+	 * @return the given output
+	 * @throws IOException
+	 */
+	public <A extends Appendable> A math(A out, Object formula)
+			throws IOException {
+		CharSequence f = (formula instanceof CharSequence) ? (CharSequence) formula
+				: String.valueOf(formula);
+		if (f.length() == 0) {
+			return out;
+		}
+		if (f.charAt(0) != '$') {
+			out.append('$');
+		}
+		out.append(f);
+		if (f.charAt(f.length() - 1) != '$') {
+			out.append('$');
+		}
+		return out;
+	}
+
 	/**
 	 * Returns the LaTeX code to set the given String in type writer font within a
 	 * math environment.
@@ -612,10 +860,37 @@ public class LaTeX extends StringUtil {
 		return command("mathtt", new StringBuffer(id));
 	}
 
+	/**
+	 * Writes the given String in type writer font within a math environment to
+	 * the output.
+	 * 
+	 * @param out
+	 * @param id
+	 * @return the given output
+	 * @throws IOException
+	 */
+	public <A extends Appendable> A mathtt(A out, CharSequence id)
+			throws IOException {
+		return command(out, "mathtt", id);
+	}
+
 	public StringBuffer section(String title, boolean numbering) {
 		return heading("section", title, numbering);
 	}
 
+	/**
+	 * 
+	 * @param out
+	 * @param title
+	 * @param numbering
+	 * @return the given output
+	 * @throws IOException
+	 */
+	public <A extends Appendable> A section(A out, String title,
+			boolean numbering) throws IOException {
+		return heading(out, "section", title, numbering);
+	}
+
 	/**
 	 * 
 	 * @param title
@@ -626,6 +901,19 @@ public class LaTeX extends StringUtil {
 		return heading("subsection", title, numbering);
 	}
 
+	/**
+	 * 
+	 * @param out
+	 * @param title
+	 * @param numbering
+	 * @return the given output
+	 * @throws IOException
+	 */
+	public <A extends Appendable> A subsection(A out, String title,
+			boolean numbering) throws IOException {
+		return heading(out, "subsection", title, numbering);
+	}
+
 	/**
 	 * 
 	 * @param title
@@ -636,6 +924,19 @@ public class LaTeX extends StringUtil {
 		return heading("subsubsection", title, numbering);
 	}
 
+	/**
+	 * 
+	 * @param out
+	 * @param title
+	 * @param numbering
+	 * @return the given output
+	 * @throws IOException
+	 */
+	public <A extends Appendable> A subsubsection(A out, String title,
+			boolean numbering) throws IOException {
+		return heading(out, "subsubsection", title, numbering);
+	}
+
 	/**
 	 * 
 	 * @param color
@@ -656,6 +957,19 @@ public class LaTeX extends StringUtil {
 		return command("texttt", new StringBuffer(id));
 	}
 
+	/**
+	 * Writes the given String in type writer font to the output.
+	 * 
+	 * @param out
+	 * @param id
+	 * @return the given output
+	 * @throws IOException
+	 */
+	public <A extends Appendable> A texttt(A out, CharSequence id)
+			throws IOException {
+		return command(out, "texttt", id);
+	}
+
 	/**
 	 * 
 	 * @return
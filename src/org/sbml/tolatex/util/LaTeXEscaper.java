@@ -0,0 +1,210 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ * 
+ * Copyright (C) 2008-2014 by the University of Tuebingen, Germany.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.util;
+
+import java.io.IOException;
+
+/**
+ * Escapes the characters of a text that have a special meaning in LaTeX in
+ * a single pass. Each escaper is defined by a table that maps characters to
+ * their replacements. The result is either returned as a {@link String} or
+ * appended directly to any {@link Appendable}, such as a {@link java.io.Writer}.
+ * Texts that do not contain any character to be replaced are returned
+ * unchanged without any copy.
+ * <p>
+ * Optionally, straight quotation marks are replaced by
+ * {@link LaTeX#leftQuotationMark} and {@link LaTeX#rightQuotationMark} in
+ * alternation.
+ * 
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class LaTeXEscaper {
+
+	/**
+	 * Characters that are masked by a preceding backslash in identifiers and
+	 * names.
+	 */
+	private static final String MASKED_CHARS = "_\\$&#{}~%^";
+
+	/**
+	 * Escapes identifiers and names, see {@link LaTeX#maskSpecialChars(String,
+	 * boolean)}: the characters {@value #MASKED_CHARS} are masked by a
+	 * backslash, {@code <} and {@code >} are written in math mode, and
+	 * whitespace at the beginning and the end is removed.
+	 */
+	public static final LaTeXEscaper SPECIAL_CHARS;
+
+	/**
+	 * Does not escape any character, but can be used to replace quotation
+	 * marks.
+	 */
+	public static final LaTeXEscaper QUOTATION_MARKS = new LaTeXEscaper(
+		new String[0], false);
+
+	static {
+		String replacements[] = new String[128];
+		for (int i = 0; i < MASKED_CHARS.length(); i++) {
+			char c = MASKED_CHARS.charAt(i);
+			replacements[c] = "\\" + c;
+		}
+		replacements['<'] = "$<$";
+		replacements['>'] = "$>$";
+		SPECIAL_CHARS = new LaTeXEscaper(replacements, true);
+	}
+
+	/**
+	 * The replacement of each character or {@code null} if the character is
+	 * kept.
+	 */
+	private final String replacements[];
+
+	/**
+	 * The replacements that introduce a hyphen before a masked character, or
+	 * {@code null} for characters that are not masked by a single backslash.
+	 */
+	private final String hyphenated[];
+
+	/**
+	 * Whether whitespace at the beginning and the end is removed.
+	 */
+	private final boolean trim;
+
+	/**
+	 * 
+	 * @param replacements
+	 * @param trim
+	 */
+	private LaTeXEscaper(String replacements[], boolean trim) {
+		this.replacements = replacements;
+		this.trim = trim;
+		hyphenated = new String[replacements.length];
+		for (char c = 0; c < replacements.length; c++) {
+			if ((replacements[c] != null) && replacements[c].equals("\\" + c)) {
+				hyphenated[c] = "\\-" + replacements[c];
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param text
+	 * @param hyphen
+	 *        if {@code true}, a hyphen is introduced at each position where a
+	 *        character is masked by a backslash, unless it is the first
+	 *        character or follows a backslash, which then masks the character.
+	 * @param quotationMarks
+	 *        whether straight quotation marks are to be replaced.
+	 * @return the escaped text, which is the given text itself if nothing
+	 *         needs to be escaped.
+	 */
+	public String escape(String text, boolean hyphen, boolean quotationMarks) {
+		if (isPlain(text, quotationMarks)) {
+			return text;
+		}
+		StringBuilder sb = new StringBuilder(text.length() + 16);
+		try {
+			escape(sb, text, hyphen, quotationMarks);
+		} catch (IOException exc) {
+			// Cannot happen when writing to memory.
+			throw new IllegalStateException(exc);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Appends the escaped text to the given output.
+	 * 
+	 * @param out
+	 * @param text
+	 * @param hyphen
+	 *        see {@link #escape(String, boolean, boolean)}.
+	 * @param quotationMarks
+	 *        whether straight quotation marks are to be replaced.
+	 * @throws IOException
+	 *         if the output cannot be written.
+	 */
+	public void escape(Appendable out, CharSequence text, boolean hyphen,
+		boolean quotationMarks) throws IOException {
+		int start = 0, end = text.length();
+		if (trim) {
+			while ((start < end) && (text.charAt(start) <= ' ')) {
+				start++;
+			}
+			while ((end > start) && (text.charAt(end - 1) <= ' ')) {
+				end--;
+			}
+		}
+		boolean left = true;
+		int copied = start;
+		char previous = start > 0 ? text.charAt(start - 1) : 0;
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			char last = c;
+			String replacement = null;
+			if ((c == '"') && quotationMarks) {
+				replacement = left ? LaTeX.leftQuotationMark : LaTeX.rightQuotationMark;
+				left = !left;
+				last = replacement.charAt(replacement.length() - 1);
+			} else if ((c < replacements.length) && (replacements[c] != null)) {
+				replacement = replacements[c];
+				if (hyphen && (i > 0) && (hyphenated[c] != null)) {
+					// A preceding backslash already masks the character.
+					replacement = previous == '\\' ? null : hyphenated[c];
+				}
+			}
+			if (replacement != null) {
+				out.append(text, copied, i);
+				out.append(replacement);
+				copied = i + 1;
+			}
+			previous = last;
+		}
+		out.append(text, copied, end);
+	}
+
+	/**
+	 * 
+	 * @param text
+	 * @param quotationMarks
+	 * @return {@code true} if the given text does not need to be changed.
+	 */
+	private boolean isPlain(CharSequence text, boolean quotationMarks) {
+		int length = text.length();
+		if (trim && (length > 0)
+				&& ((text.charAt(0) <= ' ') || (text.charAt(length - 1) <= ' '))) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (((c < replacements.length) && (replacements[c] != null))
+					|| ((c == '"') && quotationMarks)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,162 @@
+/*
+ * ConvertorTest.java
+ */
+package cz.kebrt.html2latex;
+
+import static org.sbml.tolatex.test.TestTools.check;
+import static org.sbml.tolatex.test.TestTools.passed;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks that the {@link Convertor} decodes HTML character entities in a
+ * single pass: each entity is replaced by the LaTeX command of the
+ * {@link Configuration}, the replacement itself is never decoded again, and
+ * unknown or malformed entities are left unchanged. The conversion of LaTeX
+ * special characters is compared with its former implementation.
+ * @author agent
+ * @version $Rev$
+ * @since 1.0
+ */
+public class ConvertorTest {
+
+  /** Parts of the random texts. */
+  private static final String[] TOKENS = {
+    "&amp;", "&lt;", "&gt;", "&alpha;", "&Gamma;", "&nbsp;", "&unknown;",
+    "&#60;", "&#x3C;", "&#X3c;", "&#+65;", "&#-1;", "&#x;", "&#;", "&;",
+    "&#2147483647;", "&#2147483648;", "&#99999999999;", "&#xFFFFFFFF;",
+    "&#12a;", "&", "#", ";", "amp", "lt", "text", " ", "$", "\\", "{",
+    "_", "%", "~", "^", "}"
+  };
+
+  /** Logger of the {@link Convertor}. */
+  private static final Logger _logger = Logger.getLogger(Convertor.class.getName());
+
+  /** Configuration of the conversion. */
+  private static Configuration _config;
+
+  /**
+   * @param args
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    // unknown entities are expected, hence their warnings are suppressed
+    _logger.setLevel(Level.SEVERE);
+    _config = Configuration.getInstance();
+    String lt = _config.getChar("lt"), amp = _config.getChar("amp");
+    check(lt != null && amp != null, "configuration defines &lt; and &amp;");
+
+    String plain = "plain text";
+    check(Convertor.convertLaTeXSpecialChars(plain) == plain, "plain text is not copied");
+    check(Convertor.convertLaTeXSpecialChars("&#946; #1").equals("&#946; \\#1"),
+      "number signs of numeric entities are kept");
+    check(convert("a &lt; b").equals("a " + lt + " b"), "named entity");
+    check(convert("&#60;&#x3C;&#X3c;").equals(lt + lt + lt), "numeric entities");
+    check(convert("&amp;lt; &lt;").equals(amp + "lt; " + lt), "decoded only once");
+    check(convert("&unknown; &; &#; &#x; &#12a;").equals(
+      Convertor.convertLaTeXSpecialChars("&unknown; &; &#; &#x; &#12a;")),
+      "unknown and malformed entities are left unchanged");
+    check(convert("&#2147483648;").equals(Convertor.convertLaTeXSpecialChars("&#2147483648;")),
+      "numbers beyond the integer range are unknown");
+    check(convert("&&lt;").equals(Convertor.convertLaTeXSpecialChars("&") + lt),
+      "an ampersand starts a new entity");
+
+    Random random = new Random(42);
+    for (int n = 0; n < 20000; ++n) {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 1 + random.nextInt(20); i > 0; --i) {
+        sb.append(TOKENS[random.nextInt(TOKENS.length)]);
+      }
+      String text = sb.toString();
+      if (text.trim().length() == 0) {
+        // blank text is ignored by the convertor
+        continue;
+      }
+      check(Convertor.convertLaTeXSpecialChars(text).equals(convertLaTeXSpecialChars(text)),
+        "converting special characters of " + text);
+      String expected = decode(convertLaTeXSpecialChars(text));
+      String actual = convert(text);
+      check(expected.equals(actual), "decoding " + text + ": expected " + expected + " but was " + actual);
+    }
+    passed(ConvertorTest.class);
+  }
+
+  /**
+   * @param text text content of an element
+   * @return the LaTeX code created by a {@link Convertor}
+   * @throws IOException when output error occurs
+   * @throws FatalErrorException when the configuration can't be loaded
+   */
+  private static String convert(String text) throws IOException, FatalErrorException {
+    StringWriter out = new StringWriter();
+    new Convertor(out).characters(text);
+    return out.toString();
+  }
+
+  /**
+   * The former conversion of special characters, which replaced one
+   * character after the other.
+   * @param str input string
+   * @return converted string
+   */
+  private static String convertLaTeXSpecialChars(String str) {
+    return str.replace("\\", "@-DOLLAR-\\backslash@-DOLLAR-")
+        .replace("&#", "&@-HASH-").replace("$", "\\$").replace("#", "\\#")
+        .replace("%", "\\%").replace("~", "\\textasciitilde")
+        .replace("_", "\\_").replace("^", "\\textasciicircum")
+        .replace("{", "\\{").replace("}", "\\}").replace("@-DOLLAR-", "$")
+        .replace("@-HASH-", "#");
+  }
+
+  /**
+   * Decodes the entities in the simplest possible way.
+   * @param str text
+   * @return text with all known entities replaced
+   */
+  private static String decode(String str) {
+    StringBuilder sb = new StringBuilder();
+    int entity = -1;
+    for (int i = 0; i < str.length(); ++i) {
+      char ch = str.charAt(i);
+      if (ch == '&') {
+        if (entity >= 0) {
+          sb.append(str, entity, i);
+        }
+        entity = i;
+      } else if ((ch == ';') && (entity >= 0)) {
+        String repl = lookup(str.substring(entity + 1, i));
+        sb.append(repl != null ? repl : str.substring(entity, i + 1));
+        entity = -1;
+      } else if (entity < 0) {
+        sb.append(ch);
+      }
+    }
+    if (entity >= 0) {
+      sb.append(str, entity, str.length());
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @param name name of an entity
+   * @return the LaTeX command of the entity or {@code null}
+   */
+  private static String lookup(String name) {
+    if (!name.startsWith("#")) {
+      return _config.getChar(name);
+    }
+    try {
+      if (name.startsWith("#x") || name.startsWith("#X")) {
+        return _config.getChar(Integer.parseInt(name.substring(2), 16));
+      }
+      return _config.getChar(Integer.parseInt(name.substring(1)));
+    } catch (NumberFormatException ex) {
+      return null;
+    }
+  }
+
+}
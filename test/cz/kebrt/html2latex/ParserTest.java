@@ -0,0 +1,293 @@
+/*
+ * ParserTest.java
+ */
+package cz.kebrt.html2latex;
+
+import static org.sbml.tolatex.test.TestTools.check;
+import static org.sbml.tolatex.test.TestTools.passed;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Stack;
+import java.util.TreeMap;
+
+/**
+ * Compares the events sent by the {@link Parser} with those of the former
+ * parser, which read the input char by char, for fixed and random inputs.
+ * The former parser is kept in {@link ReferenceParser}.
+ * @author agent
+ * @version $Rev$
+ * @since 1.0
+ */
+public class ParserTest {
+
+  /**
+   * Records all events as strings.
+   */
+  private static class RecordingHandler extends ParserHandler {
+
+    /** Events received so far. */
+    private final List<String> _events = new ArrayList<String>();
+
+    /**
+     * Cstr.
+     * @throws FatalErrorException when the configuration can't be loaded
+     */
+    RecordingHandler() throws FatalErrorException {
+      super(new StringWriter());
+    }
+
+    @Override
+    public void startElement(ElementStart element) {
+      _events.add("start " + element.getElementName() + " "
+          + new TreeMap<String, String>(element.getAttributes()));
+    }
+
+    @Override
+    public void endElement(ElementEnd element, ElementStart elementStart) {
+      _events.add("end " + element.getElementName() + " " + elementStart.getElementName());
+    }
+
+    @Override
+    public void characters(String content) {
+      _events.add("characters " + content);
+    }
+
+    @Override
+    public void comment(String comment) {
+      _events.add("comment " + comment);
+    }
+
+    @Override
+    public void endDocument() {
+      _events.add("end of document");
+    }
+
+  }
+
+  /**
+   * The parser before the input was scanned in blocks.
+   */
+  private static class ReferenceParser {
+
+    /** Input. */
+    private String _input;
+    /** Position of the next char. */
+    private int _pos;
+    /** Handler which receives events from the parser. */
+    private ParserHandler _handler;
+    /** Stack containing all opened and still non-closed elements. */
+    private Stack<ElementStart> _openElements = new Stack<ElementStart>();
+
+    /**
+     * Parses the input.
+     * @param input HTML code
+     * @param handler receives the events
+     */
+    void parse(String input, ParserHandler handler) {
+      _input = input;
+      _pos = 0;
+      _handler = handler;
+      int c;
+      while ((c = read()) != -1) {
+        if (c == '<') {
+          readElement();
+        } else {
+          readContent((char) c);
+        }
+      }
+    }
+
+    /**
+     * @return the next char or -1 at the end of the input
+     */
+    private int read() {
+      return _pos < _input.length() ? _input.charAt(_pos++) : -1;
+    }
+
+    /**
+     * Reads elements (tags).
+     */
+    private void readElement() {
+      int c;
+      char ch;
+      String str = "";
+      while ((c = read()) != -1) {
+        ch = (char) c;
+        if (ch == '>') {
+          if (str.startsWith("!--")) {
+            if (str.endsWith("--")) {
+              str = str.substring(4, str.length());
+              str = str.substring(0, str.length() - 2);
+              _handler.comment(str);
+              return;
+            }
+            str += ch;
+            continue;
+          }
+          MyElement element = parseElement(str);
+          if (element instanceof ElementStart) {
+            if (!str.endsWith("/")) {
+              _openElements.push((ElementStart) element);
+            }
+            _handler.startElement((ElementStart) element);
+            if (str.endsWith("/")) {
+              _handler.endElement(new ElementEnd(element.getElementName()),
+                (ElementStart) element);
+            }
+          } else if (element instanceof ElementEnd) {
+            checkValidity((ElementEnd) element);
+          }
+          return;
+        }
+        str += ch;
+      }
+    }
+
+    /**
+     * Parses element.
+     * @param elementString the element without &quot;&lt;&quot; and
+     *     &quot;&gt;&quot;
+     * @return start or end element
+     */
+    private MyElement parseElement(String elementString) {
+      String elementName = "";
+      HashMap<String, String> attributes = new HashMap<String, String>(3);
+      if (elementString.endsWith("/")) {
+        elementString = elementString.substring(0, elementString.length() - 1);
+      }
+      String[] aux = elementString.split("\\s+", 2);
+      if (aux.length != 0) {
+        elementName = aux[0];
+        if ((elementName.length() > 1) && (elementName.charAt(0) == '/')) {
+          String name = elementName.substring(1, elementName.length()).toLowerCase();
+          return new ElementEnd(name);
+        }
+        if (aux.length == 2) {
+          String[] attr = aux[1].split("('\\s+)|(\"\\s+)");
+          for (int i = 0; i < attr.length; ++i) {
+            attr[i] = attr[i].trim().replace("\"", "").replace("'", "");
+            String[] attrInstance = attr[i].split("=", 2);
+            if (attrInstance.length == 2) {
+              attributes.put(attrInstance[0].toLowerCase(), attrInstance[1]);
+            }
+          }
+        }
+      }
+      return new ElementStart(elementName.toLowerCase(), attributes);
+    }
+
+    /**
+     * Reads text content of an element.
+     * @param firstChar first char of the content
+     */
+    private void readContent(char firstChar) {
+      int c;
+      char ch;
+      String str = "";
+      str += firstChar;
+      while ((c = read()) != -1) {
+        ch = (char) c;
+        if (ch == '<') {
+          _handler.characters(str);
+          readElement();
+          return;
+        }
+        str += ch;
+      }
+    }
+
+    /**
+     * Closes the elements up to the given end element.
+     * @param element end element
+     */
+    private void checkValidity(ElementEnd element) {
+      if (_openElements.empty()) {
+        return;
+      }
+      if (_openElements.peek().getElementName().equals(element.getElementName())) {
+        _handler.endElement(element, _openElements.pop());
+        return;
+      }
+      for (int i = _openElements.size() - 1; i >= 0; --i) {
+        if (_openElements.get(i).getElementName().equals(element.getElementName())) {
+          for (int j = _openElements.size() - 1; j >= i; --j) {
+            ElementStart es = _openElements.get(i);
+            ElementEnd e = new ElementEnd(_openElements.pop().getElementName());
+            _handler.endElement(e, es);
+          }
+          return;
+        }
+      }
+    }
+
+  }
+
+  /** Parts of the random inputs. */
+  private static final String[] TOKENS = {
+    "<p>", "</p>", "<P class=\"a\">", "<br/>", "<br />", "<b>", "</b>", "</B>",
+    "<a href=\"http://x.org/?a=b\" title='t t'>", "</a>", "<img src=x.png alt=\"\"/>",
+    "<td  colspan = \"2\"\trowspan='3' >", "</td>", "<!-- comment -->",
+    "<!-- a > b -->", "<!--x-->", "text", " ", "\n", "\t", "&amp;", "&lt;",
+    "x=\"y\"", "'", "\"", "/", ">", "<", "</", "</>", "<>", "\u00e4\u20ac"
+  };
+
+  /**
+   * @param args
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    String[] inputs = {
+      "",
+      "plain text without elements",
+      "<html><body><p>Hello <b>world</b>!</p></body></html>",
+      "<p>unclosed <b>bold <i>italic</p> text<",
+      "<table><tr><td class='x' id=\"y\">1</td></tr></table> trailing text",
+      "<!-- a comment > with > brackets --><p>x</p>",
+      "<unterminated attr=\"1\"",
+      "<p title=\"a b\" lang=en>\u00e9</p>"
+    };
+    for (String input : inputs) {
+      compare(input);
+    }
+    Random random = new Random(42);
+    for (int n = 0; n < 20000; ++n) {
+      StringBuilder sb = new StringBuilder();
+      for (int i = random.nextInt(40); i > 0; --i) {
+        sb.append(TOKENS[random.nextInt(TOKENS.length)]);
+      }
+      compare(sb.toString());
+    }
+    // Elements and texts that span the blocks of the parser.
+    StringBuilder sb = new StringBuilder();
+    while (sb.length() < 50000) {
+      sb.append("<p class=\"c").append(sb.length()).append("\">");
+      for (int i = sb.length() % 97; i > 0; --i) {
+        sb.append("text ");
+      }
+      sb.append("</p><!-- ").append(sb.length()).append(" -->");
+    }
+    compare(sb.toString());
+    passed(ParserTest.class);
+  }
+
+  /**
+   * Parses the given input with both parsers and compares the events.
+   * @param input HTML code
+   * @throws FatalErrorException when the configuration can't be loaded
+   */
+  private static void compare(String input) throws FatalErrorException {
+    RecordingHandler expected = new RecordingHandler();
+    new ReferenceParser().parse(input, expected);
+    RecordingHandler actual = new RecordingHandler();
+    new Parser().parse(new BufferedReader(new StringReader(input)), actual);
+    check(expected._events.equals(actual._events), "Different events for " + input
+        + ":\n" + expected._events + "\n" + actual._events);
+  }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ * 
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex;
+
+import static org.sbml.tolatex.test.TestTools.check;
+import static org.sbml.tolatex.test.TestTools.passed;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sends a model from the {@code files} folder to a {@link ConversionServer}
+ * and checks the returned TeX report as well as the size limit of requests.
+ * 
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class ConversionServerTest {
+
+  /**
+   * @param args
+   *        optionally the path to an SBML file, by default
+   *        {@code files/buffer.xml}, and a free port.
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    File file = new File(args.length > 0 ? args[0] : "files/buffer.xml");
+    int port = args.length > 1 ? Integer.parseInt(args[1]) : 18432;
+    byte sbml[] = read(new FileInputStream(file));
+    ConversionServer server = new ConversionServer(port, 1, 1, 120, 1 + sbml.length / 1024,
+      SBML2LaTeX.getLaTeXOptions());
+    server.start();
+    try {
+      testReport(port, sbml);
+      ConversionServer small = new ConversionServer(port + 1, 1, 1, 120, 1,
+        SBML2LaTeX.getLaTeXOptions());
+      small.start();
+      try {
+        check(post(port + 1, sbml, false).status == 413, "declared length is checked");
+        check(post(port + 1, sbml, true).status == 413, "streamed body is checked");
+      } finally {
+        small.stop();
+      }
+    } finally {
+      server.stop();
+    }
+    passed(ConversionServerTest.class);
+  }
+
+  /**
+   * Checks that the logo, which the report refers to, still exists after
+   * the server has deleted the files of the request.
+   * 
+   * @param port
+   * @param sbml
+   * @throws IOException
+   */
+  public static void testReport(int port, byte sbml[]) throws IOException {
+    Response response = post(port, sbml, false);
+    check(response.status == 200, "the report is created");
+    String tex = new String(response.body, "UTF-8");
+    Matcher m = Pattern.compile("\\\\includegraphics\\[[^\\]]*\\]\\{([^}]*)\\}").matcher(tex);
+    check(m.find(), "the report contains the logo");
+    check(new File(m.group(1)).isFile(), "the logo exists: " + m.group(1));
+  }
+
+  /**
+   * The status and body of an HTTP response.
+   */
+  private static class Response {
+    /**
+     * 
+     */
+    int status;
+    /**
+     * 
+     */
+    byte body[];
+  }
+
+  /**
+   * 
+   * @param port
+   * @param sbml
+   * @param chunked
+   *        if {@code true}, the request does not declare its length.
+   * @return
+   * @throws IOException
+   */
+  private static Response post(int port, byte sbml[], boolean chunked) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port
+      + ConversionServer.CONTEXT_CONVERT).openConnection();
+    connection.setDoOutput(true);
+    connection.setRequestMethod("POST");
+    if (chunked) {
+      connection.setChunkedStreamingMode(1024);
+    } else {
+      connection.setFixedLengthStreamingMode(sbml.length);
+    }
+    Response response = new Response();
+    try {
+      OutputStream out = connection.getOutputStream();
+      out.write(sbml);
+      out.close();
+    } catch (IOException exc) {
+      // The server may answer before the whole request has been sent.
+    }
+    response.status = connection.getResponseCode();
+    InputStream in = response.status < 400 ? connection.getInputStream() : connection.getErrorStream();
+    response.body = in != null ? read(in) : new byte[0];
+    connection.disconnect();
+    return response;
+  }
+
+  /**
+   * 
+   * @param in
+   * @return
+   * @throws IOException
+   */
+  private static byte[] read(InputStream in) throws IOException {
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte buffer[] = new byte[8192];
+      int n;
+      while ((n = in.read(buffer)) >= 0) {
+        out.write(buffer, 0, n);
+      }
+      return out.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ * 
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex;
+
+import static org.sbml.tolatex.test.TestTools.check;
+import static org.sbml.tolatex.test.TestTools.passed;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Checks when the {@link FormatCache} creates, reuses and discards formats.
+ * A shell script replaces the LaTeX compiler; it creates the requested
+ * format file and records each call.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class FormatCacheTest {
+
+  /**
+   * @param args
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    File directory = File.createTempFile("formats", "");
+    directory.delete();
+    File work = File.createTempFile("work", "");
+    work.delete();
+    work.mkdirs();
+    try {
+      testPreamble(work);
+      testFormats(directory, work);
+    } finally {
+      delete(directory);
+      delete(work);
+    }
+    passed(FormatCacheTest.class);
+  }
+
+  /**
+   *
+   * @param work
+   * @throws IOException
+   */
+  private static void testPreamble(File work) throws IOException {
+    File tex = new File(work, "a.tex");
+    write(tex, "\\documentclass{article}\n\\usepackage{amsmath}\n" + FormatCache.END_OF_DUMP
+      + "\n\\title{A}\n\\begin{document}\n\\end{document}\n");
+    check("\\documentclass{article}\n\\usepackage{amsmath}\n".equals(FormatCache.preamble(tex)), "preamble");
+    write(tex, "\\documentclass{article}\n\\begin{document}\n" + FormatCache.END_OF_DUMP + "\n\\end{document}\n");
+    check(FormatCache.preamble(tex) == null, "dump after the document begins");
+    write(tex, "\\documentclass{article}\n");
+    check(FormatCache.preamble(tex) == null, "no dump");
+  }
+
+  /**
+   *
+   * @param directory
+   * @param work
+   * @throws Exception
+   */
+  private static void testFormats(File directory, File work) throws Exception {
+    File calls = new File(work, "calls");
+    File compiler = script(work, "pdflatex", "echo \"$3\" >> '" + calls.getAbsolutePath() + "'\n"
+      + "grep -q fail \"$6\" && exit 1\n"
+      + "touch \"${3#-jobname=}.fmt\"\n");
+    String command = compiler.getAbsolutePath();
+
+    FormatCache cache = new FormatCache(directory);
+    check(directory.isDirectory(), "directory is created");
+    File a = new File(work, "a.tex"), b = new File(work, "b.tex"), c = new File(work, "c.tex");
+    write(a, "\\documentclass{article}\n" + FormatCache.END_OF_DUMP + "\n\\begin{document}\n\\end{document}\n");
+    write(b, "\\documentclass{report}\n" + FormatCache.END_OF_DUMP + "\n\\begin{document}\n\\end{document}\n");
+    write(c, "\\documentclass{article}\n% fail\n" + FormatCache.END_OF_DUMP + "\n\\begin{document}\n\\end{document}\n");
+
+    String name = cache.getFormat(command, a);
+    check(name != null, "format is created");
+    check(new File(directory, name + ".fmt").isFile(), "format file exists");
+    check(lines(calls) == 1, "compiler is called once");
+    check(name.equals(cache.getFormat(command, a)), "format is reused");
+    check(lines(calls) == 1, "existing format is not created again");
+    check(new File(directory, name + ".fmt").isFile() && (directory.list().length == 1),
+      "temporary files are removed");
+
+    String other = cache.getFormat(command, b);
+    check((other != null) && !other.equals(name), "other preamble, other format");
+    check(lines(calls) == 2, "compiler is called for the other preamble");
+
+    check(cache.getFormat(command, c) == null, "failing format");
+    check(cache.getFormat(command, c) == null, "failing format again");
+    check(lines(calls) == 3, "failing format is not attempted again");
+
+    cache.discard(name);
+    check(!new File(directory, name + ".fmt").exists(), "discarded format is deleted");
+    check(cache.getFormat(command, a) == null, "discarded format is not used");
+    check(lines(calls) == 3, "discarded format is not created again");
+
+    cache.clear();
+    check(directory.list().length == 0, "cleared");
+    check(name.equals(cache.getFormat(command, a)), "format is created again after clearing");
+    check(lines(calls) == 4, "compiler is called after clearing");
+
+    write(new File(work, "none.tex"), "\\documentclass{article}\n\\begin{document}\n\\end{document}\n");
+    check(cache.getFormat(command, new File(work, "none.tex")) == null, "no preamble, no format");
+    check(lines(calls) == 4, "compiler is not called without preamble");
+  }
+
+  /**
+   *
+   * @param directory
+   * @param name
+   * @param body
+   * @return an executable shell script.
+   * @throws IOException
+   */
+  private static File script(File directory, String name, String body) throws IOException {
+    File file = new File(directory, name);
+    write(file, "#!/bin/sh\n" + body);
+    check(file.setExecutable(true), "script is executable");
+    return file;
+  }
+
+  /**
+   *
+   * @param file
+   * @return the number of lines of the given file.
+   * @throws IOException
+   */
+  private static int lines(File file) throws IOException {
+    if (!file.exists()) {
+      return 0;
+    }
+    BufferedReader reader = new BufferedReader(new FileReader(file));
+    try {
+      int n = 0;
+      while (reader.readLine() != null) {
+        n++;
+      }
+      return n;
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   *
+   * @param file
+   * @param content
+   * @throws IOException
+   */
+  private static void write(File file, String content) throws IOException {
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1");
+    try {
+      writer.write(content);
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   *
+   * @param file
+   */
+  private static void delete(File file) {
+    File files[] = file.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        delete(f);
+      }
+    }
+    file.delete();
+  }
+
+}
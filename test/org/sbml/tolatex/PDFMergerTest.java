@@ -0,0 +1,366 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ * 
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex;
+
+import static org.sbml.tolatex.test.TestTools.check;
+import static org.sbml.tolatex.test.TestTools.passed;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.pdfbox.pdmodel.PDDestinationNameTreeNode;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
+import org.apache.pdfbox.pdmodel.PDDocumentNameDictionary;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDNameTreeNode;
+import org.apache.pdfbox.pdmodel.common.PDPageLabelRange;
+import org.apache.pdfbox.pdmodel.common.PDPageLabels;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.interactive.action.PDAction;
+import org.apache.pdfbox.pdmodel.interactive.action.PDActionGoTo;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationLink;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDNamedDestination;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageDestination;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageXYZDestination;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
+
+/**
+ * Merges PDF files with a {@link PDFMerger} and checks the page tree, the
+ * bookmarks, the named destinations, the page labels, and the links of the
+ * result. Besides two small generated parts, a report that pdfTeX has created
+ * from the output of SBML2LaTeX is merged with a copy of itself.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class PDFMergerTest {
+
+  /**
+   * A report of BioModels model 3 that has been compiled with pdfTeX.
+   */
+  private static final File REPORT = new File("doc/publications/Bioinformatics/figures/BIOMD0000000003.pdf");
+
+  /**
+   * @param args
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    testParts();
+    testReport();
+    passed(PDFMergerTest.class);
+  }
+
+  /**
+   * Each part links to the chapter of the other part and contains a
+   * placeholder for it, as pdfTeX writes for unresolved targets.
+   *
+   * @throws IOException
+   */
+  private static void testParts() throws IOException {
+    File a = File.createTempFile("part", ".pdf");
+    File b = File.createTempFile("part", ".pdf");
+    File merged = File.createTempFile("merged", ".pdf");
+    try {
+      writePart(a, "Part A", "chapter.a", "chapter.b", 2, true, 0);
+      writePart(b, "Part B", "chapter.b", "chapter.a", 3, false, 300);
+      Map<String, Integer> owners = new HashMap<String, Integer>();
+      owners.put("chapter.a", Integer.valueOf(0));
+      owners.put("chapter.b", Integer.valueOf(1));
+      new PDFMerger(Arrays.asList(a, b), owners).merge(merged);
+
+      PDDocument document = PDDocument.load(merged);
+      try {
+        check(document.getNumberOfPages() == 5, "page count is the sum of both parts");
+        check(titles(document).equals(Arrays.asList("Part A", "Part B")), "bookmarks of both parts");
+        check(document.getDocumentCatalog().getDocumentOutline().getOpenCount() == 2, "bookmarks are counted");
+        Map<String, Integer> destinations = destinations(document);
+        check(destinations.size() == 302, "placeholders are dropped");
+        check(document.getDocumentCatalog().getNames().getDests().getKids().size() == 2,
+          "large name trees are split");
+        check(destinations.get("chapter.a").intValue() == 0, "destination of part A");
+        check(destinations.get("chapter.b").intValue() == 2, "destination of part B");
+        check(links(document, destinations) == 2, "links can be resolved");
+        String labels[] = document.getDocumentCatalog().getPageLabels().getLabelsByPageIndices();
+        check(Arrays.asList(labels).equals(Arrays.asList("i", "ii", "3", "4", "5")), "page labels");
+      } finally {
+        document.close();
+      }
+    } finally {
+      a.delete();
+      b.delete();
+      merged.delete();
+    }
+  }
+
+  /**
+   * Merges the report with a copy that has page labels. The sections are
+   * taken from the copy, all other destinations from the original.
+   *
+   * @throws IOException
+   */
+  private static void testReport() throws IOException {
+    check(REPORT.isFile(), "report " + REPORT + " exists");
+    File copy = File.createTempFile("report", ".pdf");
+    File merged = File.createTempFile("merged", ".pdf");
+    try {
+      PDDocument original = PDDocument.load(REPORT);
+      int pageCount = original.getNumberOfPages();
+      Map<String, Integer> expected = destinations(original);
+      List<String> titles = titles(original);
+      PDPageLabels labels = new PDPageLabels(original);
+      PDPageLabelRange range = new PDPageLabelRange();
+      range.setStyle(PDPageLabelRange.STYLE_DECIMAL);
+      range.setPrefix("B-");
+      labels.setLabelItem(0, range);
+      original.getDocumentCatalog().setPageLabels(labels);
+      original.save(copy);
+      original.close();
+
+      Map<String, Integer> owners = new HashMap<String, Integer>();
+      for (String name : expected.keySet()) {
+        if (name.startsWith("section.")) {
+          owners.put(name, Integer.valueOf(1));
+        }
+      }
+      check(!owners.isEmpty() && (owners.size() < expected.size()), "report has sections and other targets");
+      new PDFMerger(Arrays.asList(REPORT, copy), owners).merge(merged);
+
+      PDDocument document = PDDocument.load(merged);
+      try {
+        check(document.getNumberOfPages() == 2 * pageCount, "page count");
+        List<String> allTitles = new ArrayList<String>(titles);
+        allTitles.addAll(titles);
+        check(titles(document).equals(allTitles), "bookmarks of both parts");
+        Map<String, Integer> destinations = destinations(document);
+        check(destinations.keySet().equals(expected.keySet()), "all destinations");
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+          int offset = owners.containsKey(entry.getKey()) ? pageCount : 0;
+          check(destinations.get(entry.getKey()).intValue() == entry.getValue().intValue() + offset,
+            "page of destination " + entry.getKey());
+        }
+        check(links(document, destinations) > 0, "links can be resolved");
+        String pageLabels[] = document.getDocumentCatalog().getPageLabels().getLabelsByPageIndices();
+        for (int i = 0; i < pageCount; i++) {
+          check(pageLabels[i].equals(Integer.toString(i + 1)), "page label of the original");
+          check(pageLabels[pageCount + i].equals("B-" + (i + 1)), "page label of the copy");
+        }
+      } finally {
+        document.close();
+      }
+    } finally {
+      copy.delete();
+      merged.delete();
+    }
+  }
+
+  /**
+   * Checks the structure of the name tree of destinations.
+   *
+   * @param document
+   * @return the index of the page of each named destination.
+   * @throws IOException
+   */
+  private static Map<String, Integer> destinations(PDDocument document) throws IOException {
+    Map<String, PDPageDestination> names = new TreeMap<String, PDPageDestination>();
+    PDDocumentNameDictionary dictionary = document.getDocumentCatalog().getNames();
+    collect(dictionary.getDests(), names, new ArrayList<String>());
+    Map<String, Integer> pages = new HashMap<String, Integer>();
+    for (Map.Entry<String, PDPageDestination> entry : names.entrySet()) {
+      int index = document.getPages().indexOf(entry.getValue().getPage());
+      check(index >= 0, "destination " + entry.getKey() + " is on a page of the document");
+      pages.put(entry.getKey(), Integer.valueOf(index));
+    }
+    return pages;
+  }
+
+  /**
+   *
+   * @param node
+   * @param names
+   * @param order
+   *        receives all names in the order of the tree, which must be sorted.
+   * @throws IOException
+   */
+  private static void collect(PDNameTreeNode<PDPageDestination> node, Map<String, PDPageDestination> names,
+    List<String> order) throws IOException {
+    Map<String, PDPageDestination> leaf = node.getNames();
+    if (leaf != null) {
+      check(leaf.size() <= 256, "size of a node");
+      if (!node.isRootNode()) {
+        check(new ArrayList<String>(leaf.keySet()).get(0).equals(node.getLowerLimit()), "lower limit");
+        check(new ArrayList<String>(leaf.keySet()).get(leaf.size() - 1).equals(node.getUpperLimit()), "upper limit");
+      }
+      for (Map.Entry<String, PDPageDestination> entry : leaf.entrySet()) {
+        check(order.isEmpty() || (order.get(order.size() - 1).compareTo(entry.getKey()) < 0), "names are sorted");
+        order.add(entry.getKey());
+        names.put(entry.getKey(), entry.getValue());
+      }
+    }
+    List<PDNameTreeNode<PDPageDestination>> kids = node.getKids();
+    if (kids != null) {
+      for (PDNameTreeNode<PDPageDestination> kid : kids) {
+        collect(kid, names, order);
+      }
+    }
+  }
+
+  /**
+   *
+   * @param document
+   * @return the titles of the top-level bookmarks.
+   */
+  private static List<String> titles(PDDocument document) {
+    List<String> titles = new ArrayList<String>();
+    PDDocumentOutline outline = document.getDocumentCatalog().getDocumentOutline();
+    for (PDOutlineItem item : outline.children()) {
+      titles.add(item.getTitle());
+    }
+    return titles;
+  }
+
+  /**
+   * Checks that every link to a named destination can be resolved.
+   *
+   * @param document
+   * @param destinations
+   * @return the number of links to named destinations.
+   * @throws IOException
+   */
+  private static int links(PDDocument document, Map<String, Integer> destinations) throws IOException {
+    int count = 0;
+    for (PDPage page : document.getPages()) {
+      for (PDAnnotation annotation : page.getAnnotations()) {
+        if (!(annotation instanceof PDAnnotationLink)) {
+          continue;
+        }
+        PDAction action = ((PDAnnotationLink) annotation).getAction();
+        if ((action instanceof PDActionGoTo)
+            && (((PDActionGoTo) action).getDestination() instanceof PDNamedDestination)) {
+          String name = ((PDNamedDestination) ((PDActionGoTo) action).getDestination()).getNamedDestination();
+          check(destinations.containsKey(name), "link to " + name + " can be resolved");
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Writes a part like pdfTeX does for a chunk of a report.
+   *
+   * @param file
+   * @param title
+   *        the title of the only bookmark.
+   * @param dest
+   *        the name of the destination on the first page.
+   * @param link
+   *        the name of the destination to which the first page links, which
+   *        is also defined as a placeholder on the last page.
+   * @param pageCount
+   * @param roman
+   *        whether the pages are labeled with roman numbers.
+   * @param targets
+   *        the number of further destinations on the last page.
+   * @throws IOException
+   */
+  private static void writePart(File file, String title, String dest, String link, int pageCount, boolean roman,
+    int targets) throws IOException {
+    PDDocument document = new PDDocument();
+    try {
+      for (int i = 0; i < pageCount; i++) {
+        document.addPage(new PDPage(PDRectangle.LETTER));
+      }
+      PDDocumentCatalog catalog = document.getDocumentCatalog();
+      Map<String, PDPageDestination> names = new TreeMap<String, PDPageDestination>();
+      names.put(dest, destination(document.getPage(0)));
+      names.put(link, destination(document.getPage(pageCount - 1)));
+      for (int i = 0; i < targets; i++) {
+        names.put(String.format("item.%03d", i), destination(document.getPage(pageCount - 1)));
+      }
+      PDDestinationNameTreeNode dests = new PDDestinationNameTreeNode();
+      dests.setNames(names);
+      PDDocumentNameDictionary dictionary = new PDDocumentNameDictionary(catalog);
+      dictionary.setDests(dests);
+      catalog.setNames(dictionary);
+
+      PDDocumentOutline outline = new PDDocumentOutline();
+      PDOutlineItem item = new PDOutlineItem();
+      item.setTitle(title);
+      item.setAction(goTo(dest));
+      outline.addLast(item);
+      outline.openNode();
+      catalog.setDocumentOutline(outline);
+
+      PDAnnotationLink annotation = new PDAnnotationLink();
+      annotation.setRectangle(new PDRectangle(72, 700, 72, 20));
+      annotation.setAction(goTo(link));
+      document.getPage(0).getAnnotations().add(annotation);
+
+      if (roman) {
+        PDPageLabels labels = new PDPageLabels(document);
+        PDPageLabelRange range = new PDPageLabelRange();
+        range.setStyle(PDPageLabelRange.STYLE_ROMAN_LOWER);
+        labels.setLabelItem(0, range);
+        catalog.setPageLabels(labels);
+      }
+      document.save(file);
+    } finally {
+      document.close();
+    }
+  }
+
+  /**
+   *
+   * @param page
+   * @return a destination at the top of the given page.
+   */
+  private static PDPageDestination destination(PDPage page) {
+    PDPageXYZDestination destination = new PDPageXYZDestination();
+    destination.setPage(page);
+    destination.setTop((int) page.getMediaBox().getHeight());
+    return destination;
+  }
+
+  /**
+   *
+   * @param name
+   * @return an action that goes to the given named destination.
+   */
+  private static PDActionGoTo goTo(String name) {
+    PDActionGoTo action = new PDActionGoTo();
+    action.setDestination(new PDNamedDestination(name));
+    return action;
+  }
+
+}
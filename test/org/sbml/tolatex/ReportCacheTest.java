@@ -0,0 +1,181 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ * 
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex;
+
+import static org.sbml.tolatex.test.TestTools.check;
+import static org.sbml.tolatex.test.TestTools.passed;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Checks which differences between two conversions lead to different keys
+ * of the {@link ReportCache} and stores and retrieves reports.
+ * 
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class ReportCacheTest {
+
+  /**
+   * @param args
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    File dir = File.createTempFile("cache", "");
+    dir.delete();
+    dir.mkdirs();
+    try {
+      testKeys(dir);
+      testEntries(dir);
+    } finally {
+      delete(dir);
+    }
+    passed(ReportCacheTest.class);
+  }
+
+  /**
+   * 
+   * @param dir
+   * @throws IOException
+   */
+  private static void testKeys(File dir) throws IOException {
+    String model = "<?xml version=\"1.0\"?>\n<sbml>\n  <model id=\"m\"/>\n</sbml>\n";
+    File lf = write(new File(dir, "lf.xml"), model.getBytes("UTF-8"));
+    File crlf = write(new File(dir, "crlf.xml"),
+      ("\ufeff" + model.replace("\n", "\r\n")).getBytes("UTF-8"));
+    File other = write(new File(dir, "other.xml"), model.replace("\"m\"", "\"n\"").getBytes("UTF-8"));
+    ReportConfiguration configuration = new ReportConfiguration.Builder().build();
+    ReportConfiguration landscape = new ReportConfiguration.Builder(configuration)
+        .setLandscape(!configuration.isLandscape()).build();
+    File tex = new File(dir, "a/report.tex"), pdf = new File(dir, "a/report.pdf");
+
+    String key = ReportCache.key(lf, tex, configuration);
+    check(key.matches("[0-9a-f]{64}"), "key is a hexadecimal SHA-256 hash");
+    check(key.equals(ReportCache.key(lf, tex, new ReportConfiguration.Builder().build())),
+      "equal configurations give equal keys");
+    check(key.equals(ReportCache.key(crlf, tex, configuration)),
+      "line breaks and byte order mark are normalized");
+    check(!key.equals(ReportCache.key(other, tex, configuration)), "content is part of the key");
+    check(!key.equals(ReportCache.key(lf, tex, landscape)), "options are part of the key");
+    check(!key.equals(ReportCache.key(lf, pdf, configuration)), "type is part of the key");
+    check(!key.equals(ReportCache.key(lf, new File(dir, "b/report.tex"), configuration)),
+      "directory of TeX files is part of the key");
+    check(ReportCache.key(lf, pdf, configuration).equals(
+      ReportCache.key(lf, new File(dir, "b/other.pdf"), configuration)),
+      "location of PDF files is not part of the key");
+
+    String build = ReportCache.buildIdentifier();
+    check(build == ReportCache.buildIdentifier(), "build identifier is computed once");
+    check(build.startsWith(SBML2LaTeX.VERSION_NUMBER + '\n'), "build identifier contains the version");
+    check(build.split("\n").length == 4, "build identifier describes the code of SBML2LaTeX, JSBML and SysBio");
+  }
+
+  /**
+   * 
+   * @param dir
+   * @throws IOException
+   */
+  private static void testEntries(File dir) throws IOException {
+    ReportCache cache = new ReportCache(new File(dir, "cache"), 100);
+    File report = write(new File(dir, "report.pdf"), new byte[40]);
+    File copy = new File(dir, "copy.pdf");
+    check(!cache.get("first", copy) && (cache.getMisses() == 1), "empty cache");
+    cache.put("first", report);
+    check(cache.get("first", copy) && (cache.getHits() == 1), "entry found");
+    check(Arrays.equals(read(report), read(copy)), "copy of the entry");
+    check(!cache.get("first", new File(dir, "copy.tex")), "TeX and PDF entries are separate");
+
+    File first = new File(cache.getDirectory(), "first.pdf");
+    first.setLastModified(System.currentTimeMillis() - 60000L);
+    cache.put("second", report);
+    cache.put("third", report);
+    cache.prune();
+    check(!first.exists(), "least recently used entry is removed");
+    check(cache.get("second", copy) && cache.get("third", copy), "newer entries are kept");
+
+    cache.put("large", write(new File(dir, "large.pdf"), new byte[101]));
+    check(!cache.get("large", copy), "reports larger than the limit are not stored");
+    cache.clear();
+    check(!cache.get("second", copy), "cache is empty after clearing");
+  }
+
+  /**
+   * 
+   * @param file
+   * @param content
+   * @return the given file.
+   * @throws IOException
+   */
+  private static File write(File file, byte content[]) throws IOException {
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(content);
+    } finally {
+      out.close();
+    }
+    return file;
+  }
+
+  /**
+   * 
+   * @param file
+   * @return the content of the file.
+   * @throws IOException
+   */
+  private static byte[] read(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte buffer[] = new byte[8192];
+      for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+        out.write(buffer, 0, n);
+      }
+      return out.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * 
+   * @param file
+   */
+  private static void delete(File file) {
+    File children[] = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+}
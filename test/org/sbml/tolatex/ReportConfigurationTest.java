@@ -0,0 +1,127 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ * 
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex;
+
+import static org.sbml.tolatex.test.TestTools.check;
+import static org.sbml.tolatex.test.TestTools.passed;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks that {@link ReportConfiguration#equals(Object)} and
+ * {@link ReportConfiguration#hashCode()} consider every property of the
+ * {@link ReportConfiguration.Builder}.
+ * 
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class ReportConfigurationTest {
+
+  /**
+   * @param args
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    ReportConfiguration defaults = new ReportConfiguration.Builder().build();
+    ReportConfiguration other = new ReportConfiguration.Builder().build();
+    check(defaults.equals(other) && other.equals(defaults), "default configurations are equal");
+    check(defaults.hashCode() == other.hashCode(), "default configurations have the same hash code");
+    check(defaults.equals(new ReportConfiguration.Builder(defaults).build()), "copy is equal");
+    check(defaults.equals(new ReportConfiguration.Builder(new HashMap<Object, Object>()).build()),
+      "missing options keep their default value");
+    check(!defaults.equals(null) && !defaults.equals("configuration"), "other objects are not equal");
+
+    int properties = 0;
+    Set<Integer> hashCodes = new HashSet<Integer>();
+    for (Method setter : ReportConfiguration.Builder.class.getMethods()) {
+      if (!setter.getName().startsWith("set") || (setter.getParameterTypes().length != 1)) {
+        continue;
+      }
+      String property = setter.getName().substring(3);
+      Object value = getter(property).invoke(defaults);
+      ReportConfiguration.Builder builder = new ReportConfiguration.Builder(defaults);
+      setter.invoke(builder, change(value, setter.getParameterTypes()[0]));
+      ReportConfiguration changed = builder.build();
+      check(!defaults.equals(changed) && !changed.equals(defaults), property + " is compared");
+      hashCodes.add(Integer.valueOf(changed.hashCode()));
+      setter.invoke(builder, value);
+      ReportConfiguration restored = builder.build();
+      check(defaults.equals(restored), property + " can be restored");
+      check(defaults.hashCode() == restored.hashCode(), property + " is hashed consistently");
+      properties++;
+    }
+    check(properties == 30, "all properties have been checked");
+    // Changing single properties should hardly ever collide.
+    hashCodes.add(Integer.valueOf(defaults.hashCode()));
+    check(hashCodes.size() > properties * 9 / 10, "hash codes depend on the properties");
+
+    Map<ReportConfiguration, String> cache = new HashMap<ReportConfiguration, String>();
+    cache.put(defaults, "report");
+    check("report".equals(cache.get(other)), "equal configurations share a cache entry");
+    passed(ReportConfigurationTest.class);
+  }
+
+  /**
+   * 
+   * @param property
+   * @return the getter of the given property of a {@link ReportConfiguration}.
+   * @throws NoSuchMethodException
+   */
+  private static Method getter(String property) throws NoSuchMethodException {
+    try {
+      return ReportConfiguration.class.getMethod("is" + property);
+    } catch (NoSuchMethodException exc) {
+      return ReportConfiguration.class.getMethod("get" + property);
+    }
+  }
+
+  /**
+   * 
+   * @param value
+   * @param type
+   * @return a value of the given type that differs from the given value.
+   */
+  private static Object change(Object value, Class<?> type) {
+    if (type == boolean.class) {
+      return Boolean.valueOf(!((Boolean) value).booleanValue());
+    } else if (type == short.class) {
+      return Short.valueOf((short) (((Short) value).shortValue() + 1));
+    } else if (type == String.class) {
+      return value + "x";
+    } else if (type == File.class) {
+      return new File(value + "x");
+    } else if (type.isEnum()) {
+      Object constants[] = type.getEnumConstants();
+      return constants[0].equals(value) ? constants[1] : constants[0];
+    }
+    throw new IllegalArgumentException(type.getName());
+  }
+
+}
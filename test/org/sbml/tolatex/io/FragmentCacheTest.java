@@ -0,0 +1,160 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ * 
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import static org.sbml.tolatex.test.TestTools.check;
+import static org.sbml.tolatex.test.TestTools.passed;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.StringWriter;
+
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.xml.stax.SBMLReader;
+import org.sbml.tolatex.ReportConfiguration;
+
+/**
+ * Checks the keys of a {@link FragmentCache}, i.e., the hash codes computed
+ * by {@link ElementDigest}, the eviction of fragments, and that reports
+ * created with the cache equal those created without it, also after a
+ * reaction of the model has been changed.
+ * 
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class FragmentCacheTest {
+
+  /**
+   * @param args
+   *        optionally the path to an SBML file, by default
+   *        {@code files/buffer.xml}.
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    File file = new File(args.length > 0 ? args[0] : "files/buffer.xml");
+    testDigests(file);
+    testEviction();
+    testReports(file);
+    passed(FragmentCacheTest.class);
+  }
+
+  /**
+   * 
+   * @param file
+   * @throws Exception
+   */
+  private static void testDigests(File file) throws Exception {
+    Model model = new SBMLReader().readSBML(file).getModel();
+    Model copy = new SBMLReader().readSBML(file).getModel();
+    String environment = ElementDigest.environment(model);
+    check(environment.equals(ElementDigest.environment(copy)), "equal models have equal digests");
+    Reaction reaction = copy.getReaction(0);
+    String digest = ElementDigest.of(reaction);
+    check(digest.equals(ElementDigest.of(model.getReaction(0))), "equal reactions have equal digests");
+
+    reaction.getKineticLaw().setMath(ASTNode.parseFormula("42"));
+    check(environment.equals(ElementDigest.environment(copy)),
+      "the content of reactions is not part of the environment");
+    check(!digest.equals(ElementDigest.of(reaction)), "the kinetic law is part of the reaction digest");
+
+    reaction.setName(reaction.getName() + " changed");
+    check(!environment.equals(ElementDigest.environment(copy)),
+      "the names of reactions are part of the environment");
+    copy = new SBMLReader().readSBML(file).getModel();
+    copy.getSpecies(0).setInitialAmount(copy.getSpecies(0).getInitialAmount() + 1d);
+    check(!environment.equals(ElementDigest.environment(copy)), "species are part of the environment");
+
+    check(!new ElementDigest().update((String) null).digest().equals(new ElementDigest().update("").digest()),
+      "null differs from the empty string");
+    check(!new ElementDigest().update("ab").update("c").digest().equals(
+      new ElementDigest().update("a").update("bc").digest()), "values are separated");
+  }
+
+  /**
+   * Fills a small cache beyond its limit.
+   */
+  private static void testEviction() {
+    FragmentCache cache = new FragmentCache(10);
+    cache.put("a", new FragmentCache.Fragment("1234", new int[0], 0));
+    cache.put("b", new FragmentCache.Fragment("1234", new int[] {1}, 2));
+    check(cache.get("b").getFlags() == 2, "flags are kept");
+    check(cache.get("a") != null, "fragment a is found");
+    cache.put("c", new FragmentCache.Fragment("1234", new int[0], 0));
+    check(cache.get("b") == null, "least recently used fragment is removed");
+    check((cache.get("a") != null) && (cache.get("c") != null), "recently used fragments are kept");
+    cache.put("a", new FragmentCache.Fragment("123456", new int[0], 0));
+    check(cache.get("c") != null, "replacing a fragment does not count twice");
+    cache.put("d", new FragmentCache.Fragment("12345678901", new int[0], 0));
+    check(cache.get("d") == null, "fragments larger than the cache are not stored");
+    check((cache.getHits() == 5) && (cache.getMisses() == 2), "hits and misses are counted");
+    cache.clear();
+    check(cache.get("a") == null, "cache is empty after clearing");
+  }
+
+  /**
+   * 
+   * @param file
+   * @throws Exception
+   */
+  private static void testReports(File file) throws Exception {
+    ReportConfiguration configuration = new ReportConfiguration.Builder()
+        .setCheckConsistency(false).build();
+    FragmentCache cache = new FragmentCache();
+    SBMLDocument doc = new SBMLReader().readSBML(file);
+    String expected = report(doc, configuration, null);
+    check(expected.equals(report(doc, configuration, cache)), "report with empty cache");
+    long misses = cache.getMisses();
+    check(expected.equals(report(doc, configuration, cache)), "report from the cache");
+    check((cache.getHits() > 0) && (cache.getMisses() == misses), "all fragments are reused");
+
+    doc.getModel().getReaction(0).getKineticLaw().setMath(ASTNode.parseFormula("k_changed * 2"));
+    expected = report(doc, configuration, null);
+    check(expected.contains("k\\_changed") || expected.contains("changed"), "changed kinetic law is shown");
+    check(expected.equals(report(doc, configuration, cache)), "report of the changed model");
+  }
+
+  /**
+   * 
+   * @param doc
+   * @param configuration
+   * @param cache
+   * @return the LaTeX report of the given document.
+   * @throws Exception
+   */
+  private static String report(SBMLDocument doc, ReportConfiguration configuration,
+    FragmentCache cache) throws Exception {
+    LaTeXReportGenerator generator = new LaTeXReportGenerator(configuration);
+    generator.setFragmentCache(cache);
+    StringWriter out = new StringWriter();
+    BufferedWriter buffer = new BufferedWriter(out);
+    generator.format(doc, buffer);
+    buffer.flush();
+    return out.toString();
+  }
+
+}
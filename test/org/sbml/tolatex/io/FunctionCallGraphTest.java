@@ -0,0 +1,101 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ * 
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import static org.sbml.tolatex.test.TestTools.check;
+import static org.sbml.tolatex.test.TestTools.passed;
+
+import java.util.Arrays;
+
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.text.parser.ParseException;
+
+/**
+ * Checks the direct, transitive, and recursive calls that a
+ * {@link FunctionCallGraph} reports for a small set of function
+ * definitions.
+ * 
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class FunctionCallGraphTest {
+
+  /**
+   * @param args
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    Model model = new SBMLDocument(3, 1).createModel("calls");
+    define(model, "f", "lambda(x, g(x) + h(x))");
+    define(model, "g", "lambda(x, h(x) * 2)");
+    define(model, "h", "lambda(x, x)");
+    define(model, "r", "lambda(x, r(x - 1))");
+    define(model, "u", "lambda(x, undefined(x))");
+    FunctionCallGraph graph = new FunctionCallGraph(model);
+
+    checkCalls(graph.getCallees("f"), "f", "g", "h");
+    checkCalls(graph.getCallees("g"), "g", "h");
+    checkCalls(graph.getCallees("h"), "h");
+    checkCalls(graph.getCallees("r"), "r", "r");
+    checkCalls(graph.getCallees("u"), "u");
+    checkCalls(graph.getCallees("unknown"), "unknown");
+    check(graph.getCallees("f") == graph.getCallees("f"), "callees are memorized");
+
+    ASTNode ast = ASTNode.parseFormula("u(1) + f(2) * h(3)");
+    checkCalls(graph.getCalls(ast), ast.toString(), "u", "f", "g", "h");
+    check(graph.getCalls(ast) == graph.getCalls(ast), "calls are memorized");
+    checkCalls(graph.getCalls(ASTNode.parseFormula("2 * x")), "2 * x");
+    check(graph.getModel() == model, "model of the graph");
+
+    Model empty = new SBMLDocument(3, 1).createModel("empty");
+    checkCalls(new FunctionCallGraph(empty).getCalls(ast), "model without functions");
+    passed(FunctionCallGraphTest.class);
+  }
+
+  /**
+   * 
+   * @param model
+   * @param id
+   * @param formula
+   * @throws ParseException
+   */
+  private static void define(Model model, String id, String formula) throws ParseException {
+    model.createFunctionDefinition(id).setMath(ASTNode.parseFormula(formula));
+  }
+
+  /**
+   * 
+   * @param actual
+   * @param message
+   * @param expected
+   */
+  private static void checkCalls(String actual[], String message, String... expected) {
+    check(Arrays.equals(actual, expected), message + ": expected " + Arrays.toString(expected)
+        + " but was " + Arrays.toString(actual));
+  }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ * 
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import static org.sbml.tolatex.test.TestTools.check;
+import static org.sbml.tolatex.test.TestTools.passed;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.sbml.jsbml.xml.XMLNode;
+
+/**
+ * Checks that the keys of the {@link NotesCache} distinguish XHTML trees
+ * with different content and that entries are stored and replaced.
+ * 
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class NotesCacheTest {
+
+  /**
+   * @param args
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    testKeys();
+    testEntries();
+    passed(NotesCacheTest.class);
+  }
+
+  /**
+   * 
+   * @throws Exception
+   */
+  private static void testKeys() throws Exception {
+    String key = key("<p class=\"a\">Hello <b>world</b></p>");
+    check(key.matches("[0-9a-f]{64}"), "key is a hexadecimal SHA-256 hash");
+    check(key.equals(key("<p class=\"a\">Hello <b>world</b></p>")), "equal notes have equal keys");
+    check(!key.equals(key("<p class=\"b\">Hello <b>world</b></p>")), "attribute values are considered");
+    check(!key.equals(key("<p id=\"a\">Hello <b>world</b></p>")), "attribute names are considered");
+    check(!key.equals(key("<p class=\"a\">Hello <i>world</i></p>")), "element names are considered");
+    check(!key.equals(key("<p class=\"a\">Hello <b>World</b></p>")), "texts are considered");
+    check(!key("<p><b>ab</b></p>").equals(key("<p><b>a</b>b</p>")), "structure is considered");
+    check(!key("<p>ab</p>").equals(key("<p>a</p><p>b</p>")), "siblings are separated");
+  }
+
+  /**
+   * 
+   */
+  private static void testEntries() {
+    NotesCache cache = NotesCache.getInstance();
+    check(cache == NotesCache.getInstance(), "the cache is shared");
+    String key = NotesCacheTest.class.getName();
+    check(cache.get(key) == null, "no entry yet");
+    cache.put(key, "\\textbf{Hello}");
+    check("\\textbf{Hello}".equals(cache.get(key)), "entry found");
+    cache.put(key, "Hello");
+    check("Hello".equals(cache.get(key)), "entry replaced");
+
+    StringBuilder large = new StringBuilder();
+    while (large.length() <= (1 << 16)) {
+      large.append("0123456789");
+    }
+    cache.put(key + ".large", large.toString());
+    check(cache.get(key + ".large") == null, "too large entries are not stored");
+  }
+
+  /**
+   * 
+   * @param xhtml
+   *        the content of the notes.
+   * @return the key of the notes with the given content.
+   * @throws XMLStreamException
+   */
+  private static String key(String xhtml) throws XMLStreamException {
+    return NotesCache.key(XMLNode.convertStringToXMLNode("<notes><body xmlns=\"http://www.w3.org/1999/xhtml\">"
+        + xhtml + "</body></notes>"));
+  }
+
+}
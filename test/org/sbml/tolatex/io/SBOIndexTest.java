@@ -0,0 +1,117 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ * 
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import static org.sbml.tolatex.test.TestTools.check;
+import static org.sbml.tolatex.test.TestTools.passed;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.sbml.jsbml.SBO;
+import org.sbml.jsbml.ontology.Term;
+
+import de.zbit.sbml.io.SBOTermFormatter;
+
+/**
+ * Compares the names and short definitions in the {@link SBOIndex} with the
+ * terms of the ontology.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class SBOIndexTest {
+
+  /**
+   * @param args
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    SBOIndex index = SBOIndex.getInstance();
+    check(index == SBOIndex.getInstance(), "the index is loaded once");
+
+    // SBO.getTerms() may return the same term more than once.
+    Set<Integer> ids = new HashSet<Integer>();
+    for (Term term : SBO.getTerms()) {
+      int id = SBO.stringToInt(term.getId());
+      if ((id < 0) || !ids.add(Integer.valueOf(id))) {
+        continue;
+      }
+      check(index.contains(id), "contains " + term.getId());
+      check(equal(term.getName(), index.getName(id)), "name of " + term.getId());
+      check(equal(SBOTermFormatter.getShortDefinition(term), index.getShortDefinition(id)),
+        "short definition of " + term.getId());
+    }
+    int count = ids.size();
+    check(count > 0, "the ontology has terms");
+    check(index.getCount() == count, "number of terms");
+
+    for (int id : new int[] {-1, Integer.MIN_VALUE, 9999999, Integer.MAX_VALUE}) {
+      check(!index.contains(id), "does not contain " + id);
+      check(index.getName(id) == null, "no name for " + id);
+      check(index.getShortDefinition(id) == null, "no short definition for " + id);
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    SBOIndex.write(out);
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+    check(in.readInt() == 0x53424f49, "magic number");
+    check(in.readInt() == 1, "format version");
+    check(in.readInt() == count, "number of terms in the written index");
+    int previous = -1;
+    for (int i = 0; i < count; i++) {
+      int id = in.readInt();
+      check(id > previous, "written identifiers are sorted");
+      previous = id;
+    }
+
+    passed(SBOIndexTest.class);
+  }
+
+  /**
+   * Strings longer than the index can hold are compared up to the stored
+   * length.
+   *
+   * @param expected
+   * @param actual
+   * @return
+   * @throws UnsupportedEncodingException
+   */
+  private static boolean equal(String expected, String actual) throws UnsupportedEncodingException {
+    if ((expected == null) || (actual == null)) {
+      return expected == actual;
+    }
+    byte bytes[] = expected.getBytes("UTF-8");
+    if (bytes.length > 0xffff) {
+      return new String(bytes, 0, 0xffff, "UTF-8").startsWith(actual);
+    }
+    return expected.equals(actual);
+  }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ * 
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import static org.sbml.tolatex.test.TestTools.check;
+import static org.sbml.tolatex.test.TestTools.passed;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.ListOf;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Reaction;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.SimpleSpeciesReference;
+import org.sbml.jsbml.SpeciesReference;
+import org.sbml.jsbml.StoichiometryMath;
+import org.sbml.jsbml.text.parser.ParseException;
+
+/**
+ * Compares the entries of a {@link SpeciesIncidence} with a linear search
+ * through all reactions of a small model.
+ * 
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class SpeciesIncidenceTest {
+
+  /**
+   * @param args
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    Model model = createModel();
+    SpeciesIncidence incidence = new SpeciesIncidence(model, model.getListOfReactions());
+    int roles[] = {SpeciesIncidence.REACTANT, SpeciesIncidence.PRODUCT, SpeciesIncidence.MODIFIER};
+    for (int s = 0; s < model.getSpeciesCount(); s++) {
+      int total = 0;
+      for (int role : roles) {
+        List<SimpleSpeciesReference> expected = find(model, model.getSpecies(s).getId(), role);
+        String row = model.getSpecies(s).getId() + " in role " + role;
+        check(incidence.getCount(s, role) == expected.size(), "count of " + row);
+        for (int i = 0; i < expected.size(); i++) {
+          SimpleSpeciesReference ref = expected.get(i);
+          Reaction reaction = model.getReaction(incidence.getReaction(s, role, i));
+          check(reaction == ref.getParent().getParent(), "reaction of " + row);
+          check(incidence.getSpeciesReference(reaction, s, role, i) == ref, "reference of " + row);
+          double stoichiometry = incidence.getStoichiometry(s, role, i);
+          if ((role == SpeciesIncidence.MODIFIER) || isSetStoichiometryMath(ref)) {
+            check(Double.isNaN(stoichiometry), "no constant stoichiometry of " + row);
+          } else {
+            check(stoichiometry == ((SpeciesReference) ref).getStoichiometry(), "stoichiometry of " + row);
+          }
+        }
+        total += expected.size();
+      }
+      check(incidence.getCount(s) == total, "total count of " + model.getSpecies(s).getId());
+    }
+    check(incidence.getCount(2, SpeciesIncidence.PRODUCT) == 2, "s2 is produced twice");
+    check(incidence.getStoichiometry(2, SpeciesIncidence.PRODUCT, 1) == 3d, "stoichiometry of s2 in r2");
+    passed(SpeciesIncidenceTest.class);
+  }
+
+  /**
+   * Creates a Level 2 model with the reactions
+   * <ul>
+   * <li>r0: s0 + 2 s1 -&gt; s2, modified by s1</li>
+   * <li>r1: s1 -&gt; m s0, where m is given by a {@link StoichiometryMath}</li>
+   * <li>r2: x -&gt; 3 s2, where x is not defined</li>
+   * </ul>
+   * 
+   * @return
+   * @throws ParseException
+   */
+  @SuppressWarnings("deprecation")
+  private static Model createModel() throws ParseException {
+    Model model = new SBMLDocument(2, 4).createModel("incidence");
+    model.createCompartment("c");
+    for (int i = 0; i < 3; i++) {
+      model.createSpecies("s" + i, model.getCompartment("c"));
+    }
+    Reaction r0 = model.createReaction("r0");
+    r0.createReactant(model.getSpecies("s0"));
+    r0.createReactant(model.getSpecies("s1")).setStoichiometry(2d);
+    r0.createProduct(model.getSpecies("s2"));
+    r0.createModifier(model.getSpecies("s1"));
+    Reaction r1 = model.createReaction("r1");
+    r1.createReactant(model.getSpecies("s1"));
+    SpeciesReference product = r1.createProduct(model.getSpecies("s0"));
+    StoichiometryMath math = new StoichiometryMath(2, 4);
+    math.setMath(ASTNode.parseFormula("2 * 3"));
+    product.setStoichiometryMath(math);
+    Reaction r2 = model.createReaction("r2");
+    r2.createReactant().setSpecies("x");
+    r2.createProduct(model.getSpecies("s2")).setStoichiometry(3d);
+    return model;
+  }
+
+  /**
+   * 
+   * @param model
+   * @param species
+   * @param role
+   * @return all references to the given species in the given role in the
+   *         order of the reactions.
+   */
+  private static List<SimpleSpeciesReference> find(Model model, String species, int role) {
+    List<SimpleSpeciesReference> refs = new ArrayList<SimpleSpeciesReference>();
+    for (Reaction reaction : model.getListOfReactions()) {
+      ListOf<? extends SimpleSpeciesReference> list = role == SpeciesIncidence.REACTANT
+          ? reaction.getListOfReactants() : role == SpeciesIncidence.PRODUCT
+          ? reaction.getListOfProducts() : reaction.getListOfModifiers();
+      for (SimpleSpeciesReference ref : list) {
+        if (species.equals(ref.getSpecies())) {
+          refs.add(ref);
+        }
+      }
+    }
+    return refs;
+  }
+
+  /**
+   * 
+   * @param ref
+   * @return
+   */
+  @SuppressWarnings("deprecation")
+  private static boolean isSetStoichiometryMath(SimpleSpeciesReference ref) {
+    return ((SpeciesReference) ref).isSetStoichiometryMath();
+  }
+
+}
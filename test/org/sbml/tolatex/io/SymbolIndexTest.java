@@ -0,0 +1,144 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ * 
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import static org.sbml.tolatex.test.TestTools.check;
+import static org.sbml.tolatex.test.TestTools.passed;
+
+import java.util.Arrays;
+
+import org.sbml.jsbml.ASTNode;
+import org.sbml.jsbml.AssignmentRule;
+import org.sbml.jsbml.Event;
+import org.sbml.jsbml.EventAssignment;
+import org.sbml.jsbml.InitialAssignment;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.RateRule;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.text.parser.ParseException;
+
+/**
+ * Checks the lookups of a {@link SymbolIndex} for a small model with
+ * initial assignments, all kinds of rules, and events.
+ * 
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class SymbolIndexTest {
+
+  /**
+   * @param args
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    SymbolIndex index = new SymbolIndex(createModel());
+
+    check(index.getInitialAssignment("a") == 0, "first initial assignment of a");
+    check(index.getInitialAssignment("b") == 1, "initial assignment of b");
+    check(index.getInitialAssignment("c") == -1, "no initial assignment of c");
+
+    checkIndices(index.getRulesAssigning("a"), new int[] {0}, "rules assigning a");
+    checkIndices(index.getRulesAssigning("b"), new int[] {1}, "rules assigning b");
+    checkIndices(index.getRulesAssigning("c"), new int[0], "rules assigning c");
+    checkIndices(index.getRulesAssigning("d"), new int[] {3}, "rules assigning d");
+
+    checkIndices(index.getRulesReferencing("a"), new int[] {1, 2}, "rules referencing a");
+    checkIndices(index.getRulesReferencing("b"), new int[] {0, 3}, "rules referencing b");
+    checkIndices(index.getRulesReferencing("c"), new int[] {0, 2}, "rules referencing c");
+    checkIndices(index.getRulesReferencing("d"), new int[] {2}, "rules referencing d");
+
+    checkIndices(index.getRulesDetermining("a"), new int[] {0, 2}, "rules determining a");
+    checkIndices(index.getRulesDetermining("b"), new int[] {1}, "rules determining b");
+    checkIndices(index.getRulesDetermining("c"), new int[] {2}, "rules determining c");
+    checkIndices(index.getRulesDetermining("d"), new int[] {2, 3}, "rules determining d");
+
+    checkIndices(index.getEvents("a"), new int[] {0, 1}, "events assigning a");
+    checkIndices(index.getEvents("b"), new int[] {0}, "events assigning b");
+    checkIndices(index.getEvents("c"), new int[0], "events assigning c");
+
+    checkIndices(index.getEvents("unknown"), new int[0], "unknown identifier");
+    checkIndices(index.getRulesReferencing("unknown"), new int[0], "unknown identifier");
+    check(index.getInitialAssignment("unknown") == -1, "unknown identifier");
+    passed(SymbolIndexTest.class);
+  }
+
+  /**
+   * Creates a model with the rules
+   * <ol start="0">
+   * <li>a = b + c</li>
+   * <li>d b / dt = a</li>
+   * <li>0 = c + d - a</li>
+   * <li>d = b * b</li>
+   * </ol>
+   * two initial assignments for a and one for b, and two events, of which
+   * the first assigns a and b and the second assigns a twice.
+   * 
+   * @return
+   * @throws ParseException
+   */
+  private static Model createModel() throws ParseException {
+    Model model = new SBMLDocument(3, 1).createModel("symbols");
+    for (String id : new String[] {"a", "b", "c", "d"}) {
+      model.createParameter(id).setConstant(false);
+    }
+    for (String id : new String[] {"a", "b", "a"}) {
+      InitialAssignment ia = model.createInitialAssignment();
+      ia.setVariable(id);
+      ia.setMath(ASTNode.parseFormula("1"));
+    }
+    AssignmentRule ar = model.createAssignmentRule();
+    ar.setVariable("a");
+    ar.setMath(ASTNode.parseFormula("b + c"));
+    RateRule rr = model.createRateRule();
+    rr.setVariable("b");
+    rr.setMath(ASTNode.parseFormula("a"));
+    model.createAlgebraicRule().setMath(ASTNode.parseFormula("c + d - a"));
+    ar = model.createAssignmentRule();
+    ar.setVariable("d");
+    ar.setMath(ASTNode.parseFormula("b * b"));
+    String assignments[][] = {{"a", "b"}, {"a", "a"}};
+    for (String variables[] : assignments) {
+      Event event = model.createEvent();
+      for (String variable : variables) {
+        EventAssignment ea = event.createEventAssignment();
+        ea.setVariable(variable);
+        ea.setMath(ASTNode.parseFormula("0"));
+      }
+    }
+    return model;
+  }
+
+  /**
+   * 
+   * @param actual
+   * @param expected
+   * @param message
+   */
+  private static void checkIndices(int actual[], int expected[], String message) {
+    check(Arrays.equals(actual, expected), message + ": expected " + Arrays.toString(expected)
+        + " but was " + Arrays.toString(actual));
+  }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ * 
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import static org.sbml.tolatex.test.TestTools.check;
+import static org.sbml.tolatex.test.TestTools.passed;
+
+import org.sbml.jsbml.Compartment;
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.Parameter;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.Unit;
+import org.sbml.jsbml.UnitDefinition;
+
+/**
+ * Checks that the {@link UnitCache} derives the unit of each element only
+ * once and keeps formatted units apart.
+ *
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class UnitCacheTest {
+
+  /**
+   * Counts how often its unit is derived.
+   *
+   * @author agent
+   * @since 1.0
+   * @version $Rev$
+   */
+  private static class CountingParameter extends Parameter {
+
+    /**
+     * Generated serial version identifier.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     *
+     */
+    private int calls;
+
+    /**
+     * @param id
+     */
+    public CountingParameter(String id) {
+      super(id, 3, 1);
+    }
+
+    /* (non-Javadoc)
+     * @see org.sbml.jsbml.QuantityWithUnit#getDerivedUnitDefinition()
+     */
+    @Override
+    public UnitDefinition getDerivedUnitDefinition() {
+      calls++;
+      return null;
+    }
+
+  }
+
+  /**
+   * @param args
+   */
+  public static void main(String[] args) {
+    Model model = new Model("m", 3, 1);
+    Compartment c = model.createCompartment("c");
+    c.setUnits(Unit.Kind.LITRE);
+    Species s = model.createSpecies("s", c);
+    s.setSubstanceUnits(Unit.Kind.MOLE);
+    CountingParameter p = new CountingParameter("p");
+    model.addParameter(p);
+
+    UnitCache cache = new UnitCache();
+    UnitDefinition ud = cache.getDerivedUnitDefinition(s);
+    check(ud != null, "unit of the species is derived");
+    check(s.getDerivedUnitDefinition() != ud, "each derivation creates a new unit");
+    check(cache.getDerivedUnitDefinition(s) == ud, "unit of the species is derived once");
+
+    check(cache.getDerivedUnitDefinition(p) == null, "parameter without unit");
+    check(cache.getDerivedUnitDefinition(p) == null, "parameter without unit is looked up");
+    check(p.calls == 1, "missing unit is memorized");
+
+    check(cache.getFormatted(ud) == null, "nothing is formatted yet");
+    cache.putFormatted(ud, "\\mathrm{mol}");
+    check("\\mathrm{mol}".equals(cache.getFormatted(ud)), "formatted unit");
+    UnitDefinition copy = ud.clone();
+    check(copy.equals(ud), "copy is equal");
+    check(cache.getFormatted(copy) == null, "unit definitions are identified by reference");
+
+    check(cache.getConcentrationUnits("substance", "c") == null, "no concentration yet");
+    cache.putConcentrationUnits("substance", "c", "\\frac{mol}{l}");
+    cache.putConcentrationUnits("substance", "d", "\\frac{mol}{ml}");
+    check("\\frac{mol}{l}".equals(cache.getConcentrationUnits("substance", "c")), "concentration in c");
+    check("\\frac{mol}{ml}".equals(cache.getConcentrationUnits("substance", "d")), "concentration in d");
+    check(cache.getConcentrationUnits("substancec", "") == null, "substance and compartment are separated");
+
+    passed(UnitCacheTest.class);
+  }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ * 
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.io;
+
+import static org.sbml.tolatex.test.TestTools.check;
+import static org.sbml.tolatex.test.TestTools.passed;
+
+import java.io.File;
+import java.util.concurrent.Future;
+
+import org.sbml.jsbml.Model;
+import org.sbml.jsbml.SBMLDocument;
+import org.sbml.jsbml.Species;
+import org.sbml.jsbml.xml.stax.SBMLReader;
+
+/**
+ * Runs the {@link ValidationService} with the {@link OfflineValidation}
+ * backend on a model from the {@code files} folder and on a model with a
+ * known problem.
+ * 
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class ValidationServiceTest {
+
+  /**
+   * @param args
+   *        optionally the path to an SBML file, by default
+   *        {@code files/buffer.xml}.
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    File file = new File(args.length > 0 ? args[0] : "files/buffer.xml");
+    testFile(file);
+    testUndefinedCompartment();
+    passed(ValidationServiceTest.class);
+  }
+
+  /**
+   * Validates the given file in the background, compares the result with a
+   * direct validation and checks that a second submission reuses the result.
+   * 
+   * @param file
+   * @throws Exception
+   */
+  public static void testFile(File file) throws Exception {
+    SBMLDocument doc = new SBMLReader().readSBML(file);
+    OfflineValidation backend = new OfflineValidation();
+    Future<ValidationReport> future = ValidationService.submit(doc, backend);
+    ValidationReport report = future.get();
+    check(report.isSupported(), "offline reports are supported");
+    ValidationReport cached = ValidationService.submit(doc, backend).get();
+    check(cached == report, "the result of an unchanged document is reused");
+    ValidationReport direct = backend.validate(doc);
+    check(report.getProblemCount() == direct.getProblemCount(),
+      "background and direct validation agree");
+  }
+
+  /**
+   * @throws Exception
+   */
+  public static void testUndefinedCompartment() throws Exception {
+    SBMLDocument doc = new SBMLDocument(2, 4);
+    Model model = doc.createModel("m");
+    Species species = model.createSpecies("s");
+    species.setCompartment("nowhere");
+    ValidationReport report = ValidationService.submit(doc, new OfflineValidation()).get();
+    check(report.getProblemCount() == 1, "one problem is found");
+    check(report.getProblems().get(0).getId() == OfflineValidation.UNDEFINED_COMPARTMENT,
+      "the undefined compartment is reported");
+  }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ * 
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.test;
+
+import static org.sbml.tolatex.test.TestTools.passed;
+
+/**
+ * Helper methods for the tests, which are run by their {@code main} method.
+ * 
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class TestTools {
+
+	/**
+	 * Fails the running test with the given message unless the condition
+	 * holds.
+	 * 
+	 * @param condition
+	 * @param message
+	 * @throws AssertionError
+	 *         if the condition is {@code false}.
+	 */
+	public static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+	}
+
+	/**
+	 * Reports that all checks of the given test succeeded.
+	 * 
+	 * @param test
+	 */
+	public static void passed(Class<?> test) {
+		System.out.println(test.getSimpleName() + " passed");
+	}
+
+}
@@ -0,0 +1,120 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ * 
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.util;
+
+import static org.sbml.tolatex.test.TestTools.check;
+import static org.sbml.tolatex.test.TestTools.passed;
+
+import java.io.StringWriter;
+import java.util.Random;
+
+/**
+ * Compares the {@link LaTeXEscaper} with the former implementation of
+ * {@link LaTeX#maskSpecialChars(String, boolean)} and checks the replacement
+ * of quotation marks.
+ * 
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class LaTeXEscaperTest {
+
+	/**
+	 * Parts of the random texts.
+	 */
+	private static final String TOKENS[] = { "a", "Z", "1", " ", "\t", "\n",
+		"_", "\\", "$", "&", "#", "{", "}", "~", "%", "^", "<", ">", "\"", "&#",
+		"&#946;", "\u00e4", "-" };
+
+	/**
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		String plain = "plain text";
+		check(LaTeXEscaper.SPECIAL_CHARS.escape(plain, true, false) == plain,
+			"plain text is not copied");
+		check(LaTeXEscaper.SPECIAL_CHARS.escape("a_b", true, false).equals("a\\-\\_b"),
+			"hyphen before masked character");
+		check(LaTeXEscaper.SPECIAL_CHARS.escape("_a", true, false).equals("\\_a"),
+			"no hyphen at the beginning");
+		check(LaTeXEscaper.SPECIAL_CHARS.escape(" a<b ", false, false).equals("a$<$b"),
+			"trimmed and less than sign in math mode");
+		check(LaTeXEscaper.QUOTATION_MARKS.escape("a \"b\" \"c", false, true).equals(
+			"a " + LaTeX.leftQuotationMark + "b" + LaTeX.rightQuotationMark + " "
+					+ LaTeX.leftQuotationMark + "c"), "quotation marks alternate");
+
+		Random random = new Random(42);
+		for (int n = 0; n < 100000; n++) {
+			StringBuilder sb = new StringBuilder();
+			for (int i = random.nextInt(16); i > 0; i--) {
+				sb.append(TOKENS[random.nextInt(TOKENS.length)]);
+			}
+			String text = sb.toString();
+			for (boolean hyphen : new boolean[] { false, true }) {
+				String expected = maskSpecialChars(text, hyphen);
+				check(expected.equals(LaTeXEscaper.SPECIAL_CHARS.escape(text, hyphen, false)),
+					"masking " + text);
+				check(expected.equals(LaTeX.maskSpecialChars(text, hyphen)),
+					"LaTeX.maskSpecialChars of " + text);
+				StringWriter out = new StringWriter();
+				LaTeXEscaper.SPECIAL_CHARS.escape(out, text, hyphen, false);
+				check(expected.equals(out.toString()), "masking " + text + " into a writer");
+			}
+		}
+		passed(LaTeXEscaperTest.class);
+	}
+
+	/**
+	 * The former implementation of {@link LaTeX#maskSpecialChars(String, boolean)}.
+	 * 
+	 * @param string
+	 * @param hyphen
+	 * @return
+	 */
+	private static String maskSpecialChars(String string, boolean hyphen) {
+		StringBuffer masked = new StringBuffer();
+		for (int i = 0; i < string.length(); i++) {
+			char atI = string.charAt(i);
+			if (atI == '<') {
+				masked.append("$<$");
+			} else if (atI == '>') {
+				masked.append("$>$");
+			} else {
+				if ((atI == '_') || (atI == '\\') || (atI == '$') || (atI == '&')
+						|| (atI == '#') || (atI == '{') || (atI == '}') || (atI == '~')
+						|| (atI == '%') || (atI == '^')) {
+					if ((i == 0) || (!hyphen)) {
+						masked.append('\\');
+					} else if (hyphen && (string.charAt(i - 1) != '\\')) {
+						masked.append("\\-\\");
+					}
+				}
+				masked.append(atI);
+			}
+		}
+		return masked.toString().trim();
+	}
+
+}
@@ -0,0 +1,183 @@
+/*
+ * $Id$
+ * $URL$
+ * ---------------------------------------------------------------------
+ * This file is part of SBML2LaTeX, a program that creates
+ * human-readable reports for given SBML files.
+ * 
+ * Copyright (C) 2007-2014 by the University of Tuebingen, Germany.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ * ---------------------------------------------------------------------
+ */
+package org.sbml.tolatex.util;
+
+import static org.sbml.tolatex.test.TestTools.check;
+import static org.sbml.tolatex.test.TestTools.passed;
+
+import java.io.StringWriter;
+import java.util.Random;
+
+/**
+ * Checks that the {@link Appendable} variants of the methods in
+ * {@link LaTeX} write the same code as the variants that return a
+ * {@link StringBuffer} or as the former implementations.
+ * 
+ * @author agent
+ * @since 1.0
+ * @version $Rev$
+ */
+public class LaTeXTest {
+
+	/**
+	 * Parts of the random texts.
+	 */
+	private static final String TOKENS[] = { "a", "Z", "1", " ", "_", "\\",
+		"$", "&", "#", "{", "}", "%", "^", "<", ">", "\"" };
+
+	/**
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		LaTeX latex = new LaTeX();
+		StringWriter writer = new StringWriter();
+		check(latex.texttt(writer, "x") == writer, "the given output is returned");
+		check(LaTeX.equation(new StringBuilder(), "").length() == 0,
+			"an empty equation is not written");
+
+		Random random = new Random(42);
+		for (int n = 0; n < 10000; n++) {
+			String a = random(random), b = random(random), c = random(random);
+			check(latex.texttt(a).toString().equals(latex.texttt(new StringBuilder(), a).toString()),
+				"texttt " + a);
+			check(latex.mathtt(a).toString().equals(latex.mathtt(new StringBuilder(), a).toString()),
+				"mathtt " + a);
+			check(latex.texttt(LaTeX.maskSpecialChars(a)).toString().equals(
+				latex.maskedTexttt(new StringBuilder(), a).toString()), "maskedTexttt " + a);
+			check(latex.mathtt(LaTeX.maskSpecialChars(a)).toString().equals(
+				latex.maskedMathtt(new StringBuilder(), a).toString()), "maskedMathtt " + a);
+			check(latex.math(a).toString().equals(latex.math(new StringBuilder(), a).toString()),
+				"math " + a);
+			check(latex.math(new StringBuffer(a)).toString().equals(
+				latex.math(new StringWriter(), new StringBuffer(a)).toString()), "math " + a);
+			check(latex.math(Integer.valueOf(n)).toString().equals(
+				latex.math(new StringBuilder(), Integer.valueOf(n)).toString()), "math " + n);
+			check(latex.hyperref(a, b).toString().equals(
+				latex.hyperref(new StringBuilder(), a, b).toString()), "hyperref " + a);
+			check(latex.descriptionItem(a, b).toString().equals(
+				latex.descriptionItem(new StringBuilder(), a, b).toString()), "descriptionItem " + a);
+			check(LaTeX.frac(a, b).toString().equals(LaTeX.frac(new StringBuilder(), a, b).toString()),
+				"frac " + a);
+			boolean numbering = random.nextBoolean();
+			check(latex.section(a, numbering).toString().equals(
+				latex.section(new StringBuilder(), a, numbering).toString()), "section " + a);
+			check(latex.subsection(a, numbering).toString().equals(
+				latex.subsection(new StringBuilder(), a, numbering).toString()), "subsection " + a);
+			check(latex.subsubsection(a, numbering).toString().equals(
+				latex.subsubsection(new StringBuilder(), a, numbering).toString()), "subsubsection " + a);
+			check(longtableHead(a, b, c, a).equals(latex.longtableHead(a, b, c, a).toString()),
+				"longtableHead " + a);
+			check(longtableHead(a, b, c, a).equals(
+				latex.longtableHead(new StringBuilder(), a, b, c, a).toString()), "longtableHead " + a);
+			if (a.length() > 0) {
+				check(equation(a, b, c).equals(LaTeX.equation(new StringBuilder(), a, b, c).toString()),
+					"equation " + a);
+			}
+		}
+		passed(LaTeXTest.class);
+	}
+
+	/**
+	 * 
+	 * @param random
+	 * @return a random text with special characters.
+	 */
+	private static String random(Random random) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = random.nextInt(8); i > 0; i--) {
+			sb.append(TOKENS[random.nextInt(TOKENS.length)]);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * The former implementation of
+	 * {@link LaTeX#longtableHead(String, String, String...)}.
+	 * 
+	 * @param columnDef
+	 * @param caption
+	 * @param headLine
+	 * @return
+	 */
+	private static String longtableHead(String columnDef, String caption,
+		String... headLine) {
+		StringBuffer buffer = new StringBuffer("\\begin{longtable}[h!]{");
+		if (!columnDef.startsWith("@{}")) {
+			buffer.append("@{}");
+		}
+		buffer.append(columnDef);
+		if (!columnDef.endsWith("@{}")) {
+			buffer.append("@{}");
+		}
+		buffer.append('}');
+		buffer.append(LaTeX.newLine());
+		buffer.append("\\caption{");
+		buffer.append(caption);
+		buffer.append('}');
+		buffer.append("\\\\");
+		StringBuffer head = new StringBuffer(LaTeX.toprule);
+		if (headLine != null) {
+			for (int i = 0; i < headLine.length; i++) {
+				head.append(headLine[i]);
+				if (i < headLine.length - 1) {
+					head.append('&');
+				}
+			}
+		}
+		head.append("\\\\");
+		head.append(LaTeX.midrule);
+		buffer.append(head);
+		buffer.append("\\endfirsthead");
+		buffer.append(head);
+		buffer.append("\\endhead");
+		buffer.append(LaTeX.newLine());
+		return buffer.toString();
+	}
+
+	/**
+	 * The former equation of the report generator.
+	 * 
+	 * @param formula
+	 *        not empty.
+	 * @param formulae
+	 * @return
+	 */
+	private static String equation(String formula, String... formulae) {
+		StringBuffer equation = new StringBuffer();
+		if (formula.charAt(0) != '$') {
+			equation.append(LaTeX.eqBegin);
+		}
+		equation.append(formula);
+		for (String f : formulae) {
+			equation.append(f);
+		}
+		if ((formula.charAt(formula.length() - 1) != '$')
+				&& (equation.charAt(equation.length() - 1) != '$')) {
+			equation.append(LaTeX.eqEnd);
+		}
+		return equation.toString();
+	}
+
+}